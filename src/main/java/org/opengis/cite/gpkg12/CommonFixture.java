@@ -3,26 +3,31 @@ package org.opengis.cite.gpkg12;
 import static org.testng.Assert.assertTrue;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.sql.Connection;
-import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.sql.DataSource;
 
+import org.opengis.cite.gpkg12.util.CancellableDataSource;
 import org.opengis.cite.gpkg12.util.DatabaseUtility;
-import org.sqlite.SQLiteConfig;
-import org.sqlite.SQLiteDataSource;
+import org.opengis.cite.gpkg12.util.GeoPackageQueries;
+import org.opengis.cite.gpkg12.util.PartitionedTableScanner;
+import org.opengis.cite.gpkg12.util.ProgressMonitor;
+import org.opengis.cite.gpkg12.util.SQLiteIOProfile;
 import org.testng.Assert;
 import org.testng.ITestContext;
+import org.testng.SkipException;
 import org.testng.annotations.AfterClass;
 import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.BeforeTest;
 import org.testng.annotations.Test;
 
@@ -60,17 +65,53 @@ public class CommonFixture {
     public static final String ROOT_PKG_PATH = "/org/opengis/cite/gpkg12/";
     /** A SQLite database file containing a GeoPackage. */
     protected File gpkgFile;
-    /** A JDBC DataSource for accessing the SQLite database. */
+    /**
+     * A JDBC DataSource for accessing the SQLite database. The queries on
+     * every connection it opens are cancelled when a test overruns its time
+     * budget.
+     */
     protected DataSource dataSource;
+    private CancellableDataSource cancellableDataSource;
 
     protected Connection databaseConnection;
+    /** Runs (and caches) the queries issued on the database connection. */
+    protected GeoPackageQueries queries;
+    /** The header of the SQLite database file. */
+    protected SQLiteHeader sqliteHeader;
+    /** Publishes the progress of the suite's long-running scans. */
+    protected ProgressMonitor progressMonitor;
+    /** The results of full table scans, shared with the other test classes. */
+    private ConcurrentMap<String, Object> scanResults;
+
+    /**
+     * A scan of one or more tables whose result may be shared.
+     *
+     * @param <T>
+     *            The type of the result.
+     */
+    @FunctionalInterface
+    protected interface Scan<T> {
+
+        /**
+         * @return The result of the scan.
+         * @throws SQLException
+         *             If a table cannot be read.
+         */
+        T run() throws SQLException;
+    }
     
     /**
      * Initializes the common test fixture. The fixture includes the following
      * components:
      * <ul>
      * <li>a File representing a GeoPackage;</li>
-     * <li>a DataSource for accessing a SQLite database.</li>
+     * <li>the header of the SQLite database file;</li>
+     * <li>a DataSource for accessing a SQLite database, configured with the
+     * suite's {@link SQLiteIOProfile I/O profile};</li>
+     * <li>a connection to the database, and a {@link GeoPackageQueries} layer
+     * that runs prepared queries on it;</li>
+     * <li>the suite's {@link ProgressMonitor progress monitor};</li>
+     * <li>the results of the table scans made so far in the suite.</li>
      * </ul>
      *
      * @param testContext
@@ -90,19 +131,117 @@ public class CommonFixture {
         }
         this.gpkgFile = File.class.cast(testFile);
         this.gpkgFile.setWritable(false);
-        final SQLiteConfig dbConfig = new SQLiteConfig();
-        dbConfig.setSynchronous(SQLiteConfig.SynchronousMode.OFF);
-        dbConfig.setJournalMode(SQLiteConfig.JournalMode.MEMORY);
-        dbConfig.enforceForeignKeys(true);
-        final SQLiteDataSource sqliteSource = new SQLiteDataSource(dbConfig);
-        sqliteSource.setUrl("jdbc:sqlite:" + this.gpkgFile.getPath());
-        this.dataSource = sqliteSource;
+        final Object ioProfile = testContext.getSuite().getAttribute(SuiteAttribute.IO_PROFILE.getName());
+        final SQLiteIOProfile profile = SQLiteIOProfile.class.isInstance(ioProfile)
+                ? SQLiteIOProfile.class.cast(ioProfile) : SQLiteIOProfile.select(this.gpkgFile);
+        this.cancellableDataSource = new CancellableDataSource(profile.createDataSource(this.gpkgFile));
+        this.dataSource = this.cancellableDataSource;
         this.databaseConnection = this.dataSource.getConnection();
+        this.queries = new GeoPackageQueries(this.databaseConnection);
+        final Object header = testContext.getSuite().getAttribute(SuiteAttribute.DB_HEADER.getName());
+        this.sqliteHeader = SQLiteHeader.class.isInstance(header) ? SQLiteHeader.class.cast(header)
+                : SQLiteHeader.read(this.gpkgFile);
+        final Object monitor = testContext.getSuite().getAttribute(SuiteAttribute.PROGRESS_MONITOR.getName());
+        this.progressMonitor = ProgressMonitor.class.isInstance(monitor) ? ProgressMonitor.class.cast(monitor)
+                : new ProgressMonitor();
+        final Object scans = testContext.getSuite().getAttribute(SuiteAttribute.SCAN_RESULTS.getName());
+        this.scanResults = scanResultsOf(scans);
         setupVersion();
     }
 
+    /**
+     * Skips the test if the time budget of the test run has been spent.
+     *
+     * @param testContext
+     *            The test context, whose suite holds the time budget.
+     */
+    @BeforeMethod
+    public void checkRunTimeBudget(final ITestContext testContext) {
+        final TimeBudget timeBudget = TimeBudget.of(testContext.getSuite());
+        if (timeBudget.isRunBudgetExhausted()) {
+            throw new SkipException(ErrorMessage.format(ErrorMessageKeys.RUN_TIME_BUDGET_EXCEEDED,
+                    timeBudget.getRunBudgetMillis() / 1000));
+        }
+    }
+
+    /**
+     * Cancels the SQLite queries running on the fixture's connections: the
+     * database connection and any other connection opened from the fixture's
+     * DataSource (e.g. by a {@link org.opengis.cite.gpkg12.util.PartitionedTableScanner}).
+     * It is called from another thread when the test overruns its
+     * {@link TimeBudget time budget}; each interrupted query fails with an
+     * SQLException.
+     */
+    void cancelQueries() {
+        if (this.cancellableDataSource != null) {
+            this.cancellableDataSource.cancelQueries();
+        }
+    }
+
+    /**
+     * Creates a scanner that reads the tables of the GeoPackage on
+     * connections of the fixture's DataSource, so that its queries are
+     * cancelled with those of the fixture, and that reports its progress to
+     * the suite's progress monitor.
+     *
+     * @return A new table scanner.
+     */
+    protected PartitionedTableScanner newTableScanner() {
+        return new PartitionedTableScanner(this.dataSource, this.progressMonitor);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ConcurrentMap<String, Object> scanResultsOf(Object scans) {
+        return ConcurrentMap.class.isInstance(scans) ? (ConcurrentMap<String, Object>) scans
+                : new ConcurrentHashMap<String, Object>();
+    }
+
+    /**
+     * Returns the result of a scan made by any test class of the suite, so
+     * that a table is scanned once even though several test classes (e.g. a
+     * subclass that inherits the tests of its superclass) check it.
+     *
+     * @param key
+     *            Identifies the scan and the tables it reads, e.g.
+     *            "geometryTypes:table.column".
+     * @param scan
+     *            Scans the tables if no result is known yet.
+     * @return The result of the scan; a {@code null} result is not
+     *         remembered.
+     * @throws SQLException
+     *             If the scan fails; a failed scan is not remembered.
+     */
+    @SuppressWarnings("unchecked")
+    protected <T> T sharedScan(String key, Scan<T> scan) throws SQLException {
+        final Object known = this.scanResults.get(key);
+        if (null != known) {
+            return (T) known;
+        }
+        final T result = scan.run();
+        if (null == result) {
+            return null;
+        }
+        final Object previous = this.scanResults.putIfAbsent(key, result);
+        return null == previous ? result : (T) previous;
+    }
+
+    /**
+     * Records that a task has been done in the suite, e.g. that a report file
+     * has been written.
+     *
+     * @param key
+     *            Identifies the task.
+     * @return {@code true} if no test class has done it before.
+     */
+    protected boolean claimOnce(String key) {
+        return null == this.scanResults.putIfAbsent(key, Boolean.TRUE);
+    }
+
     @AfterClass
     public void close() throws SQLException {
+        if (this.queries != null) {
+            this.queries.close();
+        }
         if (this.databaseConnection != null && !this.databaseConnection.isClosed()) {
             this.databaseConnection.close();
         }
@@ -141,12 +280,8 @@ public class CommonFixture {
      */
     @Test(description = "See OGC 12-128r12: Requirement 2")
     private void setupVersion() throws SQLException, IOException{
-        final byte[] headerBytes = new byte[GPKG12.DB_HEADER_LENGTH];
-        try (FileInputStream fileInputStream = new FileInputStream(this.gpkgFile)) {
-            fileInputStream.read(headerBytes);
-        }
         // 1
-        final byte[] appID = Arrays.copyOfRange(headerBytes, GPKG12.APP_ID_OFFSET, GPKG12.APP_ID_OFFSET + 4);
+        final byte[] appID = this.sqliteHeader.getApplicationIdBytes();
         // 2
     	if (Arrays.equals(appID, GPKG12.APP_GP10)){
     		geopackageVersion = GeoPackageVersion.V102;
@@ -171,34 +306,30 @@ public class CommonFixture {
     protected String getPrimaryKeyColumn(String tableName) throws SQLException {
     	String result = null;
     	
-    	try (
-    			final Statement statement = this.databaseConnection.createStatement();
-    			// 1
-    			final ResultSet resultSet = statement.executeQuery(String.format("PRAGMA table_info(%s);", tableName));
-    			) {
-    		// 2
-    		assertTrue(resultSet.next(),
-    				ErrorMessage.format(ErrorMessageKeys.MISSING_TABLE, tableName));
-    		
-    		boolean pass = false;
-    		// 3
-    		do {
-    			final int pk = resultSet.getInt("pk");
-    			final String name = resultSet.getString("name");
-    			final String type = resultSet.getString("type");
-    			if (pk > 0) {
-    				assertTrue(pk == 1, 
-    						ErrorMessage.format(ErrorMessageKeys.TABLE_DEFINITION_INVALID, tableName, 
-    								String.format("%s has an invalid primary key value of %d", name, pk)));
-    				assertTrue("INTEGER".equalsIgnoreCase(type), 
-    						ErrorMessage.format(ErrorMessageKeys.INVALID_DATA_TYPE, name, tableName));
-    				result = name;
-    				pass = true;
-    			}
-    		} while (resultSet.next());
+    	// 1
+    	final List<GeoPackageQueries.TableColumn> columns = this.queries.getTableInfo(tableName);
+    	// 2
+    	assertTrue(!columns.isEmpty(),
+    			ErrorMessage.format(ErrorMessageKeys.MISSING_TABLE, tableName));
 
-    		assertTrue(pass && (result != null), ErrorMessage.format(ErrorMessageKeys.TABLE_NO_PK, tableName));    		
+    	boolean pass = false;
+    	// 3
+    	for (final GeoPackageQueries.TableColumn column : columns) {
+    		final int pk = column.getPrimaryKeyIndex();
+    		final String name = column.getName();
+    		final String type = column.getType();
+    		if (pk > 0) {
+    			assertTrue(pk == 1, 
+    					ErrorMessage.format(ErrorMessageKeys.TABLE_DEFINITION_INVALID, tableName, 
+    							String.format("%s has an invalid primary key value of %d", name, pk)));
+    			assertTrue("INTEGER".equalsIgnoreCase(type), 
+    					ErrorMessage.format(ErrorMessageKeys.INVALID_DATA_TYPE, name, tableName));
+    			result = name;
+    			pass = true;
+    		}
     	}
+
+    	assertTrue(pass && (result != null), ErrorMessage.format(ErrorMessageKeys.TABLE_NO_PK, tableName));
 		
 		return result;
     }
@@ -216,13 +347,8 @@ public class CommonFixture {
     	
     	// This accounts for the exception in Requirement 65
     	if(DatabaseUtility.doesTableOrViewExist(this.databaseConnection, "gpkg_extensions")) {
-    		try (
-    				final Statement statement  = this.databaseConnection.createStatement();
-    				final ResultSet resultSet = statement.executeQuery(String.format("SELECT COUNT(*) FROM gpkg_extensions WHERE table_name = '%s' AND column_name = '%s' AND extension_name LIKE 'gpkg_geom_%%'",  tableName, columnName));
-    				) {    			
-    			resultSet.next();
-    			result |= (resultSet.getInt(1) > 0);
-    		}
+    		final Long count = this.queries.queryLong("SELECT COUNT(*) FROM gpkg_extensions WHERE table_name = ? AND column_name = ? AND extension_name LIKE 'gpkg_geom_%'", tableName, columnName);
+    		result |= (count != null && count > 0);
     	}
 
     	return result;
@@ -245,50 +371,39 @@ public class CommonFixture {
 			throw new IllegalArgumentException("tableName must not be null.");
 		}
 		
-		boolean pass = false;
-		try (
-				final Statement statement = this.databaseConnection.createStatement();
-				// 1
-				final ResultSet resultSet = statement.executeQuery(String.format("PRAGMA table_info(%s);", tableName));
-				) {
+		// 1
+		final List<GeoPackageQueries.TableColumn> columns = this.queries.getTableInfo(tableName);
 
-			// 2
-			assertTrue(resultSet.next(),
-					ErrorMessage.format(ErrorMessageKeys.MISSING_TABLE, tableName));
+		// 2
+		assertTrue(!columns.isEmpty(),
+				ErrorMessage.format(ErrorMessageKeys.MISSING_TABLE, tableName));
 
-			pass = false;
-			// 3
-			do {
-				final int pk = resultSet.getInt("pk");
-				final String name = resultSet.getString("name");
-				final String type = resultSet.getString("type");
-				if (pk > 0) {
-					assertTrue(pk == 1, 
-							ErrorMessage.format(ErrorMessageKeys.TABLE_DEFINITION_INVALID, tableName, 
-									String.format("%s is a primary key of %d", name, pk)));
-					assertTrue("INTEGER".equals(type), 
-							ErrorMessage.format(ErrorMessageKeys.INVALID_DATA_TYPE, name, tableName));
-					assertTrue(pkName.equals(name),
-							ErrorMessage.format(ErrorMessageKeys.TABLE_DEFINITION_INVALID, tableName,
-									"pk " + name));
-					pass = true;
-				}
-			} while (resultSet.next());
+		boolean pass = false;
+		// 3
+		for (final GeoPackageQueries.TableColumn column : columns) {
+			final int pk = column.getPrimaryKeyIndex();
+			final String name = column.getName();
+			final String type = column.getType();
+			if (pk > 0) {
+				assertTrue(pk == 1, 
+						ErrorMessage.format(ErrorMessageKeys.TABLE_DEFINITION_INVALID, tableName, 
+								String.format("%s is a primary key of %d", name, pk)));
+				assertTrue("INTEGER".equals(type), 
+						ErrorMessage.format(ErrorMessageKeys.INVALID_DATA_TYPE, name, tableName));
+				assertTrue(pkName.equals(name),
+						ErrorMessage.format(ErrorMessageKeys.TABLE_DEFINITION_INVALID, tableName,
+								"pk " + name));
+				pass = true;
+			}
 		}
 
-
-
 		assertTrue(pass, ErrorMessage.format(ErrorMessageKeys.TABLE_NO_PK, tableName));
 		
-		try (
-				// 4
-				final Statement statement2 = this.databaseConnection.createStatement();
-
-				final ResultSet resultSet2 = statement2.executeQuery(String.format("SELECT COUNT(distinct %s) - COUNT(*) from %s", pkName, tableName));
-				) {
-			// 5
-			assertTrue(resultSet2.getInt(1) == 0, String.format(ErrorMessageKeys.TABLE_PK_NOT_UNIQUE, tableName));
-		}
+		// 4
+		final Long duplicates = this.queries.queryLong(String.format("SELECT COUNT(distinct %s) - COUNT(*) from %s",
+				GeoPackageQueries.quoteIdentifier(pkName), GeoPackageQueries.quoteIdentifier(tableName)));
+		// 5
+		assertTrue(duplicates != null && duplicates == 0, String.format(ErrorMessageKeys.TABLE_PK_NOT_UNIQUE, tableName));
     }
 
     public String getTestName() {
@@ -8,7 +8,6 @@ import java.util.logging.Logger;
 import javax.xml.namespace.QName;
 import javax.xml.transform.Result;
 import javax.xml.transform.Source;
-import javax.xml.transform.stream.StreamSource;
 import javax.xml.validation.Validator;
 import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathConstants;
@@ -16,6 +15,7 @@ import javax.xml.xpath.XPathExpressionException;
 import javax.xml.xpath.XPathFactory;
 
 import org.opengis.cite.gpkg12.util.NamespaceBindings;
+import org.opengis.cite.gpkg12.util.ValidationUtils;
 import org.opengis.cite.gpkg12.util.XMLUtils;
 import org.opengis.cite.validation.SchematronValidator;
 import org.opengis.cite.validation.ValidationErrorHandler;
@@ -140,16 +140,20 @@ public class ETSAssert {
         String phase = (null == activePhase || activePhase.isEmpty()) ? "#ALL" : activePhase;
         SchematronValidator validator;
         try {
-            validator = new SchematronValidator(new StreamSource(schemaRef.toString()), phase);
-        } catch (Exception e) {
+            validator = ValidationUtils.buildSchematronValidator(schemaRef.toString(), phase);
+        } catch (IllegalArgumentException e) {
             StringBuilder msg = new StringBuilder("Failed to process Schematron schema at ");
             msg.append(schemaRef).append('\n');
-            msg.append(e.getMessage());
-            throw new AssertionError(msg);
+            msg.append(e.getCause().getMessage());
+            throw new AssertionError(msg.toString(), e.getCause());
+        }
+        // the validator is shared, and retains the outcome of the last run
+        synchronized (validator) {
+            Result result = validator.validate(xmlSource);
+            Assert.assertFalse(validator.ruleViolationsDetected(), ErrorMessage.format(
+                    ErrorMessageKeys.NOT_SCHEMA_VALID, validator.getRuleViolationCount(),
+                    XMLUtils.resultToString(result)));
         }
-        Result result = validator.validate(xmlSource);
-        Assert.assertFalse(validator.ruleViolationsDetected(), ErrorMessage.format(ErrorMessageKeys.NOT_SCHEMA_VALID,
-                validator.getRuleViolationCount(), XMLUtils.resultToString(result)));
     }
 
     /**
@@ -57,6 +57,10 @@ public class ErrorMessageKeys {
     public static final String FEATURES_GEOMETRY_COLUMNS_INVALID_Z = "FeaturesGeometryColumnsInvalidZ";
     public static final String FEATURES_GEOMETRY_COLUMNS_INVALID_M = "FeaturesGeometryColumnsInvalidM";
     public static final String FEATURES_ONE_GEOMETRY_COLUMN = "FeaturesOneGeometryColumn";
+    public static final String FEATURES_GEOMETRY_TYPES_INVALID = "FeaturesGeometryTypesInvalid";
+    public static final String FEATURES_GEOMETRY_SRS_INVALID = "FeaturesGeometrySrsInvalid";
+    public static final String FEATURES_HEADER_ENVELOPE_INVALID = "FeaturesHeaderEnvelopeInvalid";
+    public static final String FEATURES_HEADER_ENVELOPE_LOOSE = "FeaturesHeaderEnvelopeLoose";
     public static final String TILES_TABLES_NOT_REFERENCED_IN_CONTENTS = "TilesTablesNotReferencedInContents";
     public static final String VALUES_DO_NOT_VARY_BY_FACTOR_OF_TWO = "ValuesDoNotVaryByFactorOfTwo";
     public static final String INVALID_IMAGE_FORMAT = "InvalidImageFormat";
@@ -80,13 +84,18 @@ public class ErrorMessageKeys {
     public static final String UNDEFINED_ZOOM_LEVEL = "UndefinedZoomLevel";
     public static final String TILE_COLUMN_OUT_OF_RANGE = "TileColumnOutOfRange";
     public static final String TILE_ROW_OUT_OF_RANGE = "TileRowOutOfRange";
+    public static final String DUPLICATE_TILES = "DuplicateTiles";
     public static final String INVALID_RTREE_REFERENCE = "InvalidRTreeReference";
     public static final String INVALID_DATA_COLUMN = "InvalidDataColumn";
     public static final String INVALID_DATA_TABLE = "InvalidDataTable";
     public static final String INVALID_EXTENSION_DATA_SCOPE = "InvalidExtensionDataScope";
     public static final String ILLEGAL_EXTENSION_DATA_SCOPE = "IllegalExtensionDataScope";
     public static final String EXTENDED_GEOMETRY_REFERENCE_MISSING = "ExtendedGeometryReferenceMissing";
+    public static final String NONLINEAR_GEOMETRY_INVALID = "NonlinearGeometryInvalid";
     public static final String INVALID_RTREE_DEFINITION = "InvalidRTreeDefinition";
+    public static final String INVALID_RTREE_STRUCTURE = "InvalidRTreeStructure";
+    public static final String RTREE_INDEX_INEFFECTIVE = "RTreeIndexIneffective";
+    public static final String INDEX_BENCHMARK_DISABLED = "IndexBenchmarkDisabled";
     public static final String INVALID_METADATA_SCOPE = "InvalidMetadataScope";
     public static final String BAD_METADATA_REFERENCE_TABLE_DEFINITION = "BadMetadataReferenceTableDefinition";
     public static final String INVALID_METADATA_REFERENCE_SCOPE = "InvalidMetadataReferenceScope";
@@ -106,4 +115,14 @@ public class ErrorMessageKeys {
     public static final String COVERAGE_ANCILLARY_DATATYPE_INVALID = "CoverageAncillaryDatatypeInvalid";
     public static final String TILE_ANCILLARY_REFERENCES = "TileAncillaryReferences";
     public static final String TILE_ANCILLARY_TABLE_REF_INVALID = "TileAncillaryTableRefInvalid";
+    public static final String INVALID_WKT_DEFINITION = "InvalidWKTDefinition";
+    public static final String WKT_IDENTIFIER_MISMATCH = "WKTIdentifierMismatch";
+    public static final String CONTENTS_BOUNDS_EXCEEDED = "ContentsBoundsExceeded";
+    public static final String TILE_BOUNDS_NOT_COVERING = "TileBoundsNotCovering";
+    public static final String TILE_BOUNDS_OVERSIZED = "TileBoundsOversized";
+    public static final String PRAGMA_INTEGRITY_CHECK_PROBLEMS = "PragmaIntegrityCheckProblems";
+    public static final String FOREIGN_KEY_VIOLATIONS = "ForeignKeyViolations";
+    public static final String TIME_BUDGET_EXCEEDED = "TimeBudgetExceeded";
+    public static final String RUN_TIME_BUDGET_EXCEEDED = "RunTimeBudgetExceeded";
+    public static final String MESSAGE_TRUNCATED = "MessageTruncated";
 }
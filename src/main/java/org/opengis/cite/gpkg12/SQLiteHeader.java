@@ -0,0 +1,195 @@
+package org.opengis.cite.gpkg12;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * The 100-byte header at the start of a SQLite database file. The header is
+ * read once from a memory-mapped view of the file and published as the
+ * {@link SuiteAttribute#DB_HEADER dbHeader} suite attribute, so that checks
+ * based on it do not reopen the file. A file shorter than the header is
+ * treated as if it were padded with zeros. All multibyte fields are stored in
+ * big-endian order.
+ *
+ * @see <a href="https://www.sqlite.org/fileformat2.html#the_database_header"
+ *      target= "_blank">SQLite Database File Format - The Database Header</a>
+ */
+public final class SQLiteHeader {
+
+    private static final int MAGIC_LENGTH = 16;
+    private static final int PAGE_SIZE_OFFSET = 16;
+    private static final int CHANGE_COUNTER_OFFSET = 24;
+    private static final int PAGE_COUNT_OFFSET = 28;
+    private static final int FREELIST_TRUNK_OFFSET = 32;
+    private static final int FREELIST_COUNT_OFFSET = 36;
+    private static final int SCHEMA_COOKIE_OFFSET = 40;
+    private static final int USER_VERSION_OFFSET = 60;
+    private static final int VERSION_VALID_FOR_OFFSET = 92;
+    private static final int SQLITE_VERSION_OFFSET = 96;
+
+    private final byte[] bytes;
+    private final ByteBuffer buffer;
+
+    private SQLiteHeader(final byte[] bytes) {
+        this.bytes = bytes;
+        this.buffer = ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+    }
+
+    /**
+     * Reads the header of a SQLite database file.
+     *
+     * @param dbFile
+     *            A SQLite database file.
+     * @return The file header.
+     * @throws IOException
+     *             If the file cannot be read.
+     */
+    public static SQLiteHeader read(final File dbFile) throws IOException {
+        final byte[] bytes = new byte[GPKG12.DB_HEADER_LENGTH];
+        try (FileChannel channel = FileChannel.open(dbFile.toPath(), StandardOpenOption.READ)) {
+            final long length = Math.min(channel.size(), GPKG12.DB_HEADER_LENGTH);
+            if (length > 0) {
+                final MappedByteBuffer view = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+                view.get(bytes, 0, (int) length);
+            }
+        }
+        return new SQLiteHeader(bytes);
+    }
+
+    /**
+     * Creates a header from its encoded form.
+     *
+     * @param headerBytes
+     *            The first bytes of a SQLite database file; missing bytes
+     *            are taken to be zero.
+     * @return The file header.
+     */
+    public static SQLiteHeader parse(final byte[] headerBytes) {
+        return new SQLiteHeader(Arrays.copyOf(headerBytes, GPKG12.DB_HEADER_LENGTH));
+    }
+
+    /**
+     * @return The header string, which is "SQLite format 3" followed by a NUL
+     *         character in a valid file.
+     */
+    public byte[] getMagic() {
+        return Arrays.copyOf(this.bytes, MAGIC_LENGTH);
+    }
+
+    /**
+     * @return {@code true} if the file starts with the SQLite 3 header string.
+     */
+    public boolean hasValidMagic() {
+        return Arrays.equals(getMagic(), GPKG12.SQLITE_MAGIC_HEADER);
+    }
+
+    /**
+     * @return The database page size in bytes (the stored value 1 denotes
+     *         65536).
+     */
+    public int getPageSize() {
+        final int pageSize = this.buffer.getShort(PAGE_SIZE_OFFSET) & 0xFFFF;
+        return pageSize == 1 ? 65536 : pageSize;
+    }
+
+    /**
+     * @return The file change counter.
+     */
+    public long getFileChangeCounter() {
+        return unsignedInt(CHANGE_COUNTER_OFFSET);
+    }
+
+    /**
+     * @return The size of the database in pages, as recorded in the header.
+     *         It is only reliable if {@link #isPageCountValid()} is true.
+     */
+    public long getPageCount() {
+        return unsignedInt(PAGE_COUNT_OFFSET);
+    }
+
+    /**
+     * @return {@code true} if the in-header page count is valid: it is
+     *         non-zero and was written by the version of SQLite that last
+     *         changed the file.
+     */
+    public boolean isPageCountValid() {
+        return getPageCount() > 0 && getFileChangeCounter() == unsignedInt(VERSION_VALID_FOR_OFFSET);
+    }
+
+    /**
+     * @return The page number of the first freelist trunk page (0 if there
+     *         are no free pages).
+     */
+    public long getFirstFreelistTrunkPage() {
+        return unsignedInt(FREELIST_TRUNK_OFFSET);
+    }
+
+    /**
+     * @return The total number of freelist pages.
+     */
+    public long getFreelistPageCount() {
+        return unsignedInt(FREELIST_COUNT_OFFSET);
+    }
+
+    /**
+     * @return The schema cookie, which changes whenever the schema changes.
+     */
+    public long getSchemaCookie() {
+        return unsignedInt(SCHEMA_COOKIE_OFFSET);
+    }
+
+    /**
+     * @return The "user_version" field.
+     */
+    public int getUserVersion() {
+        return this.buffer.getInt(USER_VERSION_OFFSET);
+    }
+
+    /**
+     * @return The "application_id" field.
+     */
+    public int getApplicationId() {
+        return this.buffer.getInt(GPKG12.APP_ID_OFFSET);
+    }
+
+    /**
+     * @return The four bytes of the "application_id" field (e.g. "GPKG" in
+     *         ASCII).
+     */
+    public byte[] getApplicationIdBytes() {
+        return Arrays.copyOfRange(this.bytes, GPKG12.APP_ID_OFFSET, GPKG12.APP_ID_OFFSET + 4);
+    }
+
+    /**
+     * @return The SQLITE_VERSION_NUMBER of the library that most recently
+     *         modified the file (X*1000000 + Y*1000 + Z).
+     */
+    public int getSQLiteVersionNumber() {
+        return this.buffer.getInt(SQLITE_VERSION_OFFSET);
+    }
+
+    /**
+     * @return The major version number (X) of the SQLite library, which is
+     *         always 3 for SQLite 3.
+     */
+    public int getSQLiteMajorVersion() {
+        return getSQLiteVersionNumber() / 1000000;
+    }
+
+    private long unsignedInt(final int offset) {
+        return this.buffer.getInt(offset) & 0xFFFFFFFFL;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "SQLite header: page size %d, %d pages, %d free pages, change counter %d, schema cookie %d, user_version %d, application_id 0x%08X, SQLite %d",
+                getPageSize(), getPageCount(), getFreelistPageCount(), getFileChangeCounter(), getSchemaCookie(),
+                getUserVersion(), getApplicationId(), getSQLiteVersionNumber());
+    }
+}
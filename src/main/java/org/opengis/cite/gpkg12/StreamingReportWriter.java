@@ -0,0 +1,337 @@
+package org.opengis.cite.gpkg12;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.zip.GZIPOutputStream;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.opengis.cite.gpkg12.util.TestSuiteLogger;
+import org.testng.ISuite;
+import org.testng.ISuiteListener;
+import org.testng.ITestContext;
+import org.testng.ITestListener;
+import org.testng.ITestResult;
+
+/**
+ * A listener that writes the test results to disk as they are produced, so
+ * that the size of the report does not depend on what the test run holds in
+ * memory. Each result is appended to {@value #REPORT_FILE_NAME} in the suite's
+ * output directory and flushed at once; a run that is aborted leaves a report
+ * of the tests completed so far.
+ *
+ * <p>
+ * A failure message longer than the limit set by the
+ * {@link TestRunArg#REPORT_MESSAGE_LIMIT report_message_limit} argument (by
+ * default {@value #DEFAULT_MESSAGE_LIMIT} characters), such as one that lists
+ * every failing tile id, is written in full, with its stack trace, to a gzip
+ * compressed sidecar file in the {@value #DETAIL_DIR_NAME} directory. The
+ * message is then cut to the limit and refers to the sidecar, both in the
+ * streamed report and in the test result, whose exception is replaced by a
+ * copy of the same type and cause; this keeps the result document built by
+ * the test executor (and the EARL report derived from it) small.
+ * </p>
+ */
+public class StreamingReportWriter implements ISuiteListener, ITestListener {
+
+    /** The name of the streamed report file. */
+    public static final String REPORT_FILE_NAME = "results-stream.xml";
+    /** The name of the directory that holds the sidecar files. */
+    public static final String DETAIL_DIR_NAME = "details";
+    /** The default maximum length of a failure message, in characters. */
+    public static final int DEFAULT_MESSAGE_LIMIT = 2000;
+
+    private File outputDir;
+    private int messageLimit = DEFAULT_MESSAGE_LIMIT;
+    private Writer out;
+    private XMLStreamWriter xml;
+    private int sidecars;
+    private int passed;
+    private int failed;
+    private int skipped;
+
+    @Override
+    public synchronized void onStart(ISuite suite) {
+        this.messageLimit = messageLimit(suite.getXmlSuite().getParameters());
+        this.outputDir = new File(suite.getOutputDirectory());
+        this.sidecars = 0;
+        this.passed = 0;
+        this.failed = 0;
+        this.skipped = 0;
+        try {
+            Files.createDirectories(this.outputDir.toPath());
+            final File reportFile = new File(this.outputDir, REPORT_FILE_NAME);
+            this.out = new OutputStreamWriter(Files.newOutputStream(reportFile.toPath()), StandardCharsets.UTF_8);
+            this.xml = XMLOutputFactory.newInstance().createXMLStreamWriter(this.out);
+            this.xml.writeStartDocument("UTF-8", "1.0");
+            this.xml.writeCharacters("\n");
+            this.xml.writeStartElement("results");
+            this.xml.writeAttribute("suite", suite.getName());
+            this.xml.writeAttribute("started", Instant.now().toString());
+            this.xml.writeCharacters("\n");
+            flush();
+            TestSuiteLogger.log(Level.CONFIG, "Streaming test results to " + reportFile.getAbsolutePath());
+        } catch (IOException | XMLStreamException e) {
+            TestSuiteLogger.log(Level.WARNING, "Cannot write streamed report in " + this.outputDir, e);
+            close();
+        }
+    }
+
+    @Override
+    public synchronized void onFinish(ISuite suite) {
+        if (null == this.xml) {
+            return;
+        }
+        try {
+            this.xml.writeEmptyElement("summary");
+            this.xml.writeAttribute("passed", Integer.toString(this.passed));
+            this.xml.writeAttribute("failed", Integer.toString(this.failed));
+            this.xml.writeAttribute("skipped", Integer.toString(this.skipped));
+            this.xml.writeAttribute("details", Integer.toString(this.sidecars));
+            this.xml.writeAttribute("finished", Instant.now().toString());
+            this.xml.writeCharacters("\n");
+            this.xml.writeEndElement();
+            this.xml.writeCharacters("\n");
+            this.xml.writeEndDocument();
+        } catch (XMLStreamException e) {
+            TestSuiteLogger.log(Level.WARNING, "Failed to complete streamed report", e);
+        } finally {
+            close();
+        }
+    }
+
+    @Override
+    public synchronized void onStart(ITestContext context) {
+        if (null == this.xml) {
+            return;
+        }
+        try {
+            this.xml.writeStartElement("test");
+            this.xml.writeAttribute("name", context.getName());
+            this.xml.writeCharacters("\n");
+            flush();
+        } catch (IOException | XMLStreamException e) {
+            fail(e);
+        }
+    }
+
+    @Override
+    public synchronized void onFinish(ITestContext context) {
+        if (null == this.xml) {
+            return;
+        }
+        try {
+            this.xml.writeEndElement();
+            this.xml.writeCharacters("\n");
+            flush();
+        } catch (IOException | XMLStreamException e) {
+            fail(e);
+        }
+    }
+
+    @Override
+    public void onTestStart(ITestResult result) {
+    }
+
+    @Override
+    public synchronized void onTestSuccess(ITestResult result) {
+        this.passed++;
+        write(result, "PASS");
+    }
+
+    @Override
+    public synchronized void onTestFailure(ITestResult result) {
+        this.failed++;
+        write(result, "FAIL");
+    }
+
+    @Override
+    public synchronized void onTestSkipped(ITestResult result) {
+        this.skipped++;
+        write(result, "SKIP");
+    }
+
+    @Override
+    public synchronized void onTestFailedButWithinSuccessPercentage(ITestResult result) {
+        this.failed++;
+        write(result, "FAIL");
+    }
+
+    private void write(ITestResult result, String status) {
+        final Throwable throwable = result.getThrowable();
+        final String detail = shortenMessage(result);
+        if (null == this.xml) {
+            return;
+        }
+        try {
+            this.xml.writeCharacters("  ");
+            this.xml.writeStartElement("test-method");
+            this.xml.writeAttribute("class", result.getTestClass().getName());
+            this.xml.writeAttribute("name", result.getMethod().getMethodName());
+            this.xml.writeAttribute("status", status);
+            this.xml.writeAttribute("duration-ms", Long.toString(result.getEndMillis() - result.getStartMillis()));
+            if (null != throwable && null != throwable.getMessage()) {
+                this.xml.writeStartElement("message");
+                this.xml.writeCharacters(null != detail ? truncate(throwable.getMessage(), detail)
+                        : throwable.getMessage());
+                this.xml.writeEndElement();
+            }
+            if (null != detail) {
+                this.xml.writeEmptyElement("detail");
+                this.xml.writeAttribute("href", detail);
+            }
+            this.xml.writeEndElement();
+            this.xml.writeCharacters("\n");
+            flush();
+        } catch (IOException | XMLStreamException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Moves a failure message that exceeds the limit to a sidecar file and
+     * replaces the exception in the test result with a copy of the same type,
+     * cause and stack trace that has the shortened message. An exception that
+     * cannot be copied is left as it is; only the streamed report then holds
+     * the shortened message.
+     *
+     * @return The path of the sidecar file relative to the output directory,
+     *         or {@code null} if the message was left as it is.
+     */
+    private String shortenMessage(ITestResult result) {
+        final Throwable throwable = result.getThrowable();
+        if (this.messageLimit <= 0 || null == this.outputDir || null == throwable || null == throwable.getMessage()
+                || throwable.getMessage().length() <= this.messageLimit) {
+            return null;
+        }
+        final String name = String.format("%s/%d-%s.txt.gz", DETAIL_DIR_NAME, ++this.sidecars,
+                result.getMethod().getMethodName());
+        try {
+            writeSidecar(new File(this.outputDir, name), throwable);
+        } catch (IOException e) {
+            TestSuiteLogger.log(Level.WARNING, "Failed to write report detail " + name, e);
+            return null;
+        }
+        final Throwable replacement = copyWithMessage(throwable, truncate(throwable.getMessage(), name));
+        if (null != replacement) {
+            result.setThrowable(replacement);
+        }
+        return name;
+    }
+
+    private String truncate(String message, String sidecar) {
+        if (message.length() <= this.messageLimit) {
+            return message;
+        }
+        return ErrorMessage.format(ErrorMessageKeys.MESSAGE_TRUNCATED, message.substring(0, this.messageLimit),
+                message.length(), sidecar);
+    }
+
+    /**
+     * Creates an exception of the same class as the given one, with another
+     * message but the same cause, suppressed exceptions and stack trace.
+     *
+     * @param throwable
+     *            The exception to copy.
+     * @param message
+     *            The message of the copy.
+     * @return The copy, or {@code null} if the class has no public constructor
+     *         that takes a message, or the copy cannot be given the cause.
+     */
+    static Throwable copyWithMessage(Throwable throwable, String message) {
+        Throwable copy = null;
+        // AssertionError takes an Object, most other exceptions a String
+        for (Class<?> parameterType : new Class<?>[] { String.class, Object.class }) {
+            try {
+                copy = throwable.getClass().getConstructor(parameterType).newInstance(message);
+                break;
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                // try the next constructor
+            }
+        }
+        if (null == copy) {
+            return null;
+        }
+        if (null != throwable.getCause()) {
+            try {
+                copy.initCause(throwable.getCause());
+            } catch (IllegalStateException | IllegalArgumentException e) {
+                return null;
+            }
+        }
+        for (Throwable suppressed : throwable.getSuppressed()) {
+            copy.addSuppressed(suppressed);
+        }
+        copy.setStackTrace(throwable.getStackTrace());
+        return copy;
+    }
+
+    /**
+     * Writes a message and stack trace to a gzip compressed text file.
+     *
+     * @param file
+     *            The sidecar file; missing parent directories are created.
+     * @param throwable
+     *            The exception to record.
+     * @throws IOException
+     *             If the file cannot be written.
+     */
+    static void writeSidecar(File file, Throwable throwable) throws IOException {
+        Files.createDirectories(file.getParentFile().toPath());
+        try (OutputStream stream = new GZIPOutputStream(Files.newOutputStream(file.toPath()));
+                PrintWriter writer = new PrintWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8))) {
+            throwable.printStackTrace(writer);
+        }
+    }
+
+    static int messageLimit(Map<String, String> params) {
+        final String value = params.get(TestRunArg.REPORT_MESSAGE_LIMIT.toString());
+        if (null == value || value.trim().isEmpty()) {
+            return DEFAULT_MESSAGE_LIMIT;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(
+                    String.format("Test run argument %s is not a number: %s", TestRunArg.REPORT_MESSAGE_LIMIT, value),
+                    e);
+        }
+    }
+
+    private void flush() throws IOException, XMLStreamException {
+        this.xml.flush();
+        this.out.flush();
+    }
+
+    private void fail(Exception e) {
+        TestSuiteLogger.log(Level.WARNING, "Failed to write streamed report; it is incomplete", e);
+        close();
+    }
+
+    private void close() {
+        try {
+            if (null != this.xml) {
+                this.xml.close();
+            }
+            if (null != this.out) {
+                this.out.close();
+            }
+        } catch (IOException | XMLStreamException e) {
+            TestSuiteLogger.log(Level.FINE, "Failed to close streamed report", e);
+        } finally {
+            this.xml = null;
+            this.out = null;
+        }
+    }
+}
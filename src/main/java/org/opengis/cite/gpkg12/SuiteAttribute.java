@@ -1,7 +1,10 @@
 package org.opengis.cite.gpkg12;
 
 import java.io.File;
+import java.util.concurrent.ConcurrentMap;
 
+import org.opengis.cite.gpkg12.util.ProgressMonitor;
+import org.opengis.cite.gpkg12.util.SQLiteIOProfile;
 import org.w3c.dom.Document;
 
 import com.sun.jersey.api.client.Client;
@@ -24,7 +27,28 @@ public enum SuiteAttribute {
     /**
      * A File containing the test subject or a description of it.
      */
-    TEST_SUBJ_FILE("testSubjectFile", File.class);
+    TEST_SUBJ_FILE("testSubjectFile", File.class),
+    /**
+     * The header of the SQLite database file under test.
+     */
+    DB_HEADER("dbHeader", SQLiteHeader.class),
+    /**
+     * The SQLite settings used to read the test subject.
+     */
+    IO_PROFILE("ioProfile", SQLiteIOProfile.class),
+    /**
+     * The time allowed for the test run and for each test method.
+     */
+    TIME_BUDGET("timeBudget", TimeBudget.class),
+    /**
+     * Publishes the progress of the long-running scans of the test run.
+     */
+    PROGRESS_MONITOR("progressMonitor", ProgressMonitor.class),
+    /**
+     * The results of full table scans, by table, shared by the test classes
+     * that check the same tables (e.g. a test class and its subclasses).
+     */
+    SCAN_RESULTS("scanResults", ConcurrentMap.class);
     private final Class attrType;
     private final String attrName;
 
@@ -4,10 +4,16 @@ import java.io.File;
 import java.io.IOException;
 import java.net.URI;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 
+import org.opengis.cite.gpkg12.extensions.crswkt.WKTDefinition;
+import org.opengis.cite.gpkg12.util.ProgressMonitor;
+import org.opengis.cite.gpkg12.util.SQLiteIOProfile;
 import org.opengis.cite.gpkg12.util.TestSuiteLogger;
 import org.opengis.cite.gpkg12.util.URIUtils;
+import org.opengis.cite.gpkg12.util.ValidationUtils;
+import org.opengis.cite.gpkg12.util.XMLUtils;
 import org.testng.ISuite;
 import org.testng.ISuiteListener;
 
@@ -34,13 +40,28 @@ public class SuiteFixtureListener implements ISuiteListener {
     @Override
     public void onFinish(ISuite suite) {
         deleteTempFiles(suite);
+        Object progressMonitor = suite.getAttribute(SuiteAttribute.PROGRESS_MONITOR.getName());
+        if (ProgressMonitor.class.isInstance(progressMonitor)) {
+            ProgressMonitor.class.cast(progressMonitor).setStatusFile(null);
+        }
+        TestSuiteLogger.log(Level.CONFIG, ValidationUtils.getCacheStatistics());
+        TestSuiteLogger.log(Level.CONFIG, XMLUtils.getCacheStatistics());
+        TestSuiteLogger.log(Level.CONFIG, WKTDefinition.getCacheStatistics());
     }
 
     /**
      * Processes test suite arguments and sets suite attributes accordingly. The
      * entity referenced by the {@link TestRunArg#IUT iut} argument is retrieved
      * and written to a File that is set as the value of the suite attribute
-     * {@link SuiteAttribute#TEST_SUBJ_FILE testSubjectFile}.
+     * {@link SuiteAttribute#TEST_SUBJ_FILE testSubjectFile}. Its database
+     * header and the SQLite I/O profile chosen for it are set as the values of
+     * the suite attributes {@link SuiteAttribute#DB_HEADER dbHeader} and
+     * {@link SuiteAttribute#IO_PROFILE ioProfile}. The time budget of the run
+     * is set as the value of {@link SuiteAttribute#TIME_BUDGET timeBudget},
+     * a monitor writing to the {@link TestRunArg#PROGRESS_FILE progressFile}
+     * (if any) as the value of {@link SuiteAttribute#PROGRESS_MONITOR
+     * progressMonitor}, and an empty map as the value of
+     * {@link SuiteAttribute#SCAN_RESULTS scanResults}.
      * 
      * @param suite
      *            An ISuite object representing a TestNG test suite.
@@ -62,6 +83,26 @@ public class SuiteFixtureListener implements ISuiteListener {
         TestSuiteLogger.log(Level.FINE, String.format("Wrote test subject to file: %s (%d bytes)",
                 gpkgFile.getAbsolutePath(), gpkgFile.length()));
         suite.setAttribute(SuiteAttribute.TEST_SUBJ_FILE.getName(), gpkgFile);
+        try {
+            SQLiteHeader header = SQLiteHeader.read(gpkgFile);
+            TestSuiteLogger.log(Level.FINE, header.toString());
+            suite.setAttribute(SuiteAttribute.DB_HEADER.getName(), header);
+        } catch (IOException iox) {
+            TestSuiteLogger.log(Level.WARNING, "Failed to read the database header of " + gpkgFile, iox);
+        }
+        SQLiteIOProfile ioProfile = SQLiteIOProfile.select(gpkgFile, params);
+        TestSuiteLogger.log(Level.INFO, ioProfile.toString());
+        suite.setAttribute(SuiteAttribute.IO_PROFILE.getName(), ioProfile);
+        suite.setAttribute(SuiteAttribute.SCAN_RESULTS.getName(), new ConcurrentHashMap<String, Object>());
+        TimeBudget timeBudget = TimeBudget.fromArgs(params);
+        TestSuiteLogger.log(Level.CONFIG, timeBudget.toString());
+        suite.setAttribute(SuiteAttribute.TIME_BUDGET.getName(), timeBudget);
+        ProgressMonitor progressMonitor = new ProgressMonitor();
+        String progressFile = params.get(TestRunArg.PROGRESS_FILE.toString());
+        if (null != progressFile && !progressFile.trim().isEmpty()) {
+            progressMonitor.setStatusFile(new File(progressFile.trim()));
+        }
+        suite.setAttribute(SuiteAttribute.PROGRESS_MONITOR.getName(), progressMonitor);
     }
 
     /**
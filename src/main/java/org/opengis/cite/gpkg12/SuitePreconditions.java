@@ -1,10 +1,7 @@
 package org.opengis.cite.gpkg12;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.math.BigInteger;
-import java.util.Arrays;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -43,13 +40,10 @@ public class SuitePreconditions {
             File dataFile = File.class.cast(sutObj);
             Assert.assertTrue(dataFile.isFile(),
                     String.format("Data file not found at %s", dataFile.getAbsolutePath()));
-            final byte[] headerBytes = new byte[GPKG12.DB_HEADER_LENGTH];
-            try (FileInputStream fileInputStream = new FileInputStream(dataFile)) {
-                fileInputStream.read(headerBytes);
-            }
-            byte[] versionNumBytes = Arrays.copyOfRange(headerBytes, 96, headerBytes.length);
-            int version = new BigInteger(versionNumBytes).intValue();
-            Assert.assertEquals(version / 1000000, 3, "Unexpected SQLite major version in file header.");
+            Object headerObj = testContext.getSuite().getAttribute(SuiteAttribute.DB_HEADER.getName());
+            SQLiteHeader header = SQLiteHeader.class.isInstance(headerObj) ? SQLiteHeader.class.cast(headerObj)
+                    : SQLiteHeader.read(dataFile);
+            Assert.assertEquals(header.getSQLiteMajorVersion(), 3, "Unexpected SQLite major version in file header.");
         } else {
             String msg = String.format("Value of test suite attribute '%s' is missing or is not an instance of %s",
                     testFileAttr.getName(), expectedType.getName());
@@ -11,7 +11,65 @@ public enum TestRunArg {
      */
     IUT,
     
-    ICS;
+    ICS,
+
+    /**
+     * The maximum number of bytes of the GeoPackage to memory-map (0 disables
+     * memory-mapped I/O).
+     */
+    MMAP_SIZE,
+
+    /**
+     * The SQLite page cache size, in bytes.
+     */
+    CACHE_SIZE,
+
+    /**
+     * Where SQLite stores temporary tables and indexes: "default", "file" or
+     * "memory".
+     */
+    TEMP_STORE,
+
+    /**
+     * Whether the GeoPackage is opened as immutable ("true" or "false").
+     */
+    IMMUTABLE,
+
+    /**
+     * A file to which the progress of long-running scans is written while the
+     * tests run.
+     */
+    PROGRESS_FILE,
+
+    /**
+     * The time allowed for each test method, in seconds (0 for no limit).
+     */
+    TEST_TIME_BUDGET,
+
+    /**
+     * The time allowed for the whole test run, in seconds (0 for no limit).
+     */
+    RUN_TIME_BUDGET,
+
+    /**
+     * The maximum length of a failure message in the test report, in
+     * characters; longer messages are moved to a sidecar file (0 for no
+     * limit).
+     */
+    REPORT_MESSAGE_LIMIT,
+
+    /**
+     * Whether the spatial index of each RTree indexed column is benchmarked
+     * ("true" or "false"; by default it is not).
+     */
+    INDEX_BENCHMARK,
+
+    /**
+     * Whether the image format scans of tile tables also look for tiles with
+     * identical content and report the space they take ("true" or "false";
+     * by default they do not, as whole tiles must then be read).
+     */
+    TILE_DUPLICATE_ANALYSIS;
 
     @Override
     public String toString() {
@@ -0,0 +1,130 @@
+package org.opengis.cite.gpkg12;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.ISuite;
+
+/**
+ * The time allowed for a test run and for each of its test methods. Both
+ * budgets are set from test run arguments (in seconds); a value of 0, or no
+ * value, means that there is no limit. Each suite has its own budget, set as
+ * the suite attribute {@link SuiteAttribute#TIME_BUDGET timeBudget} when the
+ * suite starts, so that runs sharing a JVM do not affect each other. The
+ * budgets are enforced by the {@link TimeBudgetListener}, which interrupts the
+ * SQLite queries of a test that overruns, and by {@link CommonFixture}, which
+ * skips the remaining tests once the run budget is spent.
+ */
+public final class TimeBudget {
+
+    private final long testBudgetMillis;
+    private final long runBudgetMillis;
+    private final long runStartNanos = System.nanoTime();
+
+    /**
+     * Creates the budgets of a run; the run clock starts now.
+     *
+     * @param testBudget
+     *            The time allowed for each test method (0 for no limit).
+     * @param runBudget
+     *            The time allowed for the whole run (0 for no limit).
+     * @param unit
+     *            The unit of both budgets.
+     */
+    public TimeBudget(long testBudget, long runBudget, TimeUnit unit) {
+        this.testBudgetMillis = unit.toMillis(testBudget);
+        this.runBudgetMillis = unit.toMillis(runBudget);
+    }
+
+    /**
+     * Creates the budgets of a run from its test run arguments; the run clock
+     * starts now.
+     *
+     * @param params
+     *            The test run arguments.
+     * @return The budgets.
+     * @throws IllegalArgumentException
+     *             If a budget is not a non-negative number.
+     */
+    public static TimeBudget fromArgs(Map<String, String> params) {
+        return new TimeBudget(seconds(params, TestRunArg.TEST_TIME_BUDGET),
+                seconds(params, TestRunArg.RUN_TIME_BUDGET), TimeUnit.SECONDS);
+    }
+
+    /**
+     * Returns the budget of a suite.
+     *
+     * @param suite
+     *            The test suite.
+     * @return The budget set as a suite attribute, or no limit if there is
+     *         none.
+     */
+    public static TimeBudget of(ISuite suite) {
+        final Object budget = null == suite ? null : suite.getAttribute(SuiteAttribute.TIME_BUDGET.getName());
+        return TimeBudget.class.isInstance(budget) ? TimeBudget.class.cast(budget)
+                : new TimeBudget(0, 0, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Returns the time a test method that starts now may take: the per-test
+     * budget, reduced to what is left of the run budget.
+     *
+     * @return The budget in milliseconds, or -1 if there is no limit.
+     */
+    public long currentTestBudgetMillis() {
+        long budget = this.testBudgetMillis > 0 ? this.testBudgetMillis : -1;
+        if (this.runBudgetMillis > 0) {
+            final long remaining = Math.max(0, this.runBudgetMillis - elapsedRunMillis());
+            budget = budget < 0 ? remaining : Math.min(budget, remaining);
+        }
+        return budget;
+    }
+
+    /**
+     * @return {@code true} if a run budget is set and has been spent.
+     */
+    public boolean isRunBudgetExhausted() {
+        return this.runBudgetMillis > 0 && elapsedRunMillis() >= this.runBudgetMillis;
+    }
+
+    /**
+     * @return The per-test budget in milliseconds (0 if there is no limit).
+     */
+    public long getTestBudgetMillis() {
+        return this.testBudgetMillis;
+    }
+
+    /**
+     * @return The run budget in milliseconds (0 if there is no limit).
+     */
+    public long getRunBudgetMillis() {
+        return this.runBudgetMillis;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("TimeBudget[test=%d ms, run=%d ms]", this.testBudgetMillis, this.runBudgetMillis);
+    }
+
+    private long elapsedRunMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - this.runStartNanos);
+    }
+
+    private static long seconds(Map<String, String> params, TestRunArg arg) {
+        final String value = params.get(arg.toString());
+        if (null == value || value.trim().isEmpty()) {
+            return 0;
+        }
+        try {
+            final long seconds = Long.parseLong(value.trim());
+            if (seconds < 0) {
+                throw new IllegalArgumentException(
+                        String.format("Test run argument %s must not be negative: %s", arg, value));
+            }
+            return seconds;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(String.format("Test run argument %s is not a number: %s", arg, value),
+                    e);
+        }
+    }
+}
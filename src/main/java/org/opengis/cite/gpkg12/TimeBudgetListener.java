@@ -0,0 +1,121 @@
+package org.opengis.cite.gpkg12;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+
+import org.opengis.cite.gpkg12.util.TestSuiteLogger;
+import org.testng.IInvokedMethod;
+import org.testng.IInvokedMethodListener;
+import org.testng.ITestContext;
+import org.testng.ITestResult;
+import org.testng.SkipException;
+
+/**
+ * A listener that enforces the {@link TimeBudget} of each test method. When a
+ * test overruns, the SQLite queries running on its connections are cancelled
+ * (with {@code Statement.cancel}, which interrupts each database connection);
+ * the cancellation is repeated every second until the test returns, in case
+ * the test catches the error and goes on querying. A test that did not pass
+ * after its budget was exceeded is reported as skipped, so that the verdict
+ * reflects the time limit rather than the interrupted query.
+ */
+public class TimeBudgetListener implements IInvokedMethodListener {
+
+    private static final String WATCHDOG_ATTR = TimeBudgetListener.class.getName() + ".watchdog";
+    private static final long REPEAT_MILLIS = 1000;
+
+    private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(task -> {
+        final Thread thread = new Thread(task, "time-budget");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * The timer of one test method invocation.
+     */
+    private static final class Watchdog implements Runnable {
+
+        private final CommonFixture fixture;
+        private final long budgetMillis;
+        private final long runBudgetMillis;
+        private final boolean runLimited;
+        private final AtomicBoolean exceeded = new AtomicBoolean();
+        private volatile ScheduledFuture<?> future;
+        private boolean finished;
+
+        Watchdog(CommonFixture fixture, long budgetMillis, long runBudgetMillis, boolean runLimited) {
+            this.fixture = fixture;
+            this.budgetMillis = budgetMillis;
+            this.runBudgetMillis = runBudgetMillis;
+            this.runLimited = runLimited;
+        }
+
+        @Override
+        public synchronized void run() {
+            if (this.finished) {
+                return;
+            }
+            if (this.exceeded.compareAndSet(false, true)) {
+                TestSuiteLogger.log(Level.WARNING, String.format("Time budget of %d ms exceeded by %s; cancelling queries",
+                        this.budgetMillis, this.fixture.getClass().getSimpleName()));
+            }
+            this.fixture.cancelQueries();
+        }
+
+        /**
+         * Stops the timer; once this returns, no more queries are cancelled.
+         */
+        synchronized void finish() {
+            this.finished = true;
+            this.future.cancel(false);
+        }
+    }
+
+    @Override
+    public void beforeInvocation(IInvokedMethod method, ITestResult testResult) {
+        final Object instance = testResult.getInstance();
+        final CommonFixture fixture = CommonFixture.class.isInstance(instance) ? CommonFixture.class.cast(instance)
+                : null;
+        if (!method.isTestMethod() || null == fixture) {
+            return;
+        }
+        final ITestContext context = testResult.getTestContext();
+        final TimeBudget timeBudget = TimeBudget.of(null == context ? null : context.getSuite());
+        final long budget = timeBudget.currentTestBudgetMillis();
+        if (budget < 0) {
+            return;
+        }
+        final Watchdog watchdog = new Watchdog(fixture, budget, timeBudget.getRunBudgetMillis(),
+                budget < timeBudget.getTestBudgetMillis() || timeBudget.getTestBudgetMillis() == 0);
+        watchdog.future = TIMER.scheduleWithFixedDelay(watchdog, budget, REPEAT_MILLIS, TimeUnit.MILLISECONDS);
+        testResult.setAttribute(WATCHDOG_ATTR, watchdog);
+    }
+
+    @Override
+    public void afterInvocation(IInvokedMethod method, ITestResult testResult) {
+        final Object attr = testResult.getAttribute(WATCHDOG_ATTR);
+        if (!(attr instanceof Watchdog)) {
+            return;
+        }
+        testResult.removeAttribute(WATCHDOG_ATTR);
+        final Watchdog watchdog = (Watchdog) attr;
+        watchdog.finish();
+        if (watchdog.exceeded.get() && testResult.getStatus() != ITestResult.SUCCESS) {
+            final String reason = watchdog.runLimited
+                    ? ErrorMessage.format(ErrorMessageKeys.RUN_TIME_BUDGET_EXCEEDED, watchdog.runBudgetMillis / 1000)
+                    : ErrorMessage.format(ErrorMessageKeys.TIME_BUDGET_EXCEEDED, watchdog.budgetMillis / 1000.0);
+            testResult.setStatus(ITestResult.SKIP);
+            testResult.setThrowable(new SkipException(reason));
+            // the failure may already have been recorded
+            final ITestContext context = testResult.getTestContext();
+            if (null != context && context.getFailedTests().getAllResults().contains(testResult)) {
+                context.getFailedTests().removeResult(testResult);
+                context.getSkippedTests().addResult(testResult, method.getTestMethod());
+            }
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package org.opengis.cite.gpkg12.core;
+
+import static org.opengis.cite.gpkg12.util.GeoPackageQueries.quoteIdentifier;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.sql.DataSource;
+
+/**
+ * Runs the SQLite foreign key check one table at a time. Only the tables that
+ * declare foreign keys (according to {@code PRAGMA foreign_key_list}) are
+ * checked, several at once on separate connections, and the violations are
+ * summarized by child table and parent table rather than listed row by row.
+ *
+ * @see <a href="https://www.sqlite.org/pragma.html#pragma_foreign_key_check"
+ *      target= "_blank">PRAGMA foreign_key_check</a>
+ */
+public class ForeignKeyChecker {
+
+	/**
+	 * The rows of a child table that refer to missing rows of one parent
+	 * table.
+	 */
+	public static final class Violation {
+
+		private final String table;
+		private final String parent;
+		private long minRowid = Long.MAX_VALUE;
+		private long maxRowid = Long.MIN_VALUE;
+		private long count;
+
+		Violation(final String table, final String parent) {
+			this.table = table;
+			this.parent = parent;
+		}
+
+		void add(final Long rowid) {
+			if (null != rowid) {
+				this.minRowid = Math.min(this.minRowid, rowid);
+				this.maxRowid = Math.max(this.maxRowid, rowid);
+			}
+			this.count++;
+		}
+
+		/**
+		 * @return The name of the child table.
+		 */
+		public String getTable() {
+			return this.table;
+		}
+
+		/**
+		 * @return The name of the parent table.
+		 */
+		public String getParent() {
+			return this.parent;
+		}
+
+		/**
+		 * @return The smallest rowid of an offending row, or {@code null} if
+		 *         the table has no rowid.
+		 */
+		public Long getMinRowid() {
+			return this.minRowid <= this.maxRowid ? this.minRowid : null;
+		}
+
+		/**
+		 * @return The largest rowid of an offending row, or {@code null} if
+		 *         the table has no rowid.
+		 */
+		public Long getMaxRowid() {
+			return this.minRowid <= this.maxRowid ? this.maxRowid : null;
+		}
+
+		/**
+		 * @return The number of offending rows.
+		 */
+		public long getCount() {
+			return this.count;
+		}
+
+		@Override
+		public String toString() {
+			final String rows;
+			if (this.minRowid > this.maxRowid) {
+				rows = String.format("%d rows", this.count);
+			} else if (this.minRowid == this.maxRowid) {
+				rows = String.format("rowid %d", this.minRowid);
+			} else {
+				rows = String.format("%d rows in rowid range %d-%d", this.count, this.minRowid, this.maxRowid);
+			}
+			return String.format("%s (%s) -> %s", this.table, rows, this.parent);
+		}
+	}
+
+	private final DataSource dataSource;
+	private final int parallelism;
+
+	/**
+	 * Creates a checker that uses one connection per available processor.
+	 *
+	 * @param dataSource
+	 *            A DataSource for the GeoPackage.
+	 */
+	public ForeignKeyChecker(final DataSource dataSource) {
+		this(dataSource, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Creates a checker.
+	 *
+	 * @param dataSource
+	 *            A DataSource for the GeoPackage.
+	 * @param parallelism
+	 *            The maximum number of tables checked at once.
+	 */
+	public ForeignKeyChecker(final DataSource dataSource, final int parallelism) {
+		this.dataSource = dataSource;
+		this.parallelism = Math.max(1, parallelism);
+	}
+
+	/**
+	 * Checks every table that declares foreign keys.
+	 *
+	 * @return The violations, ordered by child table and then by parent
+	 *         table; the list is empty if every reference is satisfied.
+	 * @throws SQLException
+	 *             If the checks cannot be run.
+	 */
+	public List<Violation> check() throws SQLException {
+		final List<String> tables = getTablesWithForeignKeys();
+		if (tables.isEmpty()) {
+			return Collections.emptyList();
+		}
+		final ExecutorService executor = Executors.newFixedThreadPool(Math.min(this.parallelism, tables.size()),
+				task -> {
+					final Thread thread = new Thread(task, "foreign-key-check");
+					thread.setDaemon(true);
+					return thread;
+				});
+		try {
+			final List<Future<List<Violation>>> results = new ArrayList<>();
+			for (final String table : tables) {
+				results.add(executor.submit(() -> checkTable(table)));
+			}
+			final List<Violation> violations = new ArrayList<>();
+			for (final Future<List<Violation>> result : results) {
+				violations.addAll(result.get());
+			}
+			return violations;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SQLException("Interrupted while checking foreign keys", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof SQLException) {
+				throw (SQLException) e.getCause();
+			}
+			throw new SQLException("Failed to check foreign keys", e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * @return The names of the tables that declare at least one foreign key,
+	 *         in name order.
+	 */
+	List<String> getTablesWithForeignKeys() throws SQLException {
+		final List<String> tables = new ArrayList<>();
+		try (final Connection connection = this.dataSource.getConnection();
+				final Statement statement = connection.createStatement()) {
+			final List<String> candidates = new ArrayList<>();
+			try (final ResultSet resultSet = statement.executeQuery(
+					"SELECT name FROM sqlite_master WHERE type = 'table' ORDER BY name")) {
+				while (resultSet.next()) {
+					candidates.add(resultSet.getString(1));
+				}
+			}
+			for (final String table : candidates) {
+				try (final ResultSet resultSet = pragma(statement,
+						String.format("PRAGMA foreign_key_list(%s)", quoteIdentifier(table)))) {
+					if (null != resultSet && resultSet.next()) {
+						tables.add(table);
+					}
+				}
+			}
+		}
+		return tables;
+	}
+
+	private List<Violation> checkTable(final String table) throws SQLException {
+		final Map<String, Violation> violations = new LinkedHashMap<>();
+		try (final Connection connection = this.dataSource.getConnection();
+				final Statement statement = connection.createStatement();
+				final ResultSet resultSet = pragma(statement,
+						String.format("PRAGMA foreign_key_check(%s)", quoteIdentifier(table)))) {
+			while (null != resultSet && resultSet.next()) {
+				final long rowid = resultSet.getLong(2);
+				final Long key = resultSet.wasNull() ? null : rowid;
+				final String parent = resultSet.getString(3);
+				violations.computeIfAbsent(parent, name -> new Violation(table, name)).add(key);
+			}
+		}
+		final List<Violation> result = new ArrayList<>(violations.values());
+		result.sort((a, b) -> a.parent.compareTo(b.parent));
+		return result;
+	}
+
+	/**
+	 * Runs a pragma that returns rows. The JDBC driver rejects
+	 * {@code executeQuery} when a pragma yields no rows at all, so the result
+	 * set is {@code null} in that case.
+	 */
+	private static ResultSet pragma(final Statement statement, final String pragma) throws SQLException {
+		return statement.execute(pragma) ? statement.getResultSet() : null;
+	}
+}
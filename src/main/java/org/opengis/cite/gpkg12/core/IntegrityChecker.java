@@ -0,0 +1,97 @@
+package org.opengis.cite.gpkg12.core;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.opengis.cite.gpkg12.GPKG12;
+import org.opengis.cite.gpkg12.util.ProgressMonitor;
+import org.opengis.cite.gpkg12.util.ScanProgress;
+
+/**
+ * Runs the SQLite integrity check and collects every problem it reports,
+ * rather than only the first row of the result.
+ *
+ * <p>
+ * The check is made in two passes. {@code PRAGMA quick_check} first verifies
+ * the b-tree structure without comparing the indexes with their tables, which
+ * is much faster; if it finds problems they are reported at once. Otherwise
+ * {@code PRAGMA integrity_check} makes the full check. Both are given the
+ * largest error limit, since without one they stop after 100 problems. Each
+ * pass reads the whole file before returning any row, so the passes are
+ * reported to the {@link ProgressMonitor} as the steps of one scan.
+ * </p>
+ *
+ * <p>
+ * Only the table argument of the pragmas (checking one table at a time, which
+ * would allow the check to be spread over several connections) needs SQLite
+ * 3.33.0; the bundled library reads any argument as the error limit.
+ * </p>
+ *
+ * @see <a href="https://www.sqlite.org/pragma.html#pragma_integrity_check"
+ *      target= "_blank">PRAGMA integrity_check</a>
+ * @see <a href="https://www.sqlite.org/pragma.html#pragma_quick_check"
+ *      target= "_blank">PRAGMA quick_check</a>
+ */
+public class IntegrityChecker {
+
+	/** The largest error limit accepted by the pragmas. */
+	private static final int MAX_ERRORS = Integer.MAX_VALUE;
+
+	private final DataSource dataSource;
+	private final ProgressMonitor monitor;
+
+	/**
+	 * Creates a checker.
+	 *
+	 * @param dataSource
+	 *            A DataSource for the GeoPackage.
+	 * @param monitor
+	 *            The monitor that publishes the progress of the check.
+	 */
+	public IntegrityChecker(final DataSource dataSource, final ProgressMonitor monitor) {
+		this.dataSource = dataSource;
+		this.monitor = monitor;
+	}
+
+	/**
+	 * Checks the database.
+	 *
+	 * @return The problems reported by SQLite; the list is empty if the
+	 *         database is intact.
+	 * @throws SQLException
+	 *             If the check cannot be run.
+	 */
+	public List<String> check() throws SQLException {
+		try (final ScanProgress progress = this.monitor.begin("integrity_check", 2);
+				final Connection connection = this.dataSource.getConnection()) {
+			List<String> problems = run(connection, "quick_check");
+			progress.advance(1, 0);
+			if (problems.isEmpty()) {
+				problems = run(connection, "integrity_check");
+			}
+			progress.advance(1, 0);
+			return problems;
+		}
+	}
+
+	private static List<String> run(final Connection connection, final String pragma) throws SQLException {
+		final List<String> problems = new ArrayList<>();
+		try (final Statement statement = connection.createStatement();
+				final ResultSet resultSet = statement
+						.executeQuery(String.format("PRAGMA %s(%d)", pragma, MAX_ERRORS))) {
+			while (resultSet.next()) {
+				final String message = resultSet.getString(1);
+				if (!GPKG12.PRAGMA_INTEGRITY_CHECK.equalsIgnoreCase(message)) {
+					problems.add(message);
+				}
+			}
+		}
+		return problems;
+	}
+}
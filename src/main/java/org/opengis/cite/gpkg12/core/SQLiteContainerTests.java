@@ -4,7 +4,6 @@ import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertTrue;
 import static org.testng.AssertJUnit.fail;
 
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.sql.ResultSet;
@@ -14,6 +13,7 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -58,11 +58,8 @@ public class SQLiteContainerTests extends CommonFixture {
 	 */
 	@Test(description = "See OGC 12-128r12: Requirement 1")
 	public void fileHeaderString() throws IOException {
-		final byte[] headerString = new byte[GPKG12.SQLITE_MAGIC_HEADER.length];
-		try (FileInputStream fileInputStream = new FileInputStream(this.gpkgFile)) {
-			fileInputStream.read(headerString);
-		}
-		assertTrue(Arrays.equals(headerString, GPKG12.SQLITE_MAGIC_HEADER), ErrorMessage
+		final byte[] headerString = this.sqliteHeader.getMagic();
+		assertTrue(this.sqliteHeader.hasValidMagic(), ErrorMessage
 				.format(ErrorMessageKeys.INVALID_HEADER_STR, new String(headerString, StandardCharsets.US_ASCII)));
 	}
 
@@ -191,7 +188,8 @@ public class SQLiteContainerTests extends CommonFixture {
 
 	/**
 	 * The SQLite PRAGMA integrity_check SQL command SHALL return "ok" for a
-	 * GeoPackage file.
+	 * GeoPackage file. The check is run by an {@link IntegrityChecker}, and
+	 * every problem found is reported.
 	 *
 	 * @see <a href="http://www.geopackage.org/spec/#_requirement-6" target=
 	 *      "_blank">File Integrity - Requirement 6</a>
@@ -202,21 +200,17 @@ public class SQLiteContainerTests extends CommonFixture {
 	@Test(description = "See OGC 12-128r12: Requirement 6")
 	public void pragmaIntegrityCheck() throws SQLException
 	{
-		try(final Statement statement = this.databaseConnection.createStatement();
-				final ResultSet resultSet = statement.executeQuery("PRAGMA integrity_check;"))
-		{
-			resultSet.next();
-
-			assertEquals(resultSet.getString("integrity_check").toLowerCase(),
-					GPKG12.PRAGMA_INTEGRITY_CHECK,
-					ErrorMessage.format(ErrorMessageKeys.PRAGMA_INTEGRITY_CHECK_NOT_OK));
-		}
+		final List<String> problems = new IntegrityChecker(this.dataSource, this.progressMonitor).check();
+		assertTrue(problems.isEmpty(),
+				ErrorMessage.format(ErrorMessageKeys.PRAGMA_INTEGRITY_CHECK_PROBLEMS, problems.size(),
+						summarize(problems)));
 	}
 
 	/**
 	 * The SQLite PRAGMA foreign_key_check SQL with no parameter value SHALL
 	 * return an empty result set indicating no invalid foreign key values for
-	 * a GeoPackage file.
+	 * a GeoPackage file. The check is run by a {@link ForeignKeyChecker}, which
+	 * only visits the tables that declare foreign keys.
 	 *
 	 * @see <a href="http://www.geopackage.org/spec/#_requirement-7" target=
 	 *      "_blank">File Integrity - Requirement 7</a>
@@ -227,12 +221,9 @@ public class SQLiteContainerTests extends CommonFixture {
 	@Test(description = "See OGC 12-128r12: Requirement 7")
 	public void foreignKeyCheck() throws SQLException
 	{
-		try(final Statement statement = this.databaseConnection.createStatement();
-				final ResultSet resultSet = statement.executeQuery("PRAGMA foreign_key_check;"))
-		{
-			assertTrue(!resultSet.next(),
-					ErrorMessage.format(ErrorMessageKeys.INVALID_FOREIGN_KEY));
-		}
+		final List<ForeignKeyChecker.Violation> violations = new ForeignKeyChecker(this.dataSource).check();
+		assertTrue(violations.isEmpty(),
+				ErrorMessage.format(ErrorMessageKeys.FOREIGN_KEY_VIOLATIONS, summarize(violations)));
 	}
 
 	/**
@@ -261,6 +252,23 @@ public class SQLiteContainerTests extends CommonFixture {
 
 		fail(ErrorMessage.format(ErrorMessageKeys.NO_SQL_ACCESS));
 	}
+
+	/**
+	 * Joins the first {@value #MAX_REPORTED_PROBLEMS} problems for an
+	 * assertion message.
+	 */
+	private static String summarize(final List<?> problems) {
+		final StringBuilder summary = new StringBuilder();
+		for (int i = 0; i < Math.min(problems.size(), MAX_REPORTED_PROBLEMS); i++) {
+			summary.append("\n  ").append(problems.get(i));
+		}
+		if (problems.size() > MAX_REPORTED_PROBLEMS) {
+			summary.append(String.format("\n  ... and %d more", problems.size() - MAX_REPORTED_PROBLEMS));
+		}
+		return summary.toString();
+	}
+
+	private static final int MAX_REPORTED_PROBLEMS = 25;
 	private static final Set<String> CoreDataTypes = new HashSet<String>();
 	private static final Map<String, Set<String>> CoreTables = new HashMap<String, Set<String>>();
 	static {
@@ -5,6 +5,7 @@ import static org.testng.Assert.assertTrue;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.List;
 
 import org.opengis.cite.gpkg12.CommonFixture;
 import org.opengis.cite.gpkg12.ErrorMessage;
@@ -98,6 +99,10 @@ public class CRSWKT extends CommonFixture
      * undefined. If it is not possible to produce a valid [34] definition 
      * then the value of the definition_12_063 column MAY be undefined.
      *
+     * <p>Each definition_12_063 value other than "undefined" is parsed as an 
+     * ISO 19162 CRS, and an identifier at its top level must agree with the 
+     * organization and organization_coordsys_id columns.</p>
+     *
      * @see <a href="http://www.geopackage.org/spec/#r117" target=
      *      "_blank">F.10. CRS WKT - Requirement 117</a>
      *
@@ -111,14 +116,35 @@ public class CRSWKT extends CommonFixture
     			// 1
     			final Statement statement = this.databaseConnection.createStatement();
 
-    			final ResultSet resultSet = statement.executeQuery("SELECT srs_id, definition, definition_12_063 FROM gpkg_spatial_ref_sys WHERE srs_id NOT IN (0, -1);");
+    			final ResultSet resultSet = statement.executeQuery("SELECT srs_id, organization, organization_coordsys_id, definition, definition_12_063 FROM gpkg_spatial_ref_sys WHERE srs_id NOT IN (0, -1);");
     			) {
 
     		// 2
     		while (resultSet.next()) {
     			// 3
-    			assertTrue(!("undefined".equals(resultSet.getString("definition")) && "undefined".equals(resultSet.getString("definition_12_063"))), 
-    					ErrorMessage.format(ErrorMessageKeys.UNDEFINED_SRS, resultSet.getString("srs_id")));
+    			final String srsId = resultSet.getString("srs_id");
+    			final String definition = resultSet.getString("definition_12_063");
+    			assertTrue(!("undefined".equals(resultSet.getString("definition")) && "undefined".equals(definition)), 
+    					ErrorMessage.format(ErrorMessageKeys.UNDEFINED_SRS, srsId));
+    			if (definition == null || "undefined".equals(definition)) {
+    				continue;
+    			}
+    			// 4
+    			final WKTDefinition wkt = WKTDefinition.of(definition);
+    			assertTrue(wkt.isValidCRS(), ErrorMessage.format(ErrorMessageKeys.INVALID_WKT_DEFINITION, srsId, wkt.getProblem()));
+    			// 5
+    			final List<String[]> identifiers = wkt.getIdentifiers();
+			if (!identifiers.isEmpty()) {
+				final String organization = resultSet.getString("organization");
+				final String coordsysId = resultSet.getString("organization_coordsys_id");
+				final StringBuilder found = new StringBuilder();
+				for (final String[] identifier : identifiers) {
+					if (found.length() > 0) { found.append(", "); }
+					found.append(identifier[0]).append(':').append(identifier[1]);
+				}
+				assertTrue(wkt.isIdentifiedBy(organization, coordsysId),
+						ErrorMessage.format(ErrorMessageKeys.WKT_IDENTIFIER_MISMATCH, srsId, found, organization, coordsysId));
+			}
     		} 
     	}
 		
@@ -0,0 +1,241 @@
+package org.opengis.cite.gpkg12.extensions.crswkt;
+
+import java.math.BigDecimal;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.opengis.cite.gpkg12.util.BoundedCache;
+
+/**
+ * The parsed form of a CRS definition, together with the outcome of checking
+ * it against the ISO 19162 (WKT 2) grammar for coordinate reference systems.
+ *
+ * <p>
+ * The same handful of definitions (e.g. WGS 84) occur in almost every
+ * GeoPackage, so definitions are interned: {@link #of(String)} parses a given
+ * text only once per JVM and returns the shared, immutable result thereafter.
+ * </p>
+ */
+public final class WKTDefinition {
+
+	/** Maximum number of distinct definitions retained. */
+	static final int MAX_INTERNED_DEFINITIONS = 1024;
+	private static final BoundedCache<String, WKTDefinition> INTERNED = new BoundedCache<>("WKT definition",
+			MAX_INTERNED_DEFINITIONS);
+
+	private static final String[] GEODETIC_CRS = { "GEODCRS", "GEODETICCRS", "GEOGCRS", "GEOGRAPHICCRS" };
+	private static final String[] PROJECTED_CRS = { "PROJCRS", "PROJECTEDCRS" };
+	private static final String[] VERTICAL_CRS = { "VERTCRS", "VERTICALCRS" };
+	private static final String[] ENGINEERING_CRS = { "ENGCRS", "ENGINEERINGCRS" };
+	private static final String[] PARAMETRIC_CRS = { "PARAMETRICCRS" };
+	private static final String[] TEMPORAL_CRS = { "TIMECRS" };
+	private static final String[] IMAGE_CRS = { "IMAGECRS" };
+	private static final String[] COMPOUND_CRS = { "COMPOUNDCRS" };
+	private static final String[] BOUND_CRS = { "BOUNDCRS" };
+	private static final String[] WKT1_CRS = { "GEOGCS", "PROJCS", "GEOCCS", "VERT_CS", "LOCAL_CS", "COMPD_CS",
+			"FITTED_CS" };
+	private static final String[] BASE_CRS = { "BASEGEODCRS", "BASEGEOGCRS", "BASEVERTCRS", "BASEENGCRS",
+			"BASEPARAMCRS", "BASETIMECRS" };
+
+	private final WKTElement root;
+	private final String problem;
+
+	private WKTDefinition(final String text) {
+		WKTElement element = null;
+		String error;
+		try {
+			element = WKTParser.parse(text);
+			error = checkCRS(element);
+		} catch (ParseException e) {
+			error = e.getMessage();
+		}
+		this.root = element;
+		this.problem = error;
+	}
+
+	/**
+	 * Returns the parsed form of the given definition, parsing it only if it
+	 * has not been seen before.
+	 *
+	 * @param text
+	 *            A CRS definition in well-known text.
+	 * @return The (shared) parsed definition.
+	 */
+	public static WKTDefinition of(final String text) {
+		return INTERNED.get(text, WKTDefinition::new);
+	}
+
+	/**
+	 * @return The root element, or {@code null} if the text is not well-formed.
+	 */
+	public WKTElement getRoot() {
+		return this.root;
+	}
+
+	/**
+	 * @return {@code true} if the definition is a well-formed ISO 19162 CRS.
+	 */
+	public boolean isValidCRS() {
+		return null == this.problem;
+	}
+
+	/**
+	 * @return A description of the first problem found, or {@code null} if the
+	 *         definition is a valid ISO 19162 CRS.
+	 */
+	public String getProblem() {
+		return this.problem;
+	}
+
+	/**
+	 * Returns the identifiers of the CRS as a whole, taken from the {@code ID}
+	 * (or WKT 1 {@code AUTHORITY}) elements at the top level. A CRS may be
+	 * identified by several authorities.
+	 *
+	 * @return A list of two-element arrays containing the authority name and
+	 *         code, in document order; it is empty if the definition does not
+	 *         identify the CRS.
+	 */
+	public List<String[]> getIdentifiers() {
+		final List<String[]> identifiers = new ArrayList<>();
+		if (null == this.root) { return identifiers; }
+		for (final WKTElement id : this.root.getChildren("ID", "AUTHORITY")) {
+			if (id.getValues().size() < 2 || null == id.getText(0)) { continue; }
+			final Object code = id.getValues().get(1);
+			final String codeText;
+			if (code instanceof BigDecimal) {
+				codeText = ((BigDecimal) code).stripTrailingZeros().toPlainString();
+			} else {
+				codeText = String.valueOf(code).trim();
+			}
+			identifiers.add(new String[] { id.getText(0).trim(), codeText });
+		}
+		return identifiers;
+	}
+
+	/**
+	 * Checks whether any top-level identifier of the CRS matches the given
+	 * authority and code. Authority names are compared ignoring case.
+	 *
+	 * @param organization
+	 *            The authority name, e.g. "EPSG".
+	 * @param coordsysId
+	 *            The code assigned by the authority.
+	 * @return {@code true} if one of the identifiers matches.
+	 */
+	public boolean isIdentifiedBy(final String organization, final String coordsysId) {
+		for (final String[] identifier : getIdentifiers()) {
+			if (identifier[0].equalsIgnoreCase(organization) && identifier[1].equals(coordsysId)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return A summary of the interning cache for diagnostic purposes.
+	 */
+	public static String getCacheStatistics() {
+		return INTERNED.toString();
+	}
+
+	private static String checkCRS(final WKTElement crs) {
+		if (crs.is(WKT1_CRS)) {
+			return crs.getKeyword() + " is a WKT 1 keyword; an ISO 19162 CRS was expected";
+		}
+		if (!(crs.is(GEODETIC_CRS) || crs.is(PROJECTED_CRS) || crs.is(VERTICAL_CRS) || crs.is(ENGINEERING_CRS)
+				|| crs.is(PARAMETRIC_CRS) || crs.is(TEMPORAL_CRS) || crs.is(IMAGE_CRS) || crs.is(COMPOUND_CRS)
+				|| crs.is(BOUND_CRS))) {
+			return crs.getKeyword() + " is not an ISO 19162 CRS keyword";
+		}
+		if (crs.is(BOUND_CRS)) {
+			return requireChildren(crs, "SOURCECRS", "TARGETCRS", "ABRIDGEDTRANSFORMATION");
+		}
+		if (null == crs.getText(0)) {
+			return crs.getKeyword() + " must begin with a quoted name";
+		}
+		if (crs.is(COMPOUND_CRS)) {
+			int components = 0;
+			for (final Object value : crs.getValues()) {
+				if (value instanceof WKTElement) {
+					final WKTElement component = (WKTElement) value;
+					if (component.isBracketed() && !component.is("ID", "REMARK", "USAGE", "SCOPE", "AREA",
+							"BBOX", "VERTICALEXTENT", "TIMEEXTENT")) {
+						final String error = checkCRS(component);
+						if (null != error) {
+							return error;
+						}
+						components++;
+					}
+				}
+			}
+			return components < 2 ? "COMPOUNDCRS must have at least two components" : null;
+		}
+		if (crs.is(PROJECTED_CRS)) {
+			final String error = requireChildren(crs, "CONVERSION");
+			if (null != error) {
+				return error;
+			}
+			if (null == crs.getChild("BASEGEODCRS", "BASEGEOGCRS")) {
+				return crs.getKeyword() + " is missing BASEGEODCRS";
+			}
+		} else if (null == crs.getChild(BASE_CRS)) {
+			if (null == crs.getChild(datumKeywords(crs)) && null == crs.getChild("ENSEMBLE")) {
+				return crs.getKeyword() + " is missing a datum";
+			}
+		} else if (null == crs.getChild("DERIVINGCONVERSION")) {
+			return crs.getKeyword() + " has a base CRS but no DERIVINGCONVERSION";
+		}
+		return checkCoordinateSystem(crs);
+	}
+
+	private static String[] datumKeywords(final WKTElement crs) {
+		if (crs.is(GEODETIC_CRS)) {
+			return new String[] { "DATUM", "TRF", "GEODETICDATUM" };
+		}
+		if (crs.is(VERTICAL_CRS)) {
+			return new String[] { "VDATUM", "VRF", "VERTICALDATUM" };
+		}
+		if (crs.is(ENGINEERING_CRS)) {
+			return new String[] { "EDATUM", "ENGINEERINGDATUM" };
+		}
+		if (crs.is(PARAMETRIC_CRS)) {
+			return new String[] { "PDATUM", "PARAMETRICDATUM" };
+		}
+		if (crs.is(TEMPORAL_CRS)) {
+			return new String[] { "TDATUM", "TIMEDATUM" };
+		}
+		return new String[] { "IDATUM", "IMAGEDATUM" };
+	}
+
+	private static String checkCoordinateSystem(final WKTElement crs) {
+		final WKTElement cs = crs.getChild("CS");
+		if (null == cs) {
+			return crs.getKeyword() + " is missing CS";
+		}
+		final List<Object> values = cs.getValues();
+		if (values.size() < 2 || !(values.get(0) instanceof WKTElement)
+				|| ((WKTElement) values.get(0)).isBracketed() || !(values.get(1) instanceof BigDecimal)) {
+			return "CS must specify a type and a dimension";
+		}
+		final int dimension = ((BigDecimal) values.get(1)).intValue();
+		if (dimension < 1 || dimension > 3) {
+			return "CS dimension must be 1, 2 or 3";
+		}
+		final int axes = crs.getChildren("AXIS").size();
+		if (axes > 0 && axes != dimension) {
+			return String.format("CS has dimension %d but %d axes are defined", dimension, axes);
+		}
+		return null;
+	}
+
+	private static String requireChildren(final WKTElement element, final String... keywords) {
+		for (final String keyword : keywords) {
+			if (null == element.getChild(keyword)) {
+				return element.getKeyword() + " is missing " + keyword;
+			}
+		}
+		return null;
+	}
+}
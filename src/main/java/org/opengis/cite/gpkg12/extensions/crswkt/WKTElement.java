@@ -0,0 +1,134 @@
+package org.opengis.cite.gpkg12.extensions.crswkt;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An element of a well-known text (WKT) string. An element has a keyword and
+ * an ordered list of values, each of which is one of the following:
+ * <ul>
+ * <li>a nested {@code WKTElement};</li>
+ * <li>a {@code String} holding quoted text (without the enclosing quotes);</li>
+ * <li>a {@code java.math.BigDecimal} holding a number;</li>
+ * <li>a {@code WKTElement} without brackets, for an enumeration value such as
+ * {@code north} or {@code ellipsoidal}.</li>
+ * </ul>
+ * Instances are immutable and may be shared between threads.
+ *
+ * @see <a href="http://docs.opengeospatial.org/is/12-063r5/12-063r5.html"
+ *      target="_blank">OGC 12-063r5: Well-known text representation of
+ *      coordinate reference systems</a>
+ */
+public final class WKTElement {
+
+	private final String keyword;
+	private final List<Object> values;
+	private final boolean bracketed;
+
+	WKTElement(final String keyword, final List<Object> values, final boolean bracketed) {
+		this.keyword = keyword;
+		this.values = Collections.unmodifiableList(new ArrayList<>(values));
+		this.bracketed = bracketed;
+	}
+
+	/**
+	 * @return The keyword, in the case used in the WKT string.
+	 */
+	public String getKeyword() {
+		return this.keyword;
+	}
+
+	/**
+	 * @return An unmodifiable list of values (empty for an enumeration value).
+	 */
+	public List<Object> getValues() {
+		return this.values;
+	}
+
+	/**
+	 * @return {@code false} if this is a bare identifier (an enumeration value)
+	 *         rather than a keyword followed by bracketed values.
+	 */
+	public boolean isBracketed() {
+		return this.bracketed;
+	}
+
+	/**
+	 * Checks whether the keyword matches any of the given keywords, ignoring
+	 * case (WKT keywords are case-insensitive).
+	 *
+	 * @param keywords
+	 *            Candidate keywords.
+	 * @return {@code true} if the keyword matches one of the candidates.
+	 */
+	public boolean is(final String... keywords) {
+		for (final String candidate : keywords) {
+			if (this.keyword.equalsIgnoreCase(candidate)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the quoted text at the given position.
+	 *
+	 * @param index
+	 *            The position of the value.
+	 * @return The text, or {@code null} if there is no such value or it is not
+	 *         quoted text.
+	 */
+	public String getText(final int index) {
+		if (index < this.values.size() && this.values.get(index) instanceof String) {
+			return (String) this.values.get(index);
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the first nested (bracketed) element having one of the given
+	 * keywords.
+	 *
+	 * @param keywords
+	 *            Candidate keywords.
+	 * @return The matching element, or {@code null} if there is none.
+	 */
+	public WKTElement getChild(final String... keywords) {
+		for (final Object value : this.values) {
+			if (value instanceof WKTElement) {
+				final WKTElement child = (WKTElement) value;
+				if (child.bracketed && child.is(keywords)) {
+					return child;
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns all nested (bracketed) elements having one of the given
+	 * keywords.
+	 *
+	 * @param keywords
+	 *            Candidate keywords.
+	 * @return A list of matching elements; it may be empty.
+	 */
+	public List<WKTElement> getChildren(final String... keywords) {
+		final List<WKTElement> children = new ArrayList<>();
+		for (final Object value : this.values) {
+			if (value instanceof WKTElement) {
+				final WKTElement child = (WKTElement) value;
+				if (child.bracketed && child.is(keywords)) {
+					children.add(child);
+				}
+			}
+		}
+		return children;
+	}
+
+	@Override
+	public String toString() {
+		return this.bracketed ? this.keyword + this.values : this.keyword;
+	}
+}
@@ -0,0 +1,160 @@
+package org.opengis.cite.gpkg12.extensions.crswkt;
+
+import java.math.BigDecimal;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A single-pass, recursive descent parser for the well-known text
+ * representation of coordinate reference systems. It accepts the common
+ * syntax shared by WKT 1 (OGC 01-009) and WKT 2 (ISO 19162 / OGC 12-063):
+ * keywords, square or round brackets, quoted text (where a doubled quote
+ * stands for one quote character), numbers and enumeration values. It does
+ * not check which keywords may appear where; see {@link WKTDefinition} for
+ * that.
+ */
+public final class WKTParser {
+
+	private final String text;
+	private int pos;
+
+	private WKTParser(final String text) {
+		this.text = text;
+	}
+
+	/**
+	 * Parses a WKT string.
+	 *
+	 * @param wkt
+	 *            The text to parse.
+	 * @return The root element.
+	 * @throws ParseException
+	 *             If the text is not well-formed; the error offset is the
+	 *             position of the offending character.
+	 */
+	public static WKTElement parse(final String wkt) throws ParseException {
+		final WKTParser parser = new WKTParser(wkt);
+		parser.skipWhitespace();
+		final WKTElement root = parser.readElement();
+		if (!root.isBracketed()) {
+			throw parser.error("Expected '[' after keyword " + root.getKeyword());
+		}
+		parser.skipWhitespace();
+		if (parser.pos < wkt.length()) {
+			throw parser.error("Unexpected text after the end of the definition");
+		}
+		return root;
+	}
+
+	private WKTElement readElement() throws ParseException {
+		final String keyword = readKeyword();
+		skipWhitespace();
+		if (this.pos >= this.text.length() || !isOpening(this.text.charAt(this.pos))) {
+			return new WKTElement(keyword, new ArrayList<>(), false);
+		}
+		final char closing = this.text.charAt(this.pos) == '[' ? ']' : ')';
+		this.pos++;
+		final List<Object> values = new ArrayList<>();
+		while (true) {
+			skipWhitespace();
+			values.add(readValue());
+			skipWhitespace();
+			if (this.pos >= this.text.length()) {
+				throw error("Missing '" + closing + "' for " + keyword);
+			}
+			final char c = this.text.charAt(this.pos++);
+			if (c == closing) {
+				return new WKTElement(keyword, values, true);
+			}
+			if (c != ',') {
+				this.pos--;
+				throw error("Expected ',' or '" + closing + "' in " + keyword);
+			}
+		}
+	}
+
+	private Object readValue() throws ParseException {
+		if (this.pos >= this.text.length()) {
+			throw error("Unexpected end of text");
+		}
+		final char c = this.text.charAt(this.pos);
+		if (c == '"') {
+			return readQuotedText();
+		}
+		if (c == '+' || c == '-' || c == '.' || Character.isDigit(c)) {
+			return readNumber();
+		}
+		if (Character.isLetter(c)) {
+			return readElement();
+		}
+		throw error("Unexpected character '" + c + "'");
+	}
+
+	private String readKeyword() throws ParseException {
+		final int start = this.pos;
+		while (this.pos < this.text.length()) {
+			final char c = this.text.charAt(this.pos);
+			if (!(Character.isLetterOrDigit(c) || c == '_')) {
+				break;
+			}
+			this.pos++;
+		}
+		if (start == this.pos || !Character.isLetter(this.text.charAt(start))) {
+			this.pos = start;
+			throw error("Expected a keyword");
+		}
+		return this.text.substring(start, this.pos);
+	}
+
+	private String readQuotedText() throws ParseException {
+		final int start = this.pos++;
+		final StringBuilder value = new StringBuilder();
+		while (this.pos < this.text.length()) {
+			final char c = this.text.charAt(this.pos++);
+			if (c == '"') {
+				if (this.pos < this.text.length() && this.text.charAt(this.pos) == '"') {
+					value.append('"');
+					this.pos++;
+				} else {
+					return value.toString();
+				}
+			} else {
+				value.append(c);
+			}
+		}
+		this.pos = start;
+		throw error("Unterminated quoted text");
+	}
+
+	private BigDecimal readNumber() throws ParseException {
+		final int start = this.pos;
+		while (this.pos < this.text.length()) {
+			final char c = this.text.charAt(this.pos);
+			if (!(Character.isDigit(c) || c == '+' || c == '-' || c == '.' || c == 'e' || c == 'E')) {
+				break;
+			}
+			this.pos++;
+		}
+		try {
+			return new BigDecimal(this.text.substring(start, this.pos));
+		} catch (NumberFormatException e) {
+			this.pos = start;
+			throw error("Invalid number");
+		}
+	}
+
+	private void skipWhitespace() {
+		while (this.pos < this.text.length() && Character.isWhitespace(this.text.charAt(this.pos))) {
+			this.pos++;
+		}
+	}
+
+	private static boolean isOpening(final char c) {
+		return c == '[' || c == '(';
+	}
+
+	private ParseException error(final String message) {
+		return new ParseException(message + " at position " + this.pos, this.pos);
+	}
+}
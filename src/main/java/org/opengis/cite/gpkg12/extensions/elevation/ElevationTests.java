@@ -2,14 +2,13 @@ package org.opengis.cite.gpkg12.extensions.elevation;
 
 import static org.testng.Assert.assertTrue;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.LinkedList;
+import java.util.List;
 import java.util.Spliterator;
 import java.util.Spliterators;
 import java.util.stream.Collectors;
@@ -17,12 +16,13 @@ import java.util.stream.StreamSupport;
 
 import javax.imageio.ImageIO;
 import javax.imageio.ImageReader;
-import javax.imageio.stream.MemoryCacheImageInputStream;
 
 import org.opengis.cite.gpkg12.ErrorMessage;
 import org.opengis.cite.gpkg12.ErrorMessageKeys;
 import org.opengis.cite.gpkg12.tiles.TileTests;
 import org.opengis.cite.gpkg12.util.DatabaseUtility;
+import org.opengis.cite.gpkg12.util.GeoPackageQueries;
+import org.opengis.cite.gpkg12.util.PartitionedTableScanner;
 import org.testng.Assert;
 import org.testng.ITestContext;
 import org.testng.annotations.BeforeClass;
@@ -261,19 +261,9 @@ public class ElevationTests extends TileTests {
 	@Test(description = "See OGC 12-128r13: Requirement 123")
 	public void requiredSRSReferences() throws SQLException {
 		for (final String tableName : this.elevationTableNames) {
-			try (	
-					final Statement statement1 = this.databaseConnection.createStatement();
-					final ResultSet resultSet1 = statement1.executeQuery(String.format("SELECT srs_id FROM gpkg_tile_matrix_set WHERE table_name = '%s'", tableName));
-					) {
-				resultSet1.next();				
-				final String srsID = resultSet1.getString(1);
-				try (
-						final Statement statement2 = this.databaseConnection.createStatement();
-						final ResultSet resultSet2 = statement2.executeQuery(String.format("SELECT COUNT(*) FROM gpkg_spatial_ref_sys WHERE srs_id = '%s'", srsID));
-						) {
-					assertTrue(resultSet2.getInt(1) == 1, ErrorMessage.format(ErrorMessageKeys.BAD_MATRIX_SET_SRS_REFERENCE, srsID));
-				}
-			}
+			final Long srsID = tileMatrixModel().getPyramid(tableName).getSrsId();
+			final Long count = this.queries.queryLong("SELECT COUNT(*) FROM gpkg_spatial_ref_sys WHERE srs_id = ?", srsID);
+			assertTrue(count != null && count == 1, ErrorMessage.format(ErrorMessageKeys.BAD_MATRIX_SET_SRS_REFERENCE, srsID));
 		}
 	}
 
@@ -350,13 +340,8 @@ public class ElevationTests extends TileTests {
 	public void coverageAncillaryValues() throws SQLException {
 
 		for (final String tableName : this.elevationTableNames) {
-			try (
-					final Statement statement1 = this.databaseConnection.createStatement();
-					final ResultSet resultSet1 = statement1.executeQuery(String.format("SELECT COUNT(*) FROM gpkg_2d_gridded_coverage_ancillary WHERE tile_matrix_set_name = '%s'", tableName));
-					) {
-				resultSet1.next();
-				assertTrue(resultSet1.getInt(1) == 1, ErrorMessage.format(ErrorMessageKeys.MISSING_REFERENCE, "gpkg_2d_gridded_coverage_ancillary", "tile_matrix_set_name", tableName));				
-			}
+			final Long count = this.queries.queryLong("SELECT COUNT(*) FROM gpkg_2d_gridded_coverage_ancillary WHERE tile_matrix_set_name = ?", tableName);
+			assertTrue(count != null && count == 1, ErrorMessage.format(ErrorMessageKeys.MISSING_REFERENCE, "gpkg_2d_gridded_coverage_ancillary", "tile_matrix_set_name", tableName));
 		}
 	}
 
@@ -382,13 +367,7 @@ public class ElevationTests extends TileTests {
 			while (resultSet.next()){
 				// 3
 				final String tileMatrixSetName = resultSet.getString(1);
-				try (
-						final Statement statement2 = this.databaseConnection.createStatement();
-
-						final ResultSet resultSet2 = statement2.executeQuery(String.format("SELECT count(*) FROM gpkg_tile_matrix_set WHERE table_name = '%s';", tileMatrixSetName));
-						) {
-					assertTrue(resultSet2.getInt(1) == 1, ErrorMessageKeys.UNREFERENCED_COVERAGE_TILE_MATRIX_SET_TABLE);
-				}
+				assertTrue(tileMatrixModel().getPyramid(tileMatrixSetName).hasMatrixSet(), ErrorMessageKeys.UNREFERENCED_COVERAGE_TILE_MATRIX_SET_TABLE);
 			}
 		}
 	}
@@ -465,23 +444,13 @@ public class ElevationTests extends TileTests {
 	public void tileAncillaryTableRef() throws SQLException {
 		// 1
 		for (final String tableName : this.elevationTableNames) {
+			// 2 every tile must have a row in gpkg_2d_gridded_tile_ancillary
 			try (
-					final Statement statement1 = this.databaseConnection.createStatement();
-					final ResultSet resultSet1 = statement1.executeQuery(String.format("SELECT id FROM %s", tableName));
+					final GeoPackageQueries.Cursor<String> unreferencedIds = this.queries.query(String.format("SELECT t.id FROM %s t LEFT OUTER JOIN gpkg_2d_gridded_tile_ancillary a ON t.id = a.tpudt_id AND a.tpudt_name = ? WHERE a.tpudt_id IS NULL", GeoPackageQueries.quoteIdentifier(tableName)), resultSet -> resultSet.getString(1), tableName);
 					) {
-				while (resultSet1.next()) {
-					try (
-							final Statement statement2 = this.databaseConnection.createStatement();
-							final ResultSet resultSet2 = statement2.executeQuery("SELECT %s.id as tid, gpkg_2d_gridded_tile_ancillary.tpudt_id as taid from %s LEFT OUTER JOIN gpkg_2d_gridded_tile_ancillary ON %s.id = gpkg_2d_gridded_tile_ancillary.tpudt_id AND gpkg_2d_gridded_tile_ancillary.tpudt_name = '%s'".replace("%s",  tableName));
-							) {
-						while (resultSet2.next()) {
-							final String id = resultSet2.getString(1);
-							resultSet2.getString(2);
-							assertTrue(!resultSet2.wasNull(), ErrorMessage.format(ErrorMessageKeys.TILE_ANCILLARY_REFERENCES, tableName, id));
-						}
-
-					}
-				}				
+				if (unreferencedIds.next()) {
+					assertTrue(false, ErrorMessage.format(ErrorMessageKeys.TILE_ANCILLARY_REFERENCES, tableName, unreferencedIds.get()));
+				}
 			}
 		}
 	}
@@ -506,22 +475,15 @@ public class ElevationTests extends TileTests {
 			// 2
 			while (resultSet1.next()) {
 				final String tableName = resultSet1.getString("tpudt_name");
-				try (
-						final Statement statement2 = this.databaseConnection.createStatement();
-						// 2a
-						final ResultSet resultSet2 = statement2.executeQuery(String.format("PRAGMA table_info(%s)", tableName));
-						) {
-					// 2b
-					assertTrue(resultSet2.next(), ErrorMessage.format(ErrorMessageKeys.TILE_ANCILLARY_TABLE_REF_INVALID, tableName));					
-				}
+				// 2a, 2b
+				assertTrue(!this.queries.getTableInfo(tableName).isEmpty(), ErrorMessage.format(ErrorMessageKeys.TILE_ANCILLARY_TABLE_REF_INVALID, tableName));
 				try (
 						// 2c
-						final Statement statement3 = this.databaseConnection.createStatement();
-						final ResultSet resultSet3 = statement3.executeQuery(String.format("SELECT datatype from gpkg_2d_gridded_coverage_ancillary WHERE tile_matrix_set_name = '%s'", tableName));
+						final GeoPackageQueries.Cursor<String> datatypes = this.queries.query("SELECT datatype from gpkg_2d_gridded_coverage_ancillary WHERE tile_matrix_set_name = ?", resultSet -> resultSet.getString("datatype"), tableName);
 						) {
 					// 2d
-					assertTrue(resultSet3.next(), ErrorMessage.format(ErrorMessageKeys.TILE_ANCILLARY_TABLE_REF_INVALID, tableName));
-					final String datatype = resultSet3.getString("datatype");			
+					assertTrue(datatypes.next(), ErrorMessage.format(ErrorMessageKeys.TILE_ANCILLARY_TABLE_REF_INVALID, tableName));
+					final String datatype = datatypes.get();
 					if("float".equals(datatype)){
 						final double scale = resultSet1.getDouble("scale");
 						final double offset = resultSet1.getDouble("offset");
@@ -576,36 +538,25 @@ public class ElevationTests extends TileTests {
 	@Test(description = "See OGC 12-128r12: Requirement 132/133")
 	public void imageFormat() throws SQLException, IOException
 	{
+		final PartitionedTableScanner scanner = newTableScanner();
 		// 1, 2
 		for(final String tableName : this.elevationTableNames)
 		{
-			final Collection<Integer> failedTileIds = new LinkedList<>();
-			try (
-					// 2a
-					final Statement statement = this.databaseConnection.createStatement();
-					final ResultSet resultSet = statement.executeQuery("SELECT t.datatype AS datatype, u.id AS id, u.tile_data AS tile_data FROM gpkg_2d_gridded_coverage_ancillary t, %s u WHERE t.tile_matrix_set_name = '%s';".replace("%s", tableName));
-					) {		
-				// 2b
-				while(resultSet.next())
-				{
-					final String datatype = resultSet.getString("datatype");
-					final int id = resultSet.getInt("id");
-
-					try (final MemoryCacheImageInputStream cacheImage = new MemoryCacheImageInputStream(new ByteArrayInputStream(resultSet.getBytes("tile_data")))) {
-						// 2bi
-						if ("float".equals(datatype)) {
-							if (!canReadImage(tiffImageReaders, cacheImage)){
-								failedTileIds.add(id);
-							}
-							// 2bii
-						} else if ("integer".equals(datatype)){
-							if (!canReadImage(pngImageReaders, cacheImage)){
-								failedTileIds.add(id);
-							}
-						}                	
-					};
-				}
+			// 2a
+			final List<String> datatypes = this.queries.list("SELECT datatype FROM gpkg_2d_gridded_coverage_ancillary WHERE tile_matrix_set_name = ?", resultSet -> resultSet.getString(1), tableName);
+			final Collection<ImageReader> imageReaders;
+			// 2bi
+			if (datatypes.contains("float")) {
+				imageReaders = tiffImageReaders;
+			// 2bii
+			} else if (datatypes.contains("integer")) {
+				imageReaders = pngImageReaders;
+			} else {
+				continue;
 			}
+			// 2b
+			final List<Integer> failedTileIds = scanImageFormats(scanner, tableName,
+					signature -> canReadImage(imageReaders, signatureStream(signature)), this.analyzeTileDuplicates);
 
 			assertTrue(failedTileIds.isEmpty(),
 					ErrorMessage.format(ErrorMessageKeys.INVALID_IMAGE_FORMAT,
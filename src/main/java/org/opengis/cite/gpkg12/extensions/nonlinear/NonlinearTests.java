@@ -5,11 +5,14 @@ import static org.testng.Assert.assertTrue;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
 import org.opengis.cite.gpkg12.ErrorMessage;
 import org.opengis.cite.gpkg12.ErrorMessageKeys;
 import org.opengis.cite.gpkg12.features.FeaturesTests;
+import org.opengis.cite.gpkg12.features.HeaderEnvelopeChecker;
 import org.opengis.cite.gpkg12.util.DatabaseUtility;
 import org.testng.Assert;
 import org.testng.ITestContext;
@@ -114,7 +117,46 @@ public class NonlinearTests extends FeaturesTests {
 		}
 	}
 
-	// TODO: No clear way to test R66 as it requires a spatial library
+	/**
+	 * The non-linear geometries in a column registered with a
+	 * {@code gpkg_geom_*} extension SHALL be well formed: a CircularString
+	 * has an odd number of points (at least three), the segments of a
+	 * CompoundCurve are connected, the rings of a CurvePolygon are closed
+	 * curves, and the members of a MultiCurve or MultiSurface are curves or
+	 * surfaces. The WKB of every geometry is walked without a spatial library,
+	 * in the scan that also checks the header envelopes, which is shared with
+	 * the feature tests; the other geometric constraints of R66 are not
+	 * tested.
+	 *
+	 * @see <a href="#r66" target= "_blank">Annex F.1 GeoPackage
+	 * Non-Linear Geometry Types - Requirement 66</a>
+	 *
+	 * @throws SQLException
+	 *             If an SQL query causes an error
+	 */
+	@Test(description = "See OGC 12-128r13: Requirement 66")
+	public void nonlinearGeometryStructure() throws SQLException {
+		final List<String> problems = new ArrayList<>();
+		try (
+				// 1
+				final Statement statement = this.databaseConnection.createStatement();
+
+				final ResultSet resultSet = statement.executeQuery("SELECT DISTINCT e.table_name, e.column_name FROM gpkg_extensions e JOIN gpkg_geometry_columns g ON e.table_name = g.table_name AND e.column_name = g.column_name WHERE e.extension_name LIKE 'gpkg_geom_%'");
+				) {
+			// 2
+			while (resultSet.next()) {
+				final String tableName = resultSet.getString("table_name");
+				final String columnName = resultSet.getString("column_name");
+				// 3
+				final HeaderEnvelopeChecker.Report report = checkHeaderEnvelopes(tableName, columnName);
+				if (!report.isWellFormed()) {
+					problems.add(String.format("%s.%s: %s", tableName, columnName, report.describeMalformed()));
+				}
+			}
+		}
+		// 4
+		assertTrue(problems.isEmpty(), ErrorMessage.format(ErrorMessageKeys.NONLINEAR_GEOMETRY_INVALID, String.join("; ", problems)));
+	}
 
 	/**
 	 * A GeoPackage that contains a `gpkg_geometry_columns` table or 
@@ -0,0 +1,453 @@
+package org.opengis.cite.gpkg12.extensions.rtreeindex;
+
+import static org.opengis.cite.gpkg12.util.GeoPackageQueries.quoteIdentifier;
+
+import java.nio.ByteBuffer;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+import org.opengis.cite.gpkg12.features.GeometryHeader;
+import org.opengis.cite.gpkg12.features.WKBReader;
+
+/**
+ * Measures how well the RTree of a spatially indexed column narrows down
+ * bounding box queries. A fixed set of query boxes, covering several shares
+ * of the extent of the tree, is run through the RTree and compared with a
+ * scan of the feature table itself, which is what a client without the index
+ * has to do; the latencies, the speedup and the number of tree nodes each
+ * query visits are reported. The queries are generated from a fixed seed, so
+ * every run of a GeoPackage asks the same questions.
+ *
+ * <p>
+ * The scan reads every geometry once and takes its bounds from the envelope
+ * in its header, or from its coordinates if the header has none; the bounds
+ * are rounded outwards to single precision, as the RTree stores them. The
+ * pass counts the matching rows of all the queries at once, and each query is
+ * charged the time of the whole pass, since without the index every query has
+ * to read the whole table. A query whose count differs from that of the RTree
+ * is a mismatch: the index does not describe the geometries of the table.
+ * </p>
+ *
+ * <p>
+ * The timings depend on the machine, but the number of nodes visited does
+ * not: it is computed from the decoded internal nodes (a node is visited if
+ * the cell pointing to it overlaps the query), which is what SQLite reads. An
+ * index whose leaves must nearly all be visited by the smallest queries, such
+ * as one where every entry covers the whole extent, is
+ * {@link Report#isIneffective() ineffective}.
+ * </p>
+ */
+public class RTreeIndexBenchmark {
+
+	/** The shares of the extent of the tree covered by the query boxes. */
+	static final double[] SELECTIVITIES = { 0.0001, 0.001, 0.01, 0.1 };
+
+	/** The number of queries per selectivity. */
+	static final int QUERIES = 20;
+
+	/** The seed of the query positions. */
+	static final long SEED = 77;
+
+	/**
+	 * The largest share of the leaves that the smallest queries may visit on
+	 * average.
+	 */
+	static final double MAX_LEAF_FRACTION = 0.5;
+
+	/** The smallest number of leaves for which the share is meaningful. */
+	static final int MIN_LEAVES = 4;
+
+	/**
+	 * The results of the queries of one selectivity.
+	 */
+	public static final class QuerySet {
+
+		private final double selectivity;
+		private final long[] indexedNanos = new long[QUERIES];
+		private final long[] scanNanos = new long[QUERIES];
+		private long rows;
+		private long nodesVisited;
+		private long leavesVisited;
+		private int mismatches;
+
+		QuerySet(final double selectivity) {
+			this.selectivity = selectivity;
+		}
+
+		/**
+		 * @return The share of the extent covered by each query box.
+		 */
+		public double getSelectivity() {
+			return this.selectivity;
+		}
+
+		/**
+		 * @return The mean number of tree nodes a query visits.
+		 */
+		public double getMeanNodesVisited() {
+			return (double) this.nodesVisited / QUERIES;
+		}
+
+		/**
+		 * @return The number of queries for which the RTree and the scan of
+		 *         the feature table count different rows.
+		 */
+		public int getMismatches() {
+			return this.mismatches;
+		}
+
+		/**
+		 * @return The total time of the table scans divided by the total time
+		 *         of the indexed queries.
+		 */
+		public double getSpeedup() {
+			final long indexed = Arrays.stream(this.indexedNanos).sum();
+			return indexed == 0 ? 0 : (double) Arrays.stream(this.scanNanos).sum() / indexed;
+		}
+
+		private String describe(final long leaves) {
+			return String.format(Locale.ROOT,
+					"%s%% of extent: %.1f rows, %.1f nodes (%.0f%% of leaves) visited, p50 %.2f ms / p99 %.2f ms indexed, p50 %.2f ms scanned, speedup %.1f",
+					this.selectivity * 100, (double) this.rows / QUERIES, getMeanNodesVisited(),
+					leaves == 0 ? 0 : 100.0 * this.leavesVisited / (QUERIES * leaves),
+					percentile(this.indexedNanos, 50) / 1e6, percentile(this.indexedNanos, 99) / 1e6,
+					percentile(this.scanNanos, 50) / 1e6, getSpeedup());
+		}
+	}
+
+	/**
+	 * The benchmark results of one RTree.
+	 */
+	public static final class Report {
+
+		private final List<QuerySet> querySets = new ArrayList<>();
+		private long nodes;
+		private long leaves;
+
+		/**
+		 * @return The results by selectivity, smallest first; empty if the
+		 *         tree is empty.
+		 */
+		public List<QuerySet> getQuerySets() {
+			return this.querySets;
+		}
+
+		/**
+		 * @return The number of leaf nodes.
+		 */
+		public long getLeaves() {
+			return this.leaves;
+		}
+
+		/**
+		 * @return {@code true} if the smallest queries visit more than
+		 *         {@value RTreeIndexBenchmark#MAX_LEAF_FRACTION} of the leaves
+		 *         on average.
+		 */
+		public boolean isIneffective() {
+			if (this.querySets.isEmpty() || this.leaves < MIN_LEAVES) {
+				return false;
+			}
+			return this.querySets.get(0).leavesVisited > MAX_LEAF_FRACTION * QUERIES * this.leaves;
+		}
+
+		/**
+		 * @return The number of queries for which the RTree and the scan of
+		 *         the feature table count different rows.
+		 */
+		public int getMismatches() {
+			return this.querySets.stream().mapToInt(QuerySet::getMismatches).sum();
+		}
+
+		@Override
+		public String toString() {
+			final StringBuilder sb = new StringBuilder(
+					String.format("%d nodes (%d leaves)", this.nodes, this.leaves));
+			for (final QuerySet querySet : this.querySets) {
+				sb.append("; ").append(querySet.describe(this.leaves));
+			}
+			return sb.toString();
+		}
+	}
+
+	/** The decoded cells of an internal node. */
+	private static final class Node {
+
+		final long[] children;
+		final float[] boxes;
+
+		Node(final byte[] data) {
+			final int cells = RTreeStructureChecker.readUnsignedShort(data, 2);
+			final ByteBuffer buffer = ByteBuffer.wrap(data);
+			this.children = new long[cells];
+			this.boxes = new float[cells * 4];
+			for (int cell = 0; cell < cells; cell++) {
+				final int offset = 4 + cell * RTreeStructureChecker.CELL_SIZE;
+				this.children[cell] = buffer.getLong(offset);
+				for (int i = 0; i < 4; i++) {
+					this.boxes[cell * 4 + i] = buffer.getFloat(offset + Long.BYTES + i * Float.BYTES);
+				}
+			}
+		}
+
+		boolean overlaps(final int cell, final double[] query) {
+			final int i = cell * 4;
+			return this.boxes[i] <= query[1] && this.boxes[i + 1] >= query[0] && this.boxes[i + 2] <= query[3]
+					&& this.boxes[i + 3] >= query[2];
+		}
+	}
+
+	private final Connection connection;
+
+	/**
+	 * @param connection
+	 *            A connection to the GeoPackage; the SQLite driver must
+	 *            include the R*Tree module.
+	 */
+	public RTreeIndexBenchmark(final Connection connection) {
+		this.connection = connection;
+	}
+
+	/**
+	 * Runs the queries against the RTree of a column. The tree should have
+	 * been checked by {@link RTreeStructureChecker} first.
+	 *
+	 * @param tableName
+	 *            The name of the feature table.
+	 * @param columnName
+	 *            The name of the geometry column.
+	 * @return The results.
+	 * @throws SQLException
+	 *             If the tables cannot be read, e.g. because the driver has
+	 *             no R*Tree module.
+	 */
+	public Report run(final String tableName, final String columnName) throws SQLException {
+		final String rtreeName = "rtree_" + tableName + "_" + columnName;
+		final Report report = new Report();
+		final Map<Long, Node> internalNodes = new HashMap<>();
+		final int depth = loadInternalNodes(rtreeName, internalNodes, report);
+		final Node root = internalNodes.get(1L);
+		if (null == root || root.children.length == 0) {
+			return report;
+		}
+		final double[] extent = { Double.MAX_VALUE, -Double.MAX_VALUE, Double.MAX_VALUE, -Double.MAX_VALUE };
+		for (int cell = 0; cell < root.children.length; cell++) {
+			extent[0] = Math.min(extent[0], root.boxes[cell * 4]);
+			extent[1] = Math.max(extent[1], root.boxes[cell * 4 + 1]);
+			extent[2] = Math.min(extent[2], root.boxes[cell * 4 + 2]);
+			extent[3] = Math.max(extent[3], root.boxes[cell * 4 + 3]);
+		}
+		final List<QuerySet> querySets = new ArrayList<>();
+		final List<double[]> boxes = new ArrayList<>();
+		final Random random = new Random(SEED);
+		for (final double selectivity : SELECTIVITIES) {
+			querySets.add(new QuerySet(selectivity));
+			final double width = (extent[1] - extent[0]) * Math.sqrt(selectivity);
+			final double height = (extent[3] - extent[2]) * Math.sqrt(selectivity);
+			for (int query = 0; query < QUERIES; query++) {
+				final double minX = extent[0] + random.nextDouble() * (extent[1] - extent[0] - width);
+				final double minY = extent[2] + random.nextDouble() * (extent[3] - extent[2] - height);
+				boxes.add(new double[] { minX, minX + width, minY, minY + height });
+			}
+		}
+		final long[] indexedRows = new long[boxes.size()];
+		try (final PreparedStatement indexed = this.connection.prepareStatement(String.format(
+				"SELECT count(*) FROM %s AS t JOIN %s AS r ON t.rowid = r.id WHERE r.minx <= ? AND r.maxx >= ? AND r.miny <= ? AND r.maxy >= ?",
+				quoteIdentifier(tableName), quoteIdentifier(rtreeName)))) {
+			// warm the page cache, so that the first timed query is not slower
+			count(indexed, extent);
+			for (int i = 0; i < boxes.size(); i++) {
+				final QuerySet querySet = querySets.get(i / QUERIES);
+				final long start = System.nanoTime();
+				indexedRows[i] = count(indexed, boxes.get(i));
+				querySet.indexedNanos[i % QUERIES] = System.nanoTime() - start;
+				querySet.rows += indexedRows[i];
+				visit(internalNodes, root, depth, boxes.get(i), querySet);
+				querySet.nodesVisited++;
+			}
+		}
+		final long start = System.nanoTime();
+		final long[] scannedRows = scanTable(tableName, columnName, boxes);
+		final long scanNanos = System.nanoTime() - start;
+		for (int i = 0; i < boxes.size(); i++) {
+			final QuerySet querySet = querySets.get(i / QUERIES);
+			querySet.scanNanos[i % QUERIES] = scanNanos;
+			if (indexedRows[i] != scannedRows[i]) {
+				querySet.mismatches++;
+			}
+		}
+		report.querySets.addAll(querySets);
+		return report;
+	}
+
+	/**
+	 * Reads the bounds of every geometry of the feature table and counts the
+	 * rows that each query box overlaps. Like the RTree, it leaves out NULL
+	 * and empty geometries; geometries that cannot be decoded are left out
+	 * too, as they are reported by the feature tests.
+	 *
+	 * @return The number of rows of each box.
+	 */
+	private long[] scanTable(final String tableName, final String columnName, final List<double[]> boxes)
+			throws SQLException {
+		final long[] rows = new long[boxes.size()];
+		try (final Statement statement = this.connection.createStatement();
+				final ResultSet resultSet = statement.executeQuery(
+						String.format("SELECT %s FROM %s", quoteIdentifier(columnName), quoteIdentifier(tableName)))) {
+			while (resultSet.next()) {
+				final float[] bounds = readBounds(resultSet.getBytes(1));
+				if (null == bounds) {
+					continue;
+				}
+				for (int i = 0; i < rows.length; i++) {
+					final double[] box = boxes.get(i);
+					if (bounds[0] <= box[1] && bounds[1] >= box[0] && bounds[2] <= box[3] && bounds[3] >= box[2]) {
+						rows[i]++;
+					}
+				}
+			}
+		}
+		return rows;
+	}
+
+	/**
+	 * Reads the x/y bounds of a geometry, rounded outwards to single
+	 * precision.
+	 *
+	 * @return The bounds (minx, maxx, miny, maxy), or {@code null} if the
+	 *         geometry is NULL, empty or cannot be decoded.
+	 */
+	static float[] readBounds(final byte[] blob) {
+		if (null == blob) {
+			return null;
+		}
+		double[] bounds;
+		try {
+			final GeometryHeader header = GeometryHeader.parse(blob);
+			if (header.isEmpty()) {
+				return null;
+			}
+			bounds = header.getEnvelope();
+			if (bounds.length == 0) {
+				bounds = WKBReader.newBounds();
+				new WKBReader(blob, header.getWkbOffset()).readBounds(bounds);
+			}
+		} catch (IllegalArgumentException e) {
+			return null;
+		}
+		if (!(bounds[0] <= bounds[1] && bounds[2] <= bounds[3])) {
+			return null;
+		}
+		return new float[] { roundDown(bounds[0]), roundUp(bounds[1]), roundDown(bounds[2]), roundUp(bounds[3]) };
+	}
+
+	private static float roundDown(final double value) {
+		final float rounded = (float) value;
+		return rounded > value ? Math.nextDown(rounded) : rounded;
+	}
+
+	private static float roundUp(final double value) {
+		final float rounded = (float) value;
+		return rounded < value ? Math.nextUp(rounded) : rounded;
+	}
+
+	/**
+	 * Loads the internal nodes, one level at a time from the root; the
+	 * leaves are only counted.
+	 *
+	 * @return The depth of the tree.
+	 */
+	private int loadInternalNodes(final String rtreeName, final Map<Long, Node> nodes, final Report report)
+			throws SQLException {
+		try (final PreparedStatement statement = this.connection
+				.prepareStatement("SELECT data FROM " + quoteIdentifier(rtreeName + "_node") + " WHERE nodeno = ?")) {
+			final byte[] rootData = readNode(statement, 1);
+			if (null == rootData || rootData.length < 4) {
+				return 0;
+			}
+			final int depth = RTreeStructureChecker.readUnsignedShort(rootData, 0);
+			List<Long> level = new ArrayList<>();
+			level.add(1L);
+			for (int height = depth; height > 0 && !level.isEmpty(); height--) {
+				final List<Long> next = new ArrayList<>();
+				for (final long nodeno : level) {
+					final byte[] data = nodeno == 1 ? rootData : readNode(statement, nodeno);
+					if (null == data || nodes.containsKey(nodeno)) {
+						continue;
+					}
+					final Node node = new Node(data);
+					nodes.put(nodeno, node);
+					for (final long child : node.children) {
+						next.add(child);
+					}
+				}
+				report.nodes += level.size();
+				level = next;
+			}
+			report.nodes += level.size();
+			report.leaves = level.size();
+			if (depth == 0) {
+				// the root is the only node and a leaf; its cells are entries
+				nodes.put(1L, new Node(rootData));
+			}
+			return depth;
+		}
+	}
+
+	/**
+	 * Counts the nodes below an internal node that a query visits.
+	 */
+	private static void visit(final Map<Long, Node> nodes, final Node node, final int height, final double[] query,
+			final QuerySet querySet) {
+		if (height == 0) {
+			querySet.leavesVisited++;
+			return;
+		}
+		for (int cell = 0; cell < node.children.length; cell++) {
+			if (node.overlaps(cell, query)) {
+				querySet.nodesVisited++;
+				if (height == 1) {
+					querySet.leavesVisited++;
+				} else {
+					final Node child = nodes.get(node.children[cell]);
+					if (null != child) {
+						visit(nodes, child, height - 1, query, querySet);
+					}
+				}
+			}
+		}
+	}
+
+	private static byte[] readNode(final PreparedStatement statement, final long nodeno) throws SQLException {
+		statement.setLong(1, nodeno);
+		try (final ResultSet resultSet = statement.executeQuery()) {
+			return resultSet.next() ? resultSet.getBytes(1) : null;
+		}
+	}
+
+	private static long count(final PreparedStatement statement, final double[] box) throws SQLException {
+		statement.setDouble(1, box[1]);
+		statement.setDouble(2, box[0]);
+		statement.setDouble(3, box[3]);
+		statement.setDouble(4, box[2]);
+		try (final ResultSet resultSet = statement.executeQuery()) {
+			return resultSet.next() ? resultSet.getLong(1) : 0;
+		}
+	}
+
+	private static long percentile(final long[] values, final double percent) {
+		final long[] sorted = values.clone();
+		Arrays.sort(sorted);
+		return sorted[Math.max(0, (int) Math.ceil(sorted.length * percent / 100) - 1)];
+	}
+}
@@ -3,14 +3,20 @@ package org.opengis.cite.gpkg12.extensions.rtreeindex;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
 import java.util.regex.Pattern;
 
 import org.opengis.cite.gpkg12.CommonFixture;
 import org.opengis.cite.gpkg12.ErrorMessage;
 import org.opengis.cite.gpkg12.ErrorMessageKeys;
+import org.opengis.cite.gpkg12.TestRunArg;
 import org.opengis.cite.gpkg12.util.DatabaseUtility;
+import org.opengis.cite.gpkg12.util.TestSuiteLogger;
 import org.testng.Assert;
 import org.testng.ITestContext;
+import org.testng.Reporter;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
 
@@ -219,4 +225,95 @@ public class RTreeIndexTests extends CommonFixture {
 			}
 		}
 	}
+
+	/**
+	 * The shadow tables of the RTree of each spatially indexed column SHALL
+	 * form a consistent SQLite R*Tree: every node is reached from the root
+	 * at the depth the root gives, the box of every cell lies within the box
+	 * of its parent cell, and the {@code _parent} and {@code _rowid} tables
+	 * agree with the nodes. A damaged tree returns wrong results for bounding
+	 * box queries, and a badly filled one makes them slow, so the depth,
+	 * fanout and fill factor of every tree are reported as well.
+	 *
+	 * @throws SQLException on any error
+	 *
+	 * @see <a href="http://www.geopackage.org/spec/#r77" target=
+	 *      "_blank">Requirement 77</a>
+	 */
+	@Test(description = "See OGC 12-128r14: Requirement 77")
+	public void extensionIndexStructure() throws SQLException
+	{
+		final RTreeStructureChecker checker = new RTreeStructureChecker(this.databaseConnection);
+		final List<String> problems = new ArrayList<>();
+		try (
+				final Statement statement = this.databaseConnection.createStatement();
+				ResultSet resultSet = statement.executeQuery("SELECT table_name, column_name FROM gpkg_geometry_columns WHERE table_name IN (SELECT table_name FROM gpkg_extensions WHERE extension_name == 'gpkg_rtree_index')");
+				) {
+			while (resultSet.next()) {
+				final String rtreeName = String.format("rtree_%s_%s", resultSet.getString("table_name"), resultSet.getString("column_name"));
+				if (!DatabaseUtility.doesTableOrViewExist(this.databaseConnection, rtreeName + "_node")) {
+					problems.add(String.format("%s: the shadow table %s_node is missing", rtreeName, rtreeName));
+					continue;
+				}
+				final RTreeStructureChecker.Report report = checker.check(rtreeName);
+				if (report.isValid()) {
+					final String statistics = String.format("%s: %s", rtreeName, report.describeStatistics());
+					TestSuiteLogger.log(Level.FINE, statistics);
+					Reporter.log(statistics);
+				} else {
+					problems.add(String.format("%s: %s", rtreeName, report));
+				}
+			}
+		}
+		Assert.assertTrue(problems.isEmpty(), ErrorMessage.format(ErrorMessageKeys.INVALID_RTREE_STRUCTURE, String.join("; ", problems)));
+	}
+
+	/**
+	 * Benchmarks the RTree of each spatially indexed column, if the
+	 * {@code index_benchmark} test run argument is "true"; otherwise the test
+	 * passes without running any query. A fixed set of
+	 * bounding box queries at several selectivities is run through the RTree
+	 * and compared with a scan of the feature table; the speedup, latencies
+	 * and nodes visited are reported. The test fails if the RTree and the
+	 * geometries of the table disagree,
+	 * or if the smallest queries visit most of the leaves of a tree, which
+	 * makes the index useless to clients.
+	 *
+	 * @param testContext the ITestContext to use
+	 * @throws SQLException on any error
+	 */
+	@Test(description = "See OGC 12-128r14: Annex F.3 (informative)")
+	public void extensionIndexPerformance(ITestContext testContext) throws SQLException
+	{
+		final String enabled = testContext.getSuite().getXmlSuite().getParameters().get(TestRunArg.INDEX_BENCHMARK.toString());
+		if (!Boolean.parseBoolean(enabled)) {
+			// not a skip, which would show in every default run
+			final String message = ErrorMessage.format(ErrorMessageKeys.INDEX_BENCHMARK_DISABLED, TestRunArg.INDEX_BENCHMARK);
+			TestSuiteLogger.log(Level.FINE, message);
+			Reporter.log(message);
+			return;
+		}
+		final RTreeIndexBenchmark benchmark = new RTreeIndexBenchmark(this.databaseConnection);
+		final List<String> problems = new ArrayList<>();
+		try (
+				final Statement statement = this.databaseConnection.createStatement();
+				ResultSet resultSet = statement.executeQuery("SELECT table_name, column_name FROM gpkg_geometry_columns WHERE table_name IN (SELECT table_name FROM gpkg_extensions WHERE extension_name == 'gpkg_rtree_index')");
+				) {
+			while (resultSet.next()) {
+				final String tableName = resultSet.getString("table_name");
+				final String columnName = resultSet.getString("column_name");
+				final RTreeIndexBenchmark.Report report = benchmark.run(tableName, columnName);
+				final String result = String.format("rtree_%s_%s: %s", tableName, columnName, report);
+				TestSuiteLogger.log(Level.INFO, result);
+				Reporter.log(result);
+				if (report.getMismatches() > 0) {
+					problems.add(String.format("rtree_%s_%s: %d queries count other rows than a scan of the feature table", tableName, columnName, report.getMismatches()));
+				}
+				if (report.isIneffective()) {
+					problems.add(result);
+				}
+			}
+		}
+		Assert.assertTrue(problems.isEmpty(), ErrorMessage.format(ErrorMessageKeys.RTREE_INDEX_INEFFECTIVE, String.join("; ", problems)));
+	}
 }
@@ -0,0 +1,403 @@
+package org.opengis.cite.gpkg12.extensions.rtreeindex;
+
+import static org.opengis.cite.gpkg12.util.GeoPackageQueries.quoteIdentifier;
+
+import java.nio.ByteBuffer;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Checks the structure of an SQLite R*Tree from its shadow tables:
+ * {@code <rtree>_node} holds the nodes as blobs, {@code <rtree>_parent} the
+ * parent of every node but the root, and {@code <rtree>_rowid} the leaf node
+ * of every entry. The node blobs are decoded directly (a two byte depth, used
+ * only in the root, a two byte cell count, then cells of a 64-bit rowid or
+ * child node number and four 32-bit floats: minx, maxx, miny, maxy, all big
+ * endian), which is much faster than probing the virtual table with SQL, and
+ * does not need the R*Tree module to be compiled into the driver.
+ *
+ * <p>
+ * Each shadow table is read in one sequential scan: the nodes and parents are
+ * kept in memory (the nodes take about as much space as the tree on disk),
+ * and {@code _rowid} is reduced to the set of leaf nodes and a hash of its
+ * rows. The tree is then walked one level at a time from the root, node 1,
+ * whose depth gives the level of the leaves. A node that {@code _rowid} names
+ * as a leaf but that is reached above that level is reported as a leaf at the
+ * wrong depth. Every child box must lie within the box of its parent cell,
+ * every non-root node must be recorded under its parent, and every node and
+ * every {@code _rowid} row must be reached by the walk. The leaf entries are
+ * compared with {@code _rowid} through a count and an order-independent hash;
+ * the rows are only looked up one by one if they differ, to name the first
+ * wrong entry.
+ * </p>
+ *
+ * @see <a href="https://www.sqlite.org/rtree.html" target="_blank">The SQLite
+ *      R*Tree Module</a>
+ */
+public class RTreeStructureChecker {
+
+	/** The deepest tree SQLite builds. */
+	static final int MAX_DEPTH = 40;
+
+	/** The size of a cell of a two-dimensional tree. */
+	static final int CELL_SIZE = Long.BYTES + 4 * Float.BYTES;
+
+	/** The maximum number of problems described in a report. */
+	static final int MAX_PROBLEMS = 10;
+
+	/**
+	 * The problems and statistics of one tree.
+	 */
+	public static final class Report {
+
+		private final List<String> problems = new ArrayList<>();
+		private long problemCount;
+		private int depth;
+		private long nodes;
+		private long leaves;
+		private long entries;
+		private int maxCells;
+		private long internalNodes;
+		private long children;
+		private int minFanout = Integer.MAX_VALUE;
+		private int maxFanout;
+		private long nonRootNodes;
+		private long nonRootCells;
+
+		void problem(final String format, final Object... args) {
+			if (this.problems.size() < MAX_PROBLEMS) {
+				this.problems.add(String.format(format, args));
+			}
+			this.problemCount++;
+		}
+
+		/**
+		 * @return {@code true} if no problem was found.
+		 */
+		public boolean isValid() {
+			return this.problemCount == 0;
+		}
+
+		/**
+		 * @return The descriptions of the first {@value #MAX_PROBLEMS}
+		 *         problems.
+		 */
+		public List<String> getProblems() {
+			return this.problems;
+		}
+
+		/**
+		 * @return The depth of the tree: 0 if the root is a leaf.
+		 */
+		public int getDepth() {
+			return this.depth;
+		}
+
+		/**
+		 * @return The number of nodes reached from the root.
+		 */
+		public long getNodes() {
+			return this.nodes;
+		}
+
+		/**
+		 * @return The number of leaf nodes.
+		 */
+		public long getLeaves() {
+			return this.leaves;
+		}
+
+		/**
+		 * @return The number of entries in the leaves.
+		 */
+		public long getEntries() {
+			return this.entries;
+		}
+
+		/**
+		 * @return The mean number of children of the internal nodes, or 0 if
+		 *         the root is a leaf.
+		 */
+		public double getMeanFanout() {
+			return this.internalNodes == 0 ? 0 : (double) this.children / this.internalNodes;
+		}
+
+		/**
+		 * @return The mean share of the cells used in the nodes other than the
+		 *         root (or in the root, if it is the only node), from 0 to 1.
+		 */
+		public double getFillFactor() {
+			if (this.maxCells == 0) {
+				return 0;
+			}
+			return this.nonRootNodes == 0 ? (double) this.entries / this.maxCells
+					: (double) this.nonRootCells / (this.nonRootNodes * this.maxCells);
+		}
+
+		/**
+		 * @return A one-line summary of the shape of the tree.
+		 */
+		public String describeStatistics() {
+			return String.format(Locale.ROOT,
+					"depth %d, %d nodes (%d leaves), %d entries, fanout %s, fill factor %.0f%% of %d cells per node",
+					this.depth, this.nodes, this.leaves, this.entries,
+					this.internalNodes == 0 ? "-"
+							: String.format(Locale.ROOT, "%d-%d (mean %.1f)", this.minFanout, this.maxFanout,
+									getMeanFanout()),
+					100 * getFillFactor(), this.maxCells);
+		}
+
+		@Override
+		public String toString() {
+			if (isValid()) {
+				return describeStatistics();
+			}
+			final StringBuilder sb = new StringBuilder(String.join("; ", this.problems));
+			if (this.problemCount > this.problems.size()) {
+				sb.append(String.format("; and %d more", this.problemCount - this.problems.size()));
+			}
+			return sb.toString();
+		}
+	}
+
+	/** A node to visit, with the cell of its parent that points to it. */
+	private static final class Pending {
+
+		final long nodeno;
+		final long parent;
+		final float[] box;
+
+		Pending(final long nodeno, final long parent, final float[] box) {
+			this.nodeno = nodeno;
+			this.parent = parent;
+			this.box = box;
+		}
+	}
+
+	private final Connection connection;
+
+	/**
+	 * @param connection
+	 *            A connection to the GeoPackage.
+	 */
+	public RTreeStructureChecker(final Connection connection) {
+		this.connection = connection;
+	}
+
+	/**
+	 * Checks the structure of an R*Tree.
+	 *
+	 * @param rtreeName
+	 *            The name of the R*Tree virtual table (e.g. "rtree_t_c").
+	 * @return The problems found and the statistics of the tree.
+	 * @throws SQLException
+	 *             If a shadow table cannot be read.
+	 */
+	public Report check(final String rtreeName) throws SQLException {
+		final Report report = new Report();
+		final String nodeTable = quoteIdentifier(rtreeName + "_node");
+		final String parentTable = quoteIdentifier(rtreeName + "_parent");
+		final String rowidTable = quoteIdentifier(rtreeName + "_rowid");
+		final Map<Long, byte[]> nodes = readNodes(nodeTable);
+		final Map<Long, Long> parents = readParents(parentTable);
+		final Set<Long> rowidLeaves = new HashSet<>();
+		long rowidRows = 0;
+		long rowidHash = 0;
+		try (final Statement statement = this.connection.createStatement();
+				final ResultSet resultSet = statement.executeQuery("SELECT rowid, nodeno FROM " + rowidTable)) {
+			while (resultSet.next()) {
+				rowidRows++;
+				rowidLeaves.add(resultSet.getLong(2));
+				rowidHash += hash(resultSet.getLong(1), resultSet.getLong(2));
+			}
+		}
+		final Set<Long> visited = new HashSet<>();
+		final List<Long> leafNodes = new ArrayList<>();
+		long leafHash = 0;
+		final byte[] root = nodes.get(1L);
+		if (null == root || root.length < 4) {
+			report.problem("the root node is missing");
+			return report;
+		}
+		report.depth = readUnsignedShort(root, 0);
+		if (report.depth > MAX_DEPTH) {
+			report.problem("the root node gives a depth of %d", report.depth);
+			return report;
+		}
+		report.maxCells = (root.length - 4) / CELL_SIZE;
+		List<Pending> level = new ArrayList<>();
+		level.add(new Pending(1, 0, null));
+		for (int height = report.depth; height >= 0 && !level.isEmpty(); height--) {
+			final List<Pending> next = new ArrayList<>();
+			for (final Pending pending : level) {
+				if (!visited.add(pending.nodeno)) {
+					report.problem("node %d is referenced more than once", pending.nodeno);
+					continue;
+				}
+				final byte[] node = nodes.get(pending.nodeno);
+				if (null == node) {
+					report.problem("node %d, a child of node %d, is missing", pending.nodeno, pending.parent);
+					continue;
+				}
+				if (pending.nodeno != 1) {
+					final Long parent = parents.get(pending.nodeno);
+					if (null == parent || parent != pending.parent) {
+						report.problem("node %d has parent %s in %s instead of %d", pending.nodeno, parent,
+								parentTable, pending.parent);
+					}
+				}
+				final int cells = node.length < 4 ? -1 : readUnsignedShort(node, 2);
+				if (cells < 0 || 4 + cells * CELL_SIZE > node.length) {
+					report.problem("node %d holds more cells than fit in it", pending.nodeno);
+					continue;
+				}
+				if (cells == 0 && pending.nodeno != 1) {
+					report.problem("node %d is empty", pending.nodeno);
+				}
+				// a node that _rowid maps entries to, and whose cells are not
+				// nodes recorded under it, is a leaf whatever its level
+				final boolean leaf = height == 0 || pending.nodeno != 1 && rowidLeaves.contains(pending.nodeno)
+						&& (cells == 0 || !Long.valueOf(pending.nodeno).equals(parents.get(readLong(node, 4))));
+				if (leaf && height > 0) {
+					report.problem("node %d, a child of node %d, is a leaf at depth %d instead of %d",
+							pending.nodeno, pending.parent, report.depth - height, report.depth);
+				}
+				report.nodes++;
+				if (pending.nodeno != 1) {
+					report.nonRootNodes++;
+					report.nonRootCells += cells;
+				}
+				if (leaf) {
+					report.leaves++;
+					report.entries += cells;
+					leafNodes.add(pending.nodeno);
+				} else {
+					report.internalNodes++;
+					report.children += cells;
+					report.minFanout = Math.min(report.minFanout, cells);
+					report.maxFanout = Math.max(report.maxFanout, cells);
+				}
+				final ByteBuffer buffer = ByteBuffer.wrap(node);
+				for (int cell = 0; cell < cells; cell++) {
+					final int offset = 4 + cell * CELL_SIZE;
+					final long id = buffer.getLong(offset);
+					final float[] box = new float[4];
+					for (int i = 0; i < box.length; i++) {
+						box[i] = buffer.getFloat(offset + Long.BYTES + i * Float.BYTES);
+					}
+					if (!(box[0] <= box[1] && box[2] <= box[3])) {
+						report.problem("cell %d of node %d has an invalid box %s", cell, pending.nodeno,
+								describe(box));
+					} else if (null != pending.box && !contains(pending.box, box)) {
+						report.problem("cell %d of node %d %s lies outside the box %s of the node in node %d", cell,
+								pending.nodeno, describe(box), describe(pending.box), pending.parent);
+					}
+					if (leaf) {
+						leafHash += hash(id, pending.nodeno);
+					} else {
+						next.add(new Pending(id, pending.nodeno, box));
+					}
+				}
+			}
+			level = next;
+		}
+		if (nodes.size() != visited.size()) {
+			report.problem("%s has %d nodes, of which %d are reached from the root", nodeTable, nodes.size(),
+					visited.size());
+		}
+		if (parents.size() != visited.size() - 1) {
+			report.problem("%s has %d rows for %d non-root nodes", parentTable, parents.size(), visited.size() - 1);
+		}
+		if (rowidRows != report.entries || rowidHash != leafHash) {
+			findRowidMismatch(report, rowidTable, nodes, leafNodes, rowidRows);
+		}
+		return report;
+	}
+
+	/**
+	 * Names the first leaf entry that {@code _rowid} maps to another node, or
+	 * else the difference in the number of rows.
+	 */
+	private void findRowidMismatch(final Report report, final String rowidTable, final Map<Long, byte[]> nodes,
+			final List<Long> leafNodes, final long rowidRows) throws SQLException {
+		try (final PreparedStatement rowidStatement = this.connection
+				.prepareStatement("SELECT nodeno FROM " + rowidTable + " WHERE rowid = ?")) {
+			for (final long leaf : leafNodes) {
+				final ByteBuffer buffer = ByteBuffer.wrap(nodes.get(leaf));
+				final int cells = readUnsignedShort(buffer.array(), 2);
+				for (int cell = 0; cell < cells; cell++) {
+					final long id = buffer.getLong(4 + cell * CELL_SIZE);
+					rowidStatement.setLong(1, id);
+					try (final ResultSet resultSet = rowidStatement.executeQuery()) {
+						final Long mapped = resultSet.next() ? resultSet.getLong(1) : null;
+						if (null == mapped || mapped != leaf) {
+							report.problem("entry %d of leaf node %d is mapped to node %s in %s", id, leaf, mapped,
+									rowidTable);
+							return;
+						}
+					}
+				}
+			}
+		}
+		report.problem("%s has %d rows for %d leaf entries", rowidTable, rowidRows, report.entries);
+	}
+
+	private Map<Long, byte[]> readNodes(final String nodeTable) throws SQLException {
+		final Map<Long, byte[]> nodes = new HashMap<>();
+		try (final Statement statement = this.connection.createStatement();
+				final ResultSet resultSet = statement.executeQuery("SELECT nodeno, data FROM " + nodeTable)) {
+			while (resultSet.next()) {
+				nodes.put(resultSet.getLong(1), resultSet.getBytes(2));
+			}
+		}
+		return nodes;
+	}
+
+	private Map<Long, Long> readParents(final String parentTable) throws SQLException {
+		final Map<Long, Long> parents = new HashMap<>();
+		try (final Statement statement = this.connection.createStatement();
+				final ResultSet resultSet = statement.executeQuery("SELECT nodeno, parentnode FROM " + parentTable)) {
+			while (resultSet.next()) {
+				parents.put(resultSet.getLong(1), resultSet.getLong(2));
+			}
+		}
+		return parents;
+	}
+
+	private static long readLong(final byte[] data, final int offset) {
+		return ByteBuffer.wrap(data).getLong(offset);
+	}
+
+	static int readUnsignedShort(final byte[] data, final int offset) {
+		return (data[offset] & 0xFF) << 8 | (data[offset + 1] & 0xFF);
+	}
+
+	private static boolean contains(final float[] outer, final float[] inner) {
+		return outer[0] <= inner[0] && inner[1] <= outer[1] && outer[2] <= inner[2] && inner[3] <= outer[3];
+	}
+
+	private static String describe(final float[] box) {
+		return String.format(Locale.ROOT, "(%s %s, %s %s)", box[0], box[2], box[1], box[3]);
+	}
+
+	/**
+	 * Hashes an entry and its leaf node; the sum of the hashes of a set of
+	 * entries does not depend on their order.
+	 */
+	static long hash(final long rowid, final long nodeno) {
+		long h = rowid * 0x9E3779B97F4A7C15L + nodeno;
+		h = (h ^ (h >>> 30)) * 0xBF58476D1CE4E5B9L;
+		h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+		return h ^ (h >>> 31);
+	}
+}
@@ -2,7 +2,6 @@ package org.opengis.cite.gpkg12.extensions.webp;
 
 import static org.testng.Assert.assertTrue;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -16,7 +15,7 @@ import java.util.stream.StreamSupport;
 
 import javax.imageio.ImageIO;
 import javax.imageio.ImageReader;
-import javax.imageio.stream.MemoryCacheImageInputStream;
+import javax.imageio.stream.ImageInputStream;
 
 import org.opengis.cite.gpkg12.ErrorMessage;
 import org.opengis.cite.gpkg12.ErrorMessageKeys;
@@ -177,10 +176,8 @@ public class WebPTests extends TileTests {
             return false;
         }
 
-        final ByteArrayInputStream        byteArray  = new ByteArrayInputStream(image);
-        try (final MemoryCacheImageInputStream cacheImage = new MemoryCacheImageInputStream(byteArray)) { 
-        	return canReadImage(pngImageReaders, cacheImage) || canReadImage(jpegImageReaders, cacheImage) || canReadImage(webpImageReaders, cacheImage);
-        }
+        final ImageInputStream signature = signatureStream(image);
+        return canReadImage(pngImageReaders, signature) || canReadImage(jpegImageReaders, signature) || canReadImage(webpImageReaders, signature);
     }
 
     private boolean hasExtension = false;
@@ -0,0 +1,85 @@
+package org.opengis.cite.gpkg12.features;
+
+import static org.opengis.cite.gpkg12.util.GeoPackageQueries.quoteIdentifier;
+
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.opengis.cite.gpkg12.util.Envelope;
+import org.opengis.cite.gpkg12.util.PartitionedTableScanner;
+
+/**
+ * Computes the actual extent of the geometries in a feature table. The
+ * envelope in the GeoPackageBinary header is used when one is present;
+ * otherwise the WKB coordinates are walked. Large tables are scanned by a
+ * {@link PartitionedTableScanner}, and the partial extents of the rowid ranges
+ * are merged, so the cost grows linearly with the number of rows and is spread
+ * over the available processors.
+ */
+public class FeatureExtentCalculator extends GeometryColumnScanner {
+
+	/**
+	 * Creates a calculator.
+	 *
+	 * @param scanner
+	 *            Reads the feature tables.
+	 */
+	public FeatureExtentCalculator(final PartitionedTableScanner scanner) {
+		super(scanner);
+	}
+
+	/**
+	 * Computes the x/y extent of the non-empty geometries in a feature table.
+	 * Blobs that cannot be decoded are skipped (they are reported by the
+	 * geometry encoding tests).
+	 *
+	 * @param tableName
+	 *            The name of the feature table (or view).
+	 * @param columnName
+	 *            The name of the geometry column.
+	 * @return The extent; it is empty if the table holds no geometries.
+	 * @throws SQLException
+	 *             If the table cannot be read.
+	 */
+	public Envelope computeExtent(final String tableName, final String columnName) throws SQLException {
+		final AtomicInteger undecodable = new AtomicInteger();
+		final Envelope extent = scanBlobs("extent", tableName, quoteIdentifier(columnName), Envelope::new,
+				(rowid, blob, partial) -> {
+					if (null == blob) {
+						return;
+					}
+					try {
+						addGeometry(blob, partial);
+					} catch (IllegalArgumentException e) {
+						undecodable.incrementAndGet();
+					}
+				}, (lower, upper) -> {
+					lower.expandToInclude(upper);
+					return lower;
+				});
+		logUndecodable(undecodable.get(), tableName);
+		return extent;
+	}
+
+	/**
+	 * Adds the extent of one GeoPackageBinary geometry, preferring the header
+	 * envelope.
+	 *
+	 * @param blob
+	 *            A geometry blob.
+	 * @param extent
+	 *            The envelope to grow.
+	 */
+	static void addGeometry(final byte[] blob, final Envelope extent) {
+		final GeometryHeader header = GeometryHeader.parse(blob);
+		if (header.isEmpty()) {
+			return;
+		}
+		final Envelope envelope = header.getXYEnvelope();
+		if (null != envelope) {
+			extent.expandToInclude(envelope);
+		} else if (!header.isExtended()) {
+			new WKBReader(blob, header.getWkbOffset()).readEnvelope(extent);
+		}
+	}
+}
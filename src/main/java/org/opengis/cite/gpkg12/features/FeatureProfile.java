@@ -0,0 +1,368 @@
+package org.opengis.cite.gpkg12.features;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collection;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Statistics of the geometries in one feature table column: the row count,
+ * the share of NULL and empty geometries and of geometries with a header
+ * envelope, the geometry types and the distributions of the blob sizes and
+ * vertex counts. A profile is gathered by the scan that checks the header
+ * envelopes, so it costs no extra pass over the table; partial profiles of
+ * the scanned rowid ranges are merged like the reports of the scan.
+ */
+public final class FeatureProfile {
+
+	/** The name of the profile file written next to the test results. */
+	public static final String FILE_NAME = "feature-profile.json";
+
+	/** The label of geometries of an extension type. */
+	static final String EXTENSION_TYPE = "extension";
+
+	private String tableName;
+	private String columnName;
+	private long rows;
+	private long nullGeometries;
+	private long emptyGeometries;
+	private long envelopes;
+	private long undecodable;
+	private final Map<String, Long> geometryTypes = new TreeMap<>();
+	private final Distribution blobBytes = new Distribution();
+	private final Distribution vertices = new Distribution();
+
+	/**
+	 * @return The name of the feature table.
+	 */
+	public String getTableName() {
+		return this.tableName;
+	}
+
+	/**
+	 * @return The name of the geometry column.
+	 */
+	public String getColumnName() {
+		return this.columnName;
+	}
+
+	void setColumn(final String tableName, final String columnName) {
+		this.tableName = tableName;
+		this.columnName = columnName;
+	}
+
+	/**
+	 * @return The number of rows, including those with a NULL geometry.
+	 */
+	public long getRows() {
+		return this.rows;
+	}
+
+	/**
+	 * @return The number of NULL geometries.
+	 */
+	public long getNullGeometries() {
+		return this.nullGeometries;
+	}
+
+	/**
+	 * @return The number of geometries flagged as empty in their header.
+	 */
+	public long getEmptyGeometries() {
+		return this.emptyGeometries;
+	}
+
+	/**
+	 * @return The number of geometries with a header envelope.
+	 */
+	public long getEnvelopes() {
+		return this.envelopes;
+	}
+
+	/**
+	 * @return The number of geometries, by type name (e.g. "POINT" or
+	 *         "LINESTRINGZ").
+	 */
+	public Map<String, Long> getGeometryTypes() {
+		return this.geometryTypes;
+	}
+
+	/**
+	 * @return The distribution of the sizes of the non-NULL blobs, in bytes.
+	 */
+	public Distribution getBlobBytes() {
+		return this.blobBytes;
+	}
+
+	/**
+	 * @return The distribution of the vertex counts of the decoded
+	 *         geometries.
+	 */
+	public Distribution getVertices() {
+		return this.vertices;
+	}
+
+	void addNull() {
+		this.rows++;
+		this.nullGeometries++;
+	}
+
+	void addUndecodable(final int blobLength) {
+		this.rows++;
+		this.undecodable++;
+		this.blobBytes.add(blobLength);
+	}
+
+	/**
+	 * Adds a geometry of an extension type, whose WKB is not read.
+	 */
+	void addExtended(final int blobLength, final GeometryHeader header) {
+		addHeader(blobLength, header);
+		count(EXTENSION_TYPE);
+	}
+
+	/**
+	 * Adds a decoded geometry.
+	 */
+	void add(final int blobLength, final GeometryHeader header, final int typeCode, final long vertexCount) {
+		addHeader(blobLength, header);
+		count(typeName(typeCode));
+		this.vertices.add(vertexCount);
+	}
+
+	private void addHeader(final int blobLength, final GeometryHeader header) {
+		this.rows++;
+		this.blobBytes.add(blobLength);
+		if (header.isEmpty()) {
+			this.emptyGeometries++;
+		}
+		if (header.getEnvelopeIndicator() != 0) {
+			this.envelopes++;
+		}
+	}
+
+	private void count(final String typeName) {
+		this.geometryTypes.merge(typeName, 1L, Long::sum);
+	}
+
+	static String typeName(final int typeCode) {
+		final GeometryType type = GeometryType.fromWkbCode(typeCode);
+		if (null == type) {
+			return "WKB type " + typeCode;
+		}
+		return type.name() + (GeometryType.hasZ(typeCode) ? "Z" : "") + (GeometryType.hasM(typeCode) ? "M" : "");
+	}
+
+	void merge(final FeatureProfile other) {
+		this.rows += other.rows;
+		this.nullGeometries += other.nullGeometries;
+		this.emptyGeometries += other.emptyGeometries;
+		this.envelopes += other.envelopes;
+		this.undecodable += other.undecodable;
+		for (final Map.Entry<String, Long> entry : other.geometryTypes.entrySet()) {
+			this.geometryTypes.merge(entry.getKey(), entry.getValue(), Long::sum);
+		}
+		this.blobBytes.merge(other.blobBytes);
+		this.vertices.merge(other.vertices);
+	}
+
+	/**
+	 * Writes the profiles of a GeoPackage as a JSON document.
+	 *
+	 * @param file
+	 *            The file to write; missing parent directories are created.
+	 * @param geoPackage
+	 *            The name of the GeoPackage file.
+	 * @param profiles
+	 *            The profiles of its geometry columns.
+	 * @throws IOException
+	 *             If the file cannot be written.
+	 */
+	public static void write(final File file, final String geoPackage, final Collection<FeatureProfile> profiles)
+			throws IOException {
+		Files.createDirectories(file.getAbsoluteFile().getParentFile().toPath());
+		try (Writer out = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+			out.write("{\n  \"geopackage\": " + quote(geoPackage) + ",\n  \"tables\": [");
+			String separator = "\n";
+			for (final FeatureProfile profile : profiles) {
+				out.write(separator);
+				out.write(profile.toJson("    "));
+				separator = ",\n";
+			}
+			out.write("\n  ]\n}\n");
+		}
+	}
+
+	/**
+	 * @return The profile as a JSON object.
+	 */
+	String toJson(final String indent) {
+		final StringBuilder sb = new StringBuilder(indent).append("{\n");
+		final String inner = indent + "  ";
+		sb.append(inner).append("\"table\": ").append(quote(this.tableName)).append(",\n");
+		sb.append(inner).append("\"column\": ").append(quote(this.columnName)).append(",\n");
+		sb.append(inner).append("\"rows\": ").append(this.rows).append(",\n");
+		sb.append(inner).append("\"nullGeometries\": ").append(this.nullGeometries).append(",\n");
+		sb.append(inner).append("\"nullRatio\": ").append(ratio(this.nullGeometries, this.rows)).append(",\n");
+		sb.append(inner).append("\"emptyGeometries\": ").append(this.emptyGeometries).append(",\n");
+		sb.append(inner).append("\"emptyRatio\": ").append(ratio(this.emptyGeometries, this.rows)).append(",\n");
+		sb.append(inner).append("\"undecodable\": ").append(this.undecodable).append(",\n");
+		sb.append(inner).append("\"envelopes\": ").append(this.envelopes).append(",\n");
+		sb.append(inner).append("\"envelopeRatio\": ")
+				.append(ratio(this.envelopes, this.rows - this.nullGeometries)).append(",\n");
+		sb.append(inner).append("\"geometryTypes\": {");
+		String separator = "";
+		for (final Map.Entry<String, Long> entry : this.geometryTypes.entrySet()) {
+			sb.append(separator).append(quote(entry.getKey())).append(": ").append(entry.getValue());
+			separator = ", ";
+		}
+		sb.append("},\n");
+		sb.append(inner).append("\"blobBytes\": ").append(this.blobBytes.toJson()).append(",\n");
+		sb.append(inner).append("\"vertices\": ").append(this.vertices.toJson()).append('\n');
+		return sb.append(indent).append('}').toString();
+	}
+
+	private static String ratio(final long count, final long total) {
+		return total <= 0 ? "0" : String.format(Locale.ROOT, "%.6f", (double) count / total);
+	}
+
+	static String quote(final String value) {
+		if (null == value) {
+			return "null";
+		}
+		final StringBuilder sb = new StringBuilder(value.length() + 2).append('"');
+		for (int i = 0; i < value.length(); i++) {
+			final char c = value.charAt(i);
+			if (c == '"' || c == '\\') {
+				sb.append('\\').append(c);
+			} else if (c < 0x20) {
+				sb.append(String.format("\\u%04x", (int) c));
+			} else {
+				sb.append(c);
+			}
+		}
+		return sb.append('"').toString();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s.%s: %d rows, %d NULL, %d empty, %d with envelope, types %s", this.tableName,
+				this.columnName, this.rows, this.nullGeometries, this.emptyGeometries, this.envelopes,
+				this.geometryTypes);
+	}
+
+	/**
+	 * The distribution of a non-negative quantity, kept in a fixed number of
+	 * log-linear buckets: values below 16 are counted exactly and larger
+	 * values in eight buckets per power of two, so a percentile is accurate
+	 * to 12.5% whatever the number of values. The minimum, maximum and mean
+	 * are exact.
+	 */
+	public static final class Distribution {
+
+		private static final int EXACT = 16;
+		private static final int SUB_BUCKETS = 8;
+
+		private final long[] counts = new long[EXACT + (Long.SIZE - 5) * SUB_BUCKETS];
+		private long count;
+		private long sum;
+		private long min = Long.MAX_VALUE;
+		private long max = -1;
+
+		void add(final long value) {
+			this.counts[bucket(value)]++;
+			this.count++;
+			this.sum += value;
+			this.min = Math.min(this.min, value);
+			this.max = Math.max(this.max, value);
+		}
+
+		void merge(final Distribution other) {
+			for (int i = 0; i < this.counts.length; i++) {
+				this.counts[i] += other.counts[i];
+			}
+			this.count += other.count;
+			this.sum += other.sum;
+			this.min = Math.min(this.min, other.min);
+			this.max = Math.max(this.max, other.max);
+		}
+
+		private static int bucket(final long value) {
+			if (value < EXACT) {
+				return (int) Math.max(value, 0);
+			}
+			final int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+			final int sub = (int) (value >>> (exponent - 3)) & (SUB_BUCKETS - 1);
+			return EXACT + (exponent - 4) * SUB_BUCKETS + sub;
+		}
+
+		/** @return The largest value that falls in the bucket. */
+		private static long upperBound(final int bucket) {
+			if (bucket < EXACT) {
+				return bucket;
+			}
+			final int exponent = (bucket - EXACT) / SUB_BUCKETS + 4;
+			final long sub = (bucket - EXACT) % SUB_BUCKETS;
+			return ((SUB_BUCKETS + sub + 1) << (exponent - 3)) - 1;
+		}
+
+		/**
+		 * @return The number of values.
+		 */
+		public long getCount() {
+			return this.count;
+		}
+
+		/**
+		 * @return The smallest value, or -1 if there are none.
+		 */
+		public long getMin() {
+			return this.count == 0 ? -1 : this.min;
+		}
+
+		/**
+		 * @return The largest value, or -1 if there are none.
+		 */
+		public long getMax() {
+			return this.max;
+		}
+
+		/**
+		 * Estimates a percentile: the result is the upper bound of the bucket
+		 * holding the value of that rank, capped at the maximum.
+		 *
+		 * @param percent
+		 *            The percentile, from 0 to 100.
+		 * @return The estimate, or -1 if there are no values.
+		 */
+		public long getPercentile(final double percent) {
+			if (this.count == 0) {
+				return -1;
+			}
+			final long rank = Math.max(1, (long) Math.ceil(this.count * percent / 100));
+			long seen = 0;
+			for (int i = 0; i < this.counts.length; i++) {
+				seen += this.counts[i];
+				if (seen >= rank) {
+					return Math.min(upperBound(i), this.max);
+				}
+			}
+			return this.max;
+		}
+
+		String toJson() {
+			if (this.count == 0) {
+				return "{\"count\": 0}";
+			}
+			return String.format(Locale.ROOT,
+					"{\"count\": %d, \"min\": %d, \"mean\": %.1f, \"p50\": %d, \"p90\": %d, \"p99\": %d, \"max\": %d}",
+					this.count, this.min, (double) this.sum / this.count, getPercentile(50), getPercentile(90),
+					getPercentile(99), this.max);
+		}
+	}
+}
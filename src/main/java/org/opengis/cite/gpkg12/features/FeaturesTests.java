@@ -2,8 +2,8 @@ package org.opengis.cite.gpkg12.features;
 
 import static org.testng.Assert.assertTrue;
 
+import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
@@ -11,12 +11,22 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
 
 import org.opengis.cite.gpkg12.CommonFixture;
 import org.opengis.cite.gpkg12.ErrorMessage;
 import org.opengis.cite.gpkg12.ErrorMessageKeys;
 import org.opengis.cite.gpkg12.GPKG12;
+import org.opengis.cite.gpkg12.util.Envelope;
+import org.opengis.cite.gpkg12.util.GeoPackageQueries;
+import org.opengis.cite.gpkg12.util.PartitionedTableScanner;
+import org.opengis.cite.gpkg12.util.TestSuiteLogger;
 import org.testng.Assert;
+import org.testng.ITestContext;
+import org.testng.Reporter;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
 
@@ -43,14 +53,7 @@ public class FeaturesTests extends CommonFixture {
 	 */
 	@BeforeClass
 	public void setUp() throws SQLException {
-		try (
-				final Statement statement = this.databaseConnection.createStatement();
-				final ResultSet resultSet = statement.executeQuery("SELECT table_name FROM gpkg_contents WHERE data_type = 'features';");
-				) {
-			while (resultSet.next()) {
-				this.featureTableNames.add(resultSet.getString(1));
-			}
-		}
+		this.featureTableNames.addAll(this.queries.getContentsTableNames("features"));
 
 		Assert.assertTrue(!this.featureTableNames.isEmpty(), ErrorMessage.format(ErrorMessageKeys.CONFORMANCE_CLASS_NOT_USED, getTestName()));
 	}
@@ -74,15 +77,9 @@ public class FeaturesTests extends CommonFixture {
 	@Test(description = "See OGC 12-128r13: Requirement 29")
 	public void featureTableIntegerPrimaryKey() throws SQLException {
 		for (final String tableName : this.featureTableNames) {
-			try (
-					final Statement statement = this.databaseConnection.createStatement();
-					// 1
-					final ResultSet resultSet = statement.executeQuery(String.format("PRAGMA table_info(%s);", tableName));
-					) {
-				// 2
-				assertTrue(resultSet.next(),
-						ErrorMessage.format(ErrorMessageKeys.MISSING_TABLE, tableName));				
-			}
+			// 1, 2
+			assertTrue(!this.queries.getTableInfo(tableName).isEmpty(),
+					ErrorMessage.format(ErrorMessageKeys.MISSING_TABLE, tableName));
 
 			// 3
 			checkPrimaryKey(tableName, getPrimaryKeyColumn(tableName));
@@ -111,6 +108,7 @@ public class FeaturesTests extends CommonFixture {
 
 				final ResultSet resultSet1 = statement1.executeQuery("SELECT table_name AS tn, column_name AS cn FROM gpkg_geometry_columns WHERE table_name IN (SELECT table_name FROM gpkg_contents WHERE data_type = 'features');");
 				) {
+			final PartitionedTableScanner scanner = newTableScanner();
 			// 2
 			while (resultSet1.next()){
 				final String cn = resultSet1.getString("cn");
@@ -123,49 +121,65 @@ public class FeaturesTests extends CommonFixture {
 					pkColumn = "rowid";
 				}
 
-				try (
-						final Statement statement3 = this.databaseConnection.createStatement();
-						// 3a
-						final ResultSet resultSet3 = statement3.executeQuery(String.format("SELECT %s, %s FROM %s;", cn, pkColumn, tn));
-						) {
-					// 3b
-					while (resultSet3.next()){
-						final int pk = resultSet3.getInt(pkColumn);
-						final byte[] sgbpb = new byte[4];
-
-						// 3c
-						try (InputStream sgpb = resultSet3.getBinaryStream(cn)) {
-							sgpb.read(sgbpb);
-						} catch (NullPointerException npe) {
-							// This exception will be thrown if the geometry BLOB is NULL
-							continue;
-						}
-						catch (IOException e) {
-							// TODO Auto-generated catch block
-							assertTrue(false, ErrorMessage.format(ErrorMessageKeys.FEATURES_BINARY_INVALID, tn, pk, "Couldn't read WKB prefix"));
-						}
-
-						// 3ci
-						final byte[] gp = Arrays.copyOfRange(sgbpb, 0, 2);
-						assertTrue(Arrays.equals(gp, GPKG12.BINARY_GP), ErrorMessage.format(ErrorMessageKeys.FEATURES_BINARY_INVALID, tn, pk, "First two bytes of WKB are wrong."));
-
-						// 3cii
-						assertTrue(sgbpb[2] == 0, ErrorMessage.format(ErrorMessageKeys.FEATURES_BINARY_INVALID, tn, pk, "Third byte of WKB must be 0."));
-
-						// 3ciii
-						assertTrue((sgbpb[3] & 0b00100000) == 0, ErrorMessage.format(ErrorMessageKeys.FEATURES_BINARY_INVALID, tn, pk, "Sixth bit of byte 4 of WKB must be 0."));
-
-						// 3civ
-						final int envelope = (sgbpb[3] & 0b00001110) >> 1;
-						assertTrue(envelope <= 4, ErrorMessage.format(ErrorMessageKeys.FEATURES_BINARY_INVALID, tn, pk, "Envelope type of WKB (byte 4) is invalid."));
-
-						// TODO: 3cv 
-					}					
-				}
+				final String keyColumn = pkColumn;
+				// 3a, 3b: the rows are checked in parallel; the first invalid
+				// blob (in rowid order) is reported
+				final List<String> defects = sharedScan("geometryEncoding:" + tn + "." + cn, () -> scanner.scan("featureGeometryEncodingTableBlob " + tn, tn,
+						String.format("%s, substr(%s, 1, 4)", GeoPackageQueries.quoteIdentifier(keyColumn),
+								GeoPackageQueries.quoteIdentifier(cn)),
+						ArrayList::new, (rowid, row, defect) -> {
+							final byte[] sgbpb = row.getBytes(3);
+							// 3c
+							if (!defect.isEmpty() || null == sgbpb) {
+								// a NULL geometry BLOB is not checked
+								return 0;
+							}
+							final String reason = checkGeometryBlobPrefix(sgbpb);
+							if (null != reason) {
+								defect.add(ErrorMessage.format(ErrorMessageKeys.FEATURES_BINARY_INVALID, tn,
+										row.getInt(2), reason));
+							}
+							return sgbpb.length;
+						}, (lower, upper) -> lower.isEmpty() ? upper : lower));
+				assertTrue(defects.isEmpty(), defects.isEmpty() ? null : defects.get(0));
 			}
 		}
 	}
 
+	/**
+	 * Checks the first four bytes of a GeoPackageBinary blob.
+	 *
+	 * @param sgbpb
+	 *            The blob, or at least its first four bytes.
+	 * @return A description of the first problem found, or {@code null} if
+	 *         the bytes are valid.
+	 */
+	private static String checkGeometryBlobPrefix(final byte[] sgbpb) {
+		if (sgbpb.length < 4) {
+			return "Couldn't read WKB prefix";
+		}
+		// 3ci
+		final byte[] gp = Arrays.copyOfRange(sgbpb, 0, 2);
+		if (!Arrays.equals(gp, GPKG12.BINARY_GP)) {
+			return "First two bytes of WKB are wrong.";
+		}
+		// 3cii
+		if (sgbpb[2] != 0) {
+			return "Third byte of WKB must be 0.";
+		}
+		// 3ciii
+		if ((sgbpb[3] & 0b00100000) != 0) {
+			return "Sixth bit of byte 4 of WKB must be 0.";
+		}
+		// 3civ
+		final int envelope = (sgbpb[3] & 0b00001110) >> 1;
+		if (envelope > 4) {
+			return "Envelope type of WKB (byte 4) is invalid.";
+		}
+		// TODO: 3cv
+		return null;
+	}
+
 	/**
 	 * Test case
 	 * {@code /opt/features/geometry_columns/data/table_def}
@@ -325,22 +339,16 @@ public class FeaturesTests extends CommonFixture {
 				final String tableName = resultSet.getString("table_name");
 				final String columnName = resultSet.getString("column_name");
 
-				try (
-						final Statement statement2 = this.databaseConnection.createStatement();
-
-						final ResultSet resultSet2 = statement2.executeQuery(String.format("PRAGMA table_info('%s');", tableName));
-						) {
-					boolean foundMatch = false;
+				boolean foundMatch = false;
 
-					while (resultSet2.next()) {
-						if (resultSet2.getString("name").equals(columnName)){
-							foundMatch = true;
-							break;
-						}
+				for (final GeoPackageQueries.TableColumn column : this.queries.getTableInfo(tableName)) {
+					if (column.getName().equals(columnName)){
+						foundMatch = true;
+						break;
 					}
-
-					assertTrue(foundMatch, ErrorMessage.format(ErrorMessageKeys.FEATURES_GEOMETRY_COLUMNS_INVALID_COL, tableName, columnName));
 				}
+
+				assertTrue(foundMatch, ErrorMessage.format(ErrorMessageKeys.FEATURES_GEOMETRY_COLUMNS_INVALID_COL, tableName, columnName));
 			}	
 		}
 	}
@@ -483,14 +491,8 @@ public class FeaturesTests extends CommonFixture {
 			while (resultSet.next()){
 				// 3
 				final String tableName = resultSet.getString("table_name");
-				try (
-						final Statement statement2 = this.databaseConnection.createStatement();
-
-						final ResultSet resultSet2 = statement2.executeQuery(String.format("SELECT count(*) FROM gpkg_geometry_columns WHERE table_name = '%s'", tableName));
-						) {
-					resultSet2.next();
-					assertTrue(resultSet2.getInt(1) == 1, ErrorMessageKeys.FEATURES_ONE_GEOMETRY_COLUMN);
-				}
+				final Long count = this.queries.queryLong("SELECT count(*) FROM gpkg_geometry_columns WHERE table_name = ?", tableName);
+				assertTrue(count != null && count == 1, ErrorMessageKeys.FEATURES_ONE_GEOMETRY_COLUMN);
 			}
 		}
 	}
@@ -525,16 +527,10 @@ public class FeaturesTests extends CommonFixture {
 					//2b
 					final String tableName = resultSet.getString("table_name");
 					final String columnName = resultSet.getString("column_name");
-					try (
-							final Statement statement2 = this.databaseConnection.createStatement();
-
-							final ResultSet resultSet2 = statement2.executeQuery(String.format("PRAGMA table_info('%s')", tableName));
-							) {
-						while (resultSet2.next()){
-							if (columnName.equals(resultSet2.getString("name"))) {
-								assertTrue(geometryTypeName.equals(resultSet2.getString("type")), ErrorMessageKeys.FEATURES_GEOMETRY_COLUMNS_MISMATCH);
-								break;
-							}
+					for (final GeoPackageQueries.TableColumn column : this.queries.getTableInfo(tableName)) {
+						if (columnName.equals(column.getName())) {
+							assertTrue(geometryTypeName.equals(column.getType()), ErrorMessageKeys.FEATURES_GEOMETRY_COLUMNS_MISMATCH);
+							break;
 						}
 					}
 				}				
@@ -542,7 +538,238 @@ public class FeaturesTests extends CommonFixture {
 		}
 	}
 
-	// TODO: Don't know how to test R32/33 as they require a spatial library
+	/**
+	 * The min_x, min_y, max_x and max_y columns of gpkg_contents give the 
+	 * bounding box of all content in a table, and clients commonly use them 
+	 * as the initial extent of a map. The bounds are informative, so this 
+	 * test does not fail; the actual extent of each feature table is 
+	 * computed and any table whose features extend beyond the declared 
+	 * bounds is reported in the test output and the log.
+	 *
+	 * @see <a href="http://www.geopackage.org/spec/#_contents" target=
+	 *      "_blank">Contents - Table 5</a>
+	 *
+	 * @throws SQLException
+	 *             If an SQL query causes an error
+	 */
+	@Test(description = "See OGC 12-128r13: Table 5 (informative)")
+	public void featureContentsBounds() throws SQLException {
+		final FeatureExtentCalculator calculator = new FeatureExtentCalculator(newTableScanner());
+		try (
+				// 1
+				final Statement statement = this.databaseConnection.createStatement();
+
+				final ResultSet resultSet = statement.executeQuery("SELECT g.table_name AS tn, g.column_name AS cn, c.min_x, c.min_y, c.max_x, c.max_y FROM gpkg_geometry_columns g JOIN gpkg_contents c ON g.table_name = c.table_name WHERE c.data_type = 'features' AND c.min_x IS NOT NULL AND c.min_y IS NOT NULL AND c.max_x IS NOT NULL AND c.max_y IS NOT NULL;");
+				) {
+			// 2
+			while (resultSet.next()) {
+				final String tableName = resultSet.getString("tn");
+				final Envelope declared = new Envelope(resultSet.getDouble("min_x"), resultSet.getDouble("min_y"), resultSet.getDouble("max_x"), resultSet.getDouble("max_y"));
+				// 3
+				final String columnName = resultSet.getString("cn");
+				final Envelope actual = sharedScan("extent:" + tableName + "." + columnName, () -> calculator.computeExtent(tableName, columnName));
+				// 4
+				final double slack = BOUNDS_TOLERANCE * Math.max(declared.getMaxX() - declared.getMinX(), declared.getMaxY() - declared.getMinY());
+				if (!declared.expandedBy(slack, slack).contains(actual, FLOAT_PRECISION)) {
+					final String message = ErrorMessage.format(ErrorMessageKeys.CONTENTS_BOUNDS_EXCEEDED, tableName, declared, actual);
+					TestSuiteLogger.log(Level.WARNING, message);
+					Reporter.log(message);
+				}
+			}
+		}
+	}
+
+	/**
+	 * The envelope in the GeoPackageBinary header of a non-empty geometry
+	 * SHALL contain every coordinate of the geometry, SHALL NOT contain NaN,
+	 * and SHALL only have z and m ranges if the geometry has z and m values.
+	 * The WKB coordinates of every geometry with a header envelope are walked
+	 * and compared with it; an envelope that is larger than the geometry is
+	 * reported as a warning. The same pass profiles the geometries of every
+	 * column; the profiles are written to {@value FeatureProfile#FILE_NAME}
+	 * in the output directory of the suite; the scans and the profiles are
+	 * shared with the subclasses, which check the same tables.
+	 *
+	 * @see <a href="_requirement-19" target= "_blank">Vector
+	 *      Features BLOB Format - Requirement 19</a>
+	 *
+	 * @param testContext
+	 *            The test context, which gives the output directory.
+	 * @throws SQLException
+	 *             If an SQL query causes an error
+	 */
+	@Test(description = "See OGC 12-128r13: Requirement 19")
+	public void featureGeometryHeaderEnvelopes(final ITestContext testContext) throws SQLException {
+		final List<String> problems = new ArrayList<>();
+		final List<FeatureProfile> profiles = new ArrayList<>();
+		try (
+				// 1
+				final Statement statement = this.databaseConnection.createStatement();
+
+				final ResultSet resultSet = statement.executeQuery("SELECT table_name, column_name FROM gpkg_geometry_columns WHERE table_name IN (SELECT table_name FROM gpkg_contents WHERE data_type = 'features')");
+				) {
+			// 2
+			while (resultSet.next()) {
+				final String tableName = resultSet.getString("table_name");
+				final String columnName = resultSet.getString("column_name");
+				// 3
+				final HeaderEnvelopeChecker.Report report = checkHeaderEnvelopes(tableName, columnName);
+				profiles.add(report.getProfile());
+				if (!report.isConforming()) {
+					problems.add(String.format("%s.%s: %s", tableName, columnName, report));
+				}
+				if (report.getLooseEnvelopes() > 0) {
+					final String message = ErrorMessage.format(ErrorMessageKeys.FEATURES_HEADER_ENVELOPE_LOOSE,
+							tableName + "." + columnName, report.describeLooseEnvelopes());
+					TestSuiteLogger.log(Level.WARNING, message);
+					Reporter.log(message);
+				}
+			}
+		}
+		final File profileFile = new File(testContext.getSuite().getOutputDirectory(), FeatureProfile.FILE_NAME);
+		// the same tables are profiled by every subclass
+		if (claimOnce("featureProfile:" + profileFile.getPath())) {
+			writeProfiles(profileFile, profiles);
+		}
+		// 4
+		assertTrue(problems.isEmpty(), ErrorMessage.format(ErrorMessageKeys.FEATURES_HEADER_ENVELOPE_INVALID, String.join("; ", problems)));
+	}
+
+	/**
+	 * Walks every geometry of a column once for the suite: the report of the
+	 * header envelopes, the profile and the structure of the WKB is shared by
+	 * the test classes that check the column.
+	 *
+	 * @param tableName
+	 *            The name of the feature table.
+	 * @param columnName
+	 *            The name of the geometry column.
+	 * @return The report of the column.
+	 * @throws SQLException
+	 *             If the table cannot be read.
+	 */
+	protected HeaderEnvelopeChecker.Report checkHeaderEnvelopes(final String tableName, final String columnName) throws SQLException {
+		return sharedScan("headerEnvelopes:" + tableName + "." + columnName, () -> new HeaderEnvelopeChecker(newTableScanner()).check(tableName, columnName));
+	}
+
+	/**
+	 * A feature table geometry column SHALL contain geometries of the type or 
+	 * assignable for the type specified for the column by the 
+	 * gpkg_geometry_columns geometry_type_name column value, and their z and 
+	 * m values SHALL be present or absent as the z and m column values 
+	 * require. The type code of every geometry is read from its WKB; 
+	 * geometries of extension types are not checked.
+	 *
+	 * Test case
+	 * {@code /opt/features/vector_features/data/data_values_geometry_types}
+	 *
+	 * @see <a href="_requirement-32" target= "_blank">Vector
+	 *      Features Geometry Types - Requirement 32</a>
+	 *
+	 * @throws SQLException
+	 *             If an SQL query causes an error
+	 */
+	@Test(description = "See OGC 12-128r13: Requirements 27, 28, 32")
+	public void featureTableGeometryTypes() throws SQLException {
+		final List<String> problems = new ArrayList<>();
+		// 1, 2, 3
+		for (final Map.Entry<String, GeometryTypeScanner.Report> entry : scanGeometries().entrySet()) {
+			if (!entry.getValue().isConforming()) {
+				problems.add(String.format("%s: %s", entry.getKey(), entry.getValue()));
+			}
+		}
+		// 4
+		assertTrue(problems.isEmpty(), ErrorMessage.format(ErrorMessageKeys.FEATURES_GEOMETRY_TYPES_INVALID, String.join("; ", problems)));
+	}
+
+	/**
+	 * Feature table geometry columns SHALL contain geometries with the srs_id
+	 * specified for the column by the gpkg_geometry_columns table srs_id
+	 * column value. The srs_id is read from the header of every geometry in
+	 * the same pass as the geometry types. The srs_id of the column must also
+	 * be the srs_id of the table in gpkg_contents.
+	 *
+	 * @see <a href="_requirement-33" target= "_blank">Vector
+	 *      Features Geometry SRS - Requirement 33</a>
+	 *
+	 * @throws SQLException
+	 *             If an SQL query causes an error
+	 */
+	@Test(description = "See OGC 12-128r13: Requirement 33")
+	public void featureTableGeometrySrsIds() throws SQLException {
+		final List<String> problems = new ArrayList<>();
+		try (
+				final Statement statement = this.databaseConnection.createStatement();
+
+				final ResultSet resultSet = statement.executeQuery("SELECT g.table_name, g.column_name, g.srs_id, c.srs_id FROM gpkg_geometry_columns g JOIN gpkg_contents c ON g.table_name = c.table_name WHERE c.data_type = 'features' AND g.srs_id IS NOT c.srs_id");
+				) {
+			while (resultSet.next()) {
+				problems.add(String.format("%s.%s: srs_id %s in gpkg_geometry_columns but %s in gpkg_contents",
+						resultSet.getString(1), resultSet.getString(2), resultSet.getString(3), resultSet.getString(4)));
+			}
+		}
+		for (final Map.Entry<String, GeometryTypeScanner.Report> entry : scanGeometries().entrySet()) {
+			if (entry.getValue().getSrsViolations() > 0) {
+				problems.add(String.format("%s: %s", entry.getKey(), entry.getValue().describeSrsViolations()));
+			}
+		}
+		assertTrue(problems.isEmpty(), ErrorMessage.format(ErrorMessageKeys.FEATURES_GEOMETRY_SRS_INVALID, String.join("; ", problems)));
+	}
+
+	/**
+	 * Writes the feature profiles; a failure is logged, as the profiles are
+	 * not part of the test verdict.
+	 */
+	private void writeProfiles(final File file, final List<FeatureProfile> profiles) {
+		try {
+			FeatureProfile.write(file, this.gpkgFile.getName(), profiles);
+			TestSuiteLogger.log(Level.CONFIG, "Wrote feature profiles to " + file.getAbsolutePath());
+		} catch (IOException e) {
+			TestSuiteLogger.log(Level.WARNING, "Cannot write feature profiles to " + file, e);
+		}
+	}
+
+	/**
+	 * Scans the geometries of every feature table once in the suite, checking
+	 * them against their gpkg_geometry_columns entry.
+	 *
+	 * @return The reports, by table and column name ("table.column").
+	 */
+	private Map<String, GeometryTypeScanner.Report> scanGeometries() throws SQLException {
+		if (null != this.geometryReports) {
+			return this.geometryReports;
+		}
+		final GeometryTypeScanner scanner = new GeometryTypeScanner(newTableScanner());
+		final Map<String, GeometryTypeScanner.Report> reports = new LinkedHashMap<>();
+		try (
+				final Statement statement = this.databaseConnection.createStatement();
+
+				final ResultSet resultSet = statement.executeQuery("SELECT table_name, column_name, geometry_type_name, srs_id, z, m FROM gpkg_geometry_columns WHERE table_name IN (SELECT table_name FROM gpkg_contents WHERE data_type = 'features')");
+				) {
+			while (resultSet.next()) {
+				final String tableName = resultSet.getString("table_name");
+				final String columnName = resultSet.getString("column_name");
+				final String geometryTypeName = resultSet.getString("geometry_type_name");
+				final String declaredType = isExtendedType(tableName, columnName) ? null : geometryTypeName;
+				final int srsId = resultSet.getInt("srs_id");
+				final int z = resultSet.getInt("z");
+				final int m = resultSet.getInt("m");
+				reports.put(tableName + "." + columnName, sharedScan("geometryTypes:" + tableName + "." + columnName,
+						() -> scanner.scan(tableName, columnName, declaredType, srsId, z, m)));
+			}
+		}
+		this.geometryReports = reports;
+		return reports;
+	}
+
+	/**
+	 * Tolerance for declared bounds rounded to a few decimals, as a fraction
+	 * of the larger side of the bounds.
+	 */
+	private static final double BOUNDS_TOLERANCE = 1.0E-6;
+
+	/** Relative tolerance for coordinates stored in single precision. */
+	private static final double FLOAT_PRECISION = 1.0E-7;
 
 	private static final Collection<String> ALLOWED_GEOMETRY_TYPES = 
 			Arrays.asList("GEOMETRY","POINT","LINESTRING","POLYGON","MULTIPOINT","MULTILINESTRING","MULTIPOLYGON","GEOMETRYCOLLECTION");
@@ -551,4 +778,5 @@ public class FeaturesTests extends CommonFixture {
 	}
 
 	private final Collection<String> featureTableNames = new ArrayList<>();
+	private Map<String, GeometryTypeScanner.Report> geometryReports;
 }
@@ -0,0 +1,91 @@
+package org.opengis.cite.gpkg12.features;
+
+import java.sql.SQLException;
+import java.util.function.BinaryOperator;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+
+import org.opengis.cite.gpkg12.util.PartitionedTableScanner;
+import org.opengis.cite.gpkg12.util.TestSuiteLogger;
+
+/**
+ * The base of the classes that read every geometry blob of a feature table
+ * column. The rows are read by a {@link PartitionedTableScanner} supplied by
+ * the caller, which decides how many workers read the table and where the
+ * scans report their progress.
+ */
+abstract class GeometryColumnScanner {
+
+	/**
+	 * Receives the geometry blobs of a rowid range.
+	 *
+	 * @param <A>
+	 *            The type of the result container.
+	 */
+	@FunctionalInterface
+	interface BlobVisitor<A> {
+
+		/**
+		 * Visits one geometry.
+		 *
+		 * @param rowid
+		 *            The rowid of the feature, or -1 if the table is a view.
+		 * @param blob
+		 *            The selected blob, or {@code null} for a NULL geometry.
+		 * @param result
+		 *            The result container of the range.
+		 */
+		void visit(long rowid, byte[] blob, A result);
+	}
+
+	private final PartitionedTableScanner scanner;
+
+	GeometryColumnScanner(final PartitionedTableScanner scanner) {
+		this.scanner = scanner;
+	}
+
+	/**
+	 * Visits the blobs of a column, range by range.
+	 *
+	 * @param name
+	 *            A description of the scan; the table name is appended for the
+	 *            progress reports.
+	 * @param tableName
+	 *            The name of the feature table (or view).
+	 * @param column
+	 *            The selected expression, e.g. the quoted column name.
+	 * @param supplier
+	 *            Creates an empty result container for each range.
+	 * @param visitor
+	 *            Visits a blob into the container of its range.
+	 * @param combiner
+	 *            Combines the results of two adjacent ranges, the lower first.
+	 * @return The combined result.
+	 * @throws SQLException
+	 *             If the table cannot be read.
+	 */
+	<A> A scanBlobs(final String name, final String tableName, final String column, final Supplier<A> supplier,
+			final BlobVisitor<A> visitor, final BinaryOperator<A> combiner) throws SQLException {
+		return this.scanner.scan(name + " " + tableName, tableName, column, supplier, (rowid, row, partial) -> {
+			final byte[] blob = row.getBytes(2);
+			visitor.visit(rowid, blob, partial);
+			return null == blob ? 0 : blob.length;
+		}, combiner);
+	}
+
+	/**
+	 * Logs the number of blobs of a table that could not be decoded; they are
+	 * reported by the geometry encoding tests.
+	 *
+	 * @param undecodable
+	 *            The number of blobs skipped.
+	 * @param tableName
+	 *            The name of the feature table.
+	 */
+	static void logUndecodable(final long undecodable, final String tableName) {
+		if (undecodable > 0) {
+			TestSuiteLogger.log(Level.FINE,
+					String.format("Skipped %d undecodable geometries in %s", undecodable, tableName));
+		}
+	}
+}
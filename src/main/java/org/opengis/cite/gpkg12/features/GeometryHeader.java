@@ -0,0 +1,196 @@
+package org.opengis.cite.gpkg12.features;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.opengis.cite.gpkg12.GPKG12;
+import org.opengis.cite.gpkg12.util.Envelope;
+
+/**
+ * The header of a GeoPackageBinary geometry blob: the magic number, version,
+ * flags, spatial reference system identifier and optional envelope that
+ * precede the standard WKB geometry.
+ *
+ * @see <a href="http://www.geopackage.org/spec/#gpb_format" target=
+ *      "_blank">GeoPackage Encoding Standard - 2.1.3.1.1. BLOB Format</a>
+ */
+public final class GeometryHeader {
+
+	private static final int FIXED_LENGTH = 8;
+	private static final int[] ENVELOPE_LENGTHS = { 0, 32, 48, 48, 64 };
+
+	private final int version;
+	private final int flags;
+	private final int srsId;
+	private final double[] envelope;
+	private final int wkbOffset;
+
+	private GeometryHeader(final int version, final int flags, final int srsId, final double[] envelope) {
+		this.version = version;
+		this.flags = flags;
+		this.srsId = srsId;
+		this.envelope = envelope;
+		this.wkbOffset = FIXED_LENGTH + envelope.length * Double.BYTES;
+	}
+
+	/**
+	 * Reads the header at the start of a geometry blob.
+	 *
+	 * @param blob
+	 *            The content of a geometry column.
+	 * @return The parsed header.
+	 * @throws IllegalArgumentException
+	 *             If the blob does not begin with a well-formed
+	 *             GeoPackageBinary header.
+	 */
+	public static GeometryHeader parse(final byte[] blob) {
+		if (blob.length < FIXED_LENGTH || blob[0] != GPKG12.BINARY_GP[0] || blob[1] != GPKG12.BINARY_GP[1]) {
+			throw new IllegalArgumentException("Not a GeoPackageBinary geometry");
+		}
+		final int flags = blob[3] & 0xFF;
+		final int envelopeIndicator = (flags & 0b00001110) >> 1;
+		if (envelopeIndicator >= ENVELOPE_LENGTHS.length) {
+			throw new IllegalArgumentException("Invalid envelope contents indicator " + envelopeIndicator);
+		}
+		final int envelopeLength = ENVELOPE_LENGTHS[envelopeIndicator];
+		if (blob.length < FIXED_LENGTH + envelopeLength) {
+			throw new IllegalArgumentException("Truncated GeoPackageBinary header");
+		}
+		final ByteBuffer buffer = ByteBuffer.wrap(blob, 4, FIXED_LENGTH - 4 + envelopeLength)
+				.order((flags & 1) == 1 ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+		final int srsId = buffer.getInt();
+		final double[] envelope = new double[envelopeLength / Double.BYTES];
+		for (int i = 0; i < envelope.length; i++) {
+			envelope[i] = buffer.getDouble();
+		}
+		return new GeometryHeader(blob[2] & 0xFF, flags, srsId, envelope);
+	}
+
+	/**
+	 * Reads the spatial reference system identifier of a geometry blob in the
+	 * byte order given by its flags, without parsing the rest of the header.
+	 *
+	 * @param blob
+	 *            The content of a geometry column, or at least its first eight
+	 *            bytes.
+	 * @return The srs_id recorded in the header.
+	 * @throws IllegalArgumentException
+	 *             If the blob does not begin with a GeoPackageBinary header.
+	 */
+	public static int readSrsId(final byte[] blob) {
+		if (blob.length < FIXED_LENGTH || blob[0] != GPKG12.BINARY_GP[0] || blob[1] != GPKG12.BINARY_GP[1]) {
+			throw new IllegalArgumentException("Not a GeoPackageBinary geometry");
+		}
+		if ((blob[3] & 1) == 1) {
+			return (blob[4] & 0xFF) | (blob[5] & 0xFF) << 8 | (blob[6] & 0xFF) << 16 | blob[7] << 24;
+		}
+		return blob[4] << 24 | (blob[5] & 0xFF) << 16 | (blob[6] & 0xFF) << 8 | (blob[7] & 0xFF);
+	}
+
+	/**
+	 * Reads the offset of the WKB geometry in a geometry blob from the
+	 * envelope contents indicator of its flags, without parsing the header.
+	 *
+	 * @param blob
+	 *            The content of a geometry column, or at least its header.
+	 * @return The offset of the WKB geometry.
+	 * @throws IllegalArgumentException
+	 *             If the blob does not begin with a well-formed
+	 *             GeoPackageBinary header.
+	 */
+	public static int readWkbOffset(final byte[] blob) {
+		if (blob.length < FIXED_LENGTH || blob[0] != GPKG12.BINARY_GP[0] || blob[1] != GPKG12.BINARY_GP[1]) {
+			throw new IllegalArgumentException("Not a GeoPackageBinary geometry");
+		}
+		final int envelopeIndicator = (blob[3] & 0b00001110) >> 1;
+		if (envelopeIndicator >= ENVELOPE_LENGTHS.length) {
+			throw new IllegalArgumentException("Invalid envelope contents indicator " + envelopeIndicator);
+		}
+		return FIXED_LENGTH + ENVELOPE_LENGTHS[envelopeIndicator];
+	}
+
+	/**
+	 * Tells whether a geometry blob uses an extension geometry type, without
+	 * parsing the header.
+	 *
+	 * @param blob
+	 *            The content of a geometry column, or at least its first four
+	 *            bytes.
+	 * @return {@code true} if the extended type flag is set.
+	 */
+	public static boolean isExtended(final byte[] blob) {
+		return (blob[3] & 0b00100000) != 0;
+	}
+
+	/**
+	 * @return The version number (0 for version 1 of the format).
+	 */
+	public int getVersion() {
+		return this.version;
+	}
+
+	/**
+	 * @return The byte order of the header fields.
+	 */
+	public ByteOrder getByteOrder() {
+		return (this.flags & 1) == 1 ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN;
+	}
+
+	/**
+	 * @return The envelope contents indicator (0: none, 1: xy, 2: xyz, 3:
+	 *         xym, 4: xyzm).
+	 */
+	public int getEnvelopeIndicator() {
+		return (this.flags & 0b00001110) >> 1;
+	}
+
+	/**
+	 * @return {@code true} if the empty geometry flag is set.
+	 */
+	public boolean isEmpty() {
+		return (this.flags & 0b00010000) != 0;
+	}
+
+	/**
+	 * @return {@code true} if the geometry uses an extension (not a standard)
+	 *         geometry type.
+	 */
+	public boolean isExtended() {
+		return (this.flags & 0b00100000) != 0;
+	}
+
+	/**
+	 * @return The spatial reference system identifier.
+	 */
+	public int getSrsId() {
+		return this.srsId;
+	}
+
+	/**
+	 * @return The envelope ordinates in header order (minx, maxx, miny, maxy,
+	 *         then z and m ranges where present); the array is empty if the
+	 *         header has no envelope.
+	 */
+	public double[] getEnvelope() {
+		return this.envelope.clone();
+	}
+
+	/**
+	 * Returns the x/y extent recorded in the header.
+	 *
+	 * @return The envelope, or {@code null} if the header has none.
+	 */
+	public Envelope getXYEnvelope() {
+		if (this.envelope.length == 0) {
+			return null;
+		}
+		return new Envelope(this.envelope[0], this.envelope[2], this.envelope[1], this.envelope[3]);
+	}
+
+	/**
+	 * @return The offset of the WKB geometry within the blob.
+	 */
+	public int getWkbOffset() {
+		return this.wkbOffset;
+	}
+}
@@ -0,0 +1,131 @@
+package org.opengis.cite.gpkg12.features;
+
+import java.util.Locale;
+
+/**
+ * The geometry types of the GeoPackage geometry model, with their ISO WKB
+ * type codes and their place in the type hierarchy. A geometry may be stored
+ * in a column declared with its own type or with any of its supertypes.
+ *
+ * @see <a href="http://www.geopackage.org/spec/#geometry_types" target=
+ *      "_blank">GeoPackage Encoding Standard - Annex E Geometry Types</a>
+ */
+public enum GeometryType {
+
+	GEOMETRY(0, null),
+	POINT(1, GEOMETRY),
+	CURVE(13, GEOMETRY),
+	LINESTRING(2, CURVE),
+	CIRCULARSTRING(8, CURVE),
+	COMPOUNDCURVE(9, CURVE),
+	SURFACE(14, GEOMETRY),
+	CURVEPOLYGON(10, SURFACE),
+	POLYGON(3, CURVEPOLYGON),
+	GEOMETRYCOLLECTION(7, GEOMETRY),
+	MULTIPOINT(4, GEOMETRYCOLLECTION),
+	MULTICURVE(11, GEOMETRYCOLLECTION),
+	MULTILINESTRING(5, MULTICURVE),
+	MULTISURFACE(12, GEOMETRYCOLLECTION),
+	MULTIPOLYGON(6, MULTISURFACE);
+
+	private final int wkbCode;
+	private final GeometryType parent;
+
+	private GeometryType(final int wkbCode, final GeometryType parent) {
+		this.wkbCode = wkbCode;
+		this.parent = parent;
+	}
+
+	/**
+	 * @return The WKB type code of the two-dimensional type.
+	 */
+	public int getWkbCode() {
+		return this.wkbCode;
+	}
+
+	/**
+	 * @return The direct supertype, or {@code null} for GEOMETRY.
+	 */
+	public GeometryType getParent() {
+		return this.parent;
+	}
+
+	/**
+	 * Tells whether a geometry of this type may be stored in a column declared
+	 * with the given type, i.e. whether the declared type is this type or one
+	 * of its supertypes.
+	 *
+	 * @param declared
+	 *            The declared geometry type.
+	 * @return {@code true} if this type is assignable to the declared type.
+	 */
+	public boolean isAssignableTo(final GeometryType declared) {
+		for (GeometryType type = this; type != null; type = type.parent) {
+			if (type == declared) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Looks up a type by its geometry_type_name (case is ignored).
+	 *
+	 * @param name
+	 *            The type name.
+	 * @return The type, or {@code null} if the name is not a GeoPackage
+	 *         geometry type (e.g. an extension type).
+	 */
+	public static GeometryType fromName(final String name) {
+		if (null == name) {
+			return null;
+		}
+		try {
+			return valueOf(name.trim().toUpperCase(Locale.ROOT));
+		} catch (IllegalArgumentException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Looks up a type by its ISO WKB type code; the Z, M and ZM offsets (1000,
+	 * 2000 and 3000) are ignored.
+	 *
+	 * @param typeCode
+	 *            A WKB type code.
+	 * @return The type, or {@code null} if the code is not a valid ISO WKB
+	 *         type code.
+	 */
+	public static GeometryType fromWkbCode(final int typeCode) {
+		if (typeCode < 0 || typeCode >= 4000) {
+			return null;
+		}
+		final int baseCode = typeCode % 1000;
+		for (final GeometryType type : values()) {
+			if (type.wkbCode == baseCode) {
+				return type;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @param typeCode
+	 *            An ISO WKB type code.
+	 * @return {@code true} if the code denotes a geometry with z values.
+	 */
+	public static boolean hasZ(final int typeCode) {
+		final int dimension = typeCode / 1000;
+		return dimension == 1 || dimension == 3;
+	}
+
+	/**
+	 * @param typeCode
+	 *            An ISO WKB type code.
+	 * @return {@code true} if the code denotes a geometry with m values.
+	 */
+	public static boolean hasM(final int typeCode) {
+		final int dimension = typeCode / 1000;
+		return dimension == 2 || dimension == 3;
+	}
+}
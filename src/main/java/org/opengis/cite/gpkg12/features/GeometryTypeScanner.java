@@ -0,0 +1,386 @@
+package org.opengis.cite.gpkg12.features;
+
+import static org.opengis.cite.gpkg12.util.GeoPackageQueries.quoteIdentifier;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.opengis.cite.gpkg12.util.PartitionedTableScanner;
+
+/**
+ * Checks the geometry type, the presence of z and m values and the srs_id of
+ * every geometry in a feature table against its gpkg_geometry_columns entry.
+ * Only the GeoPackageBinary header and the first five bytes of the WKB (the
+ * byte order and the type code) are read: SQLite returns just that prefix of
+ * each blob, so no geometry is decoded or even copied in full. Large tables
+ * are scanned in parallel by a {@link PartitionedTableScanner}.
+ */
+public class GeometryTypeScanner extends GeometryColumnScanner {
+
+	/** The longest header (with an xyzm envelope) plus the WKB byte order and type code. */
+	private static final int PREFIX_LENGTH = 8 + 64 + 1 + Integer.BYTES;
+
+	/** Geometry columns.z / m value: the values are prohibited. */
+	static final int PROHIBITED = 0;
+	/** Geometry columns.z / m value: the values are mandatory. */
+	static final int MANDATORY = 1;
+
+	/** The maximum number of runs of rows with a wrong srs_id that are reported. */
+	static final int MAX_SRS_RUNS = 10;
+
+	/**
+	 * The geometries of one column that do not conform to its declaration.
+	 */
+	public static final class Report {
+
+		private long rows;
+		private long typeViolations;
+		private long firstTypeViolation = -1;
+		private final Set<String> invalidTypes = new TreeSet<>();
+		private long zViolations;
+		private long firstZViolation = -1;
+		private long mViolations;
+		private long firstMViolation = -1;
+		private long undecodable;
+		private long srsViolations;
+		private final Set<Integer> invalidSrsIds = new TreeSet<>();
+		private final List<long[]> srsRuns = new ArrayList<>();
+		private boolean srsRunsTruncated;
+		private boolean visited;
+		private boolean firstRowSrsViolation;
+		private boolean lastRowSrsViolation;
+		private String declaredType;
+		private int declaredSrsId;
+		private int z;
+		private int m;
+
+		/**
+		 * @return The number of non-NULL geometries examined.
+		 */
+		public long getRows() {
+			return this.rows;
+		}
+
+		/**
+		 * @return The number of geometries whose type is not assignable to the
+		 *         declared type.
+		 */
+		public long getTypeViolations() {
+			return this.typeViolations;
+		}
+
+		/**
+		 * @return The names of the geometry types found that are not
+		 *         assignable to the declared type.
+		 */
+		public Set<String> getInvalidTypes() {
+			return this.invalidTypes;
+		}
+
+		/**
+		 * @return The number of geometries whose z values are present although
+		 *         prohibited, or absent although mandatory.
+		 */
+		public long getZViolations() {
+			return this.zViolations;
+		}
+
+		/**
+		 * @return The number of geometries whose m values are present although
+		 *         prohibited, or absent although mandatory.
+		 */
+		public long getMViolations() {
+			return this.mViolations;
+		}
+
+		/**
+		 * @return The number of blobs whose WKB type could not be read; they
+		 *         are reported by the geometry encoding tests.
+		 */
+		public long getUndecodable() {
+			return this.undecodable;
+		}
+
+		/**
+		 * @return The number of geometries whose srs_id differs from the
+		 *         declared one.
+		 */
+		public long getSrsViolations() {
+			return this.srsViolations;
+		}
+
+		/**
+		 * @return The srs_id values found that differ from the declared one.
+		 */
+		public Set<Integer> getInvalidSrsIds() {
+			return this.invalidSrsIds;
+		}
+
+		/**
+		 * Describes the geometries with a wrong srs_id as runs of consecutive
+		 * rows, such as "rowids 4-17, 30".
+		 *
+		 * @return The description, or an empty string if every geometry uses
+		 *         the declared srs_id.
+		 */
+		public String describeSrsViolations() {
+			if (this.srsViolations == 0) {
+				return "";
+			}
+			final StringBuilder sb = new StringBuilder().append(this.srsViolations).append(" geometries with srs_id ")
+					.append(this.invalidSrsIds).append(" instead of ").append(this.declaredSrsId);
+			if (!this.srsRuns.isEmpty() && this.srsRuns.get(0)[0] >= 0) {
+				sb.append(" (rowids ");
+				for (int i = 0; i < this.srsRuns.size(); i++) {
+					final long[] run = this.srsRuns.get(i);
+					sb.append(i == 0 ? "" : ", ").append(run[0]);
+					if (run[1] != run[0]) {
+						sb.append('-').append(run[1]);
+					}
+				}
+				sb.append(this.srsRunsTruncated ? ", ...)" : ")");
+			}
+			return sb.toString();
+		}
+
+		/**
+		 * @return {@code true} if every geometry conforms to the declared type
+		 *         and z and m values.
+		 */
+		public boolean isConforming() {
+			return this.typeViolations == 0 && this.zViolations == 0 && this.mViolations == 0;
+		}
+
+		void merge(final Report other) {
+			this.rows += other.rows;
+			this.undecodable += other.undecodable;
+			this.typeViolations += other.typeViolations;
+			this.firstTypeViolation = first(this.firstTypeViolation, other.firstTypeViolation);
+			this.invalidTypes.addAll(other.invalidTypes);
+			this.zViolations += other.zViolations;
+			this.firstZViolation = first(this.firstZViolation, other.firstZViolation);
+			this.mViolations += other.mViolations;
+			this.firstMViolation = first(this.firstMViolation, other.firstMViolation);
+			if (!other.visited) {
+				return;
+			}
+			this.srsViolations += other.srsViolations;
+			this.invalidSrsIds.addAll(other.invalidSrsIds);
+			int run = 0;
+			if (this.lastRowSrsViolation && other.firstRowSrsViolation && !this.srsRunsTruncated) {
+				// the run at the end of this range goes on in the next one
+				this.srsRuns.get(this.srsRuns.size() - 1)[1] = other.srsRuns.get(0)[1];
+				run = 1;
+			}
+			for (; run < other.srsRuns.size(); run++) {
+				addSrsRun(other.srsRuns.get(run));
+			}
+			this.srsRunsTruncated |= other.srsRunsTruncated;
+			if (!this.visited) {
+				this.visited = true;
+				this.firstRowSrsViolation = other.firstRowSrsViolation;
+			}
+			this.lastRowSrsViolation = other.lastRowSrsViolation;
+		}
+
+		/**
+		 * Records the srs_id of the next row in rowid order.
+		 */
+		void checkSrsId(final long rowid, final int srsId, final int declaredSrsId) {
+			final boolean violation = srsId != declaredSrsId;
+			if (!this.visited) {
+				this.visited = true;
+				this.firstRowSrsViolation = violation;
+			}
+			if (violation) {
+				this.srsViolations++;
+				this.invalidSrsIds.add(srsId);
+				if (this.lastRowSrsViolation && !this.srsRunsTruncated) {
+					this.srsRuns.get(this.srsRuns.size() - 1)[1] = rowid;
+				} else {
+					addSrsRun(new long[] { rowid, rowid });
+				}
+			}
+			this.lastRowSrsViolation = violation;
+		}
+
+		private void addSrsRun(final long[] run) {
+			if (this.srsRuns.size() < MAX_SRS_RUNS) {
+				this.srsRuns.add(run);
+			} else {
+				this.srsRunsTruncated = true;
+			}
+		}
+
+		private static long first(final long a, final long b) {
+			return a < 0 ? b : (b < 0 ? a : Math.min(a, b));
+		}
+
+		private static String firstRowid(final long rowid) {
+			return rowid < 0 ? "" : " (first rowid " + rowid + ")";
+		}
+
+		@Override
+		public String toString() {
+			final List<String> problems = new ArrayList<>();
+			if (this.typeViolations > 0) {
+				problems.add(String.format("%d geometries of type %s not assignable to %s%s", this.typeViolations,
+						this.invalidTypes, this.declaredType, firstRowid(this.firstTypeViolation)));
+			}
+			if (this.zViolations > 0) {
+				problems.add(String.format("%d geometries %s z values although z = %d%s", this.zViolations,
+						this.z == PROHIBITED ? "with" : "without", this.z, firstRowid(this.firstZViolation)));
+			}
+			if (this.mViolations > 0) {
+				problems.add(String.format("%d geometries %s m values although m = %d%s", this.mViolations,
+						this.m == PROHIBITED ? "with" : "without", this.m, firstRowid(this.firstMViolation)));
+			}
+			return problems.isEmpty() ? String.format("%d geometries conform", this.rows) : String.join("; ", problems);
+		}
+	}
+
+	/**
+	 * Creates a scanner.
+	 *
+	 * @param scanner
+	 *            Reads the feature tables.
+	 */
+	public GeometryTypeScanner(final PartitionedTableScanner scanner) {
+		super(scanner);
+	}
+
+	/**
+	 * Scans the geometries of a feature table.
+	 *
+	 * @param tableName
+	 *            The name of the feature table (or view).
+	 * @param columnName
+	 *            The name of the geometry column.
+	 * @param geometryTypeName
+	 *            The declared geometry_type_name; if it is not a GeoPackage
+	 *            geometry type (e.g. an extension type), the types are not
+	 *            checked.
+	 * @param srsId
+	 *            The declared srs_id.
+	 * @param z
+	 *            The declared z value (0: prohibited, 1: mandatory, 2:
+	 *            optional).
+	 * @param m
+	 *            The declared m value (0: prohibited, 1: mandatory, 2:
+	 *            optional).
+	 * @return The geometries that do not conform.
+	 * @throws SQLException
+	 *             If the table cannot be read.
+	 */
+	public Report scan(final String tableName, final String columnName, final String geometryTypeName,
+			final int srsId, final int z, final int m) throws SQLException {
+		final Declaration declaration = new Declaration(GeometryType.fromName(geometryTypeName), srsId, z, m);
+		final String prefix = String.format("substr(%s, 1, %d)", quoteIdentifier(columnName), PREFIX_LENGTH);
+		final Report report = scanBlobs("geometry types", tableName, prefix, Report::new,
+				(rowid, blob, partial) -> {
+					if (null != blob) {
+						check(rowid, blob, declaration, partial);
+					}
+				}, (lower, upper) -> {
+					lower.merge(upper);
+					return lower;
+				});
+		report.declaredType = geometryTypeName;
+		report.declaredSrsId = srsId;
+		report.z = z;
+		report.m = m;
+		logUndecodable(report.undecodable, tableName);
+		return report;
+	}
+
+	/**
+	 * Checks one geometry against the declaration of its column. Geometries
+	 * must be checked in rowid order, so that the rows with a wrong srs_id can
+	 * be reported as runs.
+	 *
+	 * @param rowid
+	 *            The rowid of the feature (-1 if unknown).
+	 * @param prefix
+	 *            The geometry blob, or at least its header and the first five
+	 *            bytes of the WKB.
+	 * @param declaration
+	 *            The declared type and z/m values.
+	 * @param report
+	 *            Receives any violation.
+	 */
+	static void check(final long rowid, final byte[] prefix, final Declaration declaration, final Report report) {
+		final int typeCode;
+		try {
+			// read in place, so that nothing is allocated per geometry
+			report.checkSrsId(rowid, GeometryHeader.readSrsId(prefix), declaration.srsId);
+			final int wkbOffset = GeometryHeader.readWkbOffset(prefix);
+			if (GeometryHeader.isExtended(prefix)) {
+				// an extension geometry type, covered by its extension
+				return;
+			}
+			typeCode = readTypeCode(prefix, wkbOffset);
+		} catch (IllegalArgumentException e) {
+			report.undecodable++;
+			return;
+		}
+		report.rows++;
+		final GeometryType type = GeometryType.fromWkbCode(typeCode);
+		if (null != declaration.type && (null == type || !type.isAssignableTo(declaration.type))) {
+			report.typeViolations++;
+			report.invalidTypes.add(null == type ? "WKB type " + typeCode : type.name());
+			report.firstTypeViolation = Report.first(report.firstTypeViolation, rowid);
+		}
+		if (null != type && violates(declaration.z, GeometryType.hasZ(typeCode))) {
+			report.zViolations++;
+			report.firstZViolation = Report.first(report.firstZViolation, rowid);
+		}
+		if (null != type && violates(declaration.m, GeometryType.hasM(typeCode))) {
+			report.mViolations++;
+			report.firstMViolation = Report.first(report.firstMViolation, rowid);
+		}
+	}
+
+	private static boolean violates(final int declared, final boolean present) {
+		return (declared == PROHIBITED && present) || (declared == MANDATORY && !present);
+	}
+
+	/**
+	 * Reads the WKB type code that follows the byte order mark at the given
+	 * offset.
+	 */
+	static int readTypeCode(final byte[] blob, final int offset) {
+		if (blob.length < offset + 1 + Integer.BYTES) {
+			throw new IllegalArgumentException("Truncated WKB geometry");
+		}
+		final byte byteOrder = blob[offset];
+		if (byteOrder != 0 && byteOrder != 1) {
+			throw new IllegalArgumentException("Invalid WKB byte order " + byteOrder);
+		}
+		final int at = offset + 1;
+		if (byteOrder == 1) {
+			return (blob[at] & 0xFF) | (blob[at + 1] & 0xFF) << 8 | (blob[at + 2] & 0xFF) << 16 | blob[at + 3] << 24;
+		}
+		return blob[at] << 24 | (blob[at + 1] & 0xFF) << 16 | (blob[at + 2] & 0xFF) << 8 | (blob[at + 3] & 0xFF);
+	}
+
+	/**
+	 * The declared geometry type, srs_id and z/m values of a column.
+	 */
+	static final class Declaration {
+
+		final GeometryType type;
+		final int srsId;
+		final int z;
+		final int m;
+
+		Declaration(final GeometryType type, final int srsId, final int z, final int m) {
+			this.type = type;
+			this.srsId = srsId;
+			this.z = z;
+			this.m = m;
+		}
+	}
+}
@@ -0,0 +1,370 @@
+package org.opengis.cite.gpkg12.features;
+
+import static org.opengis.cite.gpkg12.util.GeoPackageQueries.quoteIdentifier;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.opengis.cite.gpkg12.util.PartitionedTableScanner;
+
+/**
+ * Verifies the envelopes in the GeoPackageBinary headers of the geometries in
+ * a feature table against their coordinates. Clients use the header envelope
+ * to filter by bounding box without decoding the WKB, so an envelope that does
+ * not contain the geometry hides it from them. The WKB is walked by
+ * {@link WKBReader#readBounds(double[])}, which keeps the bounds in primitive
+ * variables and builds no geometry objects; large tables are scanned in
+ * parallel by a {@link PartitionedTableScanner}. As every geometry is walked,
+ * the same pass gathers the {@link FeatureProfile} of the column and records
+ * the geometries whose WKB is malformed, such as the non-linear geometries
+ * that break the structural rules checked by the {@link WKBReader}.
+ */
+public class HeaderEnvelopeChecker extends GeometryColumnScanner {
+
+	/**
+	 * The allowed difference between an envelope and the coordinates, as a
+	 * fraction of the larger of the magnitude of the bound and 1.
+	 */
+	static final double TOLERANCE = 1.0E-9;
+
+	/** Comparison result: the envelope does not contain the coordinates. */
+	private static final int SMALL = 1;
+	/** Comparison result: the envelope extends beyond the coordinates. */
+	private static final int LOOSE = 2;
+
+	/**
+	 * The geometries of one column whose header envelope does not match their
+	 * coordinates.
+	 */
+	public static final class Report {
+
+		private long rows;
+		private long nanEnvelopes;
+		private long firstNanEnvelope = -1;
+		private long smallEnvelopes;
+		private long firstSmallEnvelope = -1;
+		private long dimensionMismatches;
+		private long firstDimensionMismatch = -1;
+		private long looseEnvelopes;
+		private long firstLooseEnvelope = -1;
+		private long undecodable;
+		private long malformed;
+		private long firstMalformed = -1;
+		private String firstMalformedProblem;
+		private final FeatureProfile profile = new FeatureProfile();
+
+		/**
+		 * @return The number of non-empty geometries with a header envelope
+		 *         that were checked.
+		 */
+		public long getRows() {
+			return this.rows;
+		}
+
+		/**
+		 * @return The number of non-empty geometries whose header envelope
+		 *         contains NaN.
+		 */
+		public long getNanEnvelopes() {
+			return this.nanEnvelopes;
+		}
+
+		/**
+		 * @return The number of header envelopes that do not contain every
+		 *         coordinate of the geometry.
+		 */
+		public long getSmallEnvelopes() {
+			return this.smallEnvelopes;
+		}
+
+		/**
+		 * @return The number of header envelopes with a z or m range for a
+		 *         geometry without z or m values.
+		 */
+		public long getDimensionMismatches() {
+			return this.dimensionMismatches;
+		}
+
+		/**
+		 * @return The number of header envelopes that contain the geometry but
+		 *         are larger than its bounds.
+		 */
+		public long getLooseEnvelopes() {
+			return this.looseEnvelopes;
+		}
+
+		/**
+		 * @return The number of blobs that could not be decoded; they are
+		 *         reported by the geometry encoding tests.
+		 */
+		public long getUndecodable() {
+			return this.undecodable;
+		}
+
+		/**
+		 * @return The number of geometries whose WKB is truncated or
+		 *         malformed.
+		 */
+		public long getMalformed() {
+			return this.malformed;
+		}
+
+		/**
+		 * @return The problem found in the malformed geometry with the lowest
+		 *         rowid, or {@code null} if there is none.
+		 */
+		public String getFirstMalformedProblem() {
+			return this.firstMalformedProblem;
+		}
+
+		/**
+		 * @return {@code true} if the WKB of every geometry is well formed.
+		 */
+		public boolean isWellFormed() {
+			return this.malformed == 0;
+		}
+
+		/**
+		 * @return A description of the malformed geometries, or an empty
+		 *         string if there are none.
+		 */
+		public String describeMalformed() {
+			if (this.malformed == 0) {
+				return "";
+			}
+			return String.format("%d malformed geometries (%s%s)", this.malformed,
+					this.firstMalformed < 0 ? "" : "first rowid " + this.firstMalformed + ": ",
+					this.firstMalformedProblem);
+		}
+
+		/**
+		 * @return The profile of the geometries in the column.
+		 */
+		public FeatureProfile getProfile() {
+			return this.profile;
+		}
+
+		/**
+		 * @return {@code true} if no header envelope is wrong (loose envelopes
+		 *         are allowed).
+		 */
+		public boolean isConforming() {
+			return this.nanEnvelopes == 0 && this.smallEnvelopes == 0 && this.dimensionMismatches == 0;
+		}
+
+		void merge(final Report other) {
+			this.rows += other.rows;
+			this.undecodable += other.undecodable;
+			this.nanEnvelopes += other.nanEnvelopes;
+			this.firstNanEnvelope = first(this.firstNanEnvelope, other.firstNanEnvelope);
+			this.smallEnvelopes += other.smallEnvelopes;
+			this.firstSmallEnvelope = first(this.firstSmallEnvelope, other.firstSmallEnvelope);
+			this.dimensionMismatches += other.dimensionMismatches;
+			this.firstDimensionMismatch = first(this.firstDimensionMismatch, other.firstDimensionMismatch);
+			this.looseEnvelopes += other.looseEnvelopes;
+			this.firstLooseEnvelope = first(this.firstLooseEnvelope, other.firstLooseEnvelope);
+			if (other.malformed > 0) {
+				this.malformed += other.malformed;
+				keepFirstMalformed(other.firstMalformed, other.firstMalformedProblem);
+			}
+			this.profile.merge(other.profile);
+		}
+
+		void addMalformed(final long rowid, final String problem) {
+			this.malformed++;
+			keepFirstMalformed(rowid, problem);
+		}
+
+		private void keepFirstMalformed(final long rowid, final String problem) {
+			if (null == this.firstMalformedProblem
+					|| (rowid >= 0 && (this.firstMalformed < 0 || rowid < this.firstMalformed))) {
+				this.firstMalformed = rowid;
+				this.firstMalformedProblem = problem;
+			}
+		}
+
+		private static long first(final long a, final long b) {
+			return a < 0 ? b : (b < 0 ? a : Math.min(a, b));
+		}
+
+		private static String firstRowid(final long rowid) {
+			return rowid < 0 ? "" : " (first rowid " + rowid + ")";
+		}
+
+		/**
+		 * @return A description of the loose envelopes, or an empty string if
+		 *         there are none.
+		 */
+		public String describeLooseEnvelopes() {
+			return this.looseEnvelopes == 0 ? ""
+					: String.format("%d envelopes larger than their geometry%s", this.looseEnvelopes,
+							firstRowid(this.firstLooseEnvelope));
+		}
+
+		@Override
+		public String toString() {
+			final List<String> problems = new ArrayList<>();
+			if (this.nanEnvelopes > 0) {
+				problems.add(String.format("%d envelopes with NaN bounds for non-empty geometries%s",
+						this.nanEnvelopes, firstRowid(this.firstNanEnvelope)));
+			}
+			if (this.smallEnvelopes > 0) {
+				problems.add(String.format("%d envelopes that do not contain their geometry%s", this.smallEnvelopes,
+						firstRowid(this.firstSmallEnvelope)));
+			}
+			if (this.dimensionMismatches > 0) {
+				problems.add(String.format("%d envelopes with z or m bounds for geometries without z or m values%s",
+						this.dimensionMismatches, firstRowid(this.firstDimensionMismatch)));
+			}
+			return problems.isEmpty() ? String.format("%d envelopes match their geometry", this.rows)
+					: String.join("; ", problems);
+		}
+	}
+
+	/**
+	 * Creates a checker.
+	 *
+	 * @param scanner
+	 *            Reads the feature tables.
+	 */
+	public HeaderEnvelopeChecker(final PartitionedTableScanner scanner) {
+		super(scanner);
+	}
+
+	/**
+	 * Checks the header envelopes of the geometries in a feature table and
+	 * profiles them.
+	 *
+	 * @param tableName
+	 *            The name of the feature table (or view).
+	 * @param columnName
+	 *            The name of the geometry column.
+	 * @return The geometries whose envelope does not match.
+	 * @throws SQLException
+	 *             If the table cannot be read.
+	 */
+	public Report check(final String tableName, final String columnName) throws SQLException {
+		final Report report = scanBlobs("header envelopes", tableName, quoteIdentifier(columnName), Report::new,
+				(rowid, blob, partial) -> {
+					if (null == blob) {
+						partial.profile.addNull();
+					} else {
+						check(rowid, blob, partial);
+					}
+				}, (lower, upper) -> {
+					lower.merge(upper);
+					return lower;
+				});
+		report.profile.setColumn(tableName, columnName);
+		logUndecodable(report.undecodable, tableName);
+		return report;
+	}
+
+	/**
+	 * Profiles one geometry, checks the structure of its WKB and checks its
+	 * header envelope. The envelopes of empty geometries and of geometries of
+	 * extension types are not checked, and geometries without an envelope
+	 * only contribute to the profile.
+	 *
+	 * @param rowid
+	 *            The rowid of the feature (-1 if unknown).
+	 * @param blob
+	 *            The geometry blob.
+	 * @param report
+	 *            Receives any mismatch.
+	 */
+	static void check(final long rowid, final byte[] blob, final Report report) {
+		final GeometryHeader header;
+		final double[] bounds = WKBReader.newBounds();
+		final WKBReader reader;
+		final int typeCode;
+		try {
+			header = GeometryHeader.parse(blob);
+		} catch (IllegalArgumentException e) {
+			report.undecodable++;
+			report.profile.addUndecodable(blob.length);
+			return;
+		}
+		if (header.isExtended()) {
+			report.profile.addExtended(blob.length, header);
+			return;
+		}
+		reader = new WKBReader(blob, header.getWkbOffset());
+		try {
+			typeCode = reader.readBounds(bounds);
+		} catch (IllegalArgumentException e) {
+			report.undecodable++;
+			report.profile.addUndecodable(blob.length);
+			report.addMalformed(rowid, e.getMessage());
+			return;
+		}
+		if (null != reader.getProblem()) {
+			report.addMalformed(rowid, reader.getProblem());
+		}
+		report.profile.add(blob.length, header, typeCode, reader.getVertexCount());
+		if (header.getEnvelopeIndicator() == 0 || header.isEmpty() || !(bounds[0] <= bounds[1])) {
+			// no envelope to check, or only empty points, which have no extent
+			return;
+		}
+		report.rows++;
+		final double[] envelope = header.getEnvelope();
+		for (final double value : envelope) {
+			if (Double.isNaN(value)) {
+				report.nanEnvelopes++;
+				report.firstNanEnvelope = Report.first(report.firstNanEnvelope, rowid);
+				return;
+			}
+		}
+		// the envelope holds x and y, then z (indicators 2 and 4) and m
+		// (indicators 3 and 4); the bounds always hold x, y, z and m
+		final int indicator = header.getEnvelopeIndicator();
+		final boolean envelopeZ = indicator == 2 || indicator == 4;
+		final boolean envelopeM = indicator == 3 || indicator == 4;
+		if ((envelopeZ && !GeometryType.hasZ(typeCode)) || (envelopeM && !GeometryType.hasM(typeCode))) {
+			report.dimensionMismatches++;
+			report.firstDimensionMismatch = Report.first(report.firstDimensionMismatch, rowid);
+			return;
+		}
+		int comparison = compare(envelope, 0, bounds, 0) | compare(envelope, 2, bounds, 2);
+		if (envelopeZ) {
+			comparison |= compare(envelope, 4, bounds, 4);
+		}
+		if (envelopeM) {
+			comparison |= compare(envelope, envelopeZ ? 6 : 4, bounds, 6);
+		}
+		if ((comparison & SMALL) != 0) {
+			report.smallEnvelopes++;
+			report.firstSmallEnvelope = Report.first(report.firstSmallEnvelope, rowid);
+		} else if ((comparison & LOOSE) != 0) {
+			report.looseEnvelopes++;
+			report.firstLooseEnvelope = Report.first(report.firstLooseEnvelope, rowid);
+		}
+	}
+
+	/**
+	 * Compares the range of one ordinate in the envelope with the bounds of
+	 * the coordinates.
+	 *
+	 * @return SMALL if the range does not contain the bounds, LOOSE if it
+	 *         extends beyond them, or 0 if they match.
+	 */
+	private static int compare(final double[] envelope, final int envelopeIndex, final double[] bounds,
+			final int boundsIndex) {
+		final double min = envelope[envelopeIndex];
+		final double max = envelope[envelopeIndex + 1];
+		final double actualMin = bounds[boundsIndex];
+		final double actualMax = bounds[boundsIndex + 1];
+		if (actualMin < min - slack(min) || actualMax > max + slack(max)) {
+			return SMALL;
+		}
+		if (min < actualMin - slack(actualMin) || max > actualMax + slack(actualMax)) {
+			return LOOSE;
+		}
+		return 0;
+	}
+
+	private static double slack(final double bound) {
+		return Math.max(Math.abs(bound), 1.0) * TOLERANCE;
+	}
+}
@@ -0,0 +1,333 @@
+package org.opengis.cite.gpkg12.features;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.opengis.cite.gpkg12.util.Envelope;
+
+/**
+ * Walks a well-known binary (WKB) geometry without building geometry objects.
+ * Only the coordinates are visited, so the cost is linear in the size of the
+ * encoding and no per-geometry garbage is produced. ISO WKB type codes (with
+ * the Z, M and ZM offsets of 1000, 2000 and 3000) are supported for all of
+ * the core and non-linear geometry types used by GeoPackage.
+ * <p>
+ * While walking, the reader checks the structure of the non-linear
+ * geometries: a CircularString has no points or an odd number of at least
+ * three, a CompoundCurve consists of connected, non-empty LineStrings and
+ * CircularStrings, the rings of a CurvePolygon are closed curves, the members
+ * of a MultiCurve and a MultiSurface are curves and surfaces, and the members
+ * of any geometry have its z and m dimensions. The first problem found is
+ * available from {@link #getProblem()}.
+ * </p>
+ */
+public final class WKBReader {
+
+	static final String CIRCULARSTRING_POINTS = "CircularString with an even number of points or fewer than three";
+	static final String COMPOUNDCURVE_MEMBER = "CompoundCurve segment that is not a LineString or CircularString";
+	static final String COMPOUNDCURVE_EMPTY = "empty CompoundCurve segment";
+	static final String COMPOUNDCURVE_DISCONNECTED = "CompoundCurve segment that does not start where the previous one ends";
+	static final String CURVEPOLYGON_RING = "CurvePolygon ring that is not a curve";
+	static final String RING_NOT_CLOSED = "CurvePolygon ring that is not closed";
+	static final String MULTICURVE_MEMBER = "MultiCurve member that is not a curve";
+	static final String MULTISURFACE_MEMBER = "MultiSurface member that is not a Polygon or CurvePolygon";
+	static final String MIXED_DIMENSIONS = "member with other z or m dimensions than its parent";
+
+	private final ByteBuffer buffer;
+	private long vertices;
+	private String problem;
+	/** The number of points, first point and last point of the last curve read. */
+	private int count;
+	private double startX;
+	private double startY;
+	private double endX;
+	private double endY;
+
+	/**
+	 * Creates a reader for the WKB geometry at the given offset.
+	 *
+	 * @param data
+	 *            A buffer holding the WKB geometry (e.g. a GeoPackageBinary
+	 *            blob).
+	 * @param offset
+	 *            The offset of the WKB geometry.
+	 */
+	public WKBReader(final byte[] data, final int offset) {
+		this.buffer = ByteBuffer.wrap(data);
+		this.buffer.position(offset);
+	}
+
+	/**
+	 * Reads the geometry, growing an envelope to include every x/y coordinate.
+	 *
+	 * @param envelope
+	 *            The envelope to grow.
+	 * @return The ISO WKB type code of the (top-level) geometry.
+	 * @throws IllegalArgumentException
+	 *             If the WKB is truncated or malformed.
+	 */
+	public int readEnvelope(final Envelope envelope) {
+		final double[] bounds = newBounds();
+		final int typeCode = readBounds(bounds);
+		if (bounds[0] <= bounds[1] && bounds[2] <= bounds[3]) {
+			envelope.expandToInclude(new Envelope(bounds[0], bounds[2], bounds[1], bounds[3]));
+		}
+		return typeCode;
+	}
+
+	/**
+	 * Reads the geometry, growing the bounds of each ordinate to include every
+	 * coordinate. NaN ordinates (which denote an empty point) are ignored.
+	 *
+	 * @param bounds
+	 *            The bounds to grow, in the order of a GeoPackageBinary
+	 *            header envelope: minx, maxx, miny, maxy, minz, maxz, minm,
+	 *            maxm; see {@link #newBounds()}. The z and m bounds are only
+	 *            grown by coordinates that have z and m values.
+	 * @return The ISO WKB type code of the (top-level) geometry.
+	 * @throws IllegalArgumentException
+	 *             If the WKB is truncated or malformed.
+	 */
+	public int readBounds(final double[] bounds) {
+		try {
+			return readGeometry(bounds, -1);
+		} catch (BufferUnderflowException e) {
+			throw new IllegalArgumentException("Truncated WKB geometry", e);
+		}
+	}
+
+	/**
+	 * @return The number of coordinates read so far, including the NaN
+	 *         coordinates of empty points.
+	 */
+	public long getVertexCount() {
+		return this.vertices;
+	}
+
+	/**
+	 * @return The first structural problem found in the geometry read, or
+	 *         {@code null} if it is well formed.
+	 */
+	public String getProblem() {
+		return this.problem;
+	}
+
+	/**
+	 * @return Empty bounds for {@link #readBounds(double[])}: every minimum is
+	 *         positive infinity and every maximum negative infinity.
+	 */
+	public static double[] newBounds() {
+		final double[] bounds = new double[8];
+		for (int i = 0; i < bounds.length; i += 2) {
+			bounds[i] = Double.POSITIVE_INFINITY;
+			bounds[i + 1] = Double.NEGATIVE_INFINITY;
+		}
+		return bounds;
+	}
+
+	/**
+	 * Reads a geometry and returns its type code.
+	 *
+	 * @param parentDimensionality
+	 *            The z/m offset of the enclosing geometry divided by 1000, or
+	 *            -1 for the top-level geometry.
+	 */
+	private int readGeometry(final double[] bounds, final int parentDimensionality) {
+		final byte byteOrder = this.buffer.get();
+		if (byteOrder != 0 && byteOrder != 1) {
+			throw new IllegalArgumentException("Invalid WKB byte order " + byteOrder);
+		}
+		this.buffer.order(byteOrder == 1 ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+		final int typeCode = this.buffer.getInt();
+		final int baseType = typeCode % 1000;
+		final int dimensionality = typeCode / 1000;
+		if (typeCode < 0 || dimensionality > 3) {
+			throw new IllegalArgumentException("Invalid WKB geometry type " + typeCode);
+		}
+		if (parentDimensionality >= 0 && dimensionality != parentDimensionality) {
+			problem(MIXED_DIMENSIONS);
+		}
+		// XY, XYZ, XYM, XYZM
+		final boolean hasZ = dimensionality == 1 || dimensionality == 3;
+		final boolean hasM = dimensionality == 2 || dimensionality == 3;
+		final int ordinates = dimensionality == 0 ? 2 : (dimensionality == 3 ? 4 : 3);
+		switch (baseType) {
+		case 1: // Point
+			readCoordinates(1, hasZ, hasM, bounds);
+			break;
+		case 2: // LineString
+			readCoordinates(readCount(ordinates * Double.BYTES), hasZ, hasM, bounds);
+			break;
+		case 8: // CircularString
+			readCoordinates(readCount(ordinates * Double.BYTES), hasZ, hasM, bounds);
+			if (this.count != 0 && (this.count < 3 || this.count % 2 == 0)) {
+				problem(CIRCULARSTRING_POINTS);
+			}
+			break;
+		case 3: // Polygon
+			final int rings = readCount(Integer.BYTES);
+			for (int i = 0; i < rings; i++) {
+				readCoordinates(readCount(ordinates * Double.BYTES), hasZ, hasM, bounds);
+			}
+			break;
+		case 9: // CompoundCurve
+			readCompoundCurve(bounds, dimensionality);
+			break;
+		case 10: // CurvePolygon
+			final int curveRings = readCount(1 + Integer.BYTES);
+			for (int i = 0; i < curveRings; i++) {
+				if (!isCurve(readGeometry(bounds, dimensionality))) {
+					problem(CURVEPOLYGON_RING);
+				} else if (this.count > 0 && (this.startX != this.endX || this.startY != this.endY)) {
+					problem(RING_NOT_CLOSED);
+				}
+			}
+			break;
+		case 4: // MultiPoint
+		case 5: // MultiLineString
+		case 6: // MultiPolygon
+		case 7: // GeometryCollection
+		case 11: // MultiCurve
+		case 12: // MultiSurface
+			final int parts = readCount(1 + Integer.BYTES);
+			for (int i = 0; i < parts; i++) {
+				final int member = readGeometry(bounds, dimensionality) % 1000;
+				if (baseType == 11 && !isCurve(member)) {
+					problem(MULTICURVE_MEMBER);
+				} else if (baseType == 12 && member != 3 && member != 10) {
+					problem(MULTISURFACE_MEMBER);
+				}
+			}
+			break;
+		default:
+			// including the abstract Curve (13) and Surface (14)
+			throw new IllegalArgumentException("Unsupported WKB geometry type " + typeCode);
+		}
+		return typeCode;
+	}
+
+	/**
+	 * Reads the segments of a CompoundCurve, then records the first and last
+	 * point of the whole curve, for the ring closure check.
+	 */
+	private void readCompoundCurve(final double[] bounds, final int dimensionality) {
+		final int segments = readCount(1 + Integer.BYTES);
+		double firstX = 0;
+		double firstY = 0;
+		double lastX = 0;
+		double lastY = 0;
+		for (int i = 0; i < segments; i++) {
+			final int segment = readGeometry(bounds, dimensionality) % 1000;
+			if (segment != 2 && segment != 8) {
+				problem(COMPOUNDCURVE_MEMBER);
+			} else if (this.count == 0) {
+				problem(COMPOUNDCURVE_EMPTY);
+			} else if (i > 0 && (this.startX != lastX || this.startY != lastY)) {
+				problem(COMPOUNDCURVE_DISCONNECTED);
+			}
+			if (i == 0) {
+				firstX = this.startX;
+				firstY = this.startY;
+			}
+			lastX = this.endX;
+			lastY = this.endY;
+		}
+		this.count = segments;
+		this.startX = firstX;
+		this.startY = firstY;
+		this.endX = lastX;
+		this.endY = lastY;
+	}
+
+	private static boolean isCurve(final int typeCode) {
+		final int baseType = typeCode % 1000;
+		return baseType == 2 || baseType == 8 || baseType == 9;
+	}
+
+	private void problem(final String message) {
+		if (null == this.problem) {
+			this.problem = message;
+		}
+	}
+
+	/**
+	 * Reads an element count, rejecting values that could not possibly fit in
+	 * the remaining bytes (so a corrupt count cannot cause a long loop).
+	 */
+	private int readCount(final int minBytesPerElement) {
+		final int count = this.buffer.getInt();
+		if (count < 0 || (long) count * minBytesPerElement > this.buffer.remaining()) {
+			throw new IllegalArgumentException("Invalid WKB element count " + count);
+		}
+		return count;
+	}
+
+	/**
+	 * Grows the bounds by a sequence of coordinates. The ordinates are read
+	 * at absolute positions and the bounds are kept in local variables, so
+	 * the loop does no allocation and no buffer bookkeeping.
+	 */
+	private void readCoordinates(final int count, final boolean hasZ, final boolean hasM, final double[] bounds) {
+		final int stride = (2 + (hasZ ? 1 : 0) + (hasM ? 1 : 0)) * Double.BYTES;
+		final int start = this.buffer.position();
+		if ((long) count * stride > this.buffer.remaining()) {
+			throw new BufferUnderflowException();
+		}
+		final int end = start + count * stride;
+		this.vertices += count;
+		this.count = count;
+		if (count > 0) {
+			this.startX = this.buffer.getDouble(start);
+			this.startY = this.buffer.getDouble(start + Double.BYTES);
+			this.endX = this.buffer.getDouble(end - stride);
+			this.endY = this.buffer.getDouble(end - stride + Double.BYTES);
+		}
+		final int mOffset = (hasZ ? 3 : 2) * Double.BYTES;
+		double minX = bounds[0], maxX = bounds[1], minY = bounds[2], maxY = bounds[3];
+		for (int position = start; position < end; position += stride) {
+			final double x = this.buffer.getDouble(position);
+			final double y = this.buffer.getDouble(position + Double.BYTES);
+			// comparisons with NaN are false, so empty points are skipped
+			if (x < minX) {
+				minX = x;
+			}
+			if (x > maxX) {
+				maxX = x;
+			}
+			if (y < minY) {
+				minY = y;
+			}
+			if (y > maxY) {
+				maxY = y;
+			}
+		}
+		bounds[0] = minX;
+		bounds[1] = maxX;
+		bounds[2] = minY;
+		bounds[3] = maxY;
+		if (hasZ) {
+			readRange(start + 2 * Double.BYTES, end, stride, bounds, 4);
+		}
+		if (hasM) {
+			readRange(start + mOffset, end, stride, bounds, 6);
+		}
+		this.buffer.position(end);
+	}
+
+	private void readRange(final int start, final int end, final int stride, final double[] bounds,
+			final int index) {
+		double min = bounds[index], max = bounds[index + 1];
+		for (int position = start; position < end; position += stride) {
+			final double value = this.buffer.getDouble(position);
+			if (value < min) {
+				min = value;
+			}
+			if (value > max) {
+				max = value;
+			}
+		}
+		bounds[index] = min;
+		bounds[index + 1] = max;
+	}
+}
@@ -0,0 +1,176 @@
+package org.opengis.cite.gpkg12.tiles;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A compressed set of tile positions in a tile matrix, in the manner of a
+ * roaring bitmap: the positions are split into chunks of 65536 by their high
+ * bits, and each chunk holds its low 16 bits either in a sorted array (while
+ * it has at most 4096 tiles) or in a bitmap of 8 KiB. A sparse matrix, such
+ * as that of a high zoom level covering a small area, costs about two bytes
+ * per tile; a fully covered one about one bit per tile. Positions added in
+ * ascending order, as when the tiles are read through the index on (zoom
+ * level, tile column, tile row), only append to the arrays.
+ */
+final class TileBitmap {
+
+	/** The number of tiles above which an array chunk becomes a bitmap. */
+	static final int ARRAY_LIMIT = 4096;
+
+	private final Map<Long, Chunk> chunks = new HashMap<>();
+	private long lastKey = -1;
+	private Chunk lastChunk;
+	private long cardinality;
+
+	/**
+	 * Adds a position.
+	 *
+	 * @param position
+	 *            A non-negative position.
+	 * @return {@code false} if the position was already in the set.
+	 */
+	boolean add(final long position) {
+		final long key = position >>> 16;
+		if (key != this.lastKey) {
+			this.lastChunk = this.chunks.computeIfAbsent(key, k -> new ArrayChunk());
+			this.lastKey = key;
+		}
+		final int low = (int) position & 0xFFFF;
+		if (!this.lastChunk.add(low)) {
+			return false;
+		}
+		this.cardinality++;
+		if (this.lastChunk instanceof ArrayChunk && this.lastChunk.cardinality() > ARRAY_LIMIT) {
+			this.lastChunk = ((ArrayChunk) this.lastChunk).toBitmap();
+			this.chunks.put(key, this.lastChunk);
+		}
+		return true;
+	}
+
+	/**
+	 * @param position
+	 *            A position.
+	 * @return {@code true} if the position is in the set.
+	 */
+	boolean contains(final long position) {
+		final Chunk chunk = this.chunks.get(position >>> 16);
+		return null != chunk && chunk.contains((int) position & 0xFFFF);
+	}
+
+	/**
+	 * @return The number of positions in the set.
+	 */
+	long cardinality() {
+		return this.cardinality;
+	}
+
+	/**
+	 * @return The approximate number of bytes used by the chunks.
+	 */
+	long sizeInBytes() {
+		long size = 0;
+		for (final Chunk chunk : this.chunks.values()) {
+			size += chunk.sizeInBytes();
+		}
+		return size;
+	}
+
+	private interface Chunk {
+
+		boolean add(int low);
+
+		boolean contains(int low);
+
+		int cardinality();
+
+		int sizeInBytes();
+	}
+
+	/** A chunk holding its positions in a sorted array. */
+	private static final class ArrayChunk implements Chunk {
+
+		private char[] values = new char[4];
+		private int size;
+
+		@Override
+		public boolean add(final int low) {
+			final char value = (char) low;
+			int index;
+			if (this.size == 0 || this.values[this.size - 1] < value) {
+				index = this.size;
+			} else {
+				index = Arrays.binarySearch(this.values, 0, this.size, value);
+				if (index >= 0) {
+					return false;
+				}
+				index = -index - 1;
+			}
+			if (this.size == this.values.length) {
+				this.values = Arrays.copyOf(this.values, Math.min(this.size * 2, ARRAY_LIMIT + 1));
+			}
+			System.arraycopy(this.values, index, this.values, index + 1, this.size - index);
+			this.values[index] = value;
+			this.size++;
+			return true;
+		}
+
+		@Override
+		public boolean contains(final int low) {
+			return Arrays.binarySearch(this.values, 0, this.size, (char) low) >= 0;
+		}
+
+		@Override
+		public int cardinality() {
+			return this.size;
+		}
+
+		@Override
+		public int sizeInBytes() {
+			return this.values.length * Character.BYTES;
+		}
+
+		BitmapChunk toBitmap() {
+			final BitmapChunk bitmap = new BitmapChunk();
+			for (int i = 0; i < this.size; i++) {
+				bitmap.add(this.values[i]);
+			}
+			return bitmap;
+		}
+	}
+
+	/** A chunk holding its positions in a bitmap. */
+	private static final class BitmapChunk implements Chunk {
+
+		private final long[] words = new long[1024];
+		private int cardinality;
+
+		@Override
+		public boolean add(final int low) {
+			final long bit = 1L << low;
+			final int index = low >>> 6;
+			if ((this.words[index] & bit) != 0) {
+				return false;
+			}
+			this.words[index] |= bit;
+			this.cardinality++;
+			return true;
+		}
+
+		@Override
+		public boolean contains(final int low) {
+			return (this.words[low >>> 6] & 1L << low) != 0;
+		}
+
+		@Override
+		public int cardinality() {
+			return this.cardinality;
+		}
+
+		@Override
+		public int sizeInBytes() {
+			return this.words.length * Long.BYTES;
+		}
+	}
+}
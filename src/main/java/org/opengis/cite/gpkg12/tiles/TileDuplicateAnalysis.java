@@ -0,0 +1,466 @@
+package org.opengis.cite.gpkg12.tiles;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Finds tiles with identical content in a tile pyramid user data table, such
+ * as the blank or ocean tiles that make up much of many pyramids, and
+ * estimates the space that storing each content once would save. Each tile is
+ * hashed with xxHash64, and a tile whose hash was seen before counts as a
+ * duplicate.
+ * <p>
+ * The hashes are counted exactly until more than {@value #EXACT_LIMIT}
+ * distinct contents have been seen, which covers most tables. Beyond that,
+ * the contents seen more than once so far are kept as heavy hitters, up to
+ * {@value #MAX_HEAVY_HITTERS} of them, and every other tile is counted in a
+ * count-min sketch of fixed size. A hash whose estimated count rises above
+ * the error bound of the sketch becomes a heavy hitter, and the later tiles
+ * with that hash are counted as duplicates. As the sketch may overestimate,
+ * the tile that promotes a hash is not itself counted, so the duplicate
+ * counts and savings are then lower bounds.
+ * </p>
+ * <p>
+ * An analysis covers one table, or one rowid range of it; the analyses of
+ * several ranges are combined with {@link #merge(TileDuplicateAnalysis)}.
+ * </p>
+ */
+public class TileDuplicateAnalysis {
+
+	/** The number of rows of the count-min sketch. */
+	static final int SKETCH_DEPTH = 4;
+
+	/** The number of counters in each row of the count-min sketch. */
+	static final int SKETCH_WIDTH = 1 << 14;
+
+	/** The number of distinct contents up to which all are counted exactly. */
+	static final int EXACT_LIMIT = 1 << 16;
+
+	/**
+	 * The maximum number of distinct contents that are counted exactly once
+	 * the sketch is used.
+	 */
+	static final int MAX_HEAVY_HITTERS = 1024;
+
+	/** The number of most repeated contents listed in the report. */
+	private static final int REPORTED_HEAVY_HITTERS = 3;
+
+	private static final long PRIME64_1 = 0x9E3779B185EBCA87L;
+	private static final long PRIME64_2 = 0xC2B2AE3D27D4EB4FL;
+	private static final long PRIME64_3 = 0x165667B19E3779F9L;
+	private static final long PRIME64_4 = 0x85EBCA77C2B2AE63L;
+	private static final long PRIME64_5 = 0x27D4EB2F165667C5L;
+
+	/**
+	 * The tiles of one zoom level.
+	 */
+	public static final class ZoomStatistics {
+
+		private final int zoomLevel;
+		private long tiles;
+		private long bytes;
+		private long duplicates;
+		private long duplicateBytes;
+
+		ZoomStatistics(final int zoomLevel) {
+			this.zoomLevel = zoomLevel;
+		}
+
+		/**
+		 * @return The zoom level.
+		 */
+		public int getZoomLevel() {
+			return this.zoomLevel;
+		}
+
+		/**
+		 * @return The number of tiles at this zoom level.
+		 */
+		public long getTiles() {
+			return this.tiles;
+		}
+
+		/**
+		 * @return The total size in bytes of the tile data at this zoom level.
+		 */
+		public long getBytes() {
+			return this.bytes;
+		}
+
+		/**
+		 * @return The number of tiles whose content is held by an earlier
+		 *         tile.
+		 */
+		public long getDuplicates() {
+			return this.duplicates;
+		}
+
+		/**
+		 * @return The bytes of the duplicate tiles, which storing each
+		 *         content once would save.
+		 */
+		public long getDuplicateBytes() {
+			return this.duplicateBytes;
+		}
+
+		/**
+		 * @return The fraction of the tiles that are duplicates.
+		 */
+		public double getDuplicateRatio() {
+			return this.tiles == 0 ? 0 : (double) this.duplicates / this.tiles;
+		}
+
+		void merge(final ZoomStatistics other) {
+			this.tiles += other.tiles;
+			this.bytes += other.bytes;
+			this.duplicates += other.duplicates;
+			this.duplicateBytes += other.duplicateBytes;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("zoom %d: %d of %d tiles duplicate (%.1f%%), %d of %d bytes", this.zoomLevel,
+					this.duplicates, this.tiles, 100 * getDuplicateRatio(), this.duplicateBytes, this.bytes);
+		}
+	}
+
+	/** A content counted exactly. */
+	private static final class Content {
+
+		private final long hash;
+		private final long size;
+		/** The zoom level of the first tile with this content. */
+		private final int zoomLevel;
+		private long count;
+
+		Content(final long hash, final long size, final int zoomLevel, final long count) {
+			this.hash = hash;
+			this.size = size;
+			this.zoomLevel = zoomLevel;
+			this.count = count;
+		}
+
+		Content copy() {
+			return new Content(this.hash, this.size, this.zoomLevel, this.count);
+		}
+	}
+
+	private final int exactLimit;
+	/** All contents while counting exactly, then the heavy hitters. */
+	private final Map<Long, Content> contents = new HashMap<>();
+	/** The count-min sketch, or {@code null} while counting exactly. */
+	private int[][] sketch;
+	/** The counter of each sketch row that the current hash maps to. */
+	private final int[] columns = new int[SKETCH_DEPTH];
+	private final SortedMap<Integer, ZoomStatistics> zoomStatistics = new TreeMap<>();
+	private long tiles;
+
+	/**
+	 * Creates an empty analysis.
+	 */
+	public TileDuplicateAnalysis() {
+		this(EXACT_LIMIT);
+	}
+
+	TileDuplicateAnalysis(final int exactLimit) {
+		this.exactLimit = exactLimit;
+	}
+
+	/**
+	 * Adds a tile.
+	 *
+	 * @param zoomLevel
+	 *            The zoom level of the tile.
+	 * @param tile
+	 *            The tile data.
+	 */
+	public void add(final int zoomLevel, final byte[] tile) {
+		add(zoomLevel, hash(tile), tile.length);
+	}
+
+	void add(final int zoomLevel, final long hash, final long size) {
+		this.tiles++;
+		final ZoomStatistics zoom = this.zoomStatistics.computeIfAbsent(zoomLevel, ZoomStatistics::new);
+		zoom.tiles++;
+		zoom.bytes += size;
+		final Content content = this.contents.get(hash);
+		if (null != content) {
+			content.count++;
+			zoom.duplicates++;
+			zoom.duplicateBytes += size;
+		} else if (null == this.sketch) {
+			this.contents.put(hash, new Content(hash, size, zoomLevel, 1));
+			if (this.contents.size() > this.exactLimit) {
+				toSketch();
+			}
+		} else if (increment(hash, 1) >= promotionThreshold() && this.contents.size() < MAX_HEAVY_HITTERS) {
+			this.contents.put(hash, new Content(hash, size, zoomLevel, 1));
+		}
+	}
+
+	/**
+	 * Adds the counts of another analysis of the same table, which covers the
+	 * tiles that follow those of this one. A content counted exactly in both
+	 * is a repeat across the two, so the first tile with it in the other
+	 * analysis becomes a duplicate. The other contents of the other analysis
+	 * are checked against the combined sketch counts and may become heavy
+	 * hitters.
+	 *
+	 * @param other
+	 *            The analysis of the following rowid range.
+	 * @return This analysis.
+	 */
+	public TileDuplicateAnalysis merge(final TileDuplicateAnalysis other) {
+		for (final ZoomStatistics zoom : other.zoomStatistics.values()) {
+			this.zoomStatistics.computeIfAbsent(zoom.zoomLevel, ZoomStatistics::new).merge(zoom);
+		}
+		this.tiles += other.tiles;
+		if (null == this.sketch && null == other.sketch) {
+			for (final Content content : other.contents.values()) {
+				final Content existing = this.contents.get(content.hash);
+				if (null == existing) {
+					this.contents.put(content.hash, content.copy());
+				} else {
+					addRepeat(existing, content);
+				}
+			}
+			if (this.contents.size() > this.exactLimit) {
+				toSketch();
+			}
+			return this;
+		}
+		if (null == this.sketch) {
+			toSketch();
+		}
+		if (null != other.sketch) {
+			for (int row = 0; row < SKETCH_DEPTH; row++) {
+				for (int column = 0; column < SKETCH_WIDTH; column++) {
+					this.sketch[row][column] += other.sketch[row][column];
+				}
+			}
+		}
+		for (final Content content : other.contents.values()) {
+			final Content existing = this.contents.get(content.hash);
+			if (null != existing) {
+				addRepeat(existing, content);
+				continue;
+			}
+			// the contents of an exact analysis are not in any sketch yet
+			final long estimate = null == other.sketch ? increment(content.hash, content.count)
+					: estimate(content.hash) + content.count;
+			if ((content.count > 1 || estimate >= promotionThreshold())
+					&& this.contents.size() < MAX_HEAVY_HITTERS) {
+				this.contents.put(content.hash, content.copy());
+			}
+		}
+		return this;
+	}
+
+	/**
+	 * Adds the count of a content of the following range to the same content
+	 * of this one; the first tile with it in that range is a duplicate.
+	 */
+	private void addRepeat(final Content existing, final Content following) {
+		existing.count += following.count;
+		final ZoomStatistics zoom = this.zoomStatistics.get(following.zoomLevel);
+		zoom.duplicates++;
+		zoom.duplicateBytes += following.size;
+	}
+
+	/**
+	 * Stops counting every content exactly: the contents are counted in the
+	 * sketch, and those seen more than once are kept as heavy hitters.
+	 */
+	private void toSketch() {
+		this.sketch = new int[SKETCH_DEPTH][SKETCH_WIDTH];
+		final List<Content> repeated = mostRepeated(MAX_HEAVY_HITTERS);
+		for (final Content content : this.contents.values()) {
+			increment(content.hash, content.count);
+		}
+		this.contents.clear();
+		repeated.forEach(content -> this.contents.put(content.hash, content));
+	}
+
+	/**
+	 * @return The statistics of each zoom level, ordered by zoom level.
+	 */
+	public SortedMap<Integer, ZoomStatistics> getZoomStatistics() {
+		return Collections.unmodifiableSortedMap(this.zoomStatistics);
+	}
+
+	/**
+	 * @return The statistics of the whole table.
+	 */
+	public ZoomStatistics getTotal() {
+		final ZoomStatistics total = new ZoomStatistics(-1);
+		this.zoomStatistics.values().forEach(total::merge);
+		return total;
+	}
+
+	/**
+	 * @return The number of contents found in more than one tile.
+	 */
+	public int getRepeatedContentCount() {
+		return mostRepeated(Integer.MAX_VALUE).size();
+	}
+
+	/**
+	 * @return The number of tiles found with the most repeated content, or 0
+	 *         if no content is repeated.
+	 */
+	public long getMaxRepeatCount() {
+		final List<Content> top = mostRepeated(1);
+		return top.isEmpty() ? 0 : top.get(0).count;
+	}
+
+	@Override
+	public String toString() {
+		final ZoomStatistics total = getTotal();
+		final StringBuilder report = new StringBuilder(String.format(
+				"%d of %d tiles duplicate (%.1f%%), %d of %d bytes (%.1f%%) could be saved", total.duplicates,
+				total.tiles, 100 * total.getDuplicateRatio(), total.duplicateBytes, total.bytes,
+				total.bytes == 0 ? 0 : 100.0 * total.duplicateBytes / total.bytes));
+		for (final ZoomStatistics zoom : this.zoomStatistics.values()) {
+			report.append("; ").append(zoom);
+		}
+		for (final Content content : mostRepeated(REPORTED_HEAVY_HITTERS)) {
+			report.append(String.format("; content %016x (%d bytes) in %s%d tiles", content.hash, content.size,
+					null == this.sketch ? "" : "at least ", content.count));
+		}
+		return report.toString();
+	}
+
+	/**
+	 * Hashes bytes with xxHash64 (seed 0).
+	 *
+	 * @param data
+	 *            The bytes.
+	 * @return The hash.
+	 */
+	static long hash(final byte[] data) {
+		final int length = data.length;
+		int offset = 0;
+		long hash;
+		if (length >= 32) {
+			long v1 = PRIME64_1 + PRIME64_2;
+			long v2 = PRIME64_2;
+			long v3 = 0;
+			long v4 = -PRIME64_1;
+			final int limit = length - 32;
+			do {
+				v1 = round(v1, readLong(data, offset));
+				v2 = round(v2, readLong(data, offset + 8));
+				v3 = round(v3, readLong(data, offset + 16));
+				v4 = round(v4, readLong(data, offset + 24));
+				offset += 32;
+			} while (offset <= limit);
+			hash = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12)
+					+ Long.rotateLeft(v4, 18);
+			hash = mergeRound(hash, v1);
+			hash = mergeRound(hash, v2);
+			hash = mergeRound(hash, v3);
+			hash = mergeRound(hash, v4);
+		} else {
+			hash = PRIME64_5;
+		}
+		hash += length;
+		while (offset + 8 <= length) {
+			hash ^= round(0, readLong(data, offset));
+			hash = Long.rotateLeft(hash, 27) * PRIME64_1 + PRIME64_4;
+			offset += 8;
+		}
+		if (offset + 4 <= length) {
+			hash ^= (readInt(data, offset) & 0xFFFFFFFFL) * PRIME64_1;
+			hash = Long.rotateLeft(hash, 23) * PRIME64_2 + PRIME64_3;
+			offset += 4;
+		}
+		while (offset < length) {
+			hash ^= (data[offset] & 0xFFL) * PRIME64_5;
+			hash = Long.rotateLeft(hash, 11) * PRIME64_1;
+			offset++;
+		}
+		hash ^= hash >>> 33;
+		hash *= PRIME64_2;
+		hash ^= hash >>> 29;
+		hash *= PRIME64_3;
+		hash ^= hash >>> 32;
+		return hash;
+	}
+
+	/**
+	 * Counts a hash in the sketch with a conservative update, which raises
+	 * only the counters that are below the new estimate.
+	 *
+	 * @param count
+	 *            The number of occurrences to add.
+	 * @return The estimated count of the hash, including these occurrences.
+	 */
+	private int increment(final long hash, final long count) {
+		final int estimate = (int) Math.min(Integer.MAX_VALUE, estimate(hash) + count);
+		for (int row = 0; row < SKETCH_DEPTH; row++) {
+			if (this.sketch[row][this.columns[row]] < estimate) {
+				this.sketch[row][this.columns[row]] = estimate;
+			}
+		}
+		return estimate;
+	}
+
+	/**
+	 * Reads the estimated count of a hash, and leaves the counters it maps to
+	 * in {@link #columns}.
+	 */
+	private int estimate(final long hash) {
+		int estimate = Integer.MAX_VALUE;
+		for (int row = 0; row < SKETCH_DEPTH; row++) {
+			// each row takes its own 16 bits of the hash
+			this.columns[row] = (int) (hash >>> (16 * row)) & (SKETCH_WIDTH - 1);
+			estimate = Math.min(estimate, this.sketch[row][this.columns[row]]);
+		}
+		return estimate;
+	}
+
+	/**
+	 * The count above which a sketch estimate shows a repeated content: the
+	 * count-min error bound e * n / width, and at least 2.
+	 */
+	private long promotionThreshold() {
+		return Math.max(2, (long) Math.ceil(Math.E * this.tiles / SKETCH_WIDTH) + 1);
+	}
+
+	/**
+	 * @return The contents found in more than one tile, most repeated first.
+	 */
+	private List<Content> mostRepeated(final int limit) {
+		final List<Content> sorted = new ArrayList<>();
+		for (final Content content : this.contents.values()) {
+			if (content.count > 1) {
+				sorted.add(content);
+			}
+		}
+		sorted.sort(Comparator.comparingLong((Content content) -> content.count).reversed());
+		return sorted.subList(0, Math.min(limit, sorted.size()));
+	}
+
+	private static long round(final long accumulator, final long input) {
+		return Long.rotateLeft(accumulator + input * PRIME64_2, 31) * PRIME64_1;
+	}
+
+	private static long mergeRound(final long accumulator, final long value) {
+		return (accumulator ^ round(0, value)) * PRIME64_1 + PRIME64_4;
+	}
+
+	private static long readLong(final byte[] data, final int offset) {
+		return (readInt(data, offset) & 0xFFFFFFFFL) | (long) readInt(data, offset + 4) << 32;
+	}
+
+	private static int readInt(final byte[] data, final int offset) {
+		return (data[offset] & 0xFF) | (data[offset + 1] & 0xFF) << 8 | (data[offset + 2] & 0xFF) << 16
+				| (data[offset + 3] & 0xFF) << 24;
+	}
+}
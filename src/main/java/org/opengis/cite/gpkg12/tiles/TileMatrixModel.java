@@ -0,0 +1,296 @@
+package org.opengis.cite.gpkg12.tiles;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import org.opengis.cite.gpkg12.util.Envelope;
+
+/**
+ * The contents of {@code gpkg_tile_matrix_set} and {@code gpkg_tile_matrix},
+ * read once so that the tile tests can check every pyramid and zoom level in
+ * memory instead of querying each table again. The values are kept in
+ * primitive arrays: the matrix set columns are indexed by table, and the tile
+ * matrix columns hold the zoom levels of each table in ascending order, one
+ * run per table. A model does not change once loaded.
+ */
+public final class TileMatrixModel {
+
+	/**
+	 * The tile matrix set and tile matrices of one tile pyramid user data
+	 * table. The zoom levels are addressed by their position, from 0 to
+	 * {@link #getZoomCount()} - 1, in ascending order of zoom level.
+	 */
+	public static final class Pyramid {
+
+		private final TileMatrixModel model;
+		private final String tableName;
+		private final int table;
+		private final int offset;
+		private final int count;
+
+		private Pyramid(final TileMatrixModel model, final String tableName, final int table) {
+			this.model = model;
+			this.tableName = tableName;
+			this.table = table;
+			this.offset = table < 0 ? 0 : model.zoomOffsets[table];
+			this.count = table < 0 ? 0 : model.zoomCounts[table];
+		}
+
+		/**
+		 * @return The name of the tile pyramid user data table.
+		 */
+		public String getTableName() {
+			return this.tableName;
+		}
+
+		/**
+		 * @return {@code true} if the table has a row in
+		 *         {@code gpkg_tile_matrix_set}.
+		 */
+		public boolean hasMatrixSet() {
+			return this.table >= 0 && this.model.hasMatrixSet[this.table];
+		}
+
+		/**
+		 * @return The srs_id of the tile matrix set, or {@code null} if there
+		 *         is none.
+		 */
+		public Long getSrsId() {
+			return hasMatrixSet() ? this.model.srsIds[this.table] : null;
+		}
+
+		/**
+		 * @return The bounding box of the tile matrix set, or {@code null} if
+		 *         there is none.
+		 */
+		public Envelope getBounds() {
+			if (!hasMatrixSet()) {
+				return null;
+			}
+			final int base = 4 * this.table;
+			final double[] bounds = this.model.bounds;
+			return new Envelope(bounds[base], bounds[base + 1], bounds[base + 2], bounds[base + 3]);
+		}
+
+		/**
+		 * @return The number of zoom levels in {@code gpkg_tile_matrix}.
+		 */
+		public int getZoomCount() {
+			return this.count;
+		}
+
+		/**
+		 * Finds a zoom level.
+		 *
+		 * @param zoomLevel
+		 *            The zoom level.
+		 * @return Its position, or -1 if it is not in {@code gpkg_tile_matrix}.
+		 */
+		public int indexOf(final int zoomLevel) {
+			final int index = Arrays.binarySearch(this.model.zoomLevels, this.offset, this.offset + this.count,
+					zoomLevel);
+			return index < 0 ? -1 : index - this.offset;
+		}
+
+		/**
+		 * @param index
+		 *            The position of the zoom level, from 0 to
+		 *            {@link #getZoomCount()} - 1.
+		 * @return The zoom_level.
+		 */
+		public int getZoomLevel(final int index) {
+			return this.model.zoomLevels[position(index)];
+		}
+
+		/**
+		 * @param index
+		 *            The position of the zoom level, from 0 to
+		 *            {@link #getZoomCount()} - 1.
+		 * @return The matrix_width: the number of columns of tiles.
+		 */
+		public long getMatrixWidth(final int index) {
+			return this.model.matrixWidths[position(index)];
+		}
+
+		/**
+		 * @param index
+		 *            The position of the zoom level, from 0 to
+		 *            {@link #getZoomCount()} - 1.
+		 * @return The matrix_height: the number of rows of tiles.
+		 */
+		public long getMatrixHeight(final int index) {
+			return this.model.matrixHeights[position(index)];
+		}
+
+		/**
+		 * @param index
+		 *            The position of the zoom level, from 0 to
+		 *            {@link #getZoomCount()} - 1.
+		 * @return The tile_width in pixels.
+		 */
+		public int getTileWidth(final int index) {
+			return this.model.tileWidths[position(index)];
+		}
+
+		/**
+		 * @param index
+		 *            The position of the zoom level, from 0 to
+		 *            {@link #getZoomCount()} - 1.
+		 * @return The tile_height in pixels.
+		 */
+		public int getTileHeight(final int index) {
+			return this.model.tileHeights[position(index)];
+		}
+
+		/**
+		 * @param index
+		 *            The position of the zoom level, from 0 to
+		 *            {@link #getZoomCount()} - 1.
+		 * @return The pixel_x_size, in the units of the srs.
+		 */
+		public double getPixelXSize(final int index) {
+			return this.model.pixelXSizes[position(index)];
+		}
+
+		/**
+		 * @param index
+		 *            The position of the zoom level, from 0 to
+		 *            {@link #getZoomCount()} - 1.
+		 * @return The pixel_y_size, in the units of the srs.
+		 */
+		public double getPixelYSize(final int index) {
+			return this.model.pixelYSizes[position(index)];
+		}
+
+		private int position(final int index) {
+			if (index < 0 || index >= this.count) {
+				throw new IndexOutOfBoundsException(
+						String.format("Zoom index %d of %d in %s", index, this.count, this.tableName));
+			}
+			return this.offset + index;
+		}
+	}
+
+	private final Map<String, Integer> tables;
+
+	private final boolean[] hasMatrixSet;
+	private final long[] srsIds;
+	/** min_x, min_y, max_x, max_y of each table. */
+	private final double[] bounds;
+
+	private final int[] zoomOffsets;
+	private final int[] zoomCounts;
+
+	private final int[] zoomLevels;
+	private final long[] matrixWidths;
+	private final long[] matrixHeights;
+	private final int[] tileWidths;
+	private final int[] tileHeights;
+	private final double[] pixelXSizes;
+	private final double[] pixelYSizes;
+
+	private TileMatrixModel(final Map<String, Integer> tables, final int matrixCount) {
+		this.tables = tables;
+		final int tableCount = tables.size();
+		this.hasMatrixSet = new boolean[tableCount];
+		this.srsIds = new long[tableCount];
+		this.bounds = new double[4 * tableCount];
+		this.zoomOffsets = new int[tableCount];
+		this.zoomCounts = new int[tableCount];
+		this.zoomLevels = new int[matrixCount];
+		this.matrixWidths = new long[matrixCount];
+		this.matrixHeights = new long[matrixCount];
+		this.tileWidths = new int[matrixCount];
+		this.tileHeights = new int[matrixCount];
+		this.pixelXSizes = new double[matrixCount];
+		this.pixelYSizes = new double[matrixCount];
+	}
+
+	/**
+	 * Reads {@code gpkg_tile_matrix_set} and {@code gpkg_tile_matrix}.
+	 *
+	 * @param connection
+	 *            A connection to the GeoPackage.
+	 * @return The model.
+	 * @throws SQLException
+	 *             If either table cannot be read.
+	 */
+	public static TileMatrixModel load(final Connection connection) throws SQLException {
+		try (final Statement statement = connection.createStatement()) {
+			final Map<String, Integer> tables = new HashMap<>();
+			final int matrixCount;
+			try (final ResultSet resultSet = statement.executeQuery(
+					"SELECT table_name, COUNT(*) FROM gpkg_tile_matrix GROUP BY table_name UNION ALL SELECT table_name, 0 FROM gpkg_tile_matrix_set")) {
+				int count = 0;
+				while (resultSet.next()) {
+					tables.putIfAbsent(resultSet.getString(1), tables.size());
+					count += resultSet.getInt(2);
+				}
+				matrixCount = count;
+			}
+			final TileMatrixModel model = new TileMatrixModel(tables, matrixCount);
+			try (final ResultSet resultSet = statement
+					.executeQuery("SELECT table_name, srs_id, min_x, min_y, max_x, max_y FROM gpkg_tile_matrix_set")) {
+				while (resultSet.next()) {
+					final int table = tables.get(resultSet.getString(1));
+					model.hasMatrixSet[table] = true;
+					model.srsIds[table] = resultSet.getLong(2);
+					for (int i = 0; i < 4; i++) {
+						model.bounds[4 * table + i] = resultSet.getDouble(3 + i);
+					}
+				}
+			}
+			try (final ResultSet resultSet = statement.executeQuery(
+					"SELECT table_name, zoom_level, matrix_width, matrix_height, tile_width, tile_height, pixel_x_size, pixel_y_size FROM gpkg_tile_matrix ORDER BY table_name, zoom_level")) {
+				int position = 0;
+				int table = -1;
+				String tableName = null;
+				while (resultSet.next() && position < matrixCount) {
+					final String rowTableName = resultSet.getString(1);
+					if (table < 0 || !Objects.equals(tableName, rowTableName)) {
+						tableName = rowTableName;
+						table = tables.get(tableName);
+						model.zoomOffsets[table] = position;
+					}
+					model.zoomCounts[table]++;
+					model.zoomLevels[position] = resultSet.getInt(2);
+					model.matrixWidths[position] = resultSet.getLong(3);
+					model.matrixHeights[position] = resultSet.getLong(4);
+					model.tileWidths[position] = resultSet.getInt(5);
+					model.tileHeights[position] = resultSet.getInt(6);
+					model.pixelXSizes[position] = resultSet.getDouble(7);
+					model.pixelYSizes[position] = resultSet.getDouble(8);
+					position++;
+				}
+			}
+			return model;
+		}
+	}
+
+	/**
+	 * @param tableName
+	 *            The name of a tile pyramid user data table.
+	 * @return Its tile matrix set and tile matrices; a table that is in
+	 *         neither table has no matrix set and no zoom levels.
+	 */
+	public Pyramid getPyramid(final String tableName) {
+		final Integer table = this.tables.get(tableName);
+		return new Pyramid(this, tableName, null == table ? -1 : table);
+	}
+
+	/**
+	 * @return The names of the tables in {@code gpkg_tile_matrix_set} or
+	 *         {@code gpkg_tile_matrix}.
+	 */
+	public Set<String> getTableNames() {
+		return Collections.unmodifiableSet(this.tables.keySet());
+	}
+}
@@ -0,0 +1,310 @@
+package org.opengis.cite.gpkg12.tiles;
+
+import static org.opengis.cite.gpkg12.util.GeoPackageQueries.quoteIdentifier;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.opengis.cite.gpkg12.util.Envelope;
+import org.opengis.cite.gpkg12.util.ProgressMonitor;
+import org.opengis.cite.gpkg12.util.ScanProgress;
+
+/**
+ * The range of tile columns and rows that actually hold tiles at each zoom
+ * level of a tile pyramid user data table. It is gathered in a single pass
+ * over the (zoom_level, tile_column, tile_row) columns, which SQLite can
+ * answer from the index backing the table's unique constraint without
+ * reading any tile data. The same pass checks each tile against the matrix
+ * size in {@code gpkg_tile_matrix} and records it in a {@link TileBitmap}, so
+ * that duplicate tiles and the coverage of each matrix are found without
+ * relying on the unique constraint or on further queries.
+ */
+public class TileOccupancy {
+
+	/**
+	 * The occupied tile range at one zoom level.
+	 */
+	public static final class ZoomRange {
+
+		private final int zoomLevel;
+		private final long matrixWidth;
+		private final long matrixHeight;
+		private final TileBitmap tiles;
+		private long minColumn = Long.MAX_VALUE;
+		private long maxColumn = Long.MIN_VALUE;
+		private long minRow = Long.MAX_VALUE;
+		private long maxRow = Long.MIN_VALUE;
+		private long tileCount;
+		private long columnsOutOfRange;
+		private long rowsOutOfRange;
+		private long duplicateCount;
+		private long[] firstDuplicate;
+
+		ZoomRange(final int zoomLevel) {
+			this(zoomLevel, 0, 0);
+		}
+
+		/**
+		 * @param zoomLevel
+		 *            The zoom level.
+		 * @param matrixWidth
+		 *            The matrix_width of the zoom level, or 0 if it is not in
+		 *            {@code gpkg_tile_matrix}.
+		 * @param matrixHeight
+		 *            The matrix_height of the zoom level, or 0 if it is not in
+		 *            {@code gpkg_tile_matrix}.
+		 */
+		ZoomRange(final int zoomLevel, final long matrixWidth, final long matrixHeight) {
+			this.zoomLevel = zoomLevel;
+			this.matrixWidth = matrixWidth;
+			this.matrixHeight = matrixHeight;
+			this.tiles = isDefined() ? new TileBitmap() : null;
+		}
+
+		void add(final long column, final long row) {
+			this.minColumn = Math.min(this.minColumn, column);
+			this.maxColumn = Math.max(this.maxColumn, column);
+			this.minRow = Math.min(this.minRow, row);
+			this.maxRow = Math.max(this.maxRow, row);
+			this.tileCount++;
+			if (!isDefined()) {
+				return;
+			}
+			final boolean columnInRange = column >= 0 && column < this.matrixWidth;
+			final boolean rowInRange = row >= 0 && row < this.matrixHeight;
+			if (!columnInRange) {
+				this.columnsOutOfRange++;
+			}
+			if (!rowInRange) {
+				this.rowsOutOfRange++;
+			}
+			// Tiles are read column by column, so positions mostly ascend
+			if (columnInRange && rowInRange && !this.tiles.add(column * this.matrixHeight + row)) {
+				this.duplicateCount++;
+				if (null == this.firstDuplicate) {
+					this.firstDuplicate = new long[] { column, row };
+				}
+			}
+		}
+
+		/**
+		 * @return The zoom level.
+		 */
+		public int getZoomLevel() {
+			return this.zoomLevel;
+		}
+
+		/**
+		 * @return The smallest tile_column of the tiles.
+		 */
+		public long getMinColumn() {
+			return this.minColumn;
+		}
+
+		/**
+		 * @return The largest tile_column of the tiles.
+		 */
+		public long getMaxColumn() {
+			return this.maxColumn;
+		}
+
+		/**
+		 * @return The smallest tile_row of the tiles.
+		 */
+		public long getMinRow() {
+			return this.minRow;
+		}
+
+		/**
+		 * @return The largest tile_row of the tiles.
+		 */
+		public long getMaxRow() {
+			return this.maxRow;
+		}
+
+		/**
+		 * @return The number of tiles at this zoom level.
+		 */
+		public long getTileCount() {
+			return this.tileCount;
+		}
+
+		/**
+		 * @return {@code true} if the zoom level is in {@code gpkg_tile_matrix},
+		 *         so that the checks against the matrix size were made.
+		 */
+		public boolean isDefined() {
+			return this.matrixWidth > 0 && this.matrixHeight > 0;
+		}
+
+		/**
+		 * @return The matrix_width of the zoom level in {@code gpkg_tile_matrix},
+		 *         or 0 if it has none.
+		 */
+		public long getMatrixWidth() {
+			return this.matrixWidth;
+		}
+
+		/**
+		 * @return The matrix_height of the zoom level in
+		 *         {@code gpkg_tile_matrix}, or 0 if it has none.
+		 */
+		public long getMatrixHeight() {
+			return this.matrixHeight;
+		}
+
+		/**
+		 * @return The number of tiles whose tile_column is outside 0 to
+		 *         matrix_width - 1.
+		 */
+		public long getColumnsOutOfRange() {
+			return this.columnsOutOfRange;
+		}
+
+		/**
+		 * @return The number of tiles whose tile_row is outside 0 to
+		 *         matrix_height - 1.
+		 */
+		public long getRowsOutOfRange() {
+			return this.rowsOutOfRange;
+		}
+
+		/**
+		 * @return The number of tiles at a position already taken by another
+		 *         tile.
+		 */
+		public long getDuplicateCount() {
+			return this.duplicateCount;
+		}
+
+		/**
+		 * @return The column and row of the first duplicate tile, or
+		 *         {@code null} if there is none.
+		 */
+		public long[] getFirstDuplicate() {
+			return null == this.firstDuplicate ? null : this.firstDuplicate.clone();
+		}
+
+		/**
+		 * @return The number of distinct positions in the matrix that hold a
+		 *         tile.
+		 */
+		public long getDistinctTileCount() {
+			return isDefined() ? this.tiles.cardinality() : 0;
+		}
+
+		/**
+		 * @return The fraction of the tile matrix that holds tiles, or NaN if
+		 *         the zoom level is not in {@code gpkg_tile_matrix}.
+		 */
+		public double getCoverage() {
+			return isDefined() ? this.tiles.cardinality() / ((double) this.matrixWidth * this.matrixHeight) : Double.NaN;
+		}
+
+		/**
+		 * @return The approximate number of bytes used to track the tiles.
+		 */
+		long getTrackingBytes() {
+			return isDefined() ? this.tiles.sizeInBytes() : 0;
+		}
+
+		/**
+		 * Converts the occupied range to CRS coordinates. Tile (0, 0) is at
+		 * the upper left corner of the tile matrix set bounding box.
+		 *
+		 * @param originX
+		 *            The min_x of the tile matrix set.
+		 * @param originY
+		 *            The max_y of the tile matrix set.
+		 * @param tileSpanX
+		 *            The width of one tile in CRS units (tile_width *
+		 *            pixel_x_size).
+		 * @param tileSpanY
+		 *            The height of one tile in CRS units (tile_height *
+		 *            pixel_y_size).
+		 * @return The envelope of the occupied tiles.
+		 */
+		public Envelope toEnvelope(final double originX, final double originY, final double tileSpanX,
+				final double tileSpanY) {
+			return new Envelope(originX + this.minColumn * tileSpanX, originY - (this.maxRow + 1) * tileSpanY,
+					originX + (this.maxColumn + 1) * tileSpanX, originY - this.minRow * tileSpanY);
+		}
+
+		@Override
+		public String toString() {
+			final String range = String.format("zoom %d: columns %d-%d, rows %d-%d, %d tiles", this.zoomLevel,
+					this.minColumn, this.maxColumn, this.minRow, this.maxRow, this.tileCount);
+			if (!isDefined()) {
+				return range;
+			}
+			return String.format("%s, %.2f%% of the %dx%d matrix", range, 100 * getCoverage(), this.matrixWidth,
+					this.matrixHeight);
+		}
+	}
+
+	private final SortedMap<Integer, ZoomRange> zoomRanges;
+
+	private TileOccupancy(final SortedMap<Integer, ZoomRange> zoomRanges) {
+		this.zoomRanges = Collections.unmodifiableSortedMap(zoomRanges);
+	}
+
+	/**
+	 * Scans a tile pyramid user data table.
+	 *
+	 * @param connection
+	 *            A connection to the GeoPackage.
+	 * @param tableName
+	 *            The name of the tile pyramid user data table.
+	 * @param pyramid
+	 *            The tile matrices of the table, from the
+	 *            {@link TileMatrixModel} loaded for the test run.
+	 * @param monitor
+	 *            The monitor that publishes the progress of the scan.
+	 * @return The occupied range at each zoom level that has tiles.
+	 * @throws SQLException
+	 *             If the table cannot be read.
+	 */
+	public static TileOccupancy scan(final Connection connection, final String tableName,
+			final TileMatrixModel.Pyramid pyramid, final ProgressMonitor monitor) throws SQLException {
+		final SortedMap<Integer, ZoomRange> zoomRanges = new TreeMap<>();
+		try (final ScanProgress progress = monitor.begin("tile occupancy " + tableName,
+				ProgressMonitor.estimateRows(connection, tableName));
+				final Statement statement = connection.createStatement();
+				final ResultSet resultSet = statement
+						.executeQuery("SELECT zoom_level, tile_column, tile_row FROM " + quoteIdentifier(tableName))) {
+			ZoomRange current = null;
+			while (resultSet.next()) {
+				final int zoomLevel = resultSet.getInt(1);
+				if (null == current || current.zoomLevel != zoomLevel) {
+					current = zoomRanges.computeIfAbsent(zoomLevel, zoom -> {
+						final int index = pyramid.indexOf(zoom);
+						return index < 0 ? new ZoomRange(zoom)
+								: new ZoomRange(zoom, pyramid.getMatrixWidth(index), pyramid.getMatrixHeight(index));
+					});
+				}
+				current.add(resultSet.getLong(2), resultSet.getLong(3));
+				progress.advance(1, 0);
+			}
+		}
+		return new TileOccupancy(zoomRanges);
+	}
+
+	/**
+	 * @return The occupied ranges, ordered by zoom level.
+	 */
+	public SortedMap<Integer, ZoomRange> getZoomRanges() {
+		return this.zoomRanges;
+	}
+
+	/**
+	 * @return {@code true} if the table holds no tiles.
+	 */
+	public boolean isEmpty() {
+		return this.zoomRanges.isEmpty();
+	}
+}
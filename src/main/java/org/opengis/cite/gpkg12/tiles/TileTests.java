@@ -3,7 +3,6 @@ package org.opengis.cite.gpkg12.tiles;
 import static org.testng.Assert.assertTrue;
 import static org.testng.AssertJUnit.fail;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -16,16 +15,19 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
+import java.util.SortedMap;
 import java.util.Spliterator;
 import java.util.Spliterators;
+import java.util.function.BiPredicate;
+import java.util.logging.Level;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 
 import javax.imageio.ImageIO;
 import javax.imageio.ImageReader;
 import javax.imageio.stream.ImageInputStream;
-import javax.imageio.stream.MemoryCacheImageInputStream;
 
 import org.opengis.cite.gpkg12.ColumnDefinition;
 import org.opengis.cite.gpkg12.CommonFixture;
@@ -33,9 +35,16 @@ import org.opengis.cite.gpkg12.ErrorMessage;
 import org.opengis.cite.gpkg12.ErrorMessageKeys;
 import org.opengis.cite.gpkg12.ForeignKeyDefinition;
 import org.opengis.cite.gpkg12.TableVerifier;
+import org.opengis.cite.gpkg12.TestRunArg;
 import org.opengis.cite.gpkg12.UniqueDefinition;
+import org.opengis.cite.gpkg12.util.ByteArrayImageInputStream;
 import org.opengis.cite.gpkg12.util.DatabaseUtility;
+import org.opengis.cite.gpkg12.util.Envelope;
+import org.opengis.cite.gpkg12.util.PartitionedTableScanner;
+import org.opengis.cite.gpkg12.util.TestSuiteLogger;
 import org.testng.Assert;
+import org.testng.ITestContext;
+import org.testng.Reporter;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
 
@@ -79,19 +88,21 @@ public class TileTests extends CommonFixture
 			}
 		}
 
-		try (
-				final Statement statement = this.databaseConnection.createStatement();
+		this.tileTableNames.addAll(this.queries.getContentsTableNames(dataType));
+		this.tileTableNames.removeAll(extensionTableNames);
+		Assert.assertTrue(!this.tileTableNames.isEmpty(), ErrorMessage.format(ErrorMessageKeys.CONFORMANCE_CLASS_NOT_USED, getTestName()));
+	}
 
-				final ResultSet resultSet = statement.executeQuery(String.format("SELECT table_name FROM gpkg_contents WHERE data_type = '%s';", dataType));
-				) {
-			while(resultSet.next())
-			{
-				final String tableName = resultSet.getString(1);
-				this.tileTableNames.add(tableName);
-			}
-			this.tileTableNames.removeAll(extensionTableNames);
-			Assert.assertTrue(!this.tileTableNames.isEmpty(), ErrorMessage.format(ErrorMessageKeys.CONFORMANCE_CLASS_NOT_USED, getTestName()));    		
-		}
+	/**
+	 * Reads the {@code tile_duplicate_analysis} test run argument.
+	 *
+	 * @param testContext the ITestContext to use
+	 */
+	@BeforeClass
+	public void initTileAnalysis(final ITestContext testContext)
+	{
+		final String enabled = testContext.getSuite().getXmlSuite().getParameters().get(TestRunArg.TILE_DUPLICATE_ANALYSIS.toString());
+		this.analyzeTileDuplicates = Boolean.parseBoolean(enabled);
 	}
 
 	/**
@@ -111,36 +122,21 @@ public class TileTests extends CommonFixture
 	{
 		for(final String tableName : this.tileTableNames)
 		{
-			try(final PreparedStatement preparedStatement = this.databaseConnection.prepareStatement("SELECT table_name, zoom_level, pixel_x_size, pixel_y_size, matrix_width, matrix_height, tile_width, tile_height FROM gpkg_tile_matrix WHERE table_name = ? ORDER BY zoom_level ASC;"))
+			final TileMatrixModel.Pyramid pyramid = tileMatrixModel().getPyramid(tableName);
+
+			for(int index = 1; index < pyramid.getZoomCount(); index++)
 			{
-				preparedStatement.setString(1, tableName);
+				final int lastZoomLevel = pyramid.getZoomLevel(index - 1);
+				final int zoomLevel     = pyramid.getZoomLevel(index);
 
-				try(final ResultSet resultSet = preparedStatement.executeQuery())
+				if(zoomLevel == lastZoomLevel + 1)
 				{
-					int    lastZoomLevel  = Integer.MIN_VALUE;
-					double lastPixelXSize = 0.0;
-					double lastPixelYSize = 0.0;
-
-					while(resultSet.next())
-					{
-						final int    zoomLevel  = resultSet.getInt   ("zoom_level");
-						final double pixelXSize = resultSet.getDouble("pixel_x_size");
-						final double pixelYSize = resultSet.getDouble("pixel_y_size");
-
-						if(zoomLevel == lastZoomLevel + 1)
-						{
-							//noinspection MagicNumber
-							assertTrue(isEqual((lastPixelXSize / 2.0), pixelXSize) &&
-									isEqual((lastPixelYSize / 2.0), pixelYSize),
-									ErrorMessage.format(ErrorMessageKeys.VALUES_DO_NOT_VARY_BY_FACTOR_OF_TWO,
-											lastZoomLevel,
-											zoomLevel));
-						}
-
-						lastZoomLevel  = zoomLevel;
-						lastPixelXSize = pixelXSize;
-						lastPixelYSize = pixelYSize;
-					}
+					//noinspection MagicNumber
+					assertTrue(isEqual((pyramid.getPixelXSize(index - 1) / 2.0), pyramid.getPixelXSize(index)) &&
+							isEqual((pyramid.getPixelYSize(index - 1) / 2.0), pyramid.getPixelYSize(index)),
+							ErrorMessage.format(ErrorMessageKeys.VALUES_DO_NOT_VARY_BY_FACTOR_OF_TWO,
+									lastZoomLevel,
+									zoomLevel));
 				}
 			}
 		}
@@ -166,31 +162,18 @@ public class TileTests extends CommonFixture
 	@Test(description = "See OGC 12-128r12: Requirement 36")
 	public void imageFormat() throws SQLException, IOException
 	{
+		final PartitionedTableScanner scanner = newTableScanner();
 		for(final String tableName : this.tileTableNames)
 		{
-			try(final Statement statement = this.databaseConnection.createStatement();
-					final ResultSet resultSet = statement.executeQuery(String.format("SELECT tile_data, id FROM %s;", tableName)))
-			{
-				final Collection<Integer> failedTileIds = new LinkedList<>();
-
-				while(resultSet.next())
-				{
-					final byte[] tileData = resultSet.getBytes("tile_data");
-
-					if(!isAcceptedImageFormat(tileData))
-					{
-						failedTileIds.add(resultSet.getInt("id"));
-					}
-				}
-
-				// TODO If this assert fails, subsequent tables won't be tested or reported
-				assertTrue(failedTileIds.isEmpty(),
-						ErrorMessage.format(ErrorMessageKeys.INVALID_IMAGE_FORMAT,
-								tableName,
-								failedTileIds.stream()
-								.map(Object::toString)
-								.collect(Collectors.joining(", "))));
-			}
+			final List<Integer> failedTileIds = scanImageFormats(scanner, tableName, this::isAcceptedImageFormat, this.analyzeTileDuplicates);
+
+			// TODO If this assert fails, subsequent tables won't be tested or reported
+			assertTrue(failedTileIds.isEmpty(),
+					ErrorMessage.format(ErrorMessageKeys.INVALID_IMAGE_FORMAT,
+							tableName,
+							failedTileIds.stream()
+							.map(Object::toString)
+							.collect(Collectors.joining(", "))));
 		}
 	}
 
@@ -277,13 +260,8 @@ public class TileTests extends CommonFixture
 	public void matrixSetNamesReferenceTiles() throws SQLException
 	{
 		for (final String tableName : this.tileTableNames) {
-			try (
-					final Statement statement1 = this.databaseConnection.createStatement();
-					final ResultSet resultSet1 = statement1.executeQuery(String.format("SELECT table_name FROM gpkg_tile_matrix_set WHERE table_name = '%s'", tableName));
-					) {
-				assertTrue(resultSet1.next(),
-						ErrorMessage.format(ErrorMessageKeys.UNREFERENCED_TILE_MATRIX_SET_TABLE, tableName));				
-			}
+			assertTrue(tileMatrixModel().getPyramid(tableName).hasMatrixSet(),
+					ErrorMessage.format(ErrorMessageKeys.UNREFERENCED_TILE_MATRIX_SET_TABLE, tableName));
 		}
 	}
 
@@ -300,21 +278,10 @@ public class TileTests extends CommonFixture
 	@Test(description = "See OGC 12-128r12: Requirement 40")
 	public void matrixSetNameForEachTilesTable() throws SQLException
 	{
-		try(Statement statement = this.databaseConnection.createStatement();
-				ResultSet resultSet = statement.executeQuery("SELECT table_name FROM gpkg_tile_matrix_set;"))
+		for(final String tableName : this.tileTableNames)
 		{
-			final Collection<String> tableNames = new LinkedList<>();
-
-			while(resultSet.next())
-			{
-				tableNames.add(resultSet.getString("table_name"));
-			}
-
-			for(final String tableName : this.tileTableNames)
-			{
-				assertTrue(tableNames.contains(tableName),
-						ErrorMessage.format(ErrorMessageKeys.UNREFERENCED_TILES_CONTENT_TABLE_NAME, tableName));
-			}
+			assertTrue(tileMatrixModel().getPyramid(tableName).hasMatrixSet(),
+					ErrorMessage.format(ErrorMessageKeys.UNREFERENCED_TILES_CONTENT_TABLE_NAME, tableName));
 		}
 	}
 
@@ -437,35 +404,11 @@ public class TileTests extends CommonFixture
 	{
 		for(final String tableName : this.tileTableNames)
 		{
-			final Collection<Integer> tileMatrixZooms = new LinkedList<>();
-
-			try(final PreparedStatement statement = this.databaseConnection.prepareStatement("SELECT DISTINCT zoom_level FROM gpkg_tile_matrix WHERE table_name = ? ORDER BY zoom_level;"))
-			{
-				statement.setString(1, tableName);
-
-				try(final ResultSet gmZoomLevels = statement.executeQuery())
-				{
-					while(gmZoomLevels.next())
-					{
-						tileMatrixZooms.add(gmZoomLevels.getInt("zoom_level"));
-					}
-				}
-			}
-
-			final Collection<Integer> tilePyramidZooms = new LinkedList<>();
-
-			try(final Statement statement    = this.databaseConnection.createStatement();
-					final ResultSet pyZoomLevels = statement.executeQuery(String.format("SELECT DISTINCT zoom_level FROM %s ORDER BY zoom_level;", tableName)))
-			{
-				while(pyZoomLevels.next())
-				{
-					tilePyramidZooms.add(pyZoomLevels.getInt("zoom_level"));
-				}
-			}
+			final TileMatrixModel.Pyramid pyramid = tileMatrixModel().getPyramid(tableName);
 
-			for(final Integer zoom: tilePyramidZooms)
+			for(final Integer zoom: occupancy(tableName).getZoomRanges().keySet())
 			{
-				assertTrue(tileMatrixZooms.contains(zoom),
+				assertTrue(pyramid.indexOf(zoom) >= 0,
 						ErrorMessage.format(ErrorMessageKeys.MISSING_TILE_MATRIX_ENTRY, zoom, tableName));
 			}
 		}
@@ -493,49 +436,34 @@ public class TileTests extends CommonFixture
 
 		for(final String tableName : this.tileTableNames)
 		{
-			try(final PreparedStatement preparedStatement = this.databaseConnection.prepareStatement("SELECT min_x, min_y, max_x, max_y FROM gpkg_tile_matrix_set WHERE table_name = ?"))
-			{
-				preparedStatement.setString(1, tableName);
+			final TileMatrixModel.Pyramid pyramid = tileMatrixModel().getPyramid(tableName);
+			final Envelope boundingBox = pyramid.getBounds();
 
-				try(final ResultSet boundingBox = preparedStatement.executeQuery())
-				{
-					if(boundingBox.next())
-					{
-						final double width  = boundingBox.getDouble("max_x") - boundingBox.getDouble("min_x");
-						final double height = boundingBox.getDouble("max_y") - boundingBox.getDouble("min_y");
+			if(boundingBox != null)
+			{
+				final double width  = boundingBox.getMaxX() - boundingBox.getMinX();
+				final double height = boundingBox.getMaxY() - boundingBox.getMinY();
 
-						final Collection<Integer> zoomLevels = new ArrayList<>();
+				final Collection<Integer> zoomLevels = new ArrayList<>();
 
-						try(final PreparedStatement statement = this.databaseConnection.prepareStatement("SELECT zoom_level, pixel_x_size, pixel_y_size, matrix_width, matrix_height, tile_width, tile_height FROM gpkg_tile_matrix WHERE table_name = ? ORDER BY zoom_level ASC;"))
-						{
-							statement.setString(1, tableName);
-
-							try(final ResultSet pixelInfo = statement.executeQuery())
-							{
-								while(pixelInfo.next())
-								{
-									final double pixelXSize   = pixelInfo.getDouble("pixel_x_size");
-									final double pixelYSize   = pixelInfo.getDouble("pixel_y_size");
-									final double matrixHeight = pixelInfo.getInt   ("matrix_height");
-									final double matrixWidth  = pixelInfo.getInt   ("matrix_width");
-									final double tileHeight   = pixelInfo.getInt   ("tile_height");
-									final double tileWidth    = pixelInfo.getInt   ("tile_width");
-
-									if(!isEqual(pixelXSize, (width  / matrixWidth)  / tileWidth) ||
-											!isEqual(pixelYSize, (height / matrixHeight) / tileHeight))
-									{
-										zoomLevels.add(pixelInfo.getInt("zoom_level"));
-									}
-								}
-							}
-						}
+				for(int index = 0; index < pyramid.getZoomCount(); index++)
+				{
+					final double matrixHeight = pyramid.getMatrixHeight(index);
+					final double matrixWidth  = pyramid.getMatrixWidth (index);
+					final double tileHeight   = pyramid.getTileHeight  (index);
+					final double tileWidth    = pyramid.getTileWidth   (index);
 
-						if(!zoomLevels.isEmpty())
-						{
-							tableNamesWithBadZooms.put(tableName, zoomLevels);
-						}
+					if(!isEqual(pyramid.getPixelXSize(index), (width  / matrixWidth)  / tileWidth) ||
+							!isEqual(pyramid.getPixelYSize(index), (height / matrixHeight) / tileHeight))
+					{
+						zoomLevels.add(pyramid.getZoomLevel(index));
 					}
 				}
+
+				if(!zoomLevels.isEmpty())
+				{
+					tableNamesWithBadZooms.put(tableName, zoomLevels);
+				}
 			}
 		}
 
@@ -565,13 +493,9 @@ public class TileTests extends CommonFixture
 	@Test(description = "See OGC 12-128r12: Requirement 46")
 	public void zoomLevelNotNegative() throws SQLException
 	{
-		try(final Statement statement = this.databaseConnection.createStatement();
-				final ResultSet resultSet = statement.executeQuery("SELECT zoom_level FROM gpkg_tile_matrix WHERE zoom_level < 0;"))
+		if(anyTileMatrix((pyramid, index) -> pyramid.getZoomLevel(index) < 0))
 		{
-			if(resultSet.next())
-			{
-				fail(ErrorMessageKeys.NEGATIVE_ZOOM_LEVEL);
-			}
+			fail(ErrorMessageKeys.NEGATIVE_ZOOM_LEVEL);
 		}
 	}
 
@@ -588,13 +512,9 @@ public class TileTests extends CommonFixture
 	@Test(description = "See OGC 12-128r12: Requirement 47")
 	public void matrixWidthGreaterThanZero() throws SQLException
 	{
-		try(final Statement statement = this.databaseConnection.createStatement();
-				final ResultSet resultSet = statement.executeQuery("SELECT matrix_width FROM gpkg_tile_matrix WHERE matrix_width <= 0;"))
+		if(anyTileMatrix((pyramid, index) -> pyramid.getMatrixWidth(index) <= 0))
 		{
-			if(resultSet.next())
-			{
-				fail(ErrorMessageKeys.NON_POSITIVE_MATRIX_WIDTH);
-			}
+			fail(ErrorMessageKeys.NON_POSITIVE_MATRIX_WIDTH);
 		}
 	}
 
@@ -611,13 +531,9 @@ public class TileTests extends CommonFixture
 	@Test(description = "See OGC 12-128r12: Requirement 48")
 	public void matrixHeightGreaterThanZero() throws SQLException
 	{
-		try(final Statement statement = this.databaseConnection.createStatement();
-				final ResultSet resultSet = statement.executeQuery("SELECT matrix_height FROM gpkg_tile_matrix WHERE matrix_height <= 0;"))
+		if(anyTileMatrix((pyramid, index) -> pyramid.getMatrixHeight(index) <= 0))
 		{
-			if(resultSet.next())
-			{
-				fail(ErrorMessageKeys.NON_POSITIVE_MATRIX_HEIGHT);
-			}
+			fail(ErrorMessageKeys.NON_POSITIVE_MATRIX_HEIGHT);
 		}
 	}
 
@@ -634,13 +550,9 @@ public class TileTests extends CommonFixture
 	@Test(description = "See OGC 12-128r12: Requirement 49")
 	public void tileWidthGreaterThanZero() throws SQLException
 	{
-		try(final Statement statement = this.databaseConnection.createStatement();
-				final ResultSet resultSet = statement.executeQuery("SELECT tile_width FROM gpkg_tile_matrix WHERE tile_width <= 0;"))
+		if(anyTileMatrix((pyramid, index) -> pyramid.getTileWidth(index) <= 0))
 		{
-			if(resultSet.next())
-			{
-				fail(ErrorMessageKeys.NON_POSITIVE_TILE_WIDTH);
-			}
+			fail(ErrorMessageKeys.NON_POSITIVE_TILE_WIDTH);
 		}
 	}
 
@@ -657,13 +569,9 @@ public class TileTests extends CommonFixture
 	@Test(description = "See OGC 12-128r12: Requirement 50")
 	public void tileHeightGreaterThanZero() throws SQLException
 	{
-		try(final Statement statement = this.databaseConnection.createStatement();
-				final ResultSet resultSet = statement.executeQuery("SELECT tile_height FROM gpkg_tile_matrix WHERE tile_height <= 0;"))
+		if(anyTileMatrix((pyramid, index) -> pyramid.getTileHeight(index) <= 0))
 		{
-			if(resultSet.next())
-			{
-				fail(ErrorMessageKeys.NON_POSITIVE_TILE_HEIGHT);
-			}
+			fail(ErrorMessageKeys.NON_POSITIVE_TILE_HEIGHT);
 		}
 	}
 
@@ -680,13 +588,9 @@ public class TileTests extends CommonFixture
 	@Test(description = "See OGC 12-128r12: Requirement 51")
 	public void pixelXSizeGreaterThanZero() throws SQLException
 	{
-		try(final Statement statement = this.databaseConnection.createStatement();
-				final ResultSet resultSet = statement.executeQuery("SELECT pixel_x_size FROM gpkg_tile_matrix WHERE pixel_x_size <= 0;"))
+		if(anyTileMatrix((pyramid, index) -> pyramid.getPixelXSize(index) <= 0))
 		{
-			if(resultSet.next())
-			{
-				fail(ErrorMessageKeys.NON_POSITIVE_PIXEL_X_SIZE);
-			}
+			fail(ErrorMessageKeys.NON_POSITIVE_PIXEL_X_SIZE);
 		}
 	}
 
@@ -703,13 +607,9 @@ public class TileTests extends CommonFixture
 	@Test(description = "See OGC 12-128r12: Requirement 52")
 	public void pixelYSizeGreaterThanZero() throws SQLException
 	{
-		try (
-				final Statement statement = this.databaseConnection.createStatement();
-				final ResultSet resultSet = statement.executeQuery("SELECT pixel_y_size FROM gpkg_tile_matrix WHERE pixel_y_size <= 0;");
-				) {
-			if (resultSet.next()) {
-				fail(ErrorMessageKeys.NON_POSITIVE_PIXEL_Y_SIZE);
-			}    		
+		if(anyTileMatrix((pyramid, index) -> pyramid.getPixelYSize(index) <= 0))
+		{
+			fail(ErrorMessageKeys.NON_POSITIVE_PIXEL_Y_SIZE);
 		}
 	}
 
@@ -729,27 +629,11 @@ public class TileTests extends CommonFixture
 	public void sortedPixelSizes() throws SQLException
 	{
 		for(final String pyramidTable : this.tileTableNames) {
-			try (final PreparedStatement statement = this.databaseConnection.prepareStatement("SELECT pixel_x_size, pixel_y_size FROM gpkg_tile_matrix WHERE table_name = ? ORDER BY zoom_level ASC;")) {
-				statement.setString(1, pyramidTable);
-				try (final ResultSet resultSet = statement.executeQuery()) {
-					if(resultSet.isBeforeFirst()) {
-						resultSet.next();
-
-						double lastPixelX = resultSet.getDouble("pixel_x_size");
-						double lastPixelY = resultSet.getDouble("pixel_y_size");
-
-						while(resultSet.next()) {
-							final double pixelX = resultSet.getDouble("pixel_x_size");
-							final double pixelY = resultSet.getDouble("pixel_y_size");
-
-							assertTrue(lastPixelX > pixelX && lastPixelY > pixelY,
-									ErrorMessage.format(ErrorMessageKeys.PIXEL_SIZE_NOT_DECREASING, pyramidTable));
+			final TileMatrixModel.Pyramid pyramid = tileMatrixModel().getPyramid(pyramidTable);
 
-							lastPixelX = pixelX;
-							lastPixelY = pixelY;
-						}
-					}                	
-				}
+			for(int index = 1; index < pyramid.getZoomCount(); index++) {
+				assertTrue(pyramid.getPixelXSize(index - 1) > pyramid.getPixelXSize(index) && pyramid.getPixelYSize(index - 1) > pyramid.getPixelYSize(index),
+						ErrorMessage.format(ErrorMessageKeys.PIXEL_SIZE_NOT_DECREASING, pyramidTable));
 			}
 		}
 	}
@@ -816,37 +700,20 @@ public class TileTests extends CommonFixture
 	public void zoomLevelRange() throws SQLException
 	{
 		for(final String tableName : this.tileTableNames) {
-			final boolean nullZoom;
-			final int minZoom, maxZoom;
+			final TileMatrixModel.Pyramid pyramid = tileMatrixModel().getPyramid(tableName);
+			final SortedMap<Integer, TileOccupancy.ZoomRange> zoomRanges = occupancy(tableName).getZoomRanges();
 
+			if (pyramid.getZoomCount() == 0 || zoomRanges.isEmpty()) { continue; }
 
+			final int minZoom = pyramid.getZoomLevel(0);
+			final int maxZoom = pyramid.getZoomLevel(pyramid.getZoomCount() - 1);
 
-
-			try (final PreparedStatement statement = this.databaseConnection.prepareStatement("SELECT MIN(zoom_level) AS min_zoom, MAX(zoom_level) AS max_zoom FROM gpkg_tile_matrix WHERE table_name = ?;")) {
-				statement.setString(1, tableName);
-				try (final ResultSet minMaxZoom = statement.executeQuery()) {
-					minZoom = minMaxZoom.getInt("min_zoom");
-					maxZoom = minMaxZoom.getInt("max_zoom");    
-					nullZoom = minMaxZoom.wasNull();
-				}
+			if(zoomRanges.firstKey() < minZoom || zoomRanges.lastKey() > maxZoom)
+			{
+				fail(ErrorMessage.format(ErrorMessageKeys.UNDEFINED_ZOOM_LEVEL,
+						tableName,
+						zoomRanges.firstKey() < minZoom ? zoomRanges.firstKey() : zoomRanges.lastKey()));
 			}
-
-
-			if (nullZoom) { return; }
-
-			try (final PreparedStatement zoomStatement = this.databaseConnection.prepareStatement(String.format("SELECT zoom_level FROM %s WHERE zoom_level < ? OR zoom_level > ?", tableName))) {
-				zoomStatement.setInt(1, minZoom);
-				zoomStatement.setInt(2, maxZoom);
-
-				try (final ResultSet invalidZooms = zoomStatement.executeQuery()) {
-					if(invalidZooms.next())
-					{
-						fail(ErrorMessage.format(ErrorMessageKeys.UNDEFINED_ZOOM_LEVEL,
-								tableName,
-								invalidZooms.getInt("zoom_level")));
-					}                	
-				}        		
-			}		
 		}
 	}
 
@@ -868,25 +735,14 @@ public class TileTests extends CommonFixture
 	{
 		for(final String tableName : this.tileTableNames)
 		{
-			final String query = String.format("SELECT zoom_level as zl, matrix_width as width " +
-					"FROM   gpkg_tile_matrix "        +
-					"WHERE  table_name = ? "       +
-					"AND (zoom_level in (SELECT zoom_level FROM %1$s WHERE tile_column < 0) " +
-					"OR  (EXISTS(SELECT NULL FROM %1$s WHERE zoom_level = zl AND tile_column > width - 1)));",
-					tableName);
-
-			try (final PreparedStatement statement = this.databaseConnection.prepareStatement(query)) {
-				statement.setString(1, tableName);
-				try (final ResultSet resultSet = statement.executeQuery()) {
-					while(resultSet.next()) {
-						final int matrixWidth = resultSet.getInt("width");
-						final int zoomLevel   = resultSet.getInt("zl");
-
-						fail(ErrorMessage.format(ErrorMessageKeys.TILE_COLUMN_OUT_OF_RANGE,
-								tableName,
-								matrixWidth-1,
-								zoomLevel));
-					}					
+			for(final TileOccupancy.ZoomRange range : occupancy(tableName).getZoomRanges().values())
+			{
+				if(range.getColumnsOutOfRange() > 0)
+				{
+					fail(ErrorMessage.format(ErrorMessageKeys.TILE_COLUMN_OUT_OF_RANGE,
+							tableName,
+							range.getMatrixWidth()-1,
+							range.getZoomLevel()));
 				}
 			}
 		}
@@ -910,28 +766,196 @@ public class TileTests extends CommonFixture
 	{
 		for(final String tableName : this.tileTableNames)
 		{
-			final String query = String.format("SELECT zoom_level as zl, matrix_height as height " +
-					"FROM   gpkg_tile_matrix "        +
-					"WHERE  table_name = ? "       +
-					"AND (zoom_level in (SELECT zoom_level FROM %1$s WHERE tile_row < 0) " +
-					"OR  (EXISTS(SELECT NULL FROM %1$s WHERE zoom_level = zl AND tile_row > height - 1)));",
-					tableName);
-
-			try (final PreparedStatement statement = this.databaseConnection.prepareStatement(query)) {
-				statement.setString(1, tableName);
-				try (final ResultSet resultSet = statement.executeQuery()) {
-					while(resultSet.next()) {
-						final int matrixHeight = resultSet.getInt("height");
-						final int zoomLevel   = resultSet.getInt("zl");
-
-						fail(ErrorMessage.format(ErrorMessageKeys.TILE_ROW_OUT_OF_RANGE,
-								tableName,
-								matrixHeight-1,
-								zoomLevel));
+			for(final TileOccupancy.ZoomRange range : occupancy(tableName).getZoomRanges().values())
+			{
+				if(range.getRowsOutOfRange() > 0)
+				{
+					fail(ErrorMessage.format(ErrorMessageKeys.TILE_ROW_OUT_OF_RANGE,
+							tableName,
+							range.getMatrixHeight()-1,
+							range.getZoomLevel()));
+				}
+			}
+		}
+	}
+
+	/**
+	 * The unique constraint on ({@code zoom_level}, {@code tile_column},
+	 * {@code tile_row}) that Requirement 54 asks for means there is at most
+	 * one tile at each position of each tile matrix. Tables without the
+	 * constraint are failed by {@link #tilesTableDefinitions()}, but that
+	 * does not tell whether their data is affected, so the tiles themselves
+	 * are checked here. The coverage of each tile matrix is reported in the
+	 * test output.
+	 *
+	 * @see <a href="http://www.geopackage.org/spec/#_requirement-54" target=
+	 *      "_blank">Tile Pyramid User Data Tables - Table Definition - Requirement 54</a>
+	 *
+	 * @throws SQLException
+	 *             If an SQL query causes an error
+	 */
+	@Test(description = "See OGC 12-128r12: Requirement 54")
+	public void tilesUnique() throws SQLException
+	{
+		for(final String tableName : this.tileTableNames)
+		{
+			for(final TileOccupancy.ZoomRange range : occupancy(tableName).getZoomRanges().values())
+			{
+				Reporter.log(String.format("%s %s", tableName, range));
+				TestSuiteLogger.log(Level.FINE, String.format("%s zoom %d: %d bytes to track %d tiles",
+						tableName, range.getZoomLevel(), range.getTrackingBytes(), range.getTileCount()));
+				if(range.getDuplicateCount() > 0)
+				{
+					final long[] first = range.getFirstDuplicate();
+					fail(ErrorMessage.format(ErrorMessageKeys.DUPLICATE_TILES,
+							tableName,
+							range.getDuplicateCount(),
+							range.getZoomLevel(),
+							first[0],
+							first[1]));
+				}
+			}
+		}
+	}
+
+	/**
+	 * The bounding boxes in {@code gpkg_tile_matrix_set} and 
+	 * {@code gpkg_contents} tell clients where a tile pyramid has content. 
+	 * The occupied tile range at the finest zoom level is converted to CRS 
+	 * coordinates and compared with both boxes. A box that does not reach 
+	 * into every occupied edge tile, or that is much larger than them (so clients 
+	 * request many empty tiles), is reported in the test output and the log. 
+	 * The fit of these boxes is not a requirement, so this test does not 
+	 * fail.
+	 *
+	 * @see <a href="http://www.geopackage.org/spec/#tile_matrix_set" target=
+	 *      "_blank">Tile Matrix Set - Table 8</a>
+	 *
+	 * @throws SQLException
+	 *             If an SQL query causes an error
+	 */
+	@Test(description = "See OGC 12-128r12: Table 8 (informative)")
+	public void tileBoundsFitOccupiedTiles() throws SQLException
+	{
+		for(final String tableName : this.tileTableNames)
+		{
+			// 1
+			final TileOccupancy occupancy = occupancy(tableName);
+			final TileMatrixModel.Pyramid pyramid = tileMatrixModel().getPyramid(tableName);
+			if(occupancy.isEmpty() || !pyramid.hasMatrixSet())
+			{
+				continue;
+			}
+
+			// 2
+			for(int index = pyramid.getZoomCount() - 1; index >= 0; index--)
+			{
+				final TileOccupancy.ZoomRange range = occupancy.getZoomRanges().get(pyramid.getZoomLevel(index));
+				if(range == null)
+				{
+					continue;
+				}
+
+				// 3
+				final Envelope matrixSetBounds = pyramid.getBounds();
+				final double tileSpanX = pyramid.getTileWidth(index)  * pyramid.getPixelXSize(index);
+				final double tileSpanY = pyramid.getTileHeight(index) * pyramid.getPixelYSize(index);
+				final Envelope occupied = range.toEnvelope(matrixSetBounds.getMinX(), matrixSetBounds.getMaxY(), tileSpanX, tileSpanY);
+
+				// 4
+				reportBoundsFit("gpkg_tile_matrix_set", tableName, occupied, tileSpanX, tileSpanY, matrixSetBounds);
+
+				// 5
+				try(final PreparedStatement statement = this.databaseConnection.prepareStatement("SELECT min_x, min_y, max_x, max_y FROM gpkg_contents WHERE table_name = ? AND min_x IS NOT NULL;"))
+				{
+					statement.setString(1, tableName);
+
+					try(final ResultSet resultSet = statement.executeQuery())
+					{
+						if(resultSet.next())
+						{
+							reportBoundsFit("gpkg_contents", tableName, occupied, tileSpanX, tileSpanY,
+									new Envelope(resultSet.getDouble("min_x"), resultSet.getDouble("min_y"), resultSet.getDouble("max_x"), resultSet.getDouble("max_y")));
+						}
 					}
 				}
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Loads the tile matrix set and tile matrices of all tables on first use,
+	 * so that a failure to read them fails the test that needs them. The model
+	 * is kept with the suite scan results, so that the tile, WebP and
+	 * elevation tests read the two tables once per test run.
+	 *
+	 * @return The tile matrix model of the GeoPackage.
+	 * @throws SQLException
+	 *             If {@code gpkg_tile_matrix_set} or {@code gpkg_tile_matrix}
+	 *             cannot be read.
+	 */
+	protected TileMatrixModel tileMatrixModel() throws SQLException
+	{
+		return sharedScan("tileMatrixModel", () -> TileMatrixModel.load(this.databaseConnection));
+	}
+
+	/**
+	 * Tests every row of {@code gpkg_tile_matrix} in the shared
+	 * {@link TileMatrixModel}, rather than querying the table again.
+	 *
+	 * @param test
+	 *            Tests the tile matrix at an index of a pyramid.
+	 * @return {@code true} if the test holds for any tile matrix.
+	 * @throws SQLException
+	 *             If the tile matrix model cannot be loaded.
+	 */
+	private boolean anyTileMatrix(final BiPredicate<TileMatrixModel.Pyramid, Integer> test) throws SQLException
+	{
+		final TileMatrixModel model = tileMatrixModel();
+		for(final String tableName : model.getTableNames())
+		{
+			final TileMatrixModel.Pyramid pyramid = model.getPyramid(tableName);
+			for(int index = 0; index < pyramid.getZoomCount(); index++)
+			{
+				if(test.test(pyramid, index))
+				{
+					return true;
+				}
 			}
 		}
+		return false;
+	}
+
+	/**
+	 * Scans a tile table once in the suite for all the tests that need its
+	 * occupancy, including those inherited by the extension tests.
+	 */
+	private TileOccupancy occupancy(final String tableName) throws SQLException
+	{
+		final TileMatrixModel.Pyramid pyramid = tileMatrixModel().getPyramid(tableName);
+		return sharedScan("tileOccupancy:" + tableName,
+				() -> TileOccupancy.scan(this.databaseConnection, tableName, pyramid, this.progressMonitor));
+	}
+
+	private static void reportBoundsFit(final String boundsTable, final String tableName, final Envelope occupied, final double tileSpanX, final double tileSpanY, final Envelope declared)
+	{
+		String message = null;
+		// Edge tiles are usually only partly filled, so the bounds need only reach into them
+		if(!declared.expandedBy(tileSpanX, tileSpanY).contains(occupied, BOUNDS_TOLERANCE))
+		{
+			message = ErrorMessage.format(ErrorMessageKeys.TILE_BOUNDS_NOT_COVERING, boundsTable, tableName, declared, occupied);
+		}
+		else if(occupied.getArea() < MIN_OCCUPIED_FRACTION * declared.getArea())
+		{
+			message = ErrorMessage.format(ErrorMessageKeys.TILE_BOUNDS_OVERSIZED, boundsTable, tableName,
+					Math.round(100 * occupied.getArea() / declared.getArea()), declared, occupied);
+		}
+		if(message != null)
+		{
+			TestSuiteLogger.log(Level.WARNING, message);
+			Reporter.log(message);
+		}
 	}
 
 	private static boolean isEqual(final double first, final double second)
@@ -946,10 +970,141 @@ public class TileTests extends CommonFixture
 			return false;
 		}
 
-		try(final ByteArrayInputStream        byteArray  = new ByteArrayInputStream(image);
-				final MemoryCacheImageInputStream cacheImage = new MemoryCacheImageInputStream(byteArray))
+		final ImageInputStream signature = signatureStream(image);
+		return canReadImage(pngImageReaders, signature) || canReadImage(jpegImageReaders, signature);
+	}
+
+	/**
+	 * Decides whether the leading bytes of a tile are in an accepted image
+	 * format.
+	 */
+	@FunctionalInterface
+	protected interface ImageFormatCheck
+	{
+		/**
+		 * @param signature
+		 *            The first {@value TileTests#IMAGE_SIGNATURE_LENGTH} bytes
+		 *            of the tile (or all of them, if it is shorter).
+		 * @return {@code true} if the format is accepted.
+		 * @throws IOException
+		 *             If the bytes cannot be read.
+		 */
+		boolean isAccepted(byte[] signature) throws IOException;
+	}
+
+	/**
+	 * Checks the image format of every tile in a tile pyramid user data table.
+	 * Image reader providers identify a format by its signature, so only the
+	 * first {@value #IMAGE_SIGNATURE_LENGTH} bytes of each tile are selected:
+	 * SQLite cuts the blob, and the driver never copies whole tiles onto the
+	 * Java heap. The bytes read and stored are logged.
+	 * <p>
+	 * If duplicate tiles are analyzed, whole tiles are read instead and each
+	 * is also passed to a {@link TileDuplicateAnalysis}, whose report is
+	 * logged and added to the test output; the analysis never fails the test.
+	 * </p>
+	 *
+	 * @param scanner
+	 *            The scanner that reads the table.
+	 * @param tableName
+	 *            The name of the tile pyramid user data table.
+	 * @param check
+	 *            Decides whether a tile is in an accepted format; see
+	 *            {@link #signatureStream(byte[])}.
+	 * @param analyzeDuplicates
+	 *            Whether tiles with identical content are looked for; see
+	 *            {@link TestRunArg#TILE_DUPLICATE_ANALYSIS}.
+	 * @return The ids of the tiles that are NULL or not in an accepted format.
+	 * @throws SQLException
+	 *             If the table cannot be read.
+	 */
+	protected static List<Integer> scanImageFormats(final PartitionedTableScanner scanner, final String tableName, final ImageFormatCheck check, final boolean analyzeDuplicates) throws SQLException
+	{
+		final String columns = analyzeDuplicates
+				? "id, tile_data, length(tile_data), zoom_level"
+				: String.format("id, substr(tile_data, 1, %d), length(tile_data)", IMAGE_SIGNATURE_LENGTH);
+		final ImageFormatScan scan = scanner.scan("imageFormat " + tableName,
+				tableName,
+				columns,
+				() -> new ImageFormatScan(analyzeDuplicates),
+				(rowid, row, partial) ->
+				{
+					final byte[] signature = row.getBytes(3);
+					final long stored = row.getLong(4);
+					partial.tiles++;
+					partial.bytesStored += stored;
+					if(partial.duplicates != null && signature != null)
+					{
+						partial.duplicates.add(row.getInt(5), signature);
+					}
+					try
+					{
+						if(signature == null || !check.isAccepted(signature))
+						{
+							partial.failedTileIds.add(row.getInt(2));
+						}
+					}
+					catch(final IOException ex)
+					{
+						throw new SQLException("Failed to read tile " + row.getInt(2) + " of " + tableName, ex);
+					}
+					if(signature != null)
+					{
+						partial.bytesRead += signature.length;
+					}
+					return stored;
+				},
+				(lower, upper) ->
+				{
+					lower.failedTileIds.addAll(upper.failedTileIds);
+					lower.tiles += upper.tiles;
+					lower.bytesRead += upper.bytesRead;
+					lower.bytesStored += upper.bytesStored;
+					if(lower.duplicates != null)
+					{
+						lower.duplicates.merge(upper.duplicates);
+					}
+					return lower;
+				});
+		TestSuiteLogger.log(Level.FINE, String.format("Identified the image format of %d tiles of %s from %d of %d stored bytes",
+				scan.tiles, tableName, scan.bytesRead, scan.bytesStored));
+		if(scan.duplicates != null)
 		{
-			return canReadImage(pngImageReaders, cacheImage) || canReadImage(jpegImageReaders, cacheImage);
+			final String report = String.format("Duplicate tiles in %s: %s", tableName, scan.duplicates);
+			TestSuiteLogger.log(Level.INFO, report);
+			Reporter.log(report);
+		}
+		return scan.failedTileIds;
+	}
+
+	/**
+	 * Gives the image input stream of the calling thread, pointed at the
+	 * given bytes. The stream is reused for every tile the thread checks, so
+	 * it must not be closed or kept.
+	 *
+	 * @param image
+	 *            The bytes of the image, or of its start.
+	 * @return The stream, positioned at the first byte.
+	 */
+	protected static ImageInputStream signatureStream(final byte[] image)
+	{
+		return SIGNATURE_STREAM.get().wrap(image);
+	}
+
+	/**
+	 * The tiles of one table (or rowid range) whose format was checked.
+	 */
+	private static final class ImageFormatScan
+	{
+		private final List<Integer> failedTileIds = new ArrayList<>();
+		private final TileDuplicateAnalysis duplicates;
+		private long tiles;
+		private long bytesRead;
+		private long bytesStored;
+
+		ImageFormatScan(final boolean analyzeDuplicates)
+		{
+			this.duplicates = analyzeDuplicates ? new TileDuplicateAnalysis() : null;
 		}
 	}
 
@@ -986,8 +1141,25 @@ public class TileTests extends CommonFixture
 
 	protected final Collection<String> tileTableNames = new ArrayList<String>();
 
+	/** Whether the image format scans also look for tiles with identical content. */
+	protected boolean analyzeTileDuplicates;
+
 	private static final double EPSILON = 0.0001;   // TODO should this be made configurable?
 
+	/** Relative tolerance when testing whether bounds cover the occupied tiles. */
+	private static final double BOUNDS_TOLERANCE = 1.0E-9;
+
+	/**
+	 * The number of leading bytes of a tile that are read to identify its
+	 * image format; the PNG, JPEG, TIFF and WebP signatures are much shorter.
+	 */
+	protected static final int IMAGE_SIGNATURE_LENGTH = 1024;
+
+	private static final ThreadLocal<ByteArrayImageInputStream> SIGNATURE_STREAM = ThreadLocal.withInitial(ByteArrayImageInputStream::new);
+
+	/** Bounds are reported as oversized when tiles occupy less than this fraction of them. */
+	private static final double MIN_OCCUPIED_FRACTION = 0.5;
+
 	protected static final Collection<ImageReader> jpegImageReaders;
 	protected static final Collection<ImageReader> pngImageReaders;
 
@@ -0,0 +1,158 @@
+package org.opengis.cite.gpkg12.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.logging.Level;
+
+/**
+ * A thread-safe, size-bounded cache with a least-recently-used eviction
+ * policy. Entries are created on demand by a loader function; hit, miss and
+ * eviction counts are kept so that the effectiveness of a cache can be
+ * reported.
+ *
+ * <p>
+ * The loader is invoked outside of the cache lock, so an expensive
+ * computation (e.g. compiling a schema) does not block readers of other
+ * keys. If two threads miss on the same key at the same time both may compute
+ * a value, but only the first one stored is ever returned.
+ * </p>
+ *
+ * @param <K>
+ *            The type of the keys.
+ * @param <V>
+ *            The type of the cached values.
+ */
+public class BoundedCache<K, V> {
+
+    private final String name;
+    private final int maxEntries;
+    private final Map<K, V> entries;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Creates a new cache.
+     *
+     * @param name
+     *            A name for the cache (used in log messages and statistics).
+     * @param maxEntries
+     *            The maximum number of entries retained; it must be positive.
+     */
+    public BoundedCache(final String name, final int maxEntries) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("maxEntries must be positive: " + maxEntries);
+        }
+        this.name = name;
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<K, V>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<K, V> eldest) {
+                final boolean evict = size() > BoundedCache.this.maxEntries;
+                if (evict) {
+                    evictions.incrementAndGet();
+                    TestSuiteLogger.log(Level.FINE,
+                            String.format("Evicted entry from %s cache: %s", BoundedCache.this.name, eldest.getKey()));
+                }
+                return evict;
+            }
+        };
+    }
+
+    /**
+     * Returns the value associated with the given key, creating it with the
+     * supplied loader if it is not present.
+     *
+     * @param key
+     *            The key (must not be null).
+     * @param loader
+     *            A function that creates the value for a missing key. If it
+     *            returns null nothing is cached.
+     * @return The cached or newly created value (may be null if the loader
+     *         returned null).
+     */
+    public V get(final K key, final Function<? super K, ? extends V> loader) {
+        synchronized (this.entries) {
+            final V value = this.entries.get(key);
+            if (value != null) {
+                this.hits.incrementAndGet();
+                return value;
+            }
+        }
+        this.misses.incrementAndGet();
+        final V created = loader.apply(key);
+        if (created == null) {
+            return null;
+        }
+        synchronized (this.entries) {
+            final V existing = this.entries.get(key);
+            if (existing != null) {
+                return existing;
+            }
+            this.entries.put(key, created);
+        }
+        return created;
+    }
+
+    /**
+     * Returns the value associated with the given key without creating it.
+     *
+     * @param key
+     *            The key.
+     * @return The cached value, or null if there is none.
+     */
+    public V getIfPresent(final K key) {
+        synchronized (this.entries) {
+            return this.entries.get(key);
+        }
+    }
+
+    /**
+     * Removes all entries; the statistics are retained.
+     */
+    public void clear() {
+        synchronized (this.entries) {
+            this.entries.clear();
+        }
+    }
+
+    /**
+     * @return The number of entries currently held.
+     */
+    public int size() {
+        synchronized (this.entries) {
+            return this.entries.size();
+        }
+    }
+
+    /**
+     * @return The number of lookups that found a cached value.
+     */
+    public long getHitCount() {
+        return this.hits.get();
+    }
+
+    /**
+     * @return The number of lookups that required the loader to be invoked.
+     */
+    public long getMissCount() {
+        return this.misses.get();
+    }
+
+    /**
+     * @return The number of entries removed to stay within the size bound.
+     */
+    public long getEvictionCount() {
+        return this.evictions.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s cache: size=%d/%d, hits=%d, misses=%d, evictions=%d", this.name, size(),
+                this.maxEntries, getHitCount(), getMissCount(), getEvictionCount());
+    }
+}
@@ -0,0 +1,89 @@
+package org.opengis.cite.gpkg12.util;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+
+import javax.imageio.stream.ImageInputStreamImpl;
+
+/**
+ * An image input stream over a byte array that can be pointed at another
+ * array and read again. Wrapping each tile in a new
+ * {@link javax.imageio.stream.MemoryCacheImageInputStream} costs a cache
+ * block of several kilobytes and a finalizable object per tile; a scan that
+ * only identifies image formats can instead keep one instance of this class
+ * per thread and {@link #wrap(byte[]) wrap} each tile in turn. Closing the
+ * stream is not required.
+ */
+public final class ByteArrayImageInputStream extends ImageInputStreamImpl {
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private byte[] data = EMPTY;
+
+    /** The marked positions, each shifted left by 3 and or-ed with the bit offset. */
+    private final ArrayDeque<Long> marks = new ArrayDeque<>();
+
+    /**
+     * Points the stream at the start of another array. Any marks left by an
+     * earlier reader are discarded.
+     *
+     * @param bytes
+     *            The bytes to read; the array is not copied.
+     * @return This stream.
+     */
+    public ByteArrayImageInputStream wrap(final byte[] bytes) {
+        this.data = null == bytes ? EMPTY : bytes;
+        this.streamPos = 0;
+        this.flushedPos = 0;
+        this.bitOffset = 0;
+        this.marks.clear();
+        return this;
+    }
+
+    @Override
+    public void mark() {
+        this.marks.push(this.streamPos << 3 | this.bitOffset);
+    }
+
+    @Override
+    public void reset() throws IOException {
+        final Long mark = this.marks.poll();
+        if (null != mark) {
+            seek(mark >>> 3);
+            this.bitOffset = (int) (mark & 7);
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        this.bitOffset = 0;
+        if (this.streamPos >= this.data.length) {
+            return -1;
+        }
+        return this.data[(int) this.streamPos++] & 0xFF;
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException {
+        if (off < 0 || len < 0 || off + len > b.length) {
+            throw new IndexOutOfBoundsException();
+        }
+        this.bitOffset = 0;
+        if (len == 0) {
+            return 0;
+        }
+        final int available = this.data.length - (int) Math.min(this.streamPos, this.data.length);
+        if (available == 0) {
+            return -1;
+        }
+        final int count = Math.min(len, available);
+        System.arraycopy(this.data, (int) this.streamPos, b, off, count);
+        this.streamPos += count;
+        return count;
+    }
+
+    @Override
+    public long length() {
+        return this.data.length;
+    }
+}
@@ -0,0 +1,126 @@
+package org.opengis.cite.gpkg12.util;
+
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.sql.DataSource;
+
+/**
+ * A DataSource that keeps track of the connections it hands out, so that the
+ * queries running on all of them can be cancelled at once. The scanners and
+ * checkers that read a table on connections of their own (e.g.
+ * {@link PartitionedTableScanner}) are thus interrupted together with the
+ * main connection of a test fixture. Connections are held weakly and
+ * forgotten once closed.
+ */
+public class CancellableDataSource implements DataSource {
+
+    private final DataSource delegate;
+    private final Set<Connection> connections = Collections.newSetFromMap(new WeakHashMap<>());
+
+    /**
+     * Wraps a DataSource.
+     *
+     * @param delegate
+     *            The DataSource that opens the connections.
+     */
+    public CancellableDataSource(DataSource delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return track(this.delegate.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return track(this.delegate.getConnection(username, password));
+    }
+
+    private Connection track(Connection connection) {
+        synchronized (this.connections) {
+            this.connections.removeIf(CancellableDataSource::isClosed);
+            this.connections.add(connection);
+        }
+        return connection;
+    }
+
+    /**
+     * Cancels the queries running on every open connection obtained from this
+     * DataSource; each interrupted query fails with an SQLException.
+     *
+     * @return The number of connections whose queries were cancelled.
+     */
+    public int cancelQueries() {
+        final List<Connection> open;
+        synchronized (this.connections) {
+            this.connections.removeIf(CancellableDataSource::isClosed);
+            open = new ArrayList<>(this.connections);
+        }
+        int cancelled = 0;
+        for (Connection connection : open) {
+            try (Statement statement = connection.createStatement()) {
+                statement.cancel();
+                cancelled++;
+            } catch (SQLException e) {
+                // closed in the meantime
+                TestSuiteLogger.log(Level.FINE, "Failed to cancel queries", e);
+            }
+        }
+        return cancelled;
+    }
+
+    private static boolean isClosed(Connection connection) {
+        try {
+            return connection.isClosed();
+        } catch (SQLException e) {
+            return true;
+        }
+    }
+
+    @Override
+    public PrintWriter getLogWriter() throws SQLException {
+        return this.delegate.getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) throws SQLException {
+        this.delegate.setLogWriter(out);
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) throws SQLException {
+        this.delegate.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() throws SQLException {
+        return this.delegate.getLoginTimeout();
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        return this.delegate.getParentLogger();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        return iface.isInstance(this) ? iface.cast(this) : this.delegate.unwrap(iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(this) || this.delegate.isWrapperFor(iface);
+    }
+}
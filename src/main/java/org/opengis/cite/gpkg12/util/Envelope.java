@@ -0,0 +1,157 @@
+package org.opengis.cite.gpkg12.util;
+
+/**
+ * A two-dimensional bounding box that can be grown to include coordinates or
+ * other envelopes. A new envelope is empty. Instances are mutable and not
+ * thread-safe; partial envelopes computed in parallel are combined with
+ * {@link #expandToInclude(Envelope)}.
+ */
+public class Envelope {
+
+    private double minX = Double.POSITIVE_INFINITY;
+    private double minY = Double.POSITIVE_INFINITY;
+    private double maxX = Double.NEGATIVE_INFINITY;
+    private double maxY = Double.NEGATIVE_INFINITY;
+
+    /**
+     * Creates an empty envelope.
+     */
+    public Envelope() {
+    }
+
+    /**
+     * Creates an envelope with the given bounds.
+     *
+     * @param minX
+     *            Minimum x (easting or longitude).
+     * @param minY
+     *            Minimum y (northing or latitude).
+     * @param maxX
+     *            Maximum x.
+     * @param maxY
+     *            Maximum y.
+     */
+    public Envelope(final double minX, final double minY, final double maxX, final double maxY) {
+        this.minX = minX;
+        this.minY = minY;
+        this.maxX = maxX;
+        this.maxY = maxY;
+    }
+
+    /**
+     * Grows the envelope to include a coordinate. NaN ordinates (which denote
+     * an empty point) are ignored.
+     *
+     * @param x
+     *            The x ordinate.
+     * @param y
+     *            The y ordinate.
+     */
+    public void expandToInclude(final double x, final double y) {
+        if (Double.isNaN(x) || Double.isNaN(y)) {
+            return;
+        }
+        this.minX = Math.min(this.minX, x);
+        this.minY = Math.min(this.minY, y);
+        this.maxX = Math.max(this.maxX, x);
+        this.maxY = Math.max(this.maxY, y);
+    }
+
+    /**
+     * Grows the envelope to include another one.
+     *
+     * @param other
+     *            An envelope; if it is empty this one is unchanged.
+     */
+    public void expandToInclude(final Envelope other) {
+        if (other.isEmpty()) {
+            return;
+        }
+        this.minX = Math.min(this.minX, other.minX);
+        this.minY = Math.min(this.minY, other.minY);
+        this.maxX = Math.max(this.maxX, other.maxX);
+        this.maxY = Math.max(this.maxY, other.maxY);
+    }
+
+    /**
+     * @return {@code true} if the envelope does not include any coordinate
+     *         (or has NaN bounds).
+     */
+    public boolean isEmpty() {
+        return !(this.minX <= this.maxX && this.minY <= this.maxY);
+    }
+
+    /**
+     * Checks whether another envelope lies within this one. A relative
+     * tolerance absorbs the rounding that occurs when bounds are written as
+     * decimal text or single precision values.
+     *
+     * @param other
+     *            The envelope to test.
+     * @param tolerance
+     *            The allowed excess, as a fraction of the larger of the
+     *            magnitude of the bound and 1.
+     * @return {@code true} if {@code other} is empty or lies within this
+     *         envelope.
+     */
+    public boolean contains(final Envelope other, final double tolerance) {
+        if (other.isEmpty()) {
+            return true;
+        }
+        return other.minX >= this.minX - slack(this.minX, tolerance)
+                && other.minY >= this.minY - slack(this.minY, tolerance)
+                && other.maxX <= this.maxX + slack(this.maxX, tolerance)
+                && other.maxY <= this.maxY + slack(this.maxY, tolerance);
+    }
+
+    private static double slack(final double bound, final double tolerance) {
+        return Math.max(Math.abs(bound), 1.0) * tolerance;
+    }
+
+    /**
+     * Returns a copy of this envelope grown by the given margins on each side.
+     *
+     * @param dx
+     *            The margin added to the left and right.
+     * @param dy
+     *            The margin added to the top and bottom.
+     * @return A new envelope (empty if this one is empty).
+     */
+    public Envelope expandedBy(final double dx, final double dy) {
+        if (isEmpty()) {
+            return new Envelope();
+        }
+        return new Envelope(this.minX - dx, this.minY - dy, this.maxX + dx, this.maxY + dy);
+    }
+
+    /**
+     * @return The area of the envelope (0 if it is empty).
+     */
+    public double getArea() {
+        return isEmpty() ? 0.0 : (this.maxX - this.minX) * (this.maxY - this.minY);
+    }
+
+    public double getMinX() {
+        return this.minX;
+    }
+
+    public double getMinY() {
+        return this.minY;
+    }
+
+    public double getMaxX() {
+        return this.maxX;
+    }
+
+    public double getMaxY() {
+        return this.maxY;
+    }
+
+    @Override
+    public String toString() {
+        if (isEmpty()) {
+            return "[empty]";
+        }
+        return String.format("[%s, %s, %s, %s]", this.minX, this.minY, this.maxX, this.maxY);
+    }
+}
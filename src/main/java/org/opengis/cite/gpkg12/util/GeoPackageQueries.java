@@ -0,0 +1,514 @@
+package org.opengis.cite.gpkg12.util;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+
+/**
+ * Runs the queries of the test suite against one database connection. The
+ * statements are prepared once and kept in a per-connection cache (keyed by
+ * the SQL text), so a query that is repeated for every table or row is not
+ * compiled again each time. Identifiers that are spliced into SQL text are
+ * quoted with {@link #quoteIdentifier(String)}; values are always bound as
+ * parameters. Rows are read through typed {@link Cursor cursors}, which
+ * stream the result set rather than loading it into memory.
+ *
+ * <p>
+ * An instance is not thread-safe: like the connection it wraps, it is meant to
+ * be used by one test class at a time. A cursor must be closed before its
+ * statement can be reused; if the same query is opened again while an earlier
+ * cursor is still open (e.g. in a nested loop), a separate statement is
+ * prepared for the inner cursor and closed with it.
+ * </p>
+ */
+public class GeoPackageQueries implements AutoCloseable {
+
+    /** The default maximum number of cached statements. */
+    public static final int DEFAULT_CACHE_SIZE = 64;
+
+    /**
+     * Maps the current row of a result set to a value.
+     *
+     * @param <T>
+     *            The type of the values.
+     */
+    @FunctionalInterface
+    public interface RowMapper<T> {
+
+        /**
+         * Maps the current row.
+         *
+         * @param resultSet
+         *            A result set positioned on a row.
+         * @return The value for the row.
+         * @throws SQLException
+         *             If a column cannot be read.
+         */
+        T map(ResultSet resultSet) throws SQLException;
+    }
+
+    /**
+     * Processes the values read by a cursor.
+     *
+     * @param <T>
+     *            The type of the values.
+     */
+    @FunctionalInterface
+    public interface RowHandler<T> {
+
+        /**
+         * Processes one value.
+         *
+         * @param value
+         *            The value of the current row.
+         * @throws SQLException
+         *             If a database access error occurs.
+         */
+        void handle(T value) throws SQLException;
+    }
+
+    /**
+     * A forward-only cursor over the rows of a query, each mapped to a value.
+     *
+     * @param <T>
+     *            The type of the values.
+     */
+    public final class Cursor<T> implements AutoCloseable {
+
+        private final PreparedStatement statement;
+        private final ResultSet resultSet;
+        private final RowMapper<T> mapper;
+        private final boolean cached;
+        private boolean closed;
+
+        Cursor(PreparedStatement statement, ResultSet resultSet, RowMapper<T> mapper, boolean cached) {
+            this.statement = statement;
+            this.resultSet = resultSet;
+            this.mapper = mapper;
+            this.cached = cached;
+        }
+
+        /**
+         * Moves to the next row.
+         *
+         * @return {@code true} if there is a row; {@code false} at the end of
+         *         the result set.
+         * @throws SQLException
+         *             If the row cannot be read.
+         */
+        public boolean next() throws SQLException {
+            return null != this.resultSet && this.resultSet.next();
+        }
+
+        /**
+         * @return The value of the current row.
+         * @throws SQLException
+         *             If the row cannot be mapped.
+         */
+        public T get() throws SQLException {
+            return this.mapper.map(this.resultSet);
+        }
+
+        /**
+         * Passes the value of every remaining row to a handler.
+         *
+         * @param handler
+         *            The handler.
+         * @throws SQLException
+         *             If a row cannot be read, or the handler fails.
+         */
+        public void forEach(RowHandler<? super T> handler) throws SQLException {
+            while (next()) {
+                handler.handle(get());
+            }
+        }
+
+        /**
+         * @return The values of all remaining rows.
+         * @throws SQLException
+         *             If a row cannot be read.
+         */
+        public List<T> toList() throws SQLException {
+            final List<T> values = new ArrayList<>();
+            forEach(values::add);
+            return values;
+        }
+
+        /**
+         * Closes the result set and releases the statement for reuse.
+         *
+         * @throws SQLException
+         *             If the result set cannot be closed.
+         */
+        @Override
+        public void close() throws SQLException {
+            if (this.closed) {
+                return;
+            }
+            this.closed = true;
+            try {
+                if (null != this.resultSet) {
+                    this.resultSet.close();
+                }
+            } finally {
+                if (this.cached) {
+                    GeoPackageQueries.this.busy.remove(this.statement);
+                } else {
+                    this.statement.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * A column of a table, as described by {@code PRAGMA table_info}.
+     */
+    public static final class TableColumn {
+
+        private final String name;
+        private final String type;
+        private final boolean notNull;
+        private final String defaultValue;
+        private final int primaryKeyIndex;
+
+        TableColumn(String name, String type, boolean notNull, String defaultValue, int primaryKeyIndex) {
+            this.name = name;
+            this.type = type;
+            this.notNull = notNull;
+            this.defaultValue = defaultValue;
+            this.primaryKeyIndex = primaryKeyIndex;
+        }
+
+        /**
+         * @return The column name.
+         */
+        public String getName() {
+            return this.name;
+        }
+
+        /**
+         * @return The declared type (may be empty).
+         */
+        public String getType() {
+            return this.type;
+        }
+
+        /**
+         * @return {@code true} if the column has a NOT NULL constraint.
+         */
+        public boolean isNotNull() {
+            return this.notNull;
+        }
+
+        /**
+         * @return The default value as SQL text, or {@code null}.
+         */
+        public String getDefaultValue() {
+            return this.defaultValue;
+        }
+
+        /**
+         * @return The 1-based position of the column in the primary key, or
+         *         0 if it is not part of it.
+         */
+        public int getPrimaryKeyIndex() {
+            return this.primaryKeyIndex;
+        }
+
+        @Override
+        public String toString() {
+            return this.name + ' ' + this.type;
+        }
+    }
+
+    private final Connection connection;
+    private final Map<String, PreparedStatement> statements;
+    private final Set<PreparedStatement> busy = Collections.newSetFromMap(new IdentityHashMap<>());
+    private long prepared;
+    private long reused;
+    private long executed;
+
+    /**
+     * Creates a query layer with the default cache size.
+     *
+     * @param connection
+     *            The connection to run the queries on; it is not closed by
+     *            {@link #close()}.
+     */
+    public GeoPackageQueries(final Connection connection) {
+        this(connection, DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * Creates a query layer.
+     *
+     * @param connection
+     *            The connection to run the queries on.
+     * @param cacheSize
+     *            The maximum number of cached statements; the least recently
+     *            used statement is closed when the cache is full.
+     */
+    public GeoPackageQueries(final Connection connection, final int cacheSize) {
+        if (cacheSize <= 0) {
+            throw new IllegalArgumentException("cacheSize must be positive: " + cacheSize);
+        }
+        this.connection = connection;
+        this.statements = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, PreparedStatement> eldest) {
+                if (size() <= cacheSize || busy.contains(eldest.getValue())) {
+                    return false;
+                }
+                closeQuietly(eldest.getValue());
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Quotes an SQL identifier (a table or column name), so that names that
+     * contain spaces, quotes or keywords can be used in SQL text.
+     *
+     * @param identifier
+     *            The identifier.
+     * @return The identifier in double quotes, with embedded double quotes
+     *         doubled.
+     */
+    public static String quoteIdentifier(final String identifier) {
+        return '"' + identifier.replace("\"", "\"\"") + '"';
+    }
+
+    /**
+     * @return The connection the queries run on.
+     */
+    public Connection getConnection() {
+        return this.connection;
+    }
+
+    /**
+     * Returns a prepared statement for the given SQL, from the cache if
+     * possible. The parameters of a cached statement are cleared.
+     *
+     * @param sql
+     *            The SQL text.
+     * @return The statement; it must not be closed by the caller.
+     * @throws SQLException
+     *             If the statement cannot be prepared.
+     */
+    public PreparedStatement prepare(final String sql) throws SQLException {
+        PreparedStatement statement = this.statements.get(sql);
+        if (null != statement && !statement.isClosed()) {
+            this.reused++;
+            statement.clearParameters();
+            return statement;
+        }
+        statement = this.connection.prepareStatement(sql);
+        this.prepared++;
+        this.statements.put(sql, statement);
+        return statement;
+    }
+
+    /**
+     * Runs a query and returns a cursor over its rows.
+     *
+     * @param sql
+     *            The SQL text, with a {@code ?} for each parameter.
+     * @param mapper
+     *            Maps each row to a value.
+     * @param parameters
+     *            The parameter values.
+     * @param <T>
+     *            The type of the values.
+     * @return A cursor, which must be closed.
+     * @throws SQLException
+     *             If the query fails.
+     */
+    public <T> Cursor<T> query(final String sql, final RowMapper<T> mapper, final Object... parameters)
+            throws SQLException {
+        PreparedStatement statement = this.statements.get(sql);
+        final boolean cached = null == statement || !this.busy.contains(statement);
+        if (cached) {
+            statement = prepare(sql);
+        } else {
+            // the cached statement is still being read by an outer cursor
+            statement = this.connection.prepareStatement(sql);
+            this.prepared++;
+        }
+        try {
+            for (int i = 0; i < parameters.length; i++) {
+                statement.setObject(i + 1, parameters[i]);
+            }
+            // a pragma that has nothing to report may return no result set
+            final ResultSet resultSet = statement.execute() ? statement.getResultSet() : null;
+            this.executed++;
+            if (cached) {
+                this.busy.add(statement);
+            }
+            return new Cursor<>(statement, resultSet, mapper, cached);
+        } catch (SQLException e) {
+            if (!cached) {
+                closeQuietly(statement);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Runs a query and returns the values of all its rows.
+     *
+     * @param sql
+     *            The SQL text.
+     * @param mapper
+     *            Maps each row to a value.
+     * @param parameters
+     *            The parameter values.
+     * @param <T>
+     *            The type of the values.
+     * @return The values, in row order.
+     * @throws SQLException
+     *             If the query fails.
+     */
+    public <T> List<T> list(final String sql, final RowMapper<T> mapper, final Object... parameters)
+            throws SQLException {
+        try (Cursor<T> cursor = query(sql, mapper, parameters)) {
+            return cursor.toList();
+        }
+    }
+
+    /**
+     * Runs a query and returns the first column of its first row as a long,
+     * e.g. for {@code SELECT count(*)}.
+     *
+     * @param sql
+     *            The SQL text.
+     * @param parameters
+     *            The parameter values.
+     * @return The value, or {@code null} if there is no row or the value is
+     *         NULL.
+     * @throws SQLException
+     *             If the query fails.
+     */
+    public Long queryLong(final String sql, final Object... parameters) throws SQLException {
+        try (Cursor<Long> cursor = query(sql, resultSet -> {
+            final long value = resultSet.getLong(1);
+            return resultSet.wasNull() ? null : value;
+        }, parameters)) {
+            return cursor.next() ? cursor.get() : null;
+        }
+    }
+
+    /**
+     * Returns the names of the tables listed in gpkg_contents with the given
+     * data type.
+     *
+     * @param dataType
+     *            The data type, such as "features" or "tiles".
+     * @return The table names.
+     * @throws SQLException
+     *             If gpkg_contents cannot be read.
+     */
+    public List<String> getContentsTableNames(final String dataType) throws SQLException {
+        return list("SELECT table_name FROM gpkg_contents WHERE data_type = ?", resultSet -> resultSet.getString(1),
+                dataType);
+    }
+
+    /**
+     * Describes the columns of a table with {@code PRAGMA table_info}.
+     *
+     * @param tableName
+     *            The name of the table.
+     * @return The columns, in table order; the list is empty if there is no
+     *         such table.
+     * @throws SQLException
+     *             If the pragma fails.
+     */
+    public List<TableColumn> getTableInfo(final String tableName) throws SQLException {
+        return list(String.format("PRAGMA table_info(%s)", quoteIdentifier(tableName)),
+                resultSet -> new TableColumn(resultSet.getString("name"), resultSet.getString("type"),
+                        resultSet.getBoolean("notnull"), resultSet.getString("dflt_value"), resultSet.getInt("pk")));
+    }
+
+    /**
+     * Runs a query over the given columns of every row of a table.
+     *
+     * @param tableName
+     *            The name of the table.
+     * @param mapper
+     *            Maps each row to a value.
+     * @param columns
+     *            The names of the columns to select.
+     * @param <T>
+     *            The type of the values.
+     * @return A cursor over the rows.
+     * @throws SQLException
+     *             If the query fails.
+     */
+    public <T> Cursor<T> selectColumns(final String tableName, final RowMapper<T> mapper, final String... columns)
+            throws SQLException {
+        final StringBuilder sql = new StringBuilder("SELECT ");
+        for (int i = 0; i < columns.length; i++) {
+            sql.append(i > 0 ? ", " : "").append(quoteIdentifier(columns[i]));
+        }
+        sql.append(" FROM ").append(quoteIdentifier(tableName));
+        return query(sql.toString(), mapper);
+    }
+
+    /**
+     * Closes every cached statement; the connection is left open.
+     */
+    @Override
+    public void close() {
+        TestSuiteLogger.log(Level.FINE, toString());
+        for (final PreparedStatement statement : this.statements.values()) {
+            closeQuietly(statement);
+        }
+        this.statements.clear();
+        this.busy.clear();
+    }
+
+    /**
+     * @return The number of statements prepared.
+     */
+    public long getPreparedCount() {
+        return this.prepared;
+    }
+
+    /**
+     * @return The number of times a cached statement was reused.
+     */
+    public long getReusedCount() {
+        return this.reused;
+    }
+
+    /**
+     * @return The number of queries run.
+     */
+    public long getExecutedCount() {
+        return this.executed;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("GeoPackageQueries: cached=%d, prepared=%d, reused=%d, executed=%d",
+                this.statements.size(), this.prepared, this.reused, this.executed);
+    }
+
+    private static void closeQuietly(final PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            TestSuiteLogger.log(Level.FINE, "Failed to close statement", e);
+        }
+    }
+}
@@ -0,0 +1,411 @@
+package org.opengis.cite.gpkg12.util;
+
+import static org.opengis.cite.gpkg12.util.GeoPackageQueries.quoteIdentifier;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BinaryOperator;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+
+import javax.sql.DataSource;
+
+/**
+ * Visits every row of a table, scanning large tables in parallel. The rowid
+ * range of the table (from {@code min(rowid)} to {@code max(rowid)}) is split
+ * in halves until the pieces are small enough; the pieces are scanned by a
+ * work-stealing pool, so a worker that finishes a sparse range takes over part
+ * of a dense one. Each worker reads on its own connection obtained from the
+ * DataSource, which for a read-only GeoPackage lets SQLite serve the ranges
+ * concurrently.
+ *
+ * <p>
+ * Each range is visited into its own result container; the containers are
+ * combined in rowid order (the result of a range is always combined with that
+ * of the range that follows it), so the outcome does not depend on the number
+ * of workers or on the order in which they finish. Small tables and views,
+ * which have no usable rowid, are scanned in a single pass on the calling
+ * thread.
+ * </p>
+ */
+public class PartitionedTableScanner {
+
+    /** Tables with fewer rowids than this are scanned in a single pass. */
+    public static final long DEFAULT_ROWS_PER_PARTITION = 250000;
+
+    /**
+     * The number of ranges per worker that a table is split into, so that
+     * there is work left to steal when the rows are unevenly distributed.
+     */
+    private static final int RANGES_PER_WORKER = 8;
+
+    /**
+     * Receives the rows of a table.
+     *
+     * @param <A>
+     *            The type of the result container.
+     */
+    @FunctionalInterface
+    public interface RowVisitor<A> {
+
+        /**
+         * Visits one row.
+         *
+         * @param rowid
+         *            The rowid of the row, or -1 if the table is a view.
+         * @param row
+         *            The result set, positioned on the row; the selected
+         *            columns start at index 2.
+         * @param result
+         *            The result container of the range being scanned.
+         * @return The number of bytes read from the row, for progress
+         *         reporting.
+         * @throws SQLException
+         *             If the row cannot be read; the scan is abandoned.
+         */
+        long visit(long rowid, ResultSet row, A result) throws SQLException;
+    }
+
+    private final DataSource dataSource;
+    private final int parallelism;
+    private final long rowsPerPartition;
+    private final ProgressMonitor monitor;
+
+    /**
+     * Creates a scanner that uses one worker per available processor.
+     *
+     * @param dataSource
+     *            A DataSource for the GeoPackage; each worker reads on its own
+     *            connection.
+     */
+    public PartitionedTableScanner(DataSource dataSource) {
+        this(dataSource, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a scanner that uses one worker per available processor.
+     *
+     * @param dataSource
+     *            A DataSource for the GeoPackage.
+     * @param monitor
+     *            The monitor that publishes the progress of the scans.
+     */
+    public PartitionedTableScanner(DataSource dataSource, ProgressMonitor monitor) {
+        this(dataSource, Runtime.getRuntime().availableProcessors(), DEFAULT_ROWS_PER_PARTITION, monitor);
+    }
+
+    /**
+     * Creates a scanner.
+     *
+     * @param dataSource
+     *            A DataSource for the GeoPackage.
+     * @param parallelism
+     *            The maximum number of ranges scanned at once.
+     */
+    public PartitionedTableScanner(DataSource dataSource, int parallelism) {
+        this(dataSource, parallelism, DEFAULT_ROWS_PER_PARTITION);
+    }
+
+    /**
+     * Creates a scanner.
+     *
+     * @param dataSource
+     *            A DataSource for the GeoPackage.
+     * @param parallelism
+     *            The maximum number of ranges scanned at once.
+     * @param rowsPerPartition
+     *            The number of rowids above which a table is scanned in
+     *            parallel; it is also the largest range scanned as a unit.
+     */
+    public PartitionedTableScanner(DataSource dataSource, int parallelism, long rowsPerPartition) {
+        this(dataSource, parallelism, rowsPerPartition, new ProgressMonitor());
+    }
+
+    /**
+     * Creates a scanner.
+     *
+     * @param dataSource
+     *            A DataSource for the GeoPackage.
+     * @param parallelism
+     *            The maximum number of ranges scanned at once.
+     * @param rowsPerPartition
+     *            The number of rowids above which a table is scanned in
+     *            parallel; it is also the largest range scanned as a unit.
+     * @param monitor
+     *            The monitor that publishes the progress of the scans.
+     */
+    public PartitionedTableScanner(DataSource dataSource, int parallelism, long rowsPerPartition,
+            ProgressMonitor monitor) {
+        this.dataSource = dataSource;
+        this.parallelism = Math.max(1, parallelism);
+        this.rowsPerPartition = Math.max(1, rowsPerPartition);
+        this.monitor = monitor;
+    }
+
+    /**
+     * @return The maximum number of ranges scanned at once.
+     */
+    public int getParallelism() {
+        return this.parallelism;
+    }
+
+    /**
+     * Visits every row of a table.
+     *
+     * @param <A>
+     *            The type of the result container.
+     * @param name
+     *            A description of the scan, for progress reports.
+     * @param tableName
+     *            The name of the table (or view).
+     * @param columns
+     *            The SQL select list, e.g. a quoted column name; the selected
+     *            values are passed to the visitor from index 2 on.
+     * @param supplier
+     *            Creates an empty result container for each range.
+     * @param visitor
+     *            Visits a row into the result container of its range. It is
+     *            called concurrently for different ranges, so it must not
+     *            share mutable state other than the container.
+     * @param combiner
+     *            Combines the results of two adjacent ranges, the range with
+     *            the lower rowids first; it may return either argument.
+     * @return The combined result.
+     * @throws SQLException
+     *             If the table cannot be read or the visitor fails.
+     */
+    public <A> A scan(String name, String tableName, String columns, Supplier<A> supplier, RowVisitor<A> visitor,
+            BinaryOperator<A> combiner) throws SQLException {
+        final long[] range = rowidRange(tableName);
+        final String table = quoteIdentifier(tableName);
+        try (ScanProgress progress = this.monitor.begin(name,
+                null == range ? 0 : Math.max(0, range[1] - range[0] + 1))) {
+            if (null == range) {
+                // a view, which has no usable rowid
+                try (Connection connection = this.dataSource.getConnection();
+                        PreparedStatement statement = connection
+                                .prepareStatement(String.format("SELECT -1, %s FROM %s", columns, table))) {
+                    final A result = supplier.get();
+                    visitRows(statement, visitor, result, progress, null);
+                    return result;
+                }
+            }
+            final Scan<A> scan = new Scan<>(
+                    String.format("SELECT rowid, %s FROM %s WHERE rowid BETWEEN ? AND ?", columns, table), supplier,
+                    visitor, combiner, progress);
+            final long span = range[1] - range[0] + 1;
+            if (span <= this.rowsPerPartition || this.parallelism == 1) {
+                try (Connection connection = this.dataSource.getConnection();
+                        PreparedStatement statement = connection.prepareStatement(scan.query)) {
+                    return scan.visitRange(statement, range[0], range[1]);
+                }
+            }
+            final long leafSize = Math.max(1,
+                    Math.min(this.rowsPerPartition, (span + this.parallelism * RANGES_PER_WORKER - 1)
+                            / (this.parallelism * RANGES_PER_WORKER)));
+            return scanParallel(name, scan, range, leafSize);
+        }
+    }
+
+    private <A> A scanParallel(String name, Scan<A> scan, long[] range, long leafSize) throws SQLException {
+        final ForkJoinPool pool = new ForkJoinPool(this.parallelism, forkJoinPool -> {
+            final ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory
+                    .newThread(forkJoinPool);
+            thread.setName("scan-" + name + "-" + thread.getPoolIndex());
+            return thread;
+        }, null, false);
+        try {
+            return pool.submit(new RangeTask<>(scan, range[0], range[1], leafSize)).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while scanning " + name, e);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause() instanceof ScanException ? e.getCause().getCause() : e.getCause();
+            if (cause instanceof SQLException) {
+                throw (SQLException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new SQLException("Failed to scan " + name, cause);
+        } finally {
+            // stop the ranges still running before their connections close
+            scan.cancelled = true;
+            pool.shutdownNow();
+            try {
+                pool.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            scan.close();
+        }
+    }
+
+    /**
+     * Returns the smallest and largest rowid, or {@code null} for a view. An
+     * empty table yields the empty range [1, 0].
+     */
+    private long[] rowidRange(String tableName) throws SQLException {
+        try (Connection connection = this.dataSource.getConnection();
+                PreparedStatement typeQuery = connection.prepareStatement("SELECT type FROM sqlite_master WHERE name = ?")) {
+            typeQuery.setString(1, tableName);
+            try (ResultSet resultSet = typeQuery.executeQuery()) {
+                if (resultSet.next() && "view".equals(resultSet.getString(1))) {
+                    return null;
+                }
+            }
+            try (Statement statement = connection.createStatement();
+                    ResultSet resultSet = statement.executeQuery(
+                            String.format("SELECT min(rowid), max(rowid) FROM %s", quoteIdentifier(tableName)))) {
+                resultSet.next();
+                final long first = resultSet.getLong(1);
+                if (resultSet.wasNull()) {
+                    return new long[] { 1, 0 };
+                }
+                return new long[] { first, resultSet.getLong(2) };
+            }
+        }
+    }
+
+    private static <A> void visitRows(PreparedStatement statement, RowVisitor<A> visitor, A result,
+            ScanProgress progress, Scan<A> scan) throws SQLException {
+        try (ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                if (null != scan && scan.cancelled) {
+                    return;
+                }
+                progress.advance(1, visitor.visit(resultSet.getLong(1), resultSet, result));
+            }
+        }
+    }
+
+    /**
+     * The state shared by the ranges of one scan: the query, the functions
+     * that build the result, and one statement per worker thread.
+     */
+    private final class Scan<A> {
+
+        final String query;
+        final Supplier<A> supplier;
+        final RowVisitor<A> visitor;
+        final BinaryOperator<A> combiner;
+        final ScanProgress progress;
+        final Map<Thread, PreparedStatement> statements = new ConcurrentHashMap<>();
+        volatile boolean cancelled;
+
+        Scan(String query, Supplier<A> supplier, RowVisitor<A> visitor, BinaryOperator<A> combiner,
+                ScanProgress progress) {
+            this.query = query;
+            this.supplier = supplier;
+            this.visitor = visitor;
+            this.combiner = combiner;
+            this.progress = progress;
+        }
+
+        A visitRange(PreparedStatement statement, long first, long last) throws SQLException {
+            final A result = this.supplier.get();
+            if (first <= last) {
+                statement.setLong(1, first);
+                statement.setLong(2, last);
+                visitRows(statement, this.visitor, result, this.progress, this);
+            }
+            return result;
+        }
+
+        /**
+         * Scans a range on the statement of the current worker thread, which
+         * is prepared on a new connection the first time the thread is used.
+         */
+        A visitRange(long first, long last) throws SQLException {
+            PreparedStatement statement = this.statements.get(Thread.currentThread());
+            if (null == statement) {
+                final Connection connection = PartitionedTableScanner.this.dataSource.getConnection();
+                try {
+                    statement = connection.prepareStatement(this.query);
+                } catch (SQLException e) {
+                    connection.close();
+                    throw e;
+                }
+                this.statements.put(Thread.currentThread(), statement);
+            }
+            return visitRange(statement, first, last);
+        }
+
+        void close() {
+            for (final PreparedStatement statement : this.statements.values()) {
+                try {
+                    final Connection connection = statement.getConnection();
+                    statement.close();
+                    connection.close();
+                } catch (SQLException e) {
+                    TestSuiteLogger.log(Level.FINE, "Failed to close scan connection", e);
+                }
+            }
+            this.statements.clear();
+        }
+    }
+
+    /**
+     * Scans a rowid range, splitting it in halves that may be stolen by idle
+     * workers until it is no larger than the leaf size.
+     */
+    private static final class RangeTask<A> extends RecursiveTask<A> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient Scan<A> scan;
+        private final long first;
+        private final long last;
+        private final long leafSize;
+
+        RangeTask(Scan<A> scan, long first, long last, long leafSize) {
+            this.scan = scan;
+            this.first = first;
+            this.last = last;
+            this.leafSize = leafSize;
+        }
+
+        @Override
+        protected A compute() {
+            if (this.last - this.first + 1 <= this.leafSize) {
+                try {
+                    return this.scan.visitRange(this.first, this.last);
+                } catch (SQLException e) {
+                    this.scan.cancelled = true;
+                    throw new ScanException(e);
+                }
+            }
+            final long middle = this.first + (this.last - this.first) / 2;
+            final RangeTask<A> lower = new RangeTask<>(this.scan, this.first, middle, this.leafSize);
+            final RangeTask<A> upper = new RangeTask<>(this.scan, middle + 1, this.last, this.leafSize);
+            lower.fork();
+            final A upperResult = upper.compute();
+            return this.scan.combiner.apply(lower.join(), upperResult);
+        }
+    }
+
+    /**
+     * Carries an SQLException out of a worker thread.
+     */
+    private static final class ScanException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        ScanException(SQLException cause) {
+            super(cause);
+        }
+    }
+}
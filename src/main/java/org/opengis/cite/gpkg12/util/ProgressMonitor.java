@@ -0,0 +1,190 @@
+package org.opengis.cite.gpkg12.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+
+/**
+ * Publishes the progress of long-running row scans. Each report is logged by
+ * {@link TestSuiteLogger} at the INFO level, passed to any registered
+ * listeners, and, if a status file
+ * has been set, written to that file so that operators can poll it while a
+ * test run is in progress. The status file lists every scan in progress and is
+ * replaced atomically, so a reader never sees a partial update.
+ *
+ * <p>
+ * Each test suite has its own monitor (see
+ * {@link org.opengis.cite.gpkg12.SuiteAttribute#PROGRESS_MONITOR}), so the
+ * scans of concurrent test runs are reported to their own listeners and
+ * status files.
+ * </p>
+ */
+public final class ProgressMonitor {
+
+    /** The default minimum time between two reports of the same scan. */
+    public static final long DEFAULT_REPORT_INTERVAL_SECONDS = 10;
+
+    private final Set<ScanProgress> active = ConcurrentHashMap.newKeySet();
+    private final List<Consumer<ScanProgress>> listeners = new CopyOnWriteArrayList<>();
+    private volatile long reportIntervalNanos = TimeUnit.SECONDS.toNanos(DEFAULT_REPORT_INTERVAL_SECONDS);
+    private volatile File statusFile;
+
+    /**
+     * Starts tracking a scan.
+     *
+     * @param name
+     *            A description of the scan, such as the test and table name.
+     * @param totalRows
+     *            The estimated number of rows (0 if unknown).
+     * @return The progress of the new scan; it must be closed when the scan
+     *         ends.
+     */
+    public ScanProgress begin(String name, long totalRows) {
+        final ScanProgress progress = new ScanProgress(this, name, totalRows);
+        this.active.add(progress);
+        writeStatus();
+        return progress;
+    }
+
+    /**
+     * Estimates the number of rows in a table from its largest rowid, which
+     * is read from the end of the table b-tree without a scan. Views and
+     * WITHOUT ROWID tables are counted instead.
+     *
+     * @param connection
+     *            A connection to the database.
+     * @param tableName
+     *            The name of a table or view.
+     * @return The estimated number of rows, or 0 if it cannot be determined.
+     */
+    public static long estimateRows(Connection connection, String tableName) {
+        final String table = GeoPackageQueries.quoteIdentifier(tableName);
+        for (final String query : new String[] { "SELECT max(rowid) FROM %s", "SELECT count(*) FROM %s" }) {
+            try (Statement statement = connection.createStatement();
+                    ResultSet resultSet = statement.executeQuery(String.format(query, table))) {
+                if (resultSet.next()) {
+                    final long rows = resultSet.getLong(1);
+                    if (!resultSet.wasNull()) {
+                        return rows;
+                    }
+                }
+            } catch (SQLException e) {
+                // no rowid: fall back to counting
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Registers a listener that receives every progress report.
+     *
+     * @param listener
+     *            The listener.
+     */
+    public void addListener(Consumer<ScanProgress> listener) {
+        this.listeners.add(listener);
+    }
+
+    /**
+     * Removes a listener.
+     *
+     * @param listener
+     *            The listener.
+     */
+    public void removeListener(Consumer<ScanProgress> listener) {
+        this.listeners.remove(listener);
+    }
+
+    /**
+     * Sets the file that receives the status of the scans in progress.
+     *
+     * @param file
+     *            The status file, or {@code null} to stop writing one.
+     */
+    public void setStatusFile(File file) {
+        this.statusFile = file;
+        writeStatus();
+    }
+
+    /**
+     * Sets the minimum time between two reports of the same scan.
+     *
+     * @param interval
+     *            The interval.
+     * @param unit
+     *            The unit of the interval.
+     */
+    public void setReportInterval(long interval, TimeUnit unit) {
+        this.reportIntervalNanos = unit.toNanos(interval);
+    }
+
+    long getReportIntervalNanos() {
+        return this.reportIntervalNanos;
+    }
+
+    void report(ScanProgress progress) {
+        publish(progress);
+    }
+
+    void finish(ScanProgress progress) {
+        this.active.remove(progress);
+        // short scans are not worth a report
+        if (progress.getElapsedMillis() >= TimeUnit.NANOSECONDS.toMillis(this.reportIntervalNanos)) {
+            publish(progress);
+        } else {
+            writeStatus();
+        }
+    }
+
+    private void publish(ScanProgress progress) {
+        TestSuiteLogger.log(Level.INFO, progress.toString());
+        for (final Consumer<ScanProgress> listener : this.listeners) {
+            listener.accept(progress);
+        }
+        writeStatus();
+    }
+
+    private synchronized void writeStatus() {
+        final File file = this.statusFile;
+        if (null == file) {
+            return;
+        }
+        final Path target = file.toPath().toAbsolutePath();
+        try {
+            final Path temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+            try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                writer.write("updated: " + Instant.now() + System.lineSeparator());
+                if (this.active.isEmpty()) {
+                    writer.write("idle" + System.lineSeparator());
+                }
+                for (final ScanProgress progress : this.active) {
+                    writer.write(progress.toString() + System.lineSeparator());
+                }
+            }
+            try {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            TestSuiteLogger.log(Level.WARNING, "Failed to write progress status file " + target, e);
+        }
+    }
+}
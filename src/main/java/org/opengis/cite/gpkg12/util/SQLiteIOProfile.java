@@ -0,0 +1,250 @@
+package org.opengis.cite.gpkg12.util;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.opengis.cite.gpkg12.TestRunArg;
+import org.sqlite.SQLiteConfig;
+import org.sqlite.SQLiteDataSource;
+import org.sqlite.SQLiteOpenMode;
+
+/**
+ * The SQLite settings used to read a GeoPackage under test. The test suite
+ * never modifies the database, so the profile is chosen for fast scans: the
+ * file is opened read-only (and immutable when no hot journal is present),
+ * memory-mapped I/O is enabled, and the page cache and temporary storage are
+ * sized from the file size and the memory that is available.
+ *
+ * <p>
+ * Each setting may be overridden by a test run argument with the same name as
+ * the corresponding SQLite pragma: {@code mmap_size} and {@code cache_size}
+ * (in bytes), {@code temp_store} ({@code default}, {@code file} or
+ * {@code memory}) and {@code immutable} ({@code true} or {@code false}).
+ * </p>
+ *
+ * @see <a href="https://www.sqlite.org/mmap.html" target="_blank">Memory-Mapped
+ *      I/O</a>
+ * @see <a href="https://www.sqlite.org/uri.html#uriimmutable" target=
+ *      "_blank">The "immutable" query parameter</a>
+ */
+public final class SQLiteIOProfile {
+
+    private static final long KIB = 1024;
+    private static final long MIB = KIB * KIB;
+    /** The compile-time default SQLITE_MAX_MMAP_SIZE of the native library. */
+    static final long MAX_MMAP_SIZE = 0x7fff0000L;
+    static final long MIN_CACHE_SIZE = 2 * MIB;
+    static final long MAX_CACHE_SIZE = 256 * MIB;
+    /** Sorts and temporary indexes over files up to this size are kept in memory. */
+    static final long MAX_MEMORY_TEMP_STORE_FILE_SIZE = 512 * MIB;
+    /** The names of the free memory method, newest first. */
+    private static final String[] FREE_MEMORY_METHODS = { "getFreeMemorySize", "getFreePhysicalMemorySize" };
+
+    private final long mmapSize;
+    private final long cacheSize;
+    private final SQLiteConfig.TempStore tempStore;
+    private final boolean immutable;
+
+    SQLiteIOProfile(long mmapSize, long cacheSize, SQLiteConfig.TempStore tempStore, boolean immutable) {
+        this.mmapSize = mmapSize;
+        this.cacheSize = cacheSize;
+        this.tempStore = tempStore;
+        this.immutable = immutable;
+    }
+
+    /**
+     * Chooses a profile for a GeoPackage using the default sizing rules.
+     *
+     * @param gpkgFile
+     *            The SQLite database file.
+     * @return A profile suited to the file and the host.
+     */
+    public static SQLiteIOProfile select(File gpkgFile) {
+        return select(gpkgFile, Collections.<String, String> emptyMap());
+    }
+
+    /**
+     * Chooses a profile for a GeoPackage. The memory map covers as much of the
+     * file as SQLite allows, limited to half of the free physical memory; the
+     * page cache holds the part of the file that is not mapped (within fixed
+     * bounds, since SQLite allocates it outside the Java heap); and temporary
+     * storage is kept in memory unless the file is large or memory is short.
+     *
+     * @param gpkgFile
+     *            The SQLite database file.
+     * @param params
+     *            The test run arguments, which may override any of the
+     *            chosen settings.
+     * @return A profile suited to the file and the host.
+     * @throws IllegalArgumentException
+     *             If an override has an invalid value.
+     */
+    public static SQLiteIOProfile select(File gpkgFile, Map<String, String> params) {
+        final long fileSize = gpkgFile.length();
+        final long freeMemory = freePhysicalMemory();
+        long mmapSize = 0;
+        if (!"32".equals(System.getProperty("sun.arch.data.model"))) {
+            mmapSize = Math.min(Math.min(fileSize, MAX_MMAP_SIZE), freeMemory / 2);
+        }
+        final long unmapped = Math.max(0, fileSize - mmapSize);
+        final long cacheSize = Math.max(MIN_CACHE_SIZE, Math.min(Math.min(unmapped, MAX_CACHE_SIZE), freeMemory / 8));
+        final Runtime runtime = Runtime.getRuntime();
+        final long freeHeap = runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory());
+        final SQLiteConfig.TempStore tempStore = (fileSize <= MAX_MEMORY_TEMP_STORE_FILE_SIZE
+                && fileSize < Math.min(freeMemory, freeHeap)) ? SQLiteConfig.TempStore.MEMORY
+                        : SQLiteConfig.TempStore.FILE;
+        final boolean immutable = !new File(gpkgFile.getPath() + "-journal").exists()
+                && !new File(gpkgFile.getPath() + "-wal").exists();
+        return new SQLiteIOProfile(longParam(params, TestRunArg.MMAP_SIZE, mmapSize),
+                longParam(params, TestRunArg.CACHE_SIZE, cacheSize), tempStoreParam(params, tempStore),
+                booleanParam(params, TestRunArg.IMMUTABLE, immutable));
+    }
+
+    /**
+     * Creates a DataSource for reading a GeoPackage with this profile. The
+     * memory map size is not a connection property of the JDBC driver, so it
+     * is set on every connection as it is opened.
+     *
+     * @param gpkgFile
+     *            The SQLite database file.
+     * @return A DataSource that opens read-only connections.
+     */
+    public DataSource createDataSource(File gpkgFile) {
+        final SQLiteConfig dbConfig = new SQLiteConfig();
+        dbConfig.setSynchronous(SQLiteConfig.SynchronousMode.OFF);
+        dbConfig.setJournalMode(SQLiteConfig.JournalMode.MEMORY);
+        dbConfig.enforceForeignKeys(true);
+        dbConfig.setReadOnly(true);
+        dbConfig.setTempStore(this.tempStore);
+        // a negative cache size is in KiB rather than pages
+        dbConfig.setCacheSize((int) -Math.max(1, this.cacheSize / KIB));
+        final String url;
+        if (this.immutable) {
+            dbConfig.setOpenMode(SQLiteOpenMode.OPEN_URI);
+            url = "jdbc:sqlite:" + gpkgFile.getAbsoluteFile().toURI() + "?immutable=1";
+        } else {
+            url = "jdbc:sqlite:" + gpkgFile.getPath();
+        }
+        final long mmap = this.mmapSize;
+        final SQLiteDataSource dataSource = new SQLiteDataSource(dbConfig) {
+            @Override
+            public Connection getConnection(String username, String password) throws SQLException {
+                final Connection connection = super.getConnection(username, password);
+                if (mmap > 0) {
+                    try (Statement statement = connection.createStatement()) {
+                        statement.execute("PRAGMA mmap_size=" + mmap);
+                    } catch (SQLException e) {
+                        connection.close();
+                        throw e;
+                    }
+                }
+                return connection;
+            }
+        };
+        dataSource.setUrl(url);
+        return dataSource;
+    }
+
+    /**
+     * @return The maximum number of bytes of the file that are memory-mapped
+     *         (0 disables memory-mapped I/O).
+     */
+    public long getMmapSize() {
+        return this.mmapSize;
+    }
+
+    /**
+     * @return The page cache size in bytes.
+     */
+    public long getCacheSize() {
+        return this.cacheSize;
+    }
+
+    /**
+     * @return Where temporary tables and indexes are stored.
+     */
+    public SQLiteConfig.TempStore getTempStore() {
+        return this.tempStore;
+    }
+
+    /**
+     * @return {@code true} if the file is opened with the immutable flag, so
+     *         that SQLite does no locking or change detection.
+     */
+    public boolean isImmutable() {
+        return this.immutable;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("SQLite I/O profile: mmap_size=%d, cache_size=%d KiB, temp_store=%s, read-only%s",
+                this.mmapSize, this.cacheSize / KIB, this.tempStore.getValue().toLowerCase(Locale.ROOT),
+                this.immutable ? ", immutable" : "");
+    }
+
+    /**
+     * Returns the free physical memory reported by the platform, or the
+     * maximum heap size if the platform does not report it. The method is
+     * looked up by name because it was renamed (and the old name
+     * deprecated) in later JDKs.
+     */
+    private static long freePhysicalMemory() {
+        final OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        for (final String name : FREE_MEMORY_METHODS) {
+            try {
+                final Object free = Class.forName("com.sun.management.OperatingSystemMXBean").getMethod(name).invoke(os);
+                if (free instanceof Long && (Long) free > 0) {
+                    return (Long) free;
+                }
+            } catch (ReflectiveOperationException | IllegalArgumentException e) {
+                // not a HotSpot bean, or not this JDK's name for the method
+            }
+        }
+        return Runtime.getRuntime().maxMemory();
+    }
+
+    private static long longParam(Map<String, String> params, TestRunArg name, long defaultValue) {
+        final String value = params.get(name.toString());
+        if (null == value || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            final long size = Long.parseLong(value.trim());
+            if (size < 0) {
+                throw new IllegalArgumentException(String.format("Test run argument %s must not be negative: %s", name, value));
+            }
+            return size;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(String.format("Test run argument %s is not a number: %s", name, value), e);
+        }
+    }
+
+    private static boolean booleanParam(Map<String, String> params, TestRunArg name, boolean defaultValue) {
+        final String value = params.get(name.toString());
+        if (null == value || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        return Boolean.parseBoolean(value.trim());
+    }
+
+    private static SQLiteConfig.TempStore tempStoreParam(Map<String, String> params, SQLiteConfig.TempStore defaultValue) {
+        final String value = params.get(TestRunArg.TEMP_STORE.toString());
+        if (null == value || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return SQLiteConfig.TempStore.valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(String.format("Test run argument %s is not one of default, file or memory: %s", TestRunArg.TEMP_STORE, value), e);
+        }
+    }
+}
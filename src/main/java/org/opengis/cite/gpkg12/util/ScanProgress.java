@@ -0,0 +1,159 @@
+package org.opengis.cite.gpkg12.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The progress of one scan over the rows of a table. A scan is started with
+ * {@link ProgressMonitor#begin(String, long)}; the code reading the rows calls
+ * {@link #advance(long, long)} as it goes (from any number of threads) and
+ * closes the scan when it is done. Progress is published by the
+ * {@link ProgressMonitor} that started the scan at most once per report interval, so advancing is
+ * cheap enough to do for every row.
+ */
+public final class ScanProgress implements AutoCloseable {
+
+    private final ProgressMonitor monitor;
+    private final String name;
+    private final long totalRows;
+    private final long startNanos;
+    private final AtomicLong rows = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong nextReportNanos;
+    private volatile long endNanos;
+
+    ScanProgress(ProgressMonitor monitor, String name, long totalRows) {
+        this.monitor = monitor;
+        this.name = name;
+        this.totalRows = totalRows;
+        this.startNanos = System.nanoTime();
+        this.nextReportNanos = new AtomicLong(this.startNanos + monitor.getReportIntervalNanos());
+    }
+
+    /**
+     * Records that rows have been processed.
+     *
+     * @param rowCount
+     *            The number of rows processed since the last call.
+     * @param byteCount
+     *            The number of bytes read for those rows (0 if unknown).
+     */
+    public void advance(long rowCount, long byteCount) {
+        this.rows.addAndGet(rowCount);
+        if (byteCount > 0) {
+            this.bytes.addAndGet(byteCount);
+        }
+        final long now = System.nanoTime();
+        final long next = this.nextReportNanos.get();
+        if (now - next >= 0
+                && this.nextReportNanos.compareAndSet(next, now + this.monitor.getReportIntervalNanos())) {
+            this.monitor.report(this);
+        }
+    }
+
+    /**
+     * Ends the scan and publishes a final report.
+     */
+    @Override
+    public void close() {
+        if (this.endNanos == 0) {
+            this.endNanos = System.nanoTime();
+            this.monitor.finish(this);
+        }
+    }
+
+    /**
+     * @return A description of the scan (e.g. the test and table name).
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * @return The estimated number of rows to scan, or 0 if unknown.
+     */
+    public long getTotalRows() {
+        return this.totalRows;
+    }
+
+    /**
+     * @return The number of rows processed so far.
+     */
+    public long getRows() {
+        return this.rows.get();
+    }
+
+    /**
+     * @return The number of bytes read so far.
+     */
+    public long getBytes() {
+        return this.bytes.get();
+    }
+
+    /**
+     * @return The time since the scan started (or its duration once closed).
+     */
+    public long getElapsedMillis() {
+        final long end = this.endNanos == 0 ? System.nanoTime() : this.endNanos;
+        return TimeUnit.NANOSECONDS.toMillis(end - this.startNanos);
+    }
+
+    /**
+     * @return The average number of rows processed per second.
+     */
+    public double getRowsPerSecond() {
+        return perSecond(getRows());
+    }
+
+    /**
+     * @return The average number of bytes read per second.
+     */
+    public double getBytesPerSecond() {
+        return perSecond(getBytes());
+    }
+
+    /**
+     * Estimates the time remaining from the average rate so far.
+     *
+     * @return The estimated time to completion in milliseconds, or -1 if the
+     *         total is unknown or no rows have been processed yet.
+     */
+    public long getEtaMillis() {
+        final long done = getRows();
+        if (this.totalRows <= 0 || done == 0) {
+            return -1;
+        }
+        return Math.max(0, (long) ((this.totalRows - done) * (double) getElapsedMillis() / done));
+    }
+
+    private double perSecond(long count) {
+        final long millis = getElapsedMillis();
+        return millis == 0 ? 0 : count * 1000.0 / millis;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder(this.name).append(": ").append(getRows());
+        if (this.totalRows > 0) {
+            sb.append(" of ").append(this.totalRows).append(" rows (")
+                    .append(Math.min(100, getRows() * 100 / this.totalRows)).append("%)");
+        } else {
+            sb.append(" rows");
+        }
+        sb.append(String.format(", %.0f rows/s, %.1f MB/s", getRowsPerSecond(), getBytesPerSecond() / 1e6));
+        if (this.endNanos != 0) {
+            sb.append(", done in ").append(formatDuration(getElapsedMillis()));
+        } else {
+            final long eta = getEtaMillis();
+            if (eta >= 0) {
+                sb.append(", ETA ").append(formatDuration(eta));
+            }
+        }
+        return sb.toString();
+    }
+
+    static String formatDuration(long millis) {
+        final long seconds = TimeUnit.MILLISECONDS.toSeconds(millis);
+        return String.format("%d:%02d:%02d", seconds / 3600, (seconds / 60) % 60, seconds % 60);
+    }
+}
@@ -6,7 +6,9 @@ import java.net.URI;
 import java.net.URL;
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 
 import javax.xml.XMLConstants;
@@ -26,11 +28,18 @@ import org.w3c.dom.ls.LSResourceResolver;
 
 /**
  * A utility class that provides convenience methods to support schema
- * validation.
+ * validation. Schematron validators and entity catalogs are expensive to
+ * build, so they are created on first use and then shared for the lifetime of
+ * the JVM.
  */
 public class ValidationUtils {
 
     static final String ROOT_PKG = "/org/opengis/cite/gpkg12/";
+    /** Maximum number of compiled Schematron validators retained. */
+    static final int MAX_SCHEMATRON_VALIDATORS = 16;
+    private static final Map<URI, XMLCatalogResolver> CATALOG_RESOLVERS = new ConcurrentHashMap<>();
+    private static final BoundedCache<String, SchematronValidator> SCHEMATRON_VALIDATORS = new BoundedCache<>(
+            "Schematron", MAX_SCHEMATRON_VALIDATORS);
     private static final XMLCatalogResolver SCH_RESOLVER = initCatalogResolver();
 
     private static XMLCatalogResolver initCatalogResolver() {
@@ -38,9 +47,11 @@ public class ValidationUtils {
     }
 
     /**
-     * Creates a resource resolver suitable for locating schemas using an entity
+     * Returns a resource resolver suitable for locating schemas using an entity
      * catalog. In effect, local copies of standard schemas are returned instead
-     * of retrieving them from external repositories.
+     * of retrieving them from external repositories. The catalog is parsed
+     * once per schema language; the resolver is shared and must not be
+     * reconfigured by the caller.
      * 
      * @param schemaLanguage
      *            A URI that identifies a schema language by namespace name.
@@ -48,37 +59,66 @@ public class ValidationUtils {
      *         OASIS entity catalog.
      */
     public static LSResourceResolver createSchemaResolver(URI schemaLanguage) {
+        final URI language = schemaLanguage.equals(Namespaces.XSD) ? Namespaces.XSD : Namespaces.SCH;
+        return CATALOG_RESOLVERS.computeIfAbsent(language, ValidationUtils::loadCatalogResolver);
+    }
+
+    private static XMLCatalogResolver loadCatalogResolver(URI schemaLanguage) {
+        XMLCatalogResolver resolver = new XMLCatalogResolver();
+        resolver.setCatalogList(new String[] { getCatalogURL(schemaLanguage).toString() });
+        try {
+            // the catalog is parsed lazily; do it now so the shared resolver
+            // is never initialized concurrently
+            resolver.resolveSystem(schemaLanguage.toString());
+        } catch (IOException x) {
+            TestSuiteLogger.log(Level.WARNING, "Error reading entity catalog.", x);
+        }
+        return resolver;
+    }
+
+    private static URL getCatalogURL(URI schemaLanguage) {
         String catalogFileName;
         if (schemaLanguage.equals(Namespaces.XSD)) {
             catalogFileName = "schema-catalog.xml";
         } else {
             catalogFileName = "schematron-catalog.xml";
         }
-        URL catalogURL = ValidationUtils.class.getResource(ROOT_PKG
-                + catalogFileName);
-        XMLCatalogResolver resolver = new XMLCatalogResolver();
-        resolver.setCatalogList(new String[] { catalogURL.toString() });
-        return resolver;
+        return ValidationUtils.class.getResource(ROOT_PKG + catalogFileName);
     }
 
     /**
-     * Constructs a SchematronValidator that will check an XML resource against
+     * Returns a SchematronValidator that will check an XML resource against
      * the rules defined in a Schematron schema. An attempt is made to resolve
      * the schema reference using an entity catalog; if this fails the reference
      * is used as given.
      * 
+     * <p>
+     * The schema is compiled the first time a given schema and phase are
+     * requested, and the same validator is returned thereafter. A validator
+     * keeps the outcome of the last validation, so callers must synchronize
+     * on it for the duration of a {@code validate} call and the subsequent
+     * inspection of its rule violation count.
+     * </p>
+     * 
      * @param schemaRef
      *            A reference to a Schematron schema; this is expected to be a
      *            relative or absolute URI value, possibly matching the system
      *            identifier for some entry in an entity catalog.
      * @param phase
      *            The name of the phase to invoke.
-     * @return A SchematronValidator instance, or {@code null} if the validator
-     *         cannot be constructed (e.g. invalid schema reference or phase
-     *         name).
+     * @return A SchematronValidator instance.
+     * @throws IllegalArgumentException
+     *             If the validator cannot be constructed (e.g. invalid schema
+     *             reference or phase name); the cause describes the failure.
      */
     public static SchematronValidator buildSchematronValidator(
             String schemaRef, String phase) {
+        return SCHEMATRON_VALIDATORS.get(schemaRef + '#' + phase,
+                key -> compileSchematronValidator(schemaRef, phase));
+    }
+
+    private static SchematronValidator compileSchematronValidator(
+            String schemaRef, String phase) {
         Source source = null;
         try {
             String catalogRef = SCH_RESOLVER
@@ -92,14 +132,22 @@ public class ValidationUtils {
             TestSuiteLogger.log(Level.WARNING,
                     "Error reading Schematron schema catalog.", x);
         }
-        SchematronValidator validator = null;
         try {
-            validator = new SchematronValidator(source, phase);
+            return new SchematronValidator(source, phase);
         } catch (Exception e) {
-            TestSuiteLogger.log(Level.WARNING,
-                    "Error creating Schematron validator.", e);
+            throw new IllegalArgumentException(
+                    "Failed to process Schematron schema at " + schemaRef, e);
         }
-        return validator;
+    }
+
+    /**
+     * Reports the effectiveness of the schema caches.
+     * 
+     * @return A summary of the size, hit, miss and eviction counts of the
+     *         Schematron validator cache.
+     */
+    public static String getCacheStatistics() {
+        return SCHEMATRON_VALIDATORS.toString();
     }
 
     /**
@@ -11,9 +11,11 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.TreeMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -35,6 +37,7 @@ import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
 import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathExpression;
 import javax.xml.xpath.XPathExpressionException;
 import javax.xml.xpath.XPathFactory;
 
@@ -48,6 +51,7 @@ import net.sf.saxon.s9api.DocumentBuilder;
 import net.sf.saxon.s9api.Processor;
 import net.sf.saxon.s9api.SaxonApiException;
 import net.sf.saxon.s9api.XPathCompiler;
+import net.sf.saxon.s9api.XPathExecutable;
 import net.sf.saxon.s9api.XPathSelector;
 import net.sf.saxon.s9api.XQueryCompiler;
 import net.sf.saxon.s9api.XQueryEvaluator;
@@ -61,12 +65,35 @@ import net.sf.saxon.s9api.XsltTransformer;
 /**
  * Provides various utility methods for accessing or manipulating XML
  * representations.
+ * 
+ * <p>
+ * A single Saxon {@link Processor} is shared by all methods, and compiled
+ * XPath and XQuery expressions are cached by expression text and namespace
+ * bindings. Saxon executables are immutable and thread-safe; JAXP
+ * {@link XPathExpression} objects are not, so those are cached per thread.
+ * </p>
  */
 public class XMLUtils {
 
     private static final Logger LOGR = Logger.getLogger(XMLUtils.class.getPackage().getName());
     private static final XMLInputFactory STAX_FACTORY = initXMLInputFactory();
     private static final XPathFactory XPATH_FACTORY = initXPathFactory();
+    private static final Processor PROCESSOR = new Processor(false);
+    /** Maximum number of compiled expressions retained per cache. */
+    static final int MAX_COMPILED_EXPRESSIONS = 128;
+    private static final BoundedCache<String, XPathExecutable> XPATH2_CACHE = new BoundedCache<>("XPath 2.0",
+            MAX_COMPILED_EXPRESSIONS);
+    private static final BoundedCache<String, XQueryExecutable> XQUERY_CACHE = new BoundedCache<>("XQuery",
+            MAX_COMPILED_EXPRESSIONS);
+    private static final ThreadLocal<Map<String, XPathExpression>> XPATH_CACHE = ThreadLocal
+            .withInitial(() -> new LinkedHashMap<String, XPathExpression>(16, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, XPathExpression> eldest) {
+                    return size() > MAX_COMPILED_EXPRESSIONS;
+                }
+            });
 
     private static XPathFactory initXPathFactory() {
         XPathFactory factory = XPathFactory.newInstance();
@@ -242,15 +269,24 @@ public class XMLUtils {
      */
     public static Object evaluateXPath(Node context, String expr, Map<String, String> namespaceBindings,
             QName returnType) throws XPathExpressionException {
-        NamespaceBindings bindings = NamespaceBindings.withStandardBindings();
-        bindings.addAllBindings(namespaceBindings);
-        XPathFactory factory = XPATH_FACTORY;
-        // WARNING: If context node is Saxon NodeOverNodeInfo, the factory must
-        // use the same Configuration object to avoid IllegalArgumentException
-        XPath xpath = factory.newXPath();
-        xpath.setNamespaceContext(bindings);
-        Object result = xpath.evaluate(expr, context, returnType);
-        return result;
+        String key = cacheKey(expr, namespaceBindings);
+        Map<String, XPathExpression> compiled = XPATH_CACHE.get();
+        XPathExpression xpathExpr = compiled.get(key);
+        if (null == xpathExpr) {
+            NamespaceBindings bindings = NamespaceBindings.withStandardBindings();
+            bindings.addAllBindings(namespaceBindings);
+            // WARNING: If context node is Saxon NodeOverNodeInfo, the factory
+            // must use the same Configuration object to avoid
+            // IllegalArgumentException
+            XPath xpath;
+            synchronized (XPATH_FACTORY) { // factory is not thread-safe
+                xpath = XPATH_FACTORY.newXPath();
+            }
+            xpath.setNamespaceContext(bindings);
+            xpathExpr = xpath.compile(expr);
+            compiled.put(key, xpathExpr);
+        }
+        return xpathExpr.evaluate(context, returnType);
     }
 
     /**
@@ -273,15 +309,8 @@ public class XMLUtils {
      */
     public static XdmValue evaluateXPath2(Source xmlSource, String expr, Map<String, String> nsBindings)
             throws SaxonApiException {
-        Processor proc = new Processor(false);
-        XPathCompiler compiler = proc.newXPathCompiler();
-        if (null != nsBindings) {
-            for (String nsURI : nsBindings.keySet()) {
-                compiler.declareNamespace(nsBindings.get(nsURI), nsURI);
-            }
-        }
-        XPathSelector xpath = compiler.compile(expr).load();
-        DocumentBuilder builder = proc.newDocumentBuilder();
+        XPathSelector xpath = compileXPath2(expr, nsBindings).load();
+        DocumentBuilder builder = PROCESSOR.newDocumentBuilder();
         XdmNode node = null;
         if (DOMSource.class.isInstance(xmlSource)) {
             DOMSource domSource = (DOMSource) xmlSource;
@@ -311,19 +340,95 @@ public class XMLUtils {
      */
     public static XdmValue evaluateXQuery(Source source, String query, Map<String, String> nsBindings)
             throws SaxonApiException {
-        Processor proc = new Processor(false);
-        XQueryCompiler xqCompiler = proc.newXQueryCompiler();
-        if (null != nsBindings) {
-            for (String nsURI : nsBindings.keySet()) {
-                xqCompiler.declareNamespace(nsBindings.get(nsURI), nsURI);
-            }
-        }
-        XQueryExecutable xqExec = xqCompiler.compile(query);
+        XQueryExecutable xqExec = compileXQuery(query, nsBindings);
         XQueryEvaluator xqEval = xqExec.load();
         xqEval.setSource(source);
         return xqEval.evaluate();
     }
 
+    private static XPathExecutable compileXPath2(String expr, Map<String, String> nsBindings)
+            throws SaxonApiException {
+        try {
+            return XPATH2_CACHE.get(cacheKey(expr, nsBindings), key -> {
+                // compilers are cheap but not thread-safe
+                XPathCompiler compiler = PROCESSOR.newXPathCompiler();
+                if (null != nsBindings) {
+                    for (String nsURI : nsBindings.keySet()) {
+                        compiler.declareNamespace(nsBindings.get(nsURI), nsURI);
+                    }
+                }
+                try {
+                    return compiler.compile(expr);
+                } catch (SaxonApiException e) {
+                    throw new CompilationFailure(e);
+                }
+            });
+        } catch (CompilationFailure e) {
+            throw e.getCause();
+        }
+    }
+
+    private static XQueryExecutable compileXQuery(String query, Map<String, String> nsBindings)
+            throws SaxonApiException {
+        try {
+            return XQUERY_CACHE.get(cacheKey(query, nsBindings), key -> {
+                XQueryCompiler xqCompiler = PROCESSOR.newXQueryCompiler();
+                if (null != nsBindings) {
+                    for (String nsURI : nsBindings.keySet()) {
+                        xqCompiler.declareNamespace(nsBindings.get(nsURI), nsURI);
+                    }
+                }
+                try {
+                    return xqCompiler.compile(query);
+                } catch (SaxonApiException e) {
+                    throw new CompilationFailure(e);
+                }
+            });
+        } catch (CompilationFailure e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Builds a cache key from an expression and its namespace bindings. The
+     * bindings are sorted so that equivalent maps yield the same key.
+     */
+    private static String cacheKey(String expr, Map<String, String> nsBindings) {
+        StringBuilder key = new StringBuilder(expr).append('\u0000');
+        if (null != nsBindings) {
+            key.append(new TreeMap<>(nsBindings));
+        }
+        return key.toString();
+    }
+
+    /**
+     * Carries a checked compilation error out of a cache loader.
+     */
+    private static class CompilationFailure extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        CompilationFailure(SaxonApiException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized SaxonApiException getCause() {
+            return (SaxonApiException) super.getCause();
+        }
+    }
+
+    /**
+     * Reports the effectiveness of the compiled expression caches shared by
+     * all threads.
+     * 
+     * @return A summary of the size, hit, miss and eviction counts for each
+     *         cache.
+     */
+    public static String getCacheStatistics() {
+        return XPATH2_CACHE + "; " + XQUERY_CACHE;
+    }
+
     /**
      * Creates a new Element having the specified qualified name. The element
      * must be {@link Document#adoptNode(Node) adopted} when inserted into
@@ -392,8 +497,7 @@ public class XMLUtils {
         } catch (ParserConfigurationException pce) {
             throw new RuntimeException(pce);
         }
-        Processor processor = new Processor(false);
-        XsltCompiler compiler = processor.newXsltCompiler();
+        XsltCompiler compiler = PROCESSOR.newXsltCompiler();
         try {
             XsltExecutable exec = compiler.compile(xslt);
             XsltTransformer transformer = exec.load();
@@ -0,0 +1,65 @@
+package org.opengis.cite.gpkg12;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import org.junit.rules.TemporaryFolder;
+import org.sqlite.SQLiteDataSource;
+
+/**
+ * Creates the SQLite DataSources used by the unit tests, either for the sample
+ * GeoPackages in {@code src/test/resources/gpkg} or for databases created by
+ * the tests themselves.
+ */
+public final class TestDatabases {
+
+    /** The directory holding the sample GeoPackages. */
+    public static final String SAMPLE_DIR = "src/test/resources/gpkg/";
+
+    private TestDatabases() {
+    }
+
+    /**
+     * Opens a database file.
+     *
+     * @param file
+     *            The database file; it is created on first use if it does not
+     *            exist.
+     * @return A DataSource for the file.
+     */
+    public static SQLiteDataSource dataSource(File file) {
+        SQLiteDataSource dataSource = new SQLiteDataSource();
+        dataSource.setUrl("jdbc:sqlite:" + file.getPath());
+        return dataSource;
+    }
+
+    /**
+     * Opens a sample GeoPackage in place; the tests must not modify it.
+     *
+     * @param name
+     *            The file name of the sample, e.g. "simple_sewer_features.gpkg".
+     * @return A DataSource for the sample.
+     */
+    public static SQLiteDataSource sample(String name) {
+        return dataSource(new File(SAMPLE_DIR + name));
+    }
+
+    /**
+     * Copies a sample GeoPackage, so that a test can modify it.
+     *
+     * @param folder
+     *            The temporary folder of the test.
+     * @param name
+     *            The file name of the sample.
+     * @return A DataSource for the copy.
+     * @throws IOException
+     *             If the sample cannot be copied.
+     */
+    public static SQLiteDataSource copyOfSample(TemporaryFolder folder, String name) throws IOException {
+        File copy = folder.newFile(name);
+        Files.copy(new File(SAMPLE_DIR + name).toPath(), copy.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        return dataSource(copy);
+    }
+}
@@ -1,6 +1,8 @@
 package org.opengis.cite.gpkg12;
 
+import java.io.File;
 import java.io.IOException;
+import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.HashMap;
 import java.util.Map;
@@ -12,6 +14,7 @@ import javax.xml.transform.stream.StreamSource;
 import javax.xml.validation.Schema;
 import javax.xml.validation.SchemaFactory;
 import javax.xml.validation.Validator;
+import org.hamcrest.CoreMatchers;
 import org.junit.BeforeClass;
 import org.junit.Rule;
 import org.junit.Test;
@@ -71,4 +74,14 @@ public class VerifyETSAssert {
         String xpath = "//ows:OperationsMetadata/ows:Constraint[@name='XMLEncoding']/ows:DefaultValue = 'TRUE'";
         ETSAssert.assertXPath(xpath, doc, null);
     }
+
+    @Test
+    public void missingSchematronSchema() throws MalformedURLException {
+        thrown.expect(AssertionError.class);
+        thrown.expectMessage("Failed to process Schematron schema at ");
+        thrown.expectCause(CoreMatchers.notNullValue(Throwable.class));
+        URL schemaRef = new File("src/test/resources/sch/missing.sch").toURI().toURL();
+        ETSAssert.assertSchematronValid(schemaRef, new StreamSource(getClass().getResource("/Gamma.xml").toString()),
+                null);
+    }
 }
@@ -0,0 +1,57 @@
+package org.opengis.cite.gpkg12;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.junit.Test;
+
+/**
+ * Verifies the behavior of the SQLiteHeader class.
+ */
+public class VerifySQLiteHeader {
+
+    @Test
+    public void headerMatchesPragmas() throws IOException, URISyntaxException, SQLException {
+        URL gpkgUrl = ClassLoader.getSystemResource("gpkg/gdal_sample_v1.2_no_extensions.gpkg");
+        File dataFile = new File(gpkgUrl.toURI());
+        SQLiteHeader header = SQLiteHeader.read(dataFile);
+        assertTrue(header.hasValidMagic());
+        assertEquals(3, header.getSQLiteMajorVersion());
+        assertArrayEquals(GPKG12.APP_GPKG, header.getApplicationIdBytes());
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + dataFile.getPath());
+                Statement statement = connection.createStatement()) {
+            assertEquals(pragma(statement, "page_size"), header.getPageSize());
+            assertEquals(pragma(statement, "user_version"), header.getUserVersion());
+            assertEquals(pragma(statement, "application_id"), header.getApplicationId());
+            assertEquals(pragma(statement, "freelist_count"), header.getFreelistPageCount());
+            assertEquals(pragma(statement, "schema_version"), header.getSchemaCookie());
+            if (header.isPageCountValid()) {
+                assertEquals(pragma(statement, "page_count"), header.getPageCount());
+            }
+        }
+    }
+
+    @Test
+    public void shortInputIsZeroPadded() {
+        SQLiteHeader header = SQLiteHeader.parse("SQLite".getBytes());
+        assertFalse(header.hasValidMagic());
+        assertEquals(0, header.getSQLiteVersionNumber());
+        assertEquals(0, header.getApplicationId());
+    }
+
+    private static long pragma(Statement statement, String name) throws SQLException {
+        try (ResultSet resultSet = statement.executeQuery("PRAGMA " + name)) {
+            assertTrue(resultSet.next());
+            return resultSet.getLong(1);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package org.opengis.cite.gpkg12;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.CALLS_REAL_METHODS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Scanner;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.testng.ISuite;
+import org.testng.ITestClass;
+import org.testng.ITestContext;
+import org.testng.ITestNGMethod;
+import org.testng.ITestResult;
+import org.testng.internal.TestResult;
+import org.testng.xml.XmlSuite;
+
+public class VerifyStreamingReportWriter {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Test
+    public void longMessageMovedToSidecar() throws IOException {
+        File outputDir = tempFolder.newFolder("out");
+        Map<String, String> params = new HashMap<>();
+        params.put(TestRunArg.REPORT_MESSAGE_LIMIT.toString(), "20");
+        StreamingReportWriter iut = new StreamingReportWriter();
+        iut.onStart(suite(outputDir, params));
+        ITestContext context = mock(ITestContext.class);
+        when(context.getName()).thenReturn("Tiles");
+        iut.onStart(context);
+
+        char[] ids = new char[5000];
+        Arrays.fill(ids, '7');
+        ITestResult failure = result("imageFormat", new AssertionError("Invalid tiles: " + new String(ids)));
+        iut.onTestFailure(failure);
+        ITestResult shortFailure = result("zoomTimesTwo", new AssertionError("Bad zoom"));
+        iut.onTestFailure(shortFailure);
+        iut.onTestSuccess(result("matrixWidth", null));
+        iut.onFinish(context);
+        iut.onFinish(suite(outputDir, params));
+
+        String message = failure.getThrowable().getMessage();
+        assertTrue(message, message.startsWith("Invalid tiles: 77777 ... [truncated"));
+        assertTrue(message, message.contains("details/1-imageFormat.txt.gz"));
+        assertEquals("Bad zoom", shortFailure.getThrowable().getMessage());
+        File sidecar = new File(outputDir, "details/1-imageFormat.txt.gz");
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(sidecar.toPath()));
+                Scanner scanner = new Scanner(in, StandardCharsets.UTF_8.name())) {
+            String detail = scanner.useDelimiter("\\A").next();
+            assertTrue(detail.startsWith("java.lang.AssertionError: Invalid tiles: " + new String(ids)));
+        }
+        String report = new String(
+                Files.readAllBytes(new File(outputDir, StreamingReportWriter.REPORT_FILE_NAME).toPath()),
+                StandardCharsets.UTF_8);
+        assertTrue(report, report.contains("<detail href=\"details/1-imageFormat.txt.gz\"/>"));
+        assertTrue(report, report.contains("name=\"matrixWidth\" status=\"PASS\""));
+        assertTrue(report, report.contains("<summary passed=\"1\" failed=\"2\" skipped=\"0\" details=\"1\""));
+        assertTrue(report, report.trim().endsWith("</results>"));
+    }
+
+    @Test
+    public void anyThrowableShortened() throws IOException {
+        File outputDir = tempFolder.newFolder("out");
+        Map<String, String> params = new HashMap<>();
+        params.put(TestRunArg.REPORT_MESSAGE_LIMIT.toString(), "10");
+        StreamingReportWriter iut = new StreamingReportWriter();
+        iut.onStart(suite(outputDir, params));
+        IOException cause = new IOException("disk");
+        ITestResult error = result("tileData", new SQLException("Cannot read tiles 1, 2, 3, 4, 5", cause));
+        iut.onTestFailure(error);
+        ITestResult odd = result("zoomLevels", new IllegalStateException("Unexpected zoom levels 1, 2, 3") {
+            private static final long serialVersionUID = 1L;
+        });
+        iut.onTestFailure(odd);
+        iut.onFinish(suite(outputDir, params));
+
+        Throwable shortened = error.getThrowable();
+        assertEquals(SQLException.class, shortened.getClass());
+        assertSame(cause, shortened.getCause());
+        assertTrue(shortened.getMessage(), shortened.getMessage().startsWith("Cannot rea ... [truncated"));
+        // an exception that cannot be copied is kept
+        assertEquals("Unexpected zoom levels 1, 2, 3", odd.getThrowable().getMessage());
+        String report = new String(
+                Files.readAllBytes(new File(outputDir, StreamingReportWriter.REPORT_FILE_NAME).toPath()),
+                StandardCharsets.UTF_8);
+        assertTrue(report, report.contains("<message>Unexpected ... [truncated; the full message (30 characters)"));
+        assertTrue(report, report.contains("<detail href=\"details/2-zoomLevels.txt.gz\"/>"));
+    }
+
+    @Test
+    public void copyAssertionError() {
+        AssertionError original = new AssertionError("long message");
+        Throwable copy = StreamingReportWriter.copyWithMessage(original, "short");
+        assertEquals(AssertionError.class, copy.getClass());
+        assertEquals("short", copy.getMessage());
+        assertArrayEquals(original.getStackTrace(), copy.getStackTrace());
+    }
+
+    @Test
+    public void noLimit() {
+        Map<String, String> params = new HashMap<>();
+        params.put(TestRunArg.REPORT_MESSAGE_LIMIT.toString(), "0");
+        assertEquals(0, StreamingReportWriter.messageLimit(params));
+        assertEquals(StreamingReportWriter.DEFAULT_MESSAGE_LIMIT,
+                StreamingReportWriter.messageLimit(new HashMap<String, String>()));
+    }
+
+    private static ISuite suite(File outputDir, Map<String, String> params) {
+        XmlSuite xmlSuite = mock(XmlSuite.class);
+        when(xmlSuite.getParameters()).thenReturn(params);
+        ISuite suite = mock(ISuite.class);
+        when(suite.getXmlSuite()).thenReturn(xmlSuite);
+        when(suite.getName()).thenReturn("gpkg12");
+        when(suite.getOutputDirectory()).thenReturn(outputDir.getPath());
+        return suite;
+    }
+
+    private static ITestResult result(String methodName, Throwable throwable) {
+        ITestNGMethod method = mock(ITestNGMethod.class);
+        when(method.getMethodName()).thenReturn(methodName);
+        ITestClass testClass = mock(ITestClass.class);
+        when(testClass.getName()).thenReturn("org.opengis.cite.gpkg12.tiles.TileTests");
+        TestResult result = mock(TestResult.class, CALLS_REAL_METHODS);
+        when(result.getMethod()).thenReturn(method);
+        when(result.getTestClass()).thenReturn(testClass);
+        result.setThrowable(throwable);
+        return result;
+    }
+}
@@ -0,0 +1,83 @@
+package org.opengis.cite.gpkg12;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.net.URL;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.testng.ISuite;
+import org.testng.ITestContext;
+
+/**
+ * Verifies the behavior of the TimeBudget class and the cancellation of
+ * queries that overrun it.
+ */
+public class VerifyTimeBudget {
+
+    @Test
+    public void noLimitByDefault() {
+        TimeBudget iut = TimeBudget.of(mock(ISuite.class));
+        assertEquals(-1, iut.currentTestBudgetMillis());
+        assertFalse(iut.isRunBudgetExhausted());
+    }
+
+    @Test
+    public void testBudgetIsCappedByRunBudget() throws InterruptedException {
+        long budget = new TimeBudget(600, 60, TimeUnit.SECONDS).currentTestBudgetMillis();
+        assertTrue(budget > 0 && budget <= 60000);
+        TimeBudget iut = new TimeBudget(0, 1, TimeUnit.MILLISECONDS);
+        Thread.sleep(5);
+        assertEquals(0, iut.currentTestBudgetMillis());
+        assertTrue(iut.isRunBudgetExhausted());
+    }
+
+    @Test
+    public void eachSuiteHasItsOwnBudget() throws InterruptedException {
+        ISuite limited = mock(ISuite.class);
+        when(limited.getAttribute(SuiteAttribute.TIME_BUDGET.getName()))
+                .thenReturn(new TimeBudget(0, 1, TimeUnit.MILLISECONDS));
+        ISuite unlimited = mock(ISuite.class);
+        when(unlimited.getAttribute(SuiteAttribute.TIME_BUDGET.getName()))
+                .thenReturn(TimeBudget.fromArgs(Collections.<String, String>emptyMap()));
+        Thread.sleep(5);
+        assertTrue(TimeBudget.of(limited).isRunBudgetExhausted());
+        assertFalse(TimeBudget.of(unlimited).isRunBudgetExhausted());
+        assertEquals(-1, TimeBudget.of(unlimited).currentTestBudgetMillis());
+    }
+
+    @Test
+    public void cancelQueriesInterruptsRunningQuery() throws Exception {
+        ITestContext testContext = mock(ITestContext.class);
+        ISuite suite = mock(ISuite.class);
+        when(testContext.getSuite()).thenReturn(suite);
+        URL gpkgUrl = ClassLoader.getSystemResource("gpkg/empty.gpkg");
+        when(suite.getAttribute(SuiteAttribute.TEST_SUBJ_FILE.getName())).thenReturn(new File(gpkgUrl.toURI()));
+        CommonFixture fixture = new CommonFixture();
+        fixture.initCommonFixture(testContext);
+        ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+        try (Statement statement = fixture.databaseConnection.createStatement()) {
+            timer.schedule(fixture::cancelQueries, 200, TimeUnit.MILLISECONDS);
+            long start = System.nanoTime();
+            try (ResultSet resultSet = statement.executeQuery("WITH RECURSIVE n(i) AS (SELECT 1 UNION ALL "
+                    + "SELECT i + 1 FROM n WHERE i < 10000000000) SELECT count(*) FROM n")) {
+                resultSet.next();
+                fail("Expected the query to be interrupted");
+            } catch (SQLException e) {
+                assertTrue(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start) < 30);
+            }
+        } finally {
+            timer.shutdownNow();
+            fixture.close();
+        }
+    }
+}
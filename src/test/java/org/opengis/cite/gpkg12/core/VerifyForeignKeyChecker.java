@@ -0,0 +1,54 @@
+package org.opengis.cite.gpkg12.core;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.opengis.cite.gpkg12.TestDatabases;
+import org.sqlite.SQLiteDataSource;
+
+/**
+ * Verifies the behavior of the ForeignKeyChecker class.
+ */
+public class VerifyForeignKeyChecker {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Test
+    public void violationsAreGroupedByParent() throws IOException, SQLException {
+        SQLiteDataSource dataSource = TestDatabases.dataSource(tempFolder.newFile("fk.gpkg"));
+        try (Connection connection = dataSource.getConnection();
+                Statement statement = connection.createStatement()) {
+            statement.executeUpdate("CREATE TABLE parent_a (id INTEGER PRIMARY KEY)");
+            statement.executeUpdate("CREATE TABLE parent_b (id INTEGER PRIMARY KEY)");
+            statement.executeUpdate("CREATE TABLE unrelated (id INTEGER PRIMARY KEY, v TEXT)");
+            statement.executeUpdate("CREATE TABLE child (id INTEGER PRIMARY KEY, "
+                    + "a INTEGER REFERENCES parent_a(id), b INTEGER REFERENCES parent_b(id))");
+            statement.executeUpdate("INSERT INTO parent_a VALUES (1)");
+            statement.executeUpdate("INSERT INTO parent_b VALUES (1)");
+            statement.executeUpdate("INSERT INTO child VALUES (1, 1, 1), (2, 9, 1), (3, 1, 1), (7, 8, 9)");
+        }
+        ForeignKeyChecker checker = new ForeignKeyChecker(dataSource, 2);
+        assertEquals(Arrays.asList("child"), checker.getTablesWithForeignKeys());
+        List<ForeignKeyChecker.Violation> violations = checker.check();
+        assertEquals(2, violations.size());
+        ForeignKeyChecker.Violation first = violations.get(0);
+        assertEquals("child", first.getTable());
+        assertEquals("parent_a", first.getParent());
+        assertEquals(2, first.getCount());
+        assertEquals(Long.valueOf(2), first.getMinRowid());
+        assertEquals(Long.valueOf(7), first.getMaxRowid());
+        assertEquals("parent_b", violations.get(1).getParent());
+        assertEquals(1, violations.get(1).getCount());
+        assertEquals("child (rowid 7) -> parent_b", violations.get(1).toString());
+    }
+}
@@ -0,0 +1,46 @@
+package org.opengis.cite.gpkg12.core;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.junit.Test;
+import org.opengis.cite.gpkg12.util.ProgressMonitor;
+import org.opengis.cite.gpkg12.util.SQLiteIOProfile;
+import org.opengis.cite.gpkg12.util.ScanProgress;
+
+public class VerifyIntegrityChecker {
+
+    private static DataSource dataSource(String name) throws URISyntaxException {
+        URL gpkgUrl = ClassLoader.getSystemResource(name);
+        File dataFile = new File(gpkgUrl.toURI());
+        return SQLiteIOProfile.select(dataFile).createDataSource(dataFile);
+    }
+
+    @Test
+    public void intactDatabaseHasNoProblems() throws SQLException, URISyntaxException {
+        IntegrityChecker checker = new IntegrityChecker(dataSource("gpkg/gdal_sample_v1.2_spatial_index_extension.gpkg"),
+                new ProgressMonitor());
+        assertTrue(checker.check().isEmpty());
+    }
+
+    @Test
+    public void bothPassesAreReported() throws SQLException, URISyntaxException {
+        ProgressMonitor monitor = new ProgressMonitor();
+        monitor.setReportInterval(0, TimeUnit.SECONDS);
+        List<ScanProgress> reports = new ArrayList<>();
+        monitor.addListener(reports::add);
+        new IntegrityChecker(dataSource("gpkg/gdal_sample_v1.2_spatial_index_extension.gpkg"), monitor).check();
+        ScanProgress last = reports.get(reports.size() - 1);
+        assertEquals(2, last.getTotalRows());
+        assertEquals(2, last.getRows());
+    }
+}
@@ -0,0 +1,77 @@
+package org.opengis.cite.gpkg12.extensions.crswkt;
+
+import static org.junit.Assert.*;
+
+import java.text.ParseException;
+
+import org.junit.Test;
+
+/**
+ * Verifies the behavior of the WKTDefinition and WKTParser classes.
+ */
+public class VerifyWKTDefinition {
+
+    private static final String WGS84_3D = "GEODCRS[\"WGS 84\",DATUM[\"World Geodetic System 1984\","
+            + "  ELLIPSOID[\"WGS 84\",6378137,298.257223563,LENGTHUNIT[\"metre\",1.0]]],CS[ellipsoidal,3],"
+            + "  AXIS[\"latitude\",north,ORDER[1],ANGLEUNIT[\"degree\",0.01745329252]],"
+            + "  AXIS[\"longitude\",east,ORDER[2],ANGLEUNIT[\"degree\",0.01745329252]],"
+            + "  AXIS[\"ellipsoidal height\",up,ORDER[3],LENGTHUNIT[\"metre\",1.0]],ID[\"EPSG\",4979]]";
+
+    @Test
+    public void validGeodeticCRS() {
+        WKTDefinition wkt = WKTDefinition.of(WGS84_3D);
+        assertTrue(wkt.getProblem(), wkt.isValidCRS());
+        assertEquals(1, wkt.getIdentifiers().size());
+        assertArrayEquals(new String[] { "EPSG", "4979" }, wkt.getIdentifiers().get(0));
+        assertTrue(wkt.isIdentifiedBy("epsg", "4979"));
+        assertFalse(wkt.isIdentifiedBy("EPSG", "4326"));
+    }
+
+    @Test
+    public void anyTopLevelIdentifierMatches() {
+        WKTDefinition wkt = WKTDefinition.of(WGS84_3D.replace("ID[\"EPSG\",4979]]",
+                "ID[\"EPSG\",4979],ID[\"OGC\",\"CRS84h\"]]"));
+        assertTrue(wkt.getProblem(), wkt.isValidCRS());
+        assertEquals(2, wkt.getIdentifiers().size());
+        assertTrue(wkt.isIdentifiedBy("OGC", "CRS84h"));
+        assertTrue(wkt.isIdentifiedBy("EPSG", "4979"));
+    }
+
+    @Test
+    public void definitionsAreInterned() {
+        assertSame(WKTDefinition.of(WGS84_3D), WKTDefinition.of(new String(WGS84_3D)));
+    }
+
+    @Test
+    public void wkt1IsNotValidCRS() {
+        WKTDefinition wkt = WKTDefinition.of("GEOGCS[\"WGS 84\",DATUM[\"WGS_1984\",SPHEROID[\"WGS 84\",6378137,"
+                + "298.257223563]],PRIMEM[\"Greenwich\",0],UNIT[\"degree\",0.0174532925199433],"
+                + "AUTHORITY[\"EPSG\",\"4326\"]]");
+        assertFalse(wkt.isValidCRS());
+        assertTrue(wkt.isIdentifiedBy("EPSG", "4326"));
+    }
+
+    @Test
+    public void axisCountMustMatchDimension() {
+        WKTDefinition wkt = WKTDefinition.of(WGS84_3D.replace("CS[ellipsoidal,3]", "CS[ellipsoidal,2]"));
+        assertFalse(wkt.isValidCRS());
+    }
+
+    @Test
+    public void unbalancedBrackets() {
+        WKTDefinition wkt = WKTDefinition.of("GEODCRS[\"WGS 84\",DATUM[\"x\"");
+        assertFalse(wkt.isValidCRS());
+        assertNull(wkt.getRoot());
+    }
+
+    @Test
+    public void parseQuotedTextWithEscapedQuote() throws ParseException {
+        WKTElement root = WKTParser.parse("REMARK(\"say \"\"hi\"\"\")");
+        assertEquals("say \"hi\"", root.getText(0));
+    }
+
+    @Test(expected = ParseException.class)
+    public void trailingTextIsRejected() throws ParseException {
+        WKTParser.parse("ID[\"EPSG\",4326]]");
+    }
+}
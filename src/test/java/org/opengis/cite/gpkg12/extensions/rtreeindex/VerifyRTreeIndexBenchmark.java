@@ -0,0 +1,67 @@
+package org.opengis.cite.gpkg12.extensions.rtreeindex;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.opengis.cite.gpkg12.TestDatabases;
+
+/**
+ * Verifies the behavior of the RTreeIndexBenchmark class.
+ */
+public class VerifyRTreeIndexBenchmark {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private Connection connection;
+
+    @Before
+    public void copySample() throws IOException, SQLException {
+        connection = TestDatabases.copyOfSample(tempFolder, "sample1_2.gpkg").getConnection();
+    }
+
+    @After
+    public void close() throws SQLException {
+        connection.close();
+    }
+
+    @Test
+    public void sampleIndexIsEffective() throws SQLException {
+        RTreeIndexBenchmark.Report report = new RTreeIndexBenchmark(connection).run("counties", "Shape");
+        assertEquals(RTreeIndexBenchmark.SELECTIVITIES.length, report.getQuerySets().size());
+        assertEquals(0, report.getMismatches());
+        assertFalse(report.toString(), report.isIneffective());
+        assertTrue(report.getQuerySets().get(0).getMeanNodesVisited() < report.getLeaves() / 2);
+        assertTrue(report.toString(), report.toString().startsWith("111 nodes (107 leaves); 0.01% of extent: "));
+    }
+
+    @Test
+    public void entryMissingFromTheIndex() throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate(
+                    "DELETE FROM rtree_counties_Shape WHERE id IN (SELECT id FROM rtree_counties_Shape LIMIT 100)");
+        }
+        RTreeIndexBenchmark.Report report = new RTreeIndexBenchmark(connection).run("counties", "Shape");
+        assertTrue(report.toString(), report.getMismatches() > 0);
+    }
+
+    @Test
+    public void everyEntryCoversTheExtent() throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate("UPDATE rtree_counties_Shape SET minx = -180, maxx = 180, miny = -90, maxy = 90");
+        }
+        RTreeIndexBenchmark.Report report = new RTreeIndexBenchmark(connection).run("counties", "Shape");
+        // the scan of the feature table finds fewer rows than the RTree
+        assertTrue(report.getMismatches() > 0);
+        assertTrue(report.toString(), report.isIneffective());
+    }
+}
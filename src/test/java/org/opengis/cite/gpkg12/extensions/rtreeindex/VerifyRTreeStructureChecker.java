@@ -0,0 +1,115 @@
+package org.opengis.cite.gpkg12.extensions.rtreeindex;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.opengis.cite.gpkg12.TestDatabases;
+
+/**
+ * Verifies the behavior of the RTreeStructureChecker class.
+ */
+public class VerifyRTreeStructureChecker {
+
+    private static final String RTREE = "rtree_counties_Shape";
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private Connection connection;
+
+    @Before
+    public void copySample() throws IOException, SQLException {
+        connection = TestDatabases.copyOfSample(tempFolder, "sample1_2.gpkg").getConnection();
+    }
+
+    @After
+    public void close() throws SQLException {
+        connection.close();
+    }
+
+    @Test
+    public void sampleTreeIsConsistent() throws SQLException {
+        RTreeStructureChecker.Report report = new RTreeStructureChecker(connection).check(RTREE);
+        assertTrue(report.toString(), report.isValid());
+        assertEquals(2, report.getDepth());
+        assertEquals(111, report.getNodes());
+        assertEquals(3141, report.getEntries());
+        assertTrue(report.getFillFactor() > 0.3 && report.getFillFactor() <= 1);
+        assertTrue(report.describeStatistics(), report.describeStatistics().startsWith("depth 2, 111 nodes"));
+    }
+
+    @Test
+    public void childOutsideParentBox() throws SQLException {
+        // move the first entry of leaf node 3 far away
+        byte[] leaf = readNode(3);
+        ByteBuffer.wrap(leaf).putFloat(4 + 8, 1.0E9f).putFloat(4 + 12, 1.0E9f);
+        update("UPDATE " + RTREE + "_node SET data = ? WHERE nodeno = 3", leaf);
+        RTreeStructureChecker.Report report = new RTreeStructureChecker(connection).check(RTREE);
+        assertFalse(report.isValid());
+        assertTrue(report.toString(), report.toString().startsWith("cell 0 of node 3 "));
+    }
+
+    @Test
+    public void rowidAndParentMismatch() throws SQLException {
+        long rowid;
+        try (Statement statement = connection.createStatement();
+                ResultSet resultSet = statement.executeQuery("SELECT max(rowid) FROM " + RTREE + "_rowid")) {
+            rowid = resultSet.getLong(1);
+        }
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate("UPDATE " + RTREE + "_rowid SET nodeno = 1 WHERE rowid = " + rowid);
+            statement.executeUpdate("DELETE FROM " + RTREE + "_parent WHERE nodeno = 3");
+        }
+        RTreeStructureChecker.Report report = new RTreeStructureChecker(connection).check(RTREE);
+        assertEquals(3, report.getProblems().size());
+        assertTrue(report.toString(), report.getProblems().get(0).startsWith("node 3 has parent null"));
+        assertTrue(report.toString(), report.getProblems().get(2).startsWith("entry " + rowid + " of leaf node "));
+    }
+
+    @Test
+    public void leafAboveTheLeafLevel() throws SQLException {
+        // point the first cell of the root at the first leaf of its first
+        // child, with a box that holds the whole tree
+        byte[] root = readNode(1);
+        ByteBuffer rootCells = ByteBuffer.wrap(root);
+        long child = rootCells.getLong(4);
+        long leaf = ByteBuffer.wrap(readNode(child)).getLong(4);
+        rootCells.putLong(4, leaf).putFloat(4 + 8, -1.0E9f).putFloat(4 + 12, 1.0E9f).putFloat(4 + 16, -1.0E9f)
+                .putFloat(4 + 20, 1.0E9f);
+        update("UPDATE " + RTREE + "_node SET data = ? WHERE nodeno = 1", root);
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate("UPDATE " + RTREE + "_parent SET parentnode = 1 WHERE nodeno = " + leaf);
+        }
+        RTreeStructureChecker.Report report = new RTreeStructureChecker(connection).check(RTREE);
+        assertFalse(report.isValid());
+        assertEquals(String.format("node %d, a child of node 1, is a leaf at depth 1 instead of 2", leaf),
+                report.getProblems().get(0));
+    }
+
+    private byte[] readNode(long nodeno) throws SQLException {
+        try (Statement statement = connection.createStatement();
+                ResultSet resultSet = statement
+                        .executeQuery("SELECT data FROM " + RTREE + "_node WHERE nodeno = " + nodeno)) {
+            return resultSet.getBytes(1);
+        }
+    }
+
+    private void update(String sql, byte[] data) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setBytes(1, data);
+            statement.executeUpdate();
+        }
+    }
+}
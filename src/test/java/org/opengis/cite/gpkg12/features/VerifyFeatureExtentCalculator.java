@@ -0,0 +1,55 @@
+package org.opengis.cite.gpkg12.features;
+
+import static org.junit.Assert.*;
+
+import java.sql.SQLException;
+
+import org.junit.Test;
+import org.opengis.cite.gpkg12.TestDatabases;
+import org.opengis.cite.gpkg12.util.Envelope;
+import org.opengis.cite.gpkg12.util.PartitionedTableScanner;
+import org.sqlite.SQLiteDataSource;
+
+/**
+ * Verifies the behavior of the FeatureExtentCalculator class.
+ */
+public class VerifyFeatureExtentCalculator {
+
+    private static final SQLiteDataSource dataSource = TestDatabases.sample("simple_sewer_features.gpkg");
+
+    @Test
+    public void extentFromHeaderEnvelopes() throws SQLException {
+        FeatureExtentCalculator iut = new FeatureExtentCalculator(new PartitionedTableScanner(dataSource, 1));
+        Envelope extent = iut.computeExtent("s_manhole", "the_geom");
+        assertEquals(389609.583, extent.getMinX(), 1.0E-6);
+        assertEquals(263619.869, extent.getMaxY(), 1.0E-6);
+    }
+
+    @Test
+    public void partitionedScanMatchesSinglePass() throws SQLException {
+        Envelope single = new FeatureExtentCalculator(new PartitionedTableScanner(dataSource, 1))
+                .computeExtent("foul_sewer", "the_geom");
+        Envelope partitioned = new FeatureExtentCalculator(new PartitionedTableScanner(dataSource, 3, 10))
+                .computeExtent("foul_sewer", "the_geom");
+        assertEquals(single.toString(), partitioned.toString());
+    }
+
+    @Test
+    public void declaredBoundsDoNotContainData() throws SQLException {
+        Envelope declared = new Envelope(389586.75, 262882.0, 390065.8, 263548.4);
+        FeatureExtentCalculator iut = new FeatureExtentCalculator(new PartitionedTableScanner(dataSource));
+        Envelope actual = iut.computeExtent("s_manhole", "the_geom");
+        assertFalse(declared.contains(actual, 1.0E-7));
+    }
+
+    @Test
+    public void pointWithoutHeaderEnvelope() {
+        // GP, version 0, flags: little endian, no envelope; srs_id 0; WKB Point(1 2)
+        byte[] blob = { 0x47, 0x50, 0, 1, 0, 0, 0, 0, 1, 1, 0, 0, 0, 0, 0, 0, 0, 0, 0, (byte) 0xF0, 0x3F, 0, 0,
+                0, 0, 0, 0, 0, 0x40 };
+        Envelope extent = new Envelope();
+        FeatureExtentCalculator.addGeometry(blob, extent);
+        assertEquals(1.0, extent.getMinX(), 0);
+        assertEquals(2.0, extent.getMaxY(), 0);
+    }
+}
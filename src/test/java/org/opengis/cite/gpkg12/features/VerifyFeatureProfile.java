@@ -0,0 +1,75 @@
+package org.opengis.cite.gpkg12.features;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.SQLException;
+import java.util.Collections;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.opengis.cite.gpkg12.TestDatabases;
+import org.opengis.cite.gpkg12.util.PartitionedTableScanner;
+import org.sqlite.SQLiteDataSource;
+
+/**
+ * Verifies the behavior of the FeatureProfile class.
+ */
+public class VerifyFeatureProfile {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Test
+    public void profileSampleTable() throws SQLException, IOException {
+        SQLiteDataSource dataSource = TestDatabases.sample("simple_sewer_features.gpkg");
+        FeatureProfile single = new HeaderEnvelopeChecker(new PartitionedTableScanner(dataSource, 1, 1000000))
+                .check("foul_sewer", "the_geom").getProfile();
+        FeatureProfile parallel = new HeaderEnvelopeChecker(new PartitionedTableScanner(dataSource, 3, 10))
+                .check("foul_sewer", "the_geom").getProfile();
+        assertTrue(single.getRows() > 0);
+        assertEquals(single.getRows(), parallel.getRows());
+        assertEquals(single.getGeometryTypes(), parallel.getGeometryTypes());
+        assertEquals(single.getVertices().getPercentile(90), parallel.getVertices().getPercentile(90));
+        assertEquals(single.getBlobBytes().getMax(), parallel.getBlobBytes().getMax());
+
+        File file = new File(tempFolder.getRoot(), "out/" + FeatureProfile.FILE_NAME);
+        FeatureProfile.write(file, "simple_sewer_features.gpkg", Collections.singletonList(parallel));
+        String json = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+        assertTrue(json, json.contains("\"table\": \"foul_sewer\""));
+        assertTrue(json, json.contains("\"rows\": " + parallel.getRows() + ","));
+        assertTrue(json, json.contains("\"vertices\": {\"count\": "));
+    }
+
+    @Test
+    public void distributionPercentiles() {
+        FeatureProfile.Distribution distribution = new FeatureProfile.Distribution();
+        assertEquals(-1, distribution.getPercentile(50));
+        for (int value = 1; value <= 1000; value++) {
+            distribution.add(value);
+        }
+        FeatureProfile.Distribution other = new FeatureProfile.Distribution();
+        other.add(100000);
+        distribution.merge(other);
+        assertEquals(1001, distribution.getCount());
+        assertEquals(1, distribution.getMin());
+        assertEquals(100000, distribution.getMax());
+        assertEquals(1, distribution.getPercentile(0));
+        // within one bucket (12.5%) of the exact values
+        assertEquals(501, distribution.getPercentile(50), 501 / 8.0);
+        assertEquals(991, distribution.getPercentile(99), 991 / 8.0);
+        assertEquals(100000, distribution.getPercentile(100));
+    }
+
+    @Test
+    public void typeNames() {
+        assertEquals("POINT", FeatureProfile.typeName(1));
+        assertEquals("LINESTRINGZM", FeatureProfile.typeName(3002));
+        assertEquals("MULTIPOLYGONM", FeatureProfile.typeName(2006));
+        assertEquals("WKB type 99", FeatureProfile.typeName(99));
+    }
+}
@@ -0,0 +1,89 @@
+package org.opengis.cite.gpkg12.features;
+
+import static org.junit.Assert.*;
+
+import java.sql.SQLException;
+
+import org.junit.Test;
+import org.opengis.cite.gpkg12.TestDatabases;
+import org.opengis.cite.gpkg12.util.PartitionedTableScanner;
+import org.sqlite.SQLiteDataSource;
+
+/**
+ * Verifies the behavior of the GeometryTypeScanner class.
+ */
+public class VerifyGeometryTypeScanner {
+
+    private static final SQLiteDataSource dataSource = TestDatabases.sample("simple_sewer_features.gpkg");
+
+    @Test
+    public void typeHierarchy() {
+        assertTrue(GeometryType.POLYGON.isAssignableTo(GeometryType.SURFACE));
+        assertTrue(GeometryType.MULTIPOLYGON.isAssignableTo(GeometryType.GEOMETRYCOLLECTION));
+        assertTrue(GeometryType.POINT.isAssignableTo(GeometryType.GEOMETRY));
+        assertFalse(GeometryType.LINESTRING.isAssignableTo(GeometryType.MULTILINESTRING));
+        assertFalse(GeometryType.POINT.isAssignableTo(GeometryType.MULTIPOINT));
+        assertEquals(GeometryType.MULTICURVE, GeometryType.fromName("MultiCurve"));
+        assertNull(GeometryType.fromName("ELLIPSE"));
+        assertEquals(GeometryType.POLYGON, GeometryType.fromWkbCode(3003));
+        assertNull(GeometryType.fromWkbCode(4003));
+        // not in the GeoPackage geometry model
+        assertNull(GeometryType.fromWkbCode(15));
+        assertNull(GeometryType.fromWkbCode(1016));
+        assertNull(GeometryType.fromWkbCode(17));
+        assertNull(GeometryType.fromName("TIN"));
+        assertTrue(GeometryType.hasZ(1001) && !GeometryType.hasM(1001));
+        assertTrue(GeometryType.hasZ(3001) && GeometryType.hasM(3001));
+    }
+
+    @Test
+    public void pointZInPointColumnWithoutZ() {
+        // GP, version 0, flags: little endian, no envelope; srs_id 0; WKB PointZ(1 2 3)
+        byte[] blob = { 0x47, 0x50, 0, 1, 0, 0, 0, 0, 1, (byte) 0xE9, 0x03, 0, 0 };
+        GeometryTypeScanner.Report report = new GeometryTypeScanner.Report();
+        GeometryTypeScanner.check(5, blob, new GeometryTypeScanner.Declaration(GeometryType.POINT, 0, 0, 2), report);
+        assertEquals(0, report.getTypeViolations());
+        assertEquals(1, report.getZViolations());
+        GeometryTypeScanner.check(9, blob, new GeometryTypeScanner.Declaration(GeometryType.CURVE, 0, 2, 1), report);
+        assertEquals(1, report.getTypeViolations());
+        assertEquals(1, report.getMViolations());
+        assertEquals("[POINT]", report.getInvalidTypes().toString());
+        assertFalse(report.isConforming());
+    }
+
+    @Test
+    public void sampleConforms() throws SQLException {
+        GeometryTypeScanner iut = new GeometryTypeScanner(new PartitionedTableScanner(dataSource, 3, 10));
+        GeometryTypeScanner.Report report = iut.scan("foul_sewer", "the_geom", "MULTILINESTRING", 27700, 2, 2);
+        assertTrue(report.toString(), report.isConforming());
+        assertTrue(report.getRows() > 0);
+        GeometryTypeScanner.Report wrongType = iut.scan("foul_sewer", "the_geom", "LINESTRING", 27700, 2, 2);
+        assertEquals(report.getRows(), wrongType.getTypeViolations());
+        assertEquals(0, report.getSrsViolations());
+    }
+
+    @Test
+    public void srsIdRuns() {
+        // GP, version 0, flags: little endian, no envelope; srs_id 4326; WKB Point
+        byte[] blob = { 0x47, 0x50, 0, 1, (byte) 0xE6, 0x10, 0, 0, 1, 1, 0, 0, 0 };
+        assertEquals(4326, GeometryHeader.readSrsId(blob));
+        byte[] bigEndian = { 0x47, 0x50, 0, 0, 0, 0, 0x10, (byte) 0xE6, 0, 0, 0, 0, 1 };
+        assertEquals(4326, GeometryHeader.readSrsId(bigEndian));
+        assertEquals(8, GeometryHeader.readWkbOffset(blob));
+        assertFalse(GeometryHeader.isExtended(blob));
+        GeometryTypeScanner.Declaration declaration = new GeometryTypeScanner.Declaration(GeometryType.POINT, 27700, 2,
+                2);
+        GeometryTypeScanner.Report lower = new GeometryTypeScanner.Report();
+        GeometryTypeScanner.check(1, blob, declaration, lower);
+        GeometryTypeScanner.check(2, blob, declaration, lower);
+        GeometryTypeScanner.Report upper = new GeometryTypeScanner.Report();
+        GeometryTypeScanner.check(5, blob, declaration, upper);
+        GeometryTypeScanner.check(6, bigEndian, new GeometryTypeScanner.Declaration(GeometryType.POINT, 4326, 2, 2),
+                upper);
+        GeometryTypeScanner.check(9, blob, declaration, upper);
+        lower.merge(upper);
+        assertEquals(4, lower.getSrsViolations());
+        assertTrue(lower.isConforming());
+        assertTrue(lower.describeSrsViolations(), lower.describeSrsViolations().endsWith("(rowids 1-5, 9)"));
+    }
+}
@@ -0,0 +1,110 @@
+package org.opengis.cite.gpkg12.features;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.sql.SQLException;
+
+import org.junit.Test;
+import org.opengis.cite.gpkg12.TestDatabases;
+import org.opengis.cite.gpkg12.util.PartitionedTableScanner;
+import org.sqlite.SQLiteDataSource;
+
+/**
+ * Verifies the behavior of the HeaderEnvelopeChecker class.
+ */
+public class VerifyHeaderEnvelopeChecker {
+
+    private static final SQLiteDataSource dataSource = TestDatabases.sample("simple_sewer_features.gpkg");
+
+    @Test
+    public void sampleEnvelopesMatch() throws SQLException {
+        HeaderEnvelopeChecker iut = new HeaderEnvelopeChecker(new PartitionedTableScanner(dataSource, 3, 10));
+        HeaderEnvelopeChecker.Report report = iut.check("foul_sewer", "the_geom");
+        assertTrue(report.toString(), report.isConforming());
+        assertTrue(report.getRows() > 0);
+    }
+
+    @Test
+    public void sampleNonlinearGeometriesAreWellFormed() throws SQLException {
+        SQLiteDataSource nonlinear = TestDatabases.sample("gdal_sample_v1.2_spi_nonlinear_webp_elevation.gpkg");
+        HeaderEnvelopeChecker iut = new HeaderEnvelopeChecker(new PartitionedTableScanner(nonlinear, 2, 1));
+        for (String table : new String[] { "circularstring", "compoundcurve", "curvepolygon", "multicurve",
+                "multisurface", "curve", "surface" }) {
+            HeaderEnvelopeChecker.Report report = iut.check(table, "geom");
+            assertTrue(table + ": " + report.describeMalformed(), report.isWellFormed());
+            assertTrue(table, report.getProfile().getRows() > 0);
+        }
+    }
+
+    @Test
+    public void malformedGeometries() {
+        HeaderEnvelopeChecker.Report report = new HeaderEnvelopeChecker.Report();
+        // a MultiCurve with a Polygon member, then a truncated LineString
+        HeaderEnvelopeChecker.check(8, geometry(VerifyWKBReader.collection(11, VerifyWKBReader.collection(3))),
+                report);
+        HeaderEnvelopeChecker.Report other = new HeaderEnvelopeChecker.Report();
+        HeaderEnvelopeChecker.check(2, geometry(new byte[] { 1, 2, 0, 0, 0, 5, 0, 0, 0 }), other);
+        report.merge(other);
+        assertEquals(2, report.getMalformed());
+        assertFalse(report.isWellFormed());
+        assertTrue(report.describeMalformed(),
+                report.describeMalformed().startsWith("2 malformed geometries (first rowid 2: "));
+        assertTrue(report.isConforming());
+    }
+
+    @Test
+    public void lineStringBounds() {
+        HeaderEnvelopeChecker.Report report = new HeaderEnvelopeChecker.Report();
+        HeaderEnvelopeChecker.check(1, lineString(1, new double[] { 0, 4, -1, 3 }), report);
+        assertEquals(1, report.getRows());
+        assertTrue(report.isConforming());
+        assertEquals(0, report.getLooseEnvelopes());
+
+        HeaderEnvelopeChecker.check(2, lineString(1, new double[] { 0, 3, -1, 3 }), report);
+        HeaderEnvelopeChecker.check(3, lineString(1, new double[] { 0, Double.NaN, -1, 3 }), report);
+        HeaderEnvelopeChecker.check(4, lineString(1, new double[] { -10, 4, -1, 3 }), report);
+        HeaderEnvelopeChecker.check(5, lineString(2, new double[] { 0, 4, -1, 3, 0, 0 }), report);
+        assertEquals(1, report.getSmallEnvelopes());
+        assertEquals(1, report.getNanEnvelopes());
+        assertEquals(1, report.getLooseEnvelopes());
+        assertEquals(1, report.getDimensionMismatches());
+        assertFalse(report.isConforming());
+        assertTrue(report.toString(), report.toString().contains("do not contain their geometry (first rowid 2)"));
+    }
+
+    @Test
+    public void pointZBounds() {
+        // WKB PointZ(1 2 3), little endian
+        ByteBuffer wkb = ByteBuffer.allocate(1 + 4 + 24).order(ByteOrder.LITTLE_ENDIAN);
+        wkb.put((byte) 1).putInt(1001).putDouble(1).putDouble(2).putDouble(3);
+        double[] bounds = WKBReader.newBounds();
+        assertEquals(1001, new WKBReader(wkb.array(), 0).readBounds(bounds));
+        assertArrayEquals(new double[] { 1, 1, 2, 2, 3, 3, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY },
+                bounds, 0);
+    }
+
+    /**
+     * Wraps WKB in a little endian GeoPackageBinary header without envelope.
+     */
+    private static byte[] geometry(byte[] wkb) {
+        ByteBuffer blob = ByteBuffer.allocate(8 + wkb.length);
+        blob.put(new byte[] { 0x47, 0x50, 0, 1, 0, 0, 0, 0 }).put(wkb);
+        return blob.array();
+    }
+
+    /**
+     * Builds a little endian GeoPackageBinary LineString(0 -1, 4 3) with the
+     * given header envelope.
+     */
+    private static byte[] lineString(int envelopeIndicator, double[] envelope) {
+        ByteBuffer blob = ByteBuffer.allocate(8 + envelope.length * 8 + 1 + 4 + 4 + 32).order(ByteOrder.LITTLE_ENDIAN);
+        blob.put((byte) 0x47).put((byte) 0x50).put((byte) 0).put((byte) (1 | envelopeIndicator << 1)).putInt(0);
+        for (double value : envelope) {
+            blob.putDouble(value);
+        }
+        blob.put((byte) 1).putInt(2).putInt(2).putDouble(0).putDouble(-1).putDouble(4).putDouble(3);
+        return blob.array();
+    }
+}
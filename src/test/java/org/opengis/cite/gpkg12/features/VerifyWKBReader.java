@@ -0,0 +1,94 @@
+package org.opengis.cite.gpkg12.features;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.junit.Test;
+
+/**
+ * Verifies the behavior of the WKBReader class.
+ */
+public class VerifyWKBReader {
+
+    @Test
+    public void circularStringWithEvenPointCount() {
+        assertNull(problem(circularString(0, 0, 1, 1, 2, 0)));
+        assertEquals(WKBReader.CIRCULARSTRING_POINTS, problem(circularString(0, 0, 1, 1, 2, 0, 3, 1)));
+    }
+
+    @Test
+    public void disconnectedCompoundCurve() {
+        assertNull(problem(collection(9, circularString(0, 0, 1, 1, 2, 0), lineString(2, 0, 5, 5))));
+        assertEquals(WKBReader.COMPOUNDCURVE_DISCONNECTED,
+                problem(collection(9, circularString(0, 0, 1, 1, 2, 0), lineString(2, 1, 5, 5))));
+        assertEquals(WKBReader.COMPOUNDCURVE_EMPTY, problem(collection(9, lineString())));
+    }
+
+    @Test
+    public void curvePolygonRings() {
+        assertNull(problem(collection(10, collection(9, circularString(0, 0, 1, 1, 2, 0), lineString(2, 0, 0, 0)))));
+        assertEquals(WKBReader.RING_NOT_CLOSED,
+                problem(collection(10, collection(9, circularString(0, 0, 1, 1, 2, 0), lineString(2, 0, 0, 1)))));
+        assertEquals(WKBReader.CURVEPOLYGON_RING, problem(collection(10, collection(3))));
+    }
+
+    @Test
+    public void membersOfMultiGeometries() {
+        assertEquals(WKBReader.MULTICURVE_MEMBER, problem(collection(11, collection(3))));
+        assertEquals(WKBReader.MULTISURFACE_MEMBER, problem(collection(12, lineString(0, 0, 1, 1))));
+        assertNull(problem(collection(12, collection(10))));
+    }
+
+    @Test
+    public void boundsAreReadDespiteProblems() {
+        WKBReader iut = new WKBReader(collection(11, lineString(0, 0, 1, 1), collection(3), lineString(5, 5, 6, 7)), 0);
+        double[] bounds = WKBReader.newBounds();
+        assertEquals(11, iut.readBounds(bounds));
+        assertEquals(WKBReader.MULTICURVE_MEMBER, iut.getProblem());
+        assertEquals(6, bounds[1], 0);
+        assertEquals(7, bounds[3], 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void abstractTypesAreNotDecodable() {
+        problem(collection(13));
+    }
+
+    private static String problem(byte[] wkb) {
+        WKBReader reader = new WKBReader(wkb, 0);
+        reader.readBounds(WKBReader.newBounds());
+        return reader.getProblem();
+    }
+
+    private static byte[] circularString(double... ordinates) {
+        return points(8, ordinates);
+    }
+
+    private static byte[] lineString(double... ordinates) {
+        return points(2, ordinates);
+    }
+
+    private static byte[] points(int typeCode, double... ordinates) {
+        ByteBuffer wkb = ByteBuffer.allocate(9 + ordinates.length * 8).order(ByteOrder.LITTLE_ENDIAN);
+        wkb.put((byte) 1).putInt(typeCode).putInt(ordinates.length / 2);
+        for (double ordinate : ordinates) {
+            wkb.putDouble(ordinate);
+        }
+        return wkb.array();
+    }
+
+    static byte[] collection(int typeCode, byte[]... members) {
+        int length = 9;
+        for (byte[] member : members) {
+            length += member.length;
+        }
+        ByteBuffer wkb = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        wkb.put((byte) 1).putInt(typeCode).putInt(members.length);
+        for (byte[] member : members) {
+            wkb.put(member);
+        }
+        return wkb.array();
+    }
+}
@@ -0,0 +1,98 @@
+package org.opengis.cite.gpkg12.tiles;
+
+import static org.junit.Assert.*;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+/**
+ * Verifies the behavior of the TileDuplicateAnalysis class.
+ */
+public class VerifyTileDuplicateAnalysis {
+
+    @Test
+    public void hashMatchesXXHash64() {
+        assertEquals(0xEF46DB3751D8E999L, TileDuplicateAnalysis.hash(new byte[0]));
+        assertEquals(0x44BC2CF5AD770999L, TileDuplicateAnalysis.hash("abc".getBytes(StandardCharsets.US_ASCII)));
+        byte[] data = new byte[100];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        assertEquals(0x6AC1E58032166597L, TileDuplicateAnalysis.hash(data));
+    }
+
+    @Test
+    public void countBlankTilesExactly() {
+        TileDuplicateAnalysis iut = new TileDuplicateAnalysis();
+        byte[] blank = new byte[300];
+        for (int i = 0; i < 1000; i++) {
+            iut.add(5, tile(i));
+            iut.add(5, blank);
+        }
+        iut.add(6, blank);
+        TileDuplicateAnalysis.ZoomStatistics zoom = iut.getZoomStatistics().get(5);
+        assertEquals(2000, zoom.getTiles());
+        assertEquals(999, zoom.getDuplicates());
+        assertEquals(999 * 300, zoom.getDuplicateBytes());
+        assertEquals(1, iut.getZoomStatistics().get(6).getDuplicates());
+        assertEquals(1001, iut.getMaxRepeatCount());
+        assertEquals(1, iut.getRepeatedContentCount());
+        assertTrue(iut.toString(), iut.toString().startsWith("1000 of 2001 tiles duplicate"));
+    }
+
+    @Test
+    public void mergeRanges() {
+        TileDuplicateAnalysis lower = new TileDuplicateAnalysis();
+        TileDuplicateAnalysis upper = new TileDuplicateAnalysis();
+        for (int i = 0; i < 10; i++) {
+            lower.add(1, new byte[] { 1 });
+            upper.add(1, new byte[] { 1 });
+            upper.add(2, tile(i));
+        }
+        lower.merge(upper);
+        assertEquals(19, lower.getTotal().getDuplicates());
+        assertEquals(30, lower.getTotal().getTiles());
+        assertEquals(20, lower.getMaxRepeatCount());
+    }
+
+    @Test
+    public void countRepeatsOfTrackedContentsInSketch() {
+        TileDuplicateAnalysis iut = new TileDuplicateAnalysis(10);
+        byte[] blank = new byte[300];
+        iut.add(1, blank);
+        iut.add(1, blank);
+        for (int i = 0; i < 1000; i++) {
+            iut.add(1, tile(i));
+            iut.add(1, blank);
+        }
+        assertEquals(1001, iut.getTotal().getDuplicates());
+        assertEquals(1001 * 300, iut.getTotal().getDuplicateBytes());
+        assertEquals(1, iut.getRepeatedContentCount());
+        assertEquals(1002, iut.getMaxRepeatCount());
+        assertTrue(iut.toString(), iut.toString().contains("in at least 1002 tiles"));
+    }
+
+    @Test
+    public void mergeSketches() {
+        TileDuplicateAnalysis lower = new TileDuplicateAnalysis(10);
+        TileDuplicateAnalysis upper = new TileDuplicateAnalysis(10);
+        for (int i = 0; i < 100; i++) {
+            if (i < 20) {
+                lower.add(1, new byte[] { 1 });
+                upper.add(1, new byte[] { 1 });
+            }
+            lower.add(2, tile(i));
+            upper.add(2, tile(100 + i));
+        }
+        lower.merge(upper);
+        assertEquals(39, lower.getTotal().getDuplicates());
+        assertEquals(240, lower.getTotal().getTiles());
+        assertEquals(40, lower.getMaxRepeatCount());
+        assertEquals(1, lower.getRepeatedContentCount());
+    }
+
+    private static byte[] tile(int i) {
+        return String.format("tile %d with some content", i).getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,62 @@
+package org.opengis.cite.gpkg12.tiles;
+
+import static org.junit.Assert.*;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.junit.Test;
+import org.opengis.cite.gpkg12.TestDatabases;
+import org.opengis.cite.gpkg12.util.Envelope;
+
+/**
+ * Verifies the behavior of the TileMatrixModel class.
+ */
+public class VerifyTileMatrixModel {
+
+    @Test
+    public void loadSample() throws SQLException {
+        try (Connection connection = TestDatabases.sample("gdal_sample_v1.2_spi_nonlinear_webp_elevation.gpkg")
+                .getConnection()) {
+            TileMatrixModel iut = TileMatrixModel.load(connection);
+            assertEquals(5, iut.getTableNames().size());
+            TileMatrixModel.Pyramid pyramid = iut.getPyramid("elev_tiff");
+            assertTrue(pyramid.hasMatrixSet());
+            assertEquals(Long.valueOf(4326), pyramid.getSrsId());
+            assertEquals(-77.87083333333332, pyramid.getBounds().getMaxX(), 0);
+            assertEquals(1, pyramid.getZoomCount());
+            assertEquals(0, pyramid.indexOf(0));
+            assertEquals(256, pyramid.getTileWidth(0));
+            assertEquals(0.008333333333333333, pyramid.getPixelYSize(0), 0);
+        }
+    }
+
+    @Test
+    public void zoomLevelsOfEachTable() throws SQLException {
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite::memory:");
+                Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE gpkg_tile_matrix_set (table_name TEXT, srs_id INTEGER, min_x DOUBLE, min_y DOUBLE, max_x DOUBLE, max_y DOUBLE)");
+            statement.execute("CREATE TABLE gpkg_tile_matrix (table_name TEXT, zoom_level INTEGER, matrix_width INTEGER, matrix_height INTEGER, tile_width INTEGER, tile_height INTEGER, pixel_x_size DOUBLE, pixel_y_size DOUBLE)");
+            statement.execute("INSERT INTO gpkg_tile_matrix_set VALUES ('a', 3857, -180, -90, 180, 90)");
+            statement.execute("INSERT INTO gpkg_tile_matrix VALUES ('b', 4, 16, 16, 256, 256, 0.5, 0.5), ('a', 7, 128, 64, 256, 256, 1, 1), ('a', 5, 32, 16, 256, 256, 4, 4), ('b', 3, 8, 8, 256, 256, 1, 1)");
+            TileMatrixModel iut = TileMatrixModel.load(connection);
+            TileMatrixModel.Pyramid a = iut.getPyramid("a");
+            assertEquals(new Envelope(-180, -90, 180, 90).toString(), a.getBounds().toString());
+            assertEquals(2, a.getZoomCount());
+            assertEquals(5, a.getZoomLevel(0));
+            assertEquals(128, a.getMatrixWidth(a.indexOf(7)));
+            assertEquals(-1, a.indexOf(6));
+            TileMatrixModel.Pyramid b = iut.getPyramid("b");
+            assertFalse(b.hasMatrixSet());
+            assertNull(b.getBounds());
+            assertEquals(3, b.getZoomLevel(0));
+            assertEquals(0.5, b.getPixelXSize(1), 0);
+            TileMatrixModel.Pyramid missing = iut.getPyramid("c");
+            assertFalse(missing.hasMatrixSet());
+            assertEquals(0, missing.getZoomCount());
+            assertEquals(-1, missing.indexOf(0));
+        }
+    }
+}
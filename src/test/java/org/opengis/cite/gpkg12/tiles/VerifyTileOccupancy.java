@@ -0,0 +1,94 @@
+package org.opengis.cite.gpkg12.tiles;
+
+import static org.junit.Assert.*;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import org.junit.Test;
+import org.opengis.cite.gpkg12.TestDatabases;
+import org.opengis.cite.gpkg12.util.Envelope;
+import org.opengis.cite.gpkg12.util.ProgressMonitor;
+
+/**
+ * Verifies the behavior of the TileOccupancy class.
+ */
+public class VerifyTileOccupancy {
+
+    @Test
+    public void scanSingleTilePyramid() throws SQLException {
+        try (Connection connection = TestDatabases.sample("gdal_sample_v1.2_spi_nonlinear_webp_elevation.gpkg")
+                .getConnection()) {
+            TileOccupancy occupancy = TileOccupancy.scan(connection, "byte_png",
+                    TileMatrixModel.load(connection).getPyramid("byte_png"), new ProgressMonitor());
+            assertEquals(1, occupancy.getZoomRanges().size());
+            TileOccupancy.ZoomRange range = occupancy.getZoomRanges().get(0);
+            assertEquals(1, range.getTileCount());
+            assertTrue(range.isDefined());
+            assertEquals(0, range.getDuplicateCount());
+            assertEquals(0, range.getColumnsOutOfRange() + range.getRowsOutOfRange());
+            Envelope envelope = range.toEnvelope(440720.0, 3751320.0, 256 * 60.0, 256 * 60.0);
+            assertEquals(440720.0, envelope.getMinX(), 0);
+            assertEquals(3735960.0, envelope.getMinY(), 0);
+            assertEquals(456080.0, envelope.getMaxX(), 0);
+        }
+    }
+
+    @Test
+    public void occupiedRangeToEnvelope() {
+        TileOccupancy.ZoomRange range = new TileOccupancy.ZoomRange(2);
+        range.add(1, 2);
+        range.add(2, 3);
+        Envelope envelope = range.toEnvelope(-180, 90, 90, 45);
+        assertEquals(-90.0, envelope.getMinX(), 0);
+        assertEquals(90.0, envelope.getMaxX(), 0);
+        assertEquals(-90.0, envelope.getMinY(), 0);
+        assertEquals(0.0, envelope.getMaxY(), 0);
+    }
+
+    @Test
+    public void duplicateAndOutOfRangeTiles() {
+        TileOccupancy.ZoomRange range = new TileOccupancy.ZoomRange(3, 8, 4);
+        range.add(0, 0);
+        range.add(7, 3);
+        range.add(7, 3);
+        range.add(8, 0);
+        range.add(1, -1);
+        assertEquals(5, range.getTileCount());
+        assertEquals(2, range.getDistinctTileCount());
+        assertEquals(1, range.getDuplicateCount());
+        assertArrayEquals(new long[] { 7, 3 }, range.getFirstDuplicate());
+        assertEquals(1, range.getColumnsOutOfRange());
+        assertEquals(1, range.getRowsOutOfRange());
+        assertEquals(2 / 32.0, range.getCoverage(), 0);
+    }
+
+    @Test
+    public void sparseMatrixAtHighZoom() {
+        // zoom 20 of a global pyramid: 2^20 x 2^20 positions
+        TileOccupancy.ZoomRange range = new TileOccupancy.ZoomRange(20, 1 << 20, 1 << 20);
+        for (long column = 500000; column < 500100; column++) {
+            for (long row = 300000; row < 300100; row++) {
+                range.add(column, row);
+            }
+        }
+        range.add(500050, 300050);
+        assertEquals(10000, range.getDistinctTileCount());
+        assertEquals(1, range.getDuplicateCount());
+        assertTrue(range.getTrackingBytes() < 4 * 10000);
+    }
+
+    @Test
+    public void denseChunkBecomesBitmap() {
+        TileBitmap bitmap = new TileBitmap();
+        for (long position = 65536 * 2; position < 65536 * 3; position += 2) {
+            assertTrue(bitmap.add(position));
+        }
+        assertTrue(bitmap.add(5));
+        assertFalse(bitmap.add(65536 * 2 + 100));
+        assertEquals(32769, bitmap.cardinality());
+        assertTrue(bitmap.contains(65536 * 3 - 2));
+        assertFalse(bitmap.contains(65536 * 3 - 1));
+        assertEquals(8192 + 8, bitmap.sizeInBytes());
+    }
+}
@@ -0,0 +1,61 @@
+package org.opengis.cite.gpkg12.util;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.Iterator;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.spi.ImageReaderSpi;
+
+import org.junit.Test;
+
+public class VerifyByteArrayImageInputStream {
+
+    @Test
+    public void readAndRewrap() throws IOException {
+        ByteArrayImageInputStream iut = new ByteArrayImageInputStream();
+        iut.wrap(new byte[] { 1, 2, 3 });
+        assertEquals(3, iut.length());
+        assertEquals(1, iut.read());
+        byte[] rest = new byte[4];
+        assertEquals(2, iut.read(rest, 0, 4));
+        assertEquals(3, rest[1]);
+        assertEquals(-1, iut.read());
+        iut.mark();
+        iut.wrap(new byte[] { 9 });
+        iut.reset();
+        assertEquals(0, iut.getStreamPosition());
+        assertEquals(9, iut.readByte());
+        assertEquals(-1, iut.read(rest, 0, 1));
+    }
+
+    @Test
+    public void identifyFormatFromSignature() throws IOException {
+        ImageReaderSpi png = provider("image/png");
+        ImageReaderSpi jpeg = provider("image/jpeg");
+        byte[] pngImage = encode("png");
+        byte[] jpegImage = encode("jpeg");
+        ByteArrayImageInputStream iut = new ByteArrayImageInputStream();
+        // the signature is enough, and the stream is reused between images
+        assertTrue(png.canDecodeInput(iut.wrap(Arrays.copyOf(pngImage, 16))));
+        assertFalse(jpeg.canDecodeInput(iut.wrap(Arrays.copyOf(pngImage, 16))));
+        assertTrue(jpeg.canDecodeInput(iut.wrap(Arrays.copyOf(jpegImage, 16))));
+        assertFalse(png.canDecodeInput(iut.wrap(jpegImage)));
+    }
+
+    private static ImageReaderSpi provider(String mimeType) {
+        Iterator<ImageReader> readers = ImageIO.getImageReadersByMIMEType(mimeType);
+        return readers.next().getOriginatingProvider();
+    }
+
+    private static byte[] encode(String format) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(8, 8, BufferedImage.TYPE_INT_RGB), format, out);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,30 @@
+package org.opengis.cite.gpkg12.util;
+
+import static org.junit.Assert.*;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import org.junit.Test;
+import org.sqlite.SQLiteDataSource;
+
+/**
+ * Verifies the behavior of the CancellableDataSource class.
+ */
+public class VerifyCancellableDataSource {
+
+    @Test
+    public void cancelOpenConnectionsOnly() throws SQLException {
+        SQLiteDataSource sqlite = new SQLiteDataSource();
+        sqlite.setUrl("jdbc:sqlite::memory:");
+        CancellableDataSource iut = new CancellableDataSource(sqlite);
+        try (Connection first = iut.getConnection()) {
+            Connection second = iut.getConnection();
+            assertEquals(2, iut.cancelQueries());
+            second.close();
+            assertEquals(1, iut.cancelQueries());
+            assertFalse(first.isClosed());
+        }
+        assertEquals(0, iut.cancelQueries());
+    }
+}
@@ -0,0 +1,107 @@
+package org.opengis.cite.gpkg12.util;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.opengis.cite.gpkg12.TestDatabases;
+
+public class VerifyGeoPackageQueries {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private Connection connection;
+
+    @Before
+    public void createDatabase() throws IOException, SQLException {
+        connection = TestDatabases.dataSource(tempFolder.newFile("queries.gpkg")).getConnection();
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate("CREATE TABLE \"odd \"\"name\" (id INTEGER PRIMARY KEY, \"select\" TEXT NOT NULL)");
+            statement.executeUpdate("INSERT INTO \"odd \"\"name\" VALUES (1, 'a'), (2, 'b'), (3, 'c')");
+        }
+    }
+
+    @After
+    public void closeDatabase() throws SQLException {
+        connection.close();
+    }
+
+    @Test
+    public void quoteIdentifier() {
+        assertEquals("\"odd \"\"name\"", GeoPackageQueries.quoteIdentifier("odd \"name"));
+    }
+
+    @Test
+    public void statementsAreCached() throws SQLException {
+        try (GeoPackageQueries queries = new GeoPackageQueries(connection)) {
+            for (long id = 1; id <= 3; id++) {
+                assertEquals(Long.valueOf(id), queries.queryLong("SELECT id FROM \"odd \"\"name\" WHERE id = ?", id));
+            }
+            assertNull(queries.queryLong("SELECT id FROM \"odd \"\"name\" WHERE id = ?", 4));
+            assertEquals(1, queries.getPreparedCount());
+            assertEquals(3, queries.getReusedCount());
+            assertEquals(4, queries.getExecutedCount());
+        }
+    }
+
+    @Test
+    public void nestedCursorsOnSameQuery() throws SQLException {
+        String sql = "SELECT id FROM \"odd \"\"name\" WHERE id >= ? ORDER BY id";
+        try (GeoPackageQueries queries = new GeoPackageQueries(connection);
+                GeoPackageQueries.Cursor<Integer> outer = queries.query(sql, row -> row.getInt(1), 2)) {
+            assertTrue(outer.next());
+            assertEquals(Arrays.asList(1, 2, 3), queries.list(sql, row -> row.getInt(1), 1));
+            assertEquals(Integer.valueOf(2), outer.get());
+            assertTrue(outer.next());
+            assertEquals(Integer.valueOf(3), outer.get());
+            assertFalse(outer.next());
+        }
+    }
+
+    @Test
+    public void selectQuotedColumns() throws SQLException {
+        try (GeoPackageQueries queries = new GeoPackageQueries(connection);
+                GeoPackageQueries.Cursor<String> cursor = queries.selectColumns("odd \"name",
+                        row -> row.getLong(1) + row.getString(2), "rowid", "select")) {
+            assertEquals(Arrays.asList("1a", "2b", "3c"), cursor.toList());
+        }
+    }
+
+    @Test
+    public void tableInfo() throws SQLException {
+        try (GeoPackageQueries queries = new GeoPackageQueries(connection)) {
+            List<GeoPackageQueries.TableColumn> columns = queries.getTableInfo("odd \"name");
+            assertEquals(2, columns.size());
+            assertEquals("id", columns.get(0).getName());
+            assertEquals(1, columns.get(0).getPrimaryKeyIndex());
+            assertEquals("select", columns.get(1).getName());
+            assertTrue(columns.get(1).isNotNull());
+            assertTrue(queries.getTableInfo("missing").isEmpty());
+        }
+    }
+
+    @Test
+    public void leastRecentlyUsedStatementIsEvicted() throws SQLException {
+        try (GeoPackageQueries queries = new GeoPackageQueries(connection, 2)) {
+            queries.queryLong("SELECT 1");
+            queries.queryLong("SELECT 2");
+            queries.queryLong("SELECT 1");
+            queries.queryLong("SELECT 3");
+            queries.queryLong("SELECT 1");
+            assertEquals(3, queries.getPreparedCount());
+            queries.queryLong("SELECT 2");
+            assertEquals(4, queries.getPreparedCount());
+        }
+    }
+}
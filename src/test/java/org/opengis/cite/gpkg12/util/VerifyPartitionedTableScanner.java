@@ -0,0 +1,101 @@
+package org.opengis.cite.gpkg12.util;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.opengis.cite.gpkg12.TestDatabases;
+import org.sqlite.SQLiteDataSource;
+
+public class VerifyPartitionedTableScanner {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private SQLiteDataSource dataSource;
+
+    @Before
+    public void createDatabase() throws IOException, SQLException {
+        dataSource = TestDatabases.dataSource(tempFolder.newFile("scan.gpkg"));
+        try (Connection connection = dataSource.getConnection();
+                Statement statement = connection.createStatement()) {
+            statement.executeUpdate("CREATE TABLE tiles (id INTEGER PRIMARY KEY, value INTEGER)");
+            statement.executeUpdate("CREATE VIEW tiles_view AS SELECT id, value FROM tiles");
+            statement.executeUpdate("CREATE TABLE empty (id INTEGER PRIMARY KEY)");
+            connection.setAutoCommit(false);
+            // a skewed table: a dense block of rowids and a few far away
+            try (PreparedStatement insert = connection.prepareStatement("INSERT INTO tiles VALUES (?, ?)")) {
+                for (int id = 1; id <= 500; id++) {
+                    insert.setInt(1, id);
+                    insert.setInt(2, id % 7);
+                    insert.executeUpdate();
+                }
+                for (int id = 100000; id <= 100500; id += 100) {
+                    insert.setInt(1, id);
+                    insert.setInt(2, 0);
+                    insert.executeUpdate();
+                }
+            }
+            connection.commit();
+        }
+    }
+
+    @Test
+    public void parallelScanMatchesSinglePass() throws SQLException {
+        List<Long> single = zeroValueRowids(new PartitionedTableScanner(dataSource, 1), "tiles", "value");
+        List<Long> parallel = zeroValueRowids(new PartitionedTableScanner(dataSource, 4, 10), "tiles", "value");
+        assertEquals(77, single.size());
+        assertEquals(single, parallel);
+        assertEquals(Long.valueOf(7), parallel.get(0));
+        assertEquals(Long.valueOf(100500), parallel.get(parallel.size() - 1));
+    }
+
+    @Test
+    public void scanViewAndEmptyTable() throws SQLException {
+        PartitionedTableScanner iut = new PartitionedTableScanner(dataSource, 4, 10);
+        List<Long> view = iut.scan("view", "tiles_view", "value", ArrayList::new, (rowid, row, rowids) -> {
+            rowids.add(rowid);
+            return 0;
+        }, (lower, upper) -> {
+            lower.addAll(upper);
+            return lower;
+        });
+        assertEquals(506, view.size());
+        assertEquals(Long.valueOf(-1), view.get(0));
+        assertTrue(zeroValueRowids(iut, "empty", "id").isEmpty());
+    }
+
+    @Test(expected = SQLException.class)
+    public void visitorFailure() throws SQLException {
+        new PartitionedTableScanner(dataSource, 4, 10).scan("failure", "tiles", "value", ArrayList::new,
+                (rowid, row, rowids) -> {
+                    if (rowid == 300) {
+                        throw new SQLException("Bad row " + rowid);
+                    }
+                    return 0;
+                }, (lower, upper) -> lower);
+    }
+
+    private static List<Long> zeroValueRowids(PartitionedTableScanner scanner, String tableName, String column)
+            throws SQLException {
+        return scanner.scan("zero values", tableName, column, ArrayList::new, (rowid, row, rowids) -> {
+            if (row.getInt(2) == 0) {
+                rowids.add(rowid);
+            }
+            return Long.BYTES;
+        }, (lower, upper) -> {
+            lower.addAll(upper);
+            return lower;
+        });
+    }
+}
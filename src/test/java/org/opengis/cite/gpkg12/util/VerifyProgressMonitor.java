@@ -0,0 +1,83 @@
+package org.opengis.cite.gpkg12.util;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Verifies the behavior of the ProgressMonitor and ScanProgress classes.
+ */
+public class VerifyProgressMonitor {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Test
+    public void reportsReachListenersAndStatusFile() throws IOException {
+        File statusFile = new File(tempFolder.getRoot(), "progress.txt");
+        ProgressMonitor monitor = new ProgressMonitor();
+        monitor.setStatusFile(statusFile);
+        monitor.setReportInterval(0, TimeUnit.SECONDS);
+        List<String> reports = new ArrayList<>();
+        Consumer<ScanProgress> listener = progress -> reports.add(progress.toString());
+        monitor.addListener(listener);
+        try (ScanProgress progress = monitor.begin("scan tiles", 4)) {
+            progress.advance(1, 1000);
+            progress.advance(1, 1000);
+            assertEquals(2, progress.getRows());
+            assertEquals(2000, progress.getBytes());
+            assertTrue(progress.getEtaMillis() >= 0);
+            String status = new String(Files.readAllBytes(statusFile.toPath()), StandardCharsets.UTF_8);
+            assertTrue(status.contains("scan tiles: 2 of 4 rows (50%)"));
+        } finally {
+            monitor.removeListener(listener);
+            monitor.setStatusFile(null);
+        }
+        assertFalse(reports.isEmpty());
+        assertTrue(reports.get(reports.size() - 1).contains("done in"));
+        String status = new String(Files.readAllBytes(statusFile.toPath()), StandardCharsets.UTF_8);
+        assertTrue(status.contains("idle"));
+    }
+
+    @Test
+    public void unknownTotalHasNoEta() {
+        try (ScanProgress progress = new ProgressMonitor().begin("scan view", 0)) {
+            progress.advance(10, 0);
+            assertEquals(-1, progress.getEtaMillis());
+            assertTrue(progress.toString().startsWith("scan view: 10 rows,"));
+        }
+    }
+
+    @Test
+    public void monitorsOnlyReportTheirOwnScans() throws IOException {
+        File statusFile = new File(tempFolder.getRoot(), "suite1.txt");
+        ProgressMonitor suite1 = new ProgressMonitor();
+        suite1.setStatusFile(statusFile);
+        ProgressMonitor suite2 = new ProgressMonitor();
+        suite2.setReportInterval(0, TimeUnit.SECONDS);
+        List<String> reports = new ArrayList<>();
+        suite1.addListener(progress -> reports.add(progress.toString()));
+        try (ScanProgress progress = suite2.begin("scan features", 2)) {
+            progress.advance(2, 0);
+            String status = new String(Files.readAllBytes(statusFile.toPath()), StandardCharsets.UTF_8);
+            assertTrue(status.contains("idle"));
+        }
+        assertTrue(reports.isEmpty());
+    }
+
+    @Test
+    public void formatDuration() {
+        assertEquals("1:01:05", ScanProgress.formatDuration(3665000));
+    }
+}
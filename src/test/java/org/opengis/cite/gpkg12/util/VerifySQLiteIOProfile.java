@@ -0,0 +1,77 @@
+package org.opengis.cite.gpkg12.util;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+import org.opengis.cite.gpkg12.TestRunArg;
+import org.sqlite.SQLiteConfig;
+
+/**
+ * Verifies the behavior of the SQLiteIOProfile class.
+ */
+public class VerifySQLiteIOProfile {
+
+    private static File gpkgFile() throws URISyntaxException {
+        URL gpkgUrl = ClassLoader.getSystemResource("gpkg/simple_sewer_features.gpkg");
+        return new File(gpkgUrl.toURI());
+    }
+
+    @Test
+    public void overridesReplaceChosenSettings() throws URISyntaxException {
+        Map<String, String> params = new HashMap<String, String>();
+        params.put(TestRunArg.MMAP_SIZE.toString(), "0");
+        params.put(TestRunArg.CACHE_SIZE.toString(), "4194304");
+        params.put(TestRunArg.TEMP_STORE.toString(), "file");
+        params.put(TestRunArg.IMMUTABLE.toString(), "false");
+        SQLiteIOProfile profile = SQLiteIOProfile.select(gpkgFile(), params);
+        assertEquals(0, profile.getMmapSize());
+        assertEquals(4194304, profile.getCacheSize());
+        assertEquals(SQLiteConfig.TempStore.FILE, profile.getTempStore());
+        assertFalse(profile.isImmutable());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidOverride() throws URISyntaxException {
+        Map<String, String> params = new HashMap<String, String>();
+        params.put(TestRunArg.MMAP_SIZE.toString(), "large");
+        SQLiteIOProfile.select(gpkgFile(), params);
+    }
+
+    @Test
+    public void connectionsUseProfile() throws URISyntaxException, SQLException {
+        File file = gpkgFile();
+        SQLiteIOProfile profile = SQLiteIOProfile.select(file);
+        assertTrue(profile.getMmapSize() > 0);
+        assertTrue(profile.isImmutable());
+        try (Connection connection = profile.createDataSource(file).getConnection();
+                Statement statement = connection.createStatement()) {
+            try (ResultSet resultSet = statement.executeQuery("PRAGMA mmap_size")) {
+                assertTrue(resultSet.next());
+                assertEquals(profile.getMmapSize(), resultSet.getLong(1));
+            }
+            try (ResultSet resultSet = statement.executeQuery("PRAGMA cache_size")) {
+                assertTrue(resultSet.next());
+                assertEquals(-profile.getCacheSize() / 1024, resultSet.getLong(1));
+            }
+            try (ResultSet resultSet = statement.executeQuery("SELECT count(*) FROM gpkg_contents")) {
+                assertTrue(resultSet.next());
+            }
+            try {
+                statement.execute("CREATE TABLE t(a)");
+                fail("Expected a read-only connection");
+            } catch (SQLException e) {
+                // expected
+            }
+        }
+    }
+}
@@ -31,6 +31,26 @@ public class VerifyValidationUtils {
         assertNotNull(result);
     }
 
+    @Test
+    public void schematronValidatorIsReused() {
+        String schemaRef = "http://schemas.opengis.net/gml/3.2.1/SchematronConstraints.xml";
+        SchematronValidator first = ValidationUtils.buildSchematronValidator(schemaRef, "#ALL");
+        SchematronValidator second = ValidationUtils.buildSchematronValidator(schemaRef, "#ALL");
+        assertNotNull(first);
+        assertSame(first, second);
+    }
+
+    @Test
+    public void missingSchemaIsReported() {
+        String schemaRef = new File("src/test/resources/sch/missing.sch").toURI().toString();
+        try {
+            ValidationUtils.buildSchematronValidator(schemaRef, "#ALL");
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            assertNotNull(e.getCause());
+        }
+    }
+
     @Test
     public void extractRelativeSchemaReference() throws FileNotFoundException,
             XMLStreamException {
@@ -103,6 +103,21 @@ public class VerifyXMLUtils {
                 result.getUnderlyingValue().getStringValue());
     }
 
+    @Test
+    public void evaluateXPath2SameExpressionWithDifferentBindings()
+            throws SAXException, IOException, SaxonApiException, XPathException {
+        Document doc = docBuilder.parse(this.getClass().getResourceAsStream("/atom-feed.xml"));
+        String expr = "count(//p:phone)";
+        Map<String, String> nsBindings = new HashMap<String, String>();
+        nsBindings.put(EX_NS, "p");
+        XdmValue result = XMLUtils.evaluateXPath2(new DOMSource(doc), expr, nsBindings);
+        Assert.assertEquals("1", result.getUnderlyingValue().getStringValue());
+        nsBindings.clear();
+        nsBindings.put(ATOM_NS, "p");
+        result = XMLUtils.evaluateXPath2(new DOMSource(doc), expr, nsBindings);
+        Assert.assertEquals("0", result.getUnderlyingValue().getStringValue());
+    }
+
     @Test
     public void evaluateXPath2ExpressionAgainstElement()
             throws SAXException, IOException, SaxonApiException, XPathException {